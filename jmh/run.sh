@@ -0,0 +1,32 @@
+#! /bin/bash
+
+# Builds the benchmark module and runs the JMH benchmarks of the BPT creation (see BPTBenchmarks).
+#
+# Usage: jmh/run.sh [JMH options], e.g. jmh/run.sh Scaling -p threads=1,4
+#
+# Environment:
+#   IMAGE_HOME  root of the Image project (https://github.com/yonmi/Image); ../Image by default
+#   HEAP        fixed size of the heap (-Xms = -Xmx) so that the runs are comparable; 4g by default
+#   OUTPUT      directory of the JSON results; xp/benchmarks by default
+
+set -e
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+IMAGE_HOME="${IMAGE_HOME:-$ROOT/../Image}"
+HEAP="${HEAP:-4g}"
+OUTPUT="${OUTPUT:-$ROOT/xp/benchmarks}"
+LIBS="$ROOT/lib/*:$ROOT/lib/sis-jhdf5/lib/*"
+
+if [ ! -d "$IMAGE_HOME/src" ]; then
+  echo "The Image project is not found in $IMAGE_HOME; set IMAGE_HOME" >&2
+  exit 1
+fi
+
+cd "$ROOT"
+mvn -B -q package -pl jmh -am -DskipTests -Dimage.home="$IMAGE_HOME"
+
+mkdir -p "$OUTPUT"
+java -cp "$ROOT/jmh/target/benchmarks.jar:$LIBS" org.openjdk.jmh.Main \
+  -jvmArgs "-Xms$HEAP -Xmx$HEAP -Dnative.libpath=$ROOT/lib/sis-jhdf5/lib/native" \
+  -rf json -rff "$OUTPUT/benchmarks_$(date +%Y%m%d_%H%M%S).json" \
+  "$@"
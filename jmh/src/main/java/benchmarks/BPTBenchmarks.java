@@ -0,0 +1,620 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.bricks.SyntheticImage;
+import benchmarks.bricks.SyntheticImage.Pattern;
+import datastructure.Node;
+import datastructure.Tree;
+import metric.bricks.BandKernels;
+import metric.bricks.Metric;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.bricks.MetricFactory;
+import metric.color.Ominmax;
+import standard.parallel.BPTP;
+import standard.sequential.BPT;
+import utils.BatchBuilder;
+import utils.CutBPT;
+import utils.CutResult;
+import utils.Log;
+import utils.SaveBPT;
+
+/**
+ * JMH benchmarks of the hot paths of the BPT creation.
+ * 
+ * <p>
+ * Measured operations:
+ * <li> creation of the RAG for each {@link Pattern synthetic image}
+ * <li> full creation of the tree ({@link BPT#grow()}) for each metric of the {@link MetricFactory}
+ * <li> full creation of the tree with the adjacencies removed at once or lazily
+ * <li> distance kernels on 4, 13 and 200 bands, depending on the layout of the features
+ * <li> sweeps of cuts ({@link CutBPT#execute(Tree, int, int, int)})
+ * <li> saving in a HDF5 file ({@link SaveBPT#toHDF5(Tree)}) and loading from it ({@link BPT#BPT(String)})
+ * <li> sequential ({@link BPT}) versus parallel ({@link BPTP}) creation for several image sizes and numbers of threads
+ * <li> creation and saving of a batch of images ({@link BatchBuilder}) for several numbers of builders
+ * 
+ * <p>
+ * The images, the metrics and the numbers of threads are JMH parameters: they can be changed from the command line (e.g. <i>-p threads=1,2,4,8,16</i>).
+ * The script <i>jmh/run.sh</i> builds the module and runs the benchmarks with a fixed heap, the results being written in a JSON file 
+ * to keep track of the regressions between two versions.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(2)
+public class BPTBenchmarks {
+	
+	/**
+	 * Seed of the synthetic images.
+	 */
+	public static final long SEED = 42;
+	
+	/**
+	 * Side of the synthetic images, when it is not a parameter.
+	 */
+	public static final int SIZE = 64;
+	
+	/**
+	 * 
+	 * @param image to use; should not be null
+	 * @param metricType metric to use; should not be null
+	 * @return a BPT ready to grow
+	 */
+	private static BPT prepare(BufferedImage image, TypeOfMetric metricType) {
+		
+		Log.show = false;
+		Metric.currentFeaturePos = -1;
+		BPT bpt = new BPT(image);
+		bpt.setMetric(MetricFactory.initMetric(metricType, image));
+		return bpt;
+	}
+	
+	/**
+	 * 
+	 * @return a new temporary directory where the images and the trees are written
+	 * 
+	 * @throws IOException if the directory cannot be created
+	 */
+	private static String temporaryDirectory() throws IOException {
+		
+		return Files.createTempDirectory("bpt_benchmarks").toString();
+	}
+	
+	/**
+	 * Deletes a temporary directory and its files.
+	 */
+	private static void delete(String directory) {
+		
+		File[] files = new File(directory).listFiles();
+		if(files != null) {
+			
+			for(File file: files) {
+				
+				file.delete();
+			}
+		}
+		new File(directory).delete();
+	}
+	
+	/**
+	 * A BPT whose leaves are defined, ready for {@link BPT#createRAG()}.
+	 */
+	@State(Scope.Thread)
+	public static class RAGState {
+		
+		@Param({"FLAT", "NOISE", "NATURAL", "MULTI_BAND"})
+		public Pattern pattern;
+		
+		BufferedImage image;
+		BPT bpt;
+		
+		@Setup(Level.Trial)
+		public void generate() {
+			
+			this.image = SyntheticImage.generate(this.pattern, SIZE, SIZE, SEED);
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			
+			this.bpt = BPTBenchmarks.prepare(this.image, TypeOfMetric.OMIN_MAX);
+			this.bpt.prepareLabelMatrix();
+			this.bpt.defineLeaves();
+		}
+	}
+	
+	/**
+	 * Measures {@link BPT#createRAG()}; the leaves are defined beforehand.
+	 */
+	@Benchmark
+	public BPT ragCreation(RAGState state) {
+		
+		state.bpt.createRAG();
+		return state.bpt;
+	}
+	
+	/**
+	 * A BPT of the multi-band image, ready to grow with a metric of the {@link MetricFactory}.
+	 */
+	@State(Scope.Thread)
+	public static class GrowState {
+		
+		@Param({"RADIOMETRIC_MIN_MAX", "RADIOMETRIC_AVERAGE", "PRECISED_ELONGATION", "SIMPLE_ELONGATION", "FAST_ELONGATION", 
+				"SMOOTHNESS", "FAST_SMOOTHNESS", "FAST_COMPACTNESS", "NDVI", "NDWI", 
+				"CL_MM_NDVI", "CL_MM_NDWI", "CL_MM_COMPACTNESS", "CL_MM_NDVI_NDWI", "CL_MM_FEL_NDVI", "CL_MM_FEL_NDVI_NDWI", 
+				"VECTORIAL_DISTANCE", "ORANDOM", "OMIN_MAX", "OMSE", "OWSDM", "OCONTOUR", 
+				"OCOL_CONT_MIN_MAX", "OCOL_CONT_MSE", "OCOL_CONT_MSE_LAB", "OCOL_CONT_WSDM"})
+		public TypeOfMetric metric;
+		
+		BufferedImage image;
+		BPT bpt;
+		
+		@Setup(Level.Trial)
+		public void generate() {
+			
+			this.image = SyntheticImage.generate(Pattern.MULTI_BAND, SIZE, SIZE, SEED);
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			
+			this.bpt = BPTBenchmarks.prepare(this.image, this.metric);
+		}
+	}
+	
+	/**
+	 * Measures {@link BPT#grow()} with a specific metric.
+	 */
+	@Benchmark
+	public BPT grow(GrowState state) {
+		
+		state.bpt.grow();
+		return state.bpt;
+	}
+	
+	/**
+	 * A BPT of the multi-band image, whose adjacencies are removed at once ({@link datastructure.set.SetOfAdjacencyBuckets buckets}) 
+	 * or {@link BPT#lazyAdjacencyRemoval lazily} ({@link datastructure.set.LazyAdjacencyHeap heap}).
+	 */
+	@State(Scope.Thread)
+	public static class QueueState {
+		
+		@Param({"OMIN_MAX", "OWSDM"})
+		public TypeOfMetric metric;
+		
+		@Param({"false", "true"})
+		public boolean lazy;
+		
+		BufferedImage image;
+		BPT bpt;
+		
+		@Setup(Level.Trial)
+		public void generate() {
+			
+			this.image = SyntheticImage.generate(Pattern.MULTI_BAND, SIZE, SIZE, SEED);
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			
+			this.bpt = BPTBenchmarks.prepare(this.image, this.metric);
+			this.bpt.lazyAdjacencyRemoval = this.lazy;
+		}
+	}
+	
+	/**
+	 * Measures {@link BPT#grow()} depending on the set of adjacencies.
+	 */
+	@Benchmark
+	public BPT adjacencyQueue(QueueState state) {
+		
+		state.bpt.grow();
+		return state.bpt;
+	}
+	
+	/**
+	 * The leaves of a grown BPT of the multi-band image, each one scored against a group of neighbors.
+	 */
+	@State(Scope.Thread)
+	public static class DistancesState {
+		
+		@Param({"OMIN_MAX", "RADIOMETRIC_AVERAGE"})
+		public TypeOfMetric metric;
+		
+		/**
+		 * true to score the neighbors with {@link Metric#computeDistances(Node, Node[], int, double[]) a single call}, false to score them pair by pair.
+		 */
+		@Param({"false", "true"})
+		public boolean batch;
+		
+		Metric scoring;
+		Node[] leaves;
+		int nbNeighbors;
+		double[] distances;
+		
+		@Setup(Level.Trial)
+		public void grow() {
+			
+			BufferedImage image = SyntheticImage.generate(Pattern.MULTI_BAND, SIZE, SIZE, SEED);
+			BPT bpt = BPTBenchmarks.prepare(image, this.metric);
+			bpt.grow();
+			this.scoring = bpt.getMetric();
+			this.leaves = Arrays.copyOf(bpt.getNodes(), bpt.getNbLeaves());
+			this.nbNeighbors = Math.min(32, this.leaves.length);
+			this.distances = new double[this.nbNeighbors];
+		}
+	}
+	
+	/**
+	 * Measures the scoring of each leaf against a group of neighbors.
+	 */
+	@Benchmark
+	public void distances(DistancesState state, Blackhole blackhole) {
+		
+		Node[] leaves = state.leaves;
+		double[] distances = state.distances;
+		for(int l = 0; l < leaves.length; ++l) {
+			
+			Node node = leaves[l];
+			if(state.batch) {
+				
+				state.scoring.computeDistances(node, leaves, state.nbNeighbors, distances);
+				
+			}else {
+				
+				for(int i = 0; i < state.nbNeighbors; ++i) {
+					
+					distances[i] = state.scoring.computeDistances(leaves[i], node);
+				}
+			}
+			blackhole.consume(distances);
+		}
+	}
+	
+	/**
+	 * Random min/max features on many bands, stored in the map of each node and in its {@link Node#bandFeatures contiguous array}.
+	 */
+	@State(Scope.Thread)
+	public static class BandsState {
+		
+		public static final int NB_NODES = 1024;
+		public static final int NB_NEIGHBORS = 32;
+		
+		@Param({"4", "13", "200"})
+		public int bands;
+		
+		/**
+		 * true to read the features from the contiguous arrays, false to read them from the maps (boxed, one look-up per band).
+		 */
+		@Param({"false", "true"})
+		public boolean contiguous;
+		
+		Node[] nodes;
+		
+		@Setup(Level.Trial)
+		public void fill() {
+			
+			this.nodes = new Node[NB_NODES];
+			Random random = new Random(SEED);
+			for(int n = 0; n < NB_NODES; ++n) {
+				
+				Node node = new Node(n);
+				node.bandFeatures = new double[2 * this.bands];
+				for(int b = 0; b < this.bands; ++b) {
+					
+					double min = random.nextInt(256);
+					double max = min + random.nextInt(256);
+					node.bandFeatures[2 * b] = min;
+					node.bandFeatures[2 * b + 1] = max;
+					node.features.put(2 * b, min);
+					node.features.put(2 * b + 1, max);
+				}
+				this.nodes[n] = node;
+			}
+		}
+	}
+	
+	/**
+	 * Measures the min/max distance on many bands depending on the layout of the features; only the layout is measured, not the image reading.
+	 */
+	@Benchmark
+	public double bandKernels(BandsState state) {
+		
+		Node[] nodes = state.nodes;
+		int nbBands = state.bands;
+		double total = 0;
+		for(int n = 0; n < BandsState.NB_NODES; ++n) {
+			
+			Node node = nodes[n];
+			for(int i = 1; i <= BandsState.NB_NEIGHBORS; ++i) {
+				
+				Node neighbor = nodes[(n + i) % BandsState.NB_NODES];
+				if(state.contiguous) {
+					
+					total += BandKernels.minMaxSpread(node.bandFeatures, 0, neighbor.bandFeatures, 0, nbBands);
+					
+				}else {
+					
+					for(int b = 0; b < nbBands; ++b) {
+						
+						double miniMini = Math.min(node.features.get(2 * b), neighbor.features.get(2 * b));
+						double maxiMaxi = Math.max(node.features.get(2 * b + 1), neighbor.features.get(2 * b + 1));
+						total += Math.abs(maxiMaxi - miniMini);
+					}
+				}
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * A grown BPT of the natural-like image.
+	 */
+	@State(Scope.Thread)
+	public static class CutState {
+		
+		public static final int NB_PARTITIONS = 10;
+		
+		BPT bpt;
+		int starting;
+		int step;
+		
+		@Setup(Level.Trial)
+		public void grow() {
+			
+			BufferedImage image = SyntheticImage.generate(Pattern.NATURAL, SIZE, SIZE, SEED);
+			this.bpt = BPTBenchmarks.prepare(image, TypeOfMetric.OMIN_MAX);
+			this.bpt.grow();
+			this.starting = Math.max(2, this.bpt.getNbLeaves() / 2);
+			this.step = Math.max(1, this.starting / NB_PARTITIONS);
+		}
+	}
+	
+	/**
+	 * Measures a sweep of cuts from half of the leaves to one region.
+	 */
+	@Benchmark
+	public CutResult cutSweep(CutState state) {
+		
+		return CutBPT.execute(state.bpt, state.starting, 1, state.step);
+	}
+	
+	/**
+	 * A grown BPT of the natural-like image written in a temporary directory, and its HDF5 file.
+	 */
+	@State(Scope.Thread)
+	public static class HDF5State {
+		
+		String directory;
+		BPT bpt;
+		String filePath;
+		BPT loaded;
+		
+		@Setup(Level.Trial)
+		public void save() throws IOException {
+			
+			this.directory = temporaryDirectory();
+			BufferedImage image = SyntheticImage.store(SyntheticImage.generate(Pattern.NATURAL, SIZE, SIZE, SEED), this.directory, "natural_"+ SIZE);
+			this.bpt = BPTBenchmarks.prepare(image, TypeOfMetric.OMIN_MAX);
+			this.bpt.grow();
+			this.bpt.setDirectory(this.directory);
+			this.bpt.setName("benchmark.bpt");
+			SaveBPT.toHDF5(this.bpt);
+			this.filePath = this.directory +"//"+ this.bpt.getName() +".h5";
+		}
+		
+		@TearDown(Level.Invocation)
+		public void close() {
+			
+			if(this.loaded != null) {
+				
+				this.loaded.reader.close();
+				this.loaded = null;
+			}
+		}
+		
+		@TearDown(Level.Trial)
+		public void delete() {
+			
+			BPTBenchmarks.delete(this.directory);
+		}
+	}
+	
+	/**
+	 * Measures {@link SaveBPT#toHDF5(Tree)}; the file is overwritten by each invocation.
+	 */
+	@Benchmark
+	public void hdf5Saving(HDF5State state) {
+		
+		SaveBPT.toHDF5(state.bpt);
+	}
+	
+	/**
+	 * Measures {@link BPT#BPT(String)} (reading and re-growing from a HDF5 file).
+	 */
+	@Benchmark
+	public BPT hdf5Loading(HDF5State state) {
+		
+		state.loaded = new BPT(state.filePath);
+		return state.loaded;
+	}
+	
+	/**
+	 * A sequential BPT or a parallel one ({@link BPTP#nbTilesPerSide parts} built by a pool of {@link BPTP#nbThreads threads}) of the natural-like image.
+	 * The image is split in at least as many parts as threads, so that each thread has a part to build.
+	 */
+	@State(Scope.Thread)
+	public static class ScalingState {
+		
+		@Param({"32", "64", "128"})
+		public int size;
+		
+		/**
+		 * Number of threads of the parallel creation; 0 for the sequential one.
+		 */
+		@Param({"0", "1", "2", "4", "8"})
+		public int threads;
+		
+		BufferedImage image;
+		BPT bpt;
+		
+		@Setup(Level.Trial)
+		public void generate() {
+			
+			this.image = SyntheticImage.generate(Pattern.NATURAL, this.size, this.size, SEED);
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			
+			Log.show = false;
+			Metric.currentFeaturePos = -1;
+			if(this.threads > 0) {
+				
+				BPTP bptp = new BPTP(this.image);
+				bptp.nbThreads = this.threads;
+				bptp.nbTilesPerSide = Math.max(BPTP.DEFAULT_NB_TILES_PER_SIDE, (int) Math.ceil(Math.sqrt(this.threads)));
+				this.bpt = bptp;
+				
+			}else {
+				
+				this.bpt = new BPT(this.image);
+			}
+			this.bpt.setMetric(new Ominmax(this.image));
+		}
+	}
+	
+	/**
+	 * Measures the sequential creation versus the parallel one.
+	 */
+	@Benchmark
+	public BPT scaling(ScalingState state) {
+		
+		state.bpt.grow();
+		return state.bpt;
+	}
+	
+	/**
+	 * Images of the natural-like pattern written in a temporary directory, created and saved by a {@link BatchBuilder pipeline} of {@link BatchBuilder#nbBuilders builders}.
+	 */
+	@State(Scope.Thread)
+	public static class BatchState {
+		
+		public static final int NB_IMAGES = 8;
+		
+		@Param({"1", "2", "4"})
+		public int builders;
+		
+		String directory;
+		ArrayList<String> paths;
+		BatchBuilder batch;
+		
+		@Setup(Level.Trial)
+		public void store() throws IOException {
+			
+			Log.show = false;
+			this.directory = temporaryDirectory();
+			this.paths = new ArrayList<String>(NB_IMAGES);
+			for(int i = 0; i < NB_IMAGES; ++i) {
+				
+				BufferedImage image = SyntheticImage.generate(Pattern.NATURAL, SIZE, SIZE, SEED + i);
+				if(SyntheticImage.store(image, this.directory, "batch_"+ i) != null) {
+					
+					this.paths.add(this.directory +"//batch_"+ i +".png");
+				}
+			}
+		}
+		
+		@Setup(Level.Invocation)
+		public void prepare() {
+			
+			this.batch = new BatchBuilder(TypeOfMetric.OMIN_MAX, this.directory);
+			this.batch.nbBuilders = this.builders;
+		}
+		
+		@TearDown(Level.Trial)
+		public void delete() {
+			
+			BPTBenchmarks.delete(this.directory);
+		}
+	}
+	
+	/**
+	 * Measures the creation and the saving of a batch of images.
+	 */
+	@Benchmark
+	public List<BatchBuilder.Report> batchScaling(BatchState state) {
+		
+		for(String path: state.paths) {
+			
+			state.batch.submit(path);
+		}
+		return state.batch.shutdown();
+	}
+}
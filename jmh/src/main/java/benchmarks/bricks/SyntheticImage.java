@@ -0,0 +1,213 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package benchmarks.bricks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import utils.ImTool;
+
+/**
+ * Deterministic generator of synthetic images used by the benchmarks.
+ * 
+ * <p>
+ * The same pattern, size and seed always give the same image so that two runs of the benchmarks can be compared.
+ *
+ */
+public class SyntheticImage {
+
+	/**
+	 * Kinds of synthetic images.
+	 * 
+	 * <li> FLAT: one single color; all the distances are equal (worst case for the ordering of the adjacencies)
+	 * <li> NOISE: independent random colors; almost no two neighbors are similar
+	 * <li> NATURAL: piecewise constant regions (Voronoi cells) with a smooth gradient and a slight noise
+	 * <li> MULTI_BAND: natural-like image on 4 bands (the last band can stand for a NIR band)
+	 */
+	public static enum Pattern{
+		
+		FLAT,
+		NOISE,
+		NATURAL,
+		MULTI_BAND
+	}
+	
+	/**
+	 * Number of regions of the natural-like images.
+	 */
+	public static final int NB_NATURAL_REGIONS = 24;
+	
+	/**
+	 * Generates a synthetic image.
+	 * 
+	 * @param pattern kind of image to generate; should not be null
+	 * @param width of the image; should be > 0
+	 * @param height of the image; should be > 0
+	 * @param seed of the random generator
+	 * @return the generated image
+	 * 
+	 * @throws NullPointerException if pattern is null
+	 */
+	public static BufferedImage generate(Pattern pattern, int width, int height, long seed) {
+		
+		switch(pattern) {
+		
+			case FLAT: return flat(width, height, seed);
+			case NOISE: return noise(width, height, seed);
+			case NATURAL: return natural(width, height, seed, BufferedImage.TYPE_INT_RGB);
+			case MULTI_BAND: return natural(width, height, seed, BufferedImage.TYPE_INT_ARGB);
+			default: return flat(width, height, seed);
+		}
+	}
+	
+	/**
+	 * Writes an image as a .png file and reads it back, so that the image knows its path (required by {@link utils.SaveBPT#toHDF5(datastructure.Tree)}).
+	 * 
+	 * @param image to write; should not be null
+	 * @param directory where to write the image; should exist
+	 * @param name of the file without extension; should not be null
+	 * @return the image read from the written file; null if it cannot be written
+	 */
+	public static BufferedImage store(BufferedImage image, String directory, String name) {
+		
+		String path = directory +"//"+ name +".png";
+		try {
+			
+			ImageIO.write(image, "png", new File(path));
+			return ImTool.read(path);
+			
+		}catch(IOException e) {
+			
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	private static BufferedImage flat(int width, int height, long seed) {
+		
+		Random random = new Random(seed);
+		int rgb = random.nextInt(0xFFFFFF);
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				image.setRGB(x, y, rgb);
+			}
+		}
+		return image;
+	}
+	
+	private static BufferedImage noise(int width, int height, long seed) {
+		
+		Random random = new Random(seed);
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				image.setRGB(x, y, random.nextInt(0xFFFFFF));
+			}
+		}
+		return image;
+	}
+	
+	private static BufferedImage natural(int width, int height, long seed, int type) {
+		
+		Random random = new Random(seed);
+		
+		/* Centers and colors of the regions */
+		int[] cx = new int[NB_NATURAL_REGIONS];
+		int[] cy = new int[NB_NATURAL_REGIONS];
+		int[][] colors = new int[NB_NATURAL_REGIONS][4];
+		for(int r = 0; r < NB_NATURAL_REGIONS; ++r) {
+			
+			cx[r] = random.nextInt(width);
+			cy[r] = random.nextInt(height);
+			for(int b = 0; b < 4; ++b) {
+				
+				colors[r][b] = 32 + random.nextInt(192);
+			}
+		}
+		
+		BufferedImage image = new BufferedImage(width, height, type);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				/* Closest center */
+				int region = 0;
+				long bestDistance = Long.MAX_VALUE;
+				for(int r = 0; r < NB_NATURAL_REGIONS; ++r) {
+					
+					long dx = x - cx[r];
+					long dy = y - cy[r];
+					long distance = dx * dx + dy * dy;
+					if(distance < bestDistance) {
+						
+						bestDistance = distance;
+						region = r;
+					}
+				}
+				
+				/* Smooth gradient and slight noise */
+				int gradient = (16 * (x + y)) / (width + height);
+				int[] values = new int[4];
+				for(int b = 0; b < 4; ++b) {
+					
+					values[b] = Math.max(0, Math.min(255, colors[region][b] + gradient + random.nextInt(9) - 4));
+				}
+				
+				int value = (values[0] << 16) | (values[1] << 8) | values[2];
+				if(type == BufferedImage.TYPE_INT_ARGB) {
+					
+					value |= values[3] << 24;
+				}
+				image.setRGB(x, y, value);
+			}
+		}
+		return image;
+	}
+}
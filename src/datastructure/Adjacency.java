@@ -41,7 +41,7 @@
 
 package datastructure;
 
-import java.util.Objects;
+import datastructure.set.AdjacencySameScore;
 import datastructure.set.AdjacencySet;
 import metric.bricks.Metric;
 import metric.bricks.d3.Metric3D;
@@ -71,16 +71,28 @@ public class Adjacency implements Comparable<Adjacency>{
 	public int frontier;
 	
 	/**
-	 * Identification of the adjacency link.
+	 * Identification of the adjacency link: name of the left node of the {@link Adjacency#getIndex() index}.
 	 * 
 	 * <p>
 	 * The inferior node index is always on the left while the other is in the right.
-	 * 
-	 * <p>
-	 * Example: </br> 
-	 * For a node1 named '10' and node2 named '5', the adjacency index is <b>5_10</b>.
+	 * The index is kept as two integers, there is one adjacency per link of the RAG.
+	 */
+	private int index1;
+	
+	/**
+	 * Identification of the adjacency link: name of the right node of the {@link Adjacency#getIndex() index}.
+	 */
+	private int index2;
+	
+	/**
+	 * Bucket of adjacencies having the same distance where the adjacency is stored, if any.
 	 */
-	private String index;
+	public AdjacencySameScore bucket;
+	
+	/**
+	 * Position of the adjacency in the heap of its {@link Adjacency#bucket bucket}.
+	 */
+	public int bucketPosition;
 
 	/**
 	 * <b> For multi-featuring purpose: </b>
@@ -138,6 +150,14 @@ public class Adjacency implements Comparable<Adjacency>{
 	 */
 	public boolean updateChains[];
 	
+	/**
+	 * Incremented each time the adjacency is removed or {@link Adjacency#clear() cleared}.
+	 * 
+	 * <p>
+	 * Used by the {@link datastructure.set.LazyAdjacencyHeap lazy sets}: an entry recorded with an older version is dead.
+	 */
+	public int version;
+	
 	/**
 	 * <b> For multi-featuring purpose: </b>
 	 *  
@@ -170,7 +190,8 @@ public class Adjacency implements Comparable<Adjacency>{
 		
 		this.node1 = new Node(nodeIndex1);
 		this.node2 = new Node(nodeIndex2);
-		this.index = nodeIndex1 +"_"+ nodeIndex2;	
+		this.index1 = nodeIndex1;
+		this.index2 = nodeIndex2;
 	}
 
 	/**
@@ -193,6 +214,34 @@ public class Adjacency implements Comparable<Adjacency>{
 		this.node2.addNeighbor(this.node1, this);
 	}
 	
+	/**
+	 * Forgets the nodes, the scores and the registration so that the adjacency can be {@link Adjacency#reset(Node, Node) reused}.
+	 * 
+	 * <p>
+	 * (!) The adjacency should not be stored anywhere anymore (i.e. removed from the set of adjacencies and from the neighbors of its nodes).
+	 */
+	public void clear() {
+		
+		this.consensusScore = 0;
+		this.distance = -1;
+		this.frontier = 0;
+		this.index1 = 0;
+		this.index2 = 0;
+		this.bucket = null;
+		this.bucketPosition = 0;
+		this.node1 = null;
+		this.node2 = null;
+		this.registered = false;
+		this.sideAdjaSet = null;
+		this.next = null;
+		this.previous = null;
+		this.ranks = null;
+		this.scores = null;
+		this.state = null;
+		this.updateChains = null;
+		this.version++;
+	}
+	
 	@Override
 	public int compareTo(Adjacency adjacency) {
 		
@@ -204,7 +253,7 @@ public class Adjacency implements Comparable<Adjacency>{
 			if(myDistance == hisDistance) {
 
 				if(this.equals(adjacency)) return 0;
-				else return -(this.index.compareTo(adjacency.index));
+				else return -(this.compareIndexTo(adjacency));
 
 			}
 			if(myDistance < hisDistance) return -1;
@@ -212,9 +261,77 @@ public class Adjacency implements Comparable<Adjacency>{
 
 		}else {
 			
-			return this.getIndex().compareTo(adjacency.getIndex());
+			return this.compareIndexTo(adjacency);
 		}
 	}
+	
+	/**
+	 * Order of the adjacencies having the same distance: the smallest pair of regions (see {@link Adjacency#tieSize()}) first, 
+	 * then by {@link Adjacency#tieRank() the last leaves of the regions}.
+	 * 
+	 * <p>
+	 * It does not depend on the names of the regions, so that all the merging processes break the ties the same way.
+	 * The link between a merged region and a neighbor is bigger than the links it replaces, so it never comes before them:
+	 * with a {@link Metric#isReducible() reducible metric}, the distances ordered this way stay reducible.
+	 * Among equal distances, the small regions are merged first, which keeps the flat areas balanced.
+	 * 
+	 * @param adjacency to compare with; should not be null
+	 * @return a negative value, zero or a positive value if the adjacency comes before, with or after the other one
+	 * 
+	 * @throws NullPointerException if adjacency is null or if a region of an adjacency is null
+	 */
+	public int compareTieTo(Adjacency adjacency) {
+		
+		int comparison = Long.compare(this.tieSize(), adjacency.tieSize());
+		return comparison != 0 ? comparison : Long.compare(this.tieRank(), adjacency.tieRank());
+	}
+	
+	/**
+	 * 
+	 * @return the number of pixels (or voxels) of the two regions
+	 * 
+	 * @throws NullPointerException if a region of the adjacency is null
+	 * 
+	 * @see Adjacency#compareTieTo(Adjacency)
+	 */
+	public long tieSize() {
+		
+		return (long) this.node1.nbPixels + this.node1.nbVoxels + this.node2.nbPixels + this.node2.nbVoxels;
+	}
+	
+	/**
+	 * The highest {@link Node#lastLeaf last leaf} of the two regions, then the lowest one: 
+	 * two links between distinct pairs of regions never have the same rank.
+	 * 
+	 * @return the highest last leaf in the upper 32 bits, the lowest one in the lower 32 bits
+	 * 
+	 * @throws NullPointerException if a region of the adjacency is null
+	 * 
+	 * @see Adjacency#compareTieTo(Adjacency)
+	 */
+	public long tieRank() {
+		
+		int lastLeaf1 = this.node1.lastLeaf;
+		int lastLeaf2 = this.node2.lastLeaf;
+		return lastLeaf1 > lastLeaf2 ? (long) lastLeaf1 << 32 | lastLeaf2 : (long) lastLeaf2 << 32 | lastLeaf1;
+	}
+	
+	/**
+	 * Compares the indexes by the name of their left node, then by the name of their right node.
+	 * 
+	 * @param adjacency to compare with; should not be null
+	 * @return a negative value, zero or a positive value if the index is lower, equal or greater than the index of the other adjacency
+	 * 
+	 * @throws NullPointerException if adjacency is null
+	 */
+	private int compareIndexTo(Adjacency adjacency) {
+		
+		if(this.index1 != adjacency.index1) {
+			
+			return Integer.compare(this.index1, adjacency.index1);
+		}
+		return Integer.compare(this.index2, adjacency.index2);
+	}
 
 	/**
 	 * 
@@ -242,13 +359,14 @@ public class Adjacency implements Comparable<Adjacency>{
 	public boolean equals(Object o) {
 		
 		if(o == null) return false;
-		return this.index.equals(((Adjacency) o).index);
+		Adjacency adjacency = (Adjacency) o;
+		return this.index1 == adjacency.index1 && this.index2 == adjacency.index2;
 	}
 
     @Override
     public int hashCode() {
     	
-        return Objects.hash(this.index);
+        return 31 * (31 + this.index1) + this.index2; // as Objects.hash(index1, index2)
     }
 	
 	/**
@@ -267,7 +385,7 @@ public class Adjacency implements Comparable<Adjacency>{
 	 */
 	public String getIndex() {
 		
-		return this.index;
+		return this.node1 == null ? null : this.index1 +"_"+ this.index2;
 	}
 	
 	/**
@@ -295,6 +413,25 @@ public class Adjacency implements Comparable<Adjacency>{
 		this.registered = true; 
 	}
 
+	/**
+	 * Reuses a {@link Adjacency#clear() cleared} adjacency to link two other nodes.
+	 * The result is the same as {@link Adjacency#Adjacency(Node, Node) creating a new adjacency} from the two nodes.
+	 * 
+	 * @param node1 should not be null
+	 * @param node2 should not be null
+	 * 
+	 * @throws NullPointerException if node1 is null or node2 is null
+	 */
+	public void reset(Node node1, Node node2) {
+		
+		/* generate index and set nodes */
+		this.setIndex(node1, node2);
+		
+		/* Aknowledge neighbors */
+		this.node1.addNeighbor(this.node2, this);
+		this.node2.addNeighbor(this.node1, this);
+	}
+
 	/**
 	 * Generates and affect an unique index to the adjacency.
 	 * 
@@ -314,14 +451,16 @@ public class Adjacency implements Comparable<Adjacency>{
 		int label2 = node2.name;
 		if(label1 < label2) {
 			
-			this.index = label1 +"_"+ label2;
+			this.index1 = label1;
+			this.index2 = label2;
 			this.node1 = node1;
 			this.node2 = node2;
 			
 		}
 		else {
 			
-			this.index = label2 +"_"+ label1;
+			this.index1 = label2;
+			this.index2 = label1;
 			this.node1 = node2;
 			this.node2 = node1;
 		}
@@ -0,0 +1,149 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+/**
+ * Recycles the adjacency links removed during the node mergings.
+ * 
+ * <p>
+ * Each node merging removes the links of the two merged nodes and creates as many links for the new node.
+ * Reusing the removed links instead of allocating new ones keeps the allocation rate low during the whole creation.
+ * 
+ * <p>
+ * (!) Not thread safe: a pool should only be used by the thread merging the nodes.
+ *
+ */
+public class AdjacencyPool {
+
+	/**
+	 * Default maximum number of adjacencies kept in the pool.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * Released adjacencies ready to be reused.
+	 */
+	private Adjacency[] adjacencies;
+	
+	/**
+	 * Number of adjacencies in the pool.
+	 */
+	private int size;
+	
+	/**
+	 * Creates a pool keeping at most {@link AdjacencyPool#DEFAULT_CAPACITY} adjacencies.
+	 */
+	public AdjacencyPool() {
+		
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a pool.
+	 * 
+	 * @param capacity maximum number of adjacencies kept in the pool; should be >= 0
+	 */
+	public AdjacencyPool(int capacity) {
+		
+		this.adjacencies = new Adjacency[capacity];
+	}
+	
+	/**
+	 * Empties the pool; the adjacencies it contained can be freed by the garbage collector.
+	 */
+	public void clear() {
+		
+		for(int i = 0; i < this.size; ++i) {
+			
+			this.adjacencies[i] = null;
+		}
+		this.size = 0;
+	}
+	
+	/**
+	 * Gives an adjacency linking two nodes, reused if possible.
+	 * 
+	 * @param node1 should not be null
+	 * @param node2 should not be null
+	 * @return an adjacency similar to a {@link Adjacency#Adjacency(Node, Node) new one}
+	 * 
+	 * @throws NullPointerException if node1 is null or node2 is null
+	 */
+	public Adjacency obtain(Node node1, Node node2) {
+		
+		if(this.size == 0) {
+			
+			return new Adjacency(node1, node2);
+		}
+		
+		Adjacency adjacency = this.adjacencies[--this.size];
+		this.adjacencies[this.size] = null;
+		adjacency.reset(node1, node2);
+		return adjacency;
+	}
+	
+	/**
+	 * Gives back an adjacency that is no longer stored anywhere.
+	 * The adjacency is dropped if the pool is full.
+	 * 
+	 * @param adjacency to recycle; should not be null
+	 * 
+	 * @throws NullPointerException if adjacency is null
+	 */
+	public void release(Adjacency adjacency) {
+		
+		adjacency.clear();
+		if(this.size < this.adjacencies.length) {
+			
+			this.adjacencies[this.size++] = adjacency;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of adjacencies ready to be reused
+	 */
+	public int size() {
+		
+		return this.size;
+	}
+}
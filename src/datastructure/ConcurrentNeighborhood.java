@@ -0,0 +1,143 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neighborhood stored in a concurrent map: the neighbors can be read and updated by several threads.
+ * Used by {@link standard.parallel.BPTVSP}, whose nodes are renamed while they still have neighbors; prefer {@link SortedNeighborhood} otherwise.
+ */
+public class ConcurrentNeighborhood extends Neighborhood {
+
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Adjacency link with each neighbor.
+	 */
+	private final ConcurrentHashMap<Node, Adjacency> map;
+	
+	/**
+	 * Creates an empty neighborhood.
+	 */
+	public ConcurrentNeighborhood() {
+		
+		this.map = new ConcurrentHashMap<Node, Adjacency>();
+	}
+	
+	private ConcurrentNeighborhood(ConcurrentHashMap<Node, Adjacency> map) {
+		
+		this.map = map;
+	}
+	
+	@Override
+	public boolean containsKey(Node neighbor) {
+		
+		return this.map.containsKey(neighbor);
+	}
+
+	@Override
+	public Cursor cursor() {
+		
+		final Iterator<Entry<Node, Adjacency>> entries = this.map.entrySet().iterator();
+		return new Cursor() {
+			
+			@Override
+			public boolean next() {
+				
+				if(!entries.hasNext()) {
+					
+					return false;
+				}
+				Entry<Node, Adjacency> entry = entries.next();
+				this.neighbor = entry.getKey();
+				this.adjacency = entry.getValue();
+				return true;
+			}
+		};
+	}
+
+	@Override
+	public Adjacency get(Node neighbor) {
+		
+		return this.map.get(neighbor);
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		
+		return this.map.isEmpty();
+	}
+
+	@Override
+	public void put(Node neighbor, Adjacency adjacency) {
+		
+		this.map.put(neighbor, adjacency);
+	}
+
+	@Override
+	public Adjacency remove(Node neighbor) {
+		
+		return this.map.remove(neighbor);
+	}
+
+	@Override
+	public int size() {
+		
+		return this.map.size();
+	}
+
+	@Override
+	public Neighborhood union(Neighborhood other, Node region1, Node region2) {
+		
+		ConcurrentHashMap<Node, Adjacency> map = new ConcurrentHashMap<Node, Adjacency>(this.map);
+		map.remove(region2);
+		for(Cursor cursor = other.cursor(); cursor.next();) {
+			
+			map.put(cursor.neighbor, cursor.adjacency);
+		}
+		map.remove(region1);
+		return new ConcurrentNeighborhood(map);
+	}
+}
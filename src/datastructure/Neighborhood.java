@@ -0,0 +1,165 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.io.Serializable;
+
+/**
+ * Neighbors of a region (~node) in the Region Adjacency Graph (RAG) and the corresponding adjacency links.
+ * 
+ * <p>
+ * Two implementations:
+ * <li> {@link SortedNeighborhood}: primitive arrays sorted by the names of the neighbors; used by default
+ * <li> {@link ConcurrentNeighborhood}: concurrent map; for the nodes updated by several threads or renamed while they still have neighbors
+ * 
+ * <p>
+ * A node created by a merging keeps the implementation of its children (see {@link Neighborhood#union(Neighborhood, Node, Node)}).
+ */
+public abstract class Neighborhood implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Reads the neighbors one by one:
+	 * <pre>
+	 * for(Neighborhood.Cursor cursor = node.listOfNeighbors.cursor(); cursor.next();) {
+	 *     Node neighbor = cursor.neighbor;
+	 *     Adjacency adjacency = cursor.adjacency;
+	 * }
+	 * </pre>
+	 * (!) The neighborhood should not be modified while it is read, except by replacing the adjacency of an existing neighbor.
+	 */
+	public static abstract class Cursor {
+		
+		/**
+		 * Adjacency link with the current neighbor.
+		 */
+		public Adjacency adjacency;
+		
+		/**
+		 * Current neighbor.
+		 */
+		public Node neighbor;
+		
+		/**
+		 * Moves to the next neighbor.
+		 * 
+		 * @return true if a neighbor has been read, false if all neighbors have been read
+		 */
+		public abstract boolean next();
+	}
+	
+	/**
+	 * 
+	 * @param neighbor to look for; should not be null
+	 * @return true if the node is a neighbor
+	 * 
+	 * @throws NullPointerException if neighbor is null
+	 */
+	public boolean containsKey(Node neighbor) {
+		
+		return this.get(neighbor) != null;
+	}
+	
+	/**
+	 * 
+	 * @return a new cursor on the neighbors
+	 */
+	public abstract Cursor cursor();
+	
+	/**
+	 * 
+	 * @param neighbor to look for; should not be null
+	 * @return the adjacency link with the neighbor; null if the node is not a neighbor
+	 * 
+	 * @throws NullPointerException if neighbor is null
+	 */
+	public abstract Adjacency get(Node neighbor);
+	
+	/**
+	 * 
+	 * @return true if there is no neighbor
+	 */
+	public boolean isEmpty() {
+		
+		return this.size() == 0;
+	}
+	
+	/**
+	 * Saves a neighbor and the corresponding adjacency link; replaces the adjacency if the node is already a neighbor.
+	 * 
+	 * @param neighbor to save; should not be null
+	 * @param adjacency link with the neighbor; should not be null
+	 * 
+	 * @throws NullPointerException if neighbor or adjacency is null
+	 */
+	public abstract void put(Node neighbor, Adjacency adjacency);
+	
+	/**
+	 * Forgets a neighbor.
+	 * 
+	 * @param neighbor to forget; should not be null
+	 * @return the adjacency link with the neighbor; null if the node was not a neighbor
+	 * 
+	 * @throws NullPointerException if neighbor is null
+	 */
+	public abstract Adjacency remove(Node neighbor);
+	
+	/**
+	 * 
+	 * @return the number of neighbors
+	 */
+	public abstract int size();
+	
+	/**
+	 * Creates the neighborhood of the region merging two regions: all the neighbors of both, except the two regions themselves.
+	 * The adjacency links are the ones of the second region for the common neighbors.
+	 * 
+	 * @param other neighborhood of the second region; should not be null
+	 * @param region1 first merged region, owning this neighborhood; should not be null
+	 * @param region2 second merged region, owning the other neighborhood; should not be null
+	 * @return a new neighborhood of the same implementation
+	 * 
+	 * @throws NullPointerException if a parameter is null
+	 */
+	public abstract Neighborhood union(Neighborhood other, Node region1, Node region2);
+}
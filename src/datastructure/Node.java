@@ -43,12 +43,15 @@ package datastructure;
 
 import java.awt.Point;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
+import datastructure.d3.VoxelStore;
 import standard.parallel.BPTP.Side;
 import utils.d3.Voxel;
 
@@ -99,6 +102,15 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public HashMap<Integer, Double> features = new HashMap<Integer, Double>();
 	
+	/**
+	 * Features stored band by band in a single array, used by the metrics computing a value per band.
+	 * 
+	 * <p>
+	 * Each metric reserves its own range of values in the {@link metric.bricks.BandLayout layout} of the creation.
+	 * Null until a metric needs it.
+	 */
+	public double[] bandFeatures;
+	
 	/**
 	 * States if the node is currently active or not.
 	 */
@@ -128,27 +140,29 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public int label = -1;
 
-	/**
-	 * <b> For parallel fashion purpose: </b>
-	 * lists the neighbors of the other sides. 
-	 */
-	public ConcurrentHashMap<Node, Adjacency> listOfForeignNeighbors;
-
 	/**
 	 * All current neighbors and the corresponding adjacency links.
+	 * 
+	 * <p>
+	 * A {@link SortedNeighborhood} by default; {@link standard.parallel.BPTVSP} replaces it by a {@link ConcurrentNeighborhood} on its leaves.
 	 */
-	public ConcurrentHashMap<Node, Adjacency> listOfNeighbors;
+	public Neighborhood listOfNeighbors;
 
 	/**
-	 * All pixels contained in the region.
+	 * Pixels owned by the region, stored as runs (i.e. leaves).
+	 * 
+	 * <p>
+	 * null for a node created while the tree grows; its pixels are then the ones of its leaves.
 	 */
-	public ArrayList<Point> listOfPixels = new ArrayList<Point>();
+	public PixelRuns pixelRuns;
 	
 	/**
-	 * All voxels contained in a region. 
-	 * For 3D
+	 * For 3D: position of the first voxel of the region in the {@link Node#voxelStore store of voxels}.
+	 * 
+	 * <p>
+	 * -1 if the region does not own a range of voxels yet (i.e. a node created while the tree grows); its voxels are then the ones of its leaves.
 	 */
-	public ArrayList<Voxel> listOfVoxels = new ArrayList<Voxel>();
+	public int firstVoxel = -1;
 
 	/**
 	 * Used for synchronization lock during parallel tasks.
@@ -174,6 +188,15 @@ public class Node implements Serializable, Comparable<Node>{
 	 * Identification of the region
 	 */
 	public int name;
+	
+	/**
+	 * Highest name of the leaves of the region.
+	 * 
+	 * <p>
+	 * Unlike the name, it does not depend on the order of the mergings: 
+	 * it orders the adjacencies having the same distance (see {@link Adjacency#compareTieTo(Adjacency)}).
+	 */
+	public int lastLeaf;
 
 	/**
 	 * Number of the smallest points contained in the region.
@@ -184,9 +207,15 @@ public class Node implements Serializable, Comparable<Node>{
 	 * Number of the smallest points contained in the region.
 	 */
 	public int nbVoxels = 0;
+	
+	/**
+	 * For 3D: store containing the voxels of the region.
+	 */
+	public VoxelStore voxelStore;
 
 	/**
 	 * Regrouping neighbors that require updates after a node merging process.
+	 * Not allocated by the constructors.
 	 */
 	public ConcurrentHashMap<Node, Adjacency> neighborToTreat;
 
@@ -268,8 +297,8 @@ public class Node implements Serializable, Comparable<Node>{
 	public Node(int name) { // leaf
 
 		this.name = name;
-		this.listOfNeighbors = new ConcurrentHashMap<Node, Adjacency>();
-		this.neighborToTreat = new ConcurrentHashMap<Node, Adjacency>();
+		this.lastLeaf = name;
+		this.listOfNeighbors = new SortedNeighborhood();
 		this.type = TypeOfNode.LEAF;
 	}
 
@@ -287,21 +316,16 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public Node(Node leftNode, Node rightNode) {
 	
-		this.listOfNeighbors = new ConcurrentHashMap<Node, Adjacency>(leftNode.listOfNeighbors);
-		this.removeNeighbor(rightNode);
-		this.listOfNeighbors.putAll(rightNode.listOfNeighbors);
-		this.removeNeighbor(leftNode);
-		
-		this.neighborToTreat = new ConcurrentHashMap<Node, Adjacency>();
+		this.listOfNeighbors = leftNode.listOfNeighbors.union(rightNode.listOfNeighbors, leftNode, rightNode);
 	
 		this.leftNode = leftNode;
 		this.rightNode = rightNode;
 		
 		this.leftNode.father = this;
 		this.rightNode.father = this;
+		this.lastLeaf = Math.max(leftNode.lastLeaf, rightNode.lastLeaf);
 		
-		this.listOfPixels.addAll(this.leftNode.getPixels());
-		this.listOfPixels.addAll(this.rightNode.getPixels());
+		/* the pixels stay in the leaves, only their number is kept */
 		this.nbPixels = this.leftNode.nbPixels + this.rightNode.nbPixels;
 		this.updateLabel();
 		
@@ -346,7 +370,8 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public void addNeighbor(Node node, Adjacency adjacency) {
 	
-		if(!this.listOfNeighbors.containsValue(adjacency)) {
+		Adjacency existing = this.listOfNeighbors.get(node);
+		if(existing == null || !existing.equals(adjacency)) {
 
 			this.listOfNeighbors.put(node, adjacency);
 		}
@@ -360,15 +385,42 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public void addPixel(int x, int y) {
 
-		this.listOfPixels.add(new Point(x, y));
+		if(this.pixelRuns == null) {
+			
+			this.pixelRuns = new PixelRuns();
+		}
+		this.pixelRuns.add(x, y);
 		this.nbPixels++;
 	}
+	
+	/**
+	 * Saves a run of pixels (i.e. consecutive pixels of a row) contained in the node (~region).
+	 * 
+	 * @param y index of the row; should be in [0, imageHeight]
+	 * @param start first column of the run; should be in [0, imageWidth]
+	 * @param end last column (excluded) of the run; should be in ]start, imageWidth]
+	 */
+	public void addRun(int y, int start, int end) {
+		
+		if(this.pixelRuns == null) {
+			
+			this.pixelRuns = new PixelRuns();
+		}
+		this.pixelRuns.addRun(y, start, end);
+		this.nbPixels += end - start;
+	}
 
+	/**
+	 * Gives all the runs of pixels of the node (~region) at once, e.g. a region of a pre-segmented image.
+	 *
+	 * @param pixelRuns runs of pixels contained in the node; should not be null
+	 *
+	 * @throws NullPointerException if pixelRuns is null
+	 */
+	public void setPixelRuns(PixelRuns pixelRuns) {
 
-	public void addVoxel(int x, int y, int z) {
-		
-		this.listOfVoxels.add(new Voxel(x,y, z));
-		this.nbVoxels++;
+		this.nbPixels = pixelRuns.size();
+		this.pixelRuns = pixelRuns;
 	}
 
 	@Override
@@ -405,7 +457,7 @@ public class Node implements Serializable, Comparable<Node>{
 		TreeSet<Integer> result = new TreeSet<Integer>();
 		int width = 100; // warning
 		
-		for(Point p: this.listOfPixels) {
+		for(Point p: this.getPixels()) {
 			
 			int val = p.x + (p.y * width);
 			result.add(val);
@@ -418,38 +470,89 @@ public class Node implements Serializable, Comparable<Node>{
 	 * The pixels are stored by the leaves.
 	 * The pixels forming a region (~node) are defined from the set of leaves forming it.
 	 * 
-	 * @return a list of pixels contained in the node (~region)
+	 * <p>
+	 * The list is created at each call; prefer {@link Node#getPixelRuns()} to browse large regions.
+	 * 
+	 * @return a new list of pixels contained in the node (~region)
 	 */
 	public ArrayList<Point> getPixels() {
 		
-		return this.listOfPixels;
+		ArrayList<Point> pixels = new ArrayList<Point>(this.nbPixels);
+		for(PixelRuns runs: this.getPixelRuns()) {
+			
+			runs.addTo(pixels);
+		}
+		return pixels;
+	}
+	
+	/**
+	 * The runs are stored by the leaves.
+	 * 
+	 * @return the runs of pixels of all leaves forming the node (~region)
+	 */
+	public ArrayList<PixelRuns> getPixelRuns() {
+		
+		ArrayList<PixelRuns> result = new ArrayList<PixelRuns>();
+		ArrayDeque<Node> toVisit = new ArrayDeque<Node>();
+		toVisit.push(this);
+		while(!toVisit.isEmpty()) {
+			
+			Node node = toVisit.pop();
+			if(node.pixelRuns != null) {
+				
+				result.add(node.pixelRuns);
+				
+			}else if(node.leftNode != null && node.rightNode != null) {
+				
+				toVisit.push(node.rightNode);
+				toVisit.push(node.leftNode);
+			}
+		}
+		return result;
 	}
 	
 	
 	/**
-	 * For 3D
-	 * @return
+	 * For 3D: reads the voxels of the region without creating an object per voxel.
+	 * 
+	 * @return a cursor on the voxels of the region
+	 * 
+	 * @throws NullPointerException if the voxels of the region are not stored yet
+	 */
+	public VoxelStore.Cursor getVoxelCursor() {
+		
+		return new VoxelStore.Cursor(this.voxelStore).reset(this);
+	}
+	
+	/**
+	 * For 3D: copies the voxels of the region in a list.
+	 * 
+	 * @return a new list containing the voxels of the region
+	 * 
+	 * @throws NullPointerException if the voxels of the region are not stored yet
+	 * 
+	 * @deprecated creates an object per voxel; use {@link Node#getVoxelCursor()} instead
 	 */
+	@Deprecated
 	public ArrayList<Voxel> getVoxels() {
 		
-		return this.listOfVoxels;
+		ArrayList<Voxel> voxels = new ArrayList<Voxel>(this.nbVoxels);
+		VoxelStore.Cursor cursor = this.getVoxelCursor();
+		while(cursor.next()) {
+			
+			voxels.add(new Voxel(cursor.x, cursor.y, cursor.z));
+		}
+		return voxels;
 	}
 
 	/**
-	 * Carefull, the pixels are now copied from the childs to the parents
-	 * TODO Find a way to resolve it for optimization
+	 * The pixels are not copied from the children to the parents, only their number.
+	 * 
 	 * @return The number of pixels in the region (~node)
 	 */
 	public int getSize() { 
 		
-		//if(this.nbPixels < 1) {
-			
-			return this.getPixels().size();
-			
-		/*}else {
-			
-			return this.nbPixels;
-		}*/
+		return this.nbPixels;
 	}
 	
 	/**
@@ -458,8 +561,7 @@ public class Node implements Serializable, Comparable<Node>{
 	 */
 	public int getNbVoxels() { 
 		
-		return this.listOfVoxels.size();
-		//return this.nbVoxels;
+		return this.nbVoxels;
 	}
 	
 	/**
@@ -489,6 +591,27 @@ public class Node implements Serializable, Comparable<Node>{
 		this.oldName = this.name; 
 	}
 
+	/**
+	 * Frees the structures only needed while the node can still be merged (i.e. its neighbors).
+	 * Should be called once the node has a father.
+	 */
+	public void releaseNeighborhood() {
+		
+		this.listOfNeighbors = null;
+		this.neighborToTreat = null;
+	}
+
+	/**
+	 * Frees the features of the region (i.e. {@link Node#features}, {@link Node#bandFeatures} and {@link Node#borderPoints}); they are null afterwards.
+	 * Should be called only once the features of the father are computed.
+	 */
+	public void releaseFeatures() {
+		
+		this.features = null;
+		this.bandFeatures = null;
+		this.borderPoints = null;
+	}
+
 	/**
 	 * Forget a link between the node and a neighbor
 	 * 
@@ -537,6 +660,9 @@ public class Node implements Serializable, Comparable<Node>{
 	/**
 	 * Removes all pixels of the node2 from the list of pixels of the node1.
 	 * 
+	 * <p>
+	 * node1 then owns its remaining pixels as runs.
+	 * 
 	 * @param node1 to resize; should not be null
 	 * @param node2 having the pixels to remove from node1; should not be null
 	 * 
@@ -545,8 +671,14 @@ public class Node implements Serializable, Comparable<Node>{
 	public static void substract(Node node1, Node node2) {
 	
 		ArrayList<Point> pixels1 = node1.getPixels();
-		ArrayList<Point> pixels2 = node2.getPixels();
-		pixels1.removeAll(pixels2);
+		pixels1.removeAll(new HashSet<Point>(node2.getPixels()));
+		
+		node1.pixelRuns = new PixelRuns();
+		node1.nbPixels = 0;
+		for(Point p: pixels1) {
+			
+			node1.addPixel(p.x, p.y);
+		}
 	}
 
 	/**
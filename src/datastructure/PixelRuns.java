@@ -0,0 +1,247 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.awt.Point;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import utils.d2.LabelMatrix;
+
+/**
+ * Pixels of a region stored as runs (i.e. horizontal segments of consecutive pixels of a row).
+ * 
+ * <p>
+ * A run costs 3 integers whatever its length, so large homogeneous regions are stored at a fraction of the cost of one object per pixel.
+ * The pixels added one by one are gathered in runs when they follow each other in a row.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * for(int run = 0; run &lt; runs.getNbRuns(); ++run) {
+ * 
+ *     int y = runs.getRow(run);
+ *     for(int x = runs.getStart(run); x &lt; runs.getEnd(run); ++x) {
+ *     
+ *         ... pixel (x, y) ...
+ *     }
+ * }
+ * </pre>
+ *
+ */
+public class PixelRuns implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Last column (excluded) of each run.
+	 */
+	private int[] ends;
+	
+	/**
+	 * Number of runs.
+	 */
+	private int nbRuns;
+	
+	/**
+	 * Row of each run.
+	 */
+	private int[] rows;
+	
+	/**
+	 * Number of pixels of all runs.
+	 */
+	private int size;
+	
+	/**
+	 * First column of each run.
+	 */
+	private int[] starts;
+	
+	/**
+	 * Prepares an empty set of runs.
+	 */
+	public PixelRuns() {
+		
+		this(1);
+	}
+	
+	/**
+	 * Prepares an empty set of runs.
+	 * 
+	 * @param capacity number of runs that can be stored before growing; should be > 0
+	 */
+	public PixelRuns(int capacity) {
+		
+		this.rows = new int[capacity];
+		this.starts = new int[capacity];
+		this.ends = new int[capacity];
+	}
+	
+	/**
+	 * Adds a pixel; it extends the last run if it directly follows it in the same row.
+	 * 
+	 * @param x index of the column
+	 * @param y index of the row
+	 */
+	public void add(int x, int y) {
+		
+		int last = this.nbRuns - 1;
+		if(last >= 0 && this.rows[last] == y && this.ends[last] == x) {
+			
+			this.ends[last]++;
+			this.size++;
+			
+		}else {
+			
+			this.addRun(y, x, x + 1);
+		}
+	}
+	
+	/**
+	 * Adds a run of pixels.
+	 * 
+	 * @param y index of the row
+	 * @param start first column of the run
+	 * @param end last column (excluded) of the run; should be > start
+	 */
+	public void addRun(int y, int start, int end) {
+		
+		if(this.nbRuns == this.rows.length) {
+			
+			int capacity = Math.max(4, this.nbRuns * 2);
+			this.rows = Arrays.copyOf(this.rows, capacity);
+			this.starts = Arrays.copyOf(this.starts, capacity);
+			this.ends = Arrays.copyOf(this.ends, capacity);
+		}
+		
+		this.rows[this.nbRuns] = y;
+		this.starts[this.nbRuns] = start;
+		this.ends[this.nbRuns] = end;
+		this.nbRuns++;
+		this.size += end - start;
+	}
+	
+	/**
+	 * Adds the pixels of all runs in a list of points.
+	 * 
+	 * @param points receiving the pixels; should not be null
+	 */
+	public void addTo(List<Point> points) {
+		
+		for(int run = 0; run < this.nbRuns; ++run) {
+			
+			int y = this.rows[run];
+			for(int x = this.starts[run]; x < this.ends[run]; ++x) {
+				
+				points.add(new Point(x, y));
+			}
+		}
+	}
+	
+	/**
+	 * Sets a label on all pixels of the runs, run by run.
+	 * 
+	 * @param labelMatrix to fill; should not be null
+	 * @param label to set
+	 */
+	public void fill(LabelMatrix labelMatrix, int label) {
+		
+		for(int run = 0; run < this.nbRuns; ++run) {
+			
+			int y = this.rows[run];
+			for(int x = this.starts[run]; x < this.ends[run]; ++x) {
+				
+				labelMatrix.setLabel(label, x, y);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param run index of the run; should be in [0, number of runs[
+	 * @return the last column (excluded) of the run
+	 */
+	public int getEnd(int run) {
+		
+		return this.ends[run];
+	}
+	
+	/**
+	 * 
+	 * @return the number of runs
+	 */
+	public int getNbRuns() {
+		
+		return this.nbRuns;
+	}
+	
+	/**
+	 * 
+	 * @param run index of the run; should be in [0, number of runs[
+	 * @return the row of the run
+	 */
+	public int getRow(int run) {
+		
+		return this.rows[run];
+	}
+	
+	/**
+	 * 
+	 * @param run index of the run; should be in [0, number of runs[
+	 * @return the first column of the run
+	 */
+	public int getStart(int run) {
+		
+		return this.starts[run];
+	}
+	
+	/**
+	 * 
+	 * @return the number of pixels of all runs
+	 */
+	public int size() {
+		
+		return this.size;
+	}
+}
@@ -0,0 +1,503 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Index built once over a grown tree to answer region queries without walking the {@link Node#father fathers} nor copying the pixels.
+ * 
+ * <p>
+ * <li> pixel to region: the leaf containing each pixel is stored in an array and its ancestors are reached by jump pointers (i.e. the ancestor at 2^k levels), in O(log n);
+ * <li> region to pixels: the leaves are ordered by a depth first search so that each region owns an interval of leaves and an interval of pixels, located in O(1);
+ * <li> lowest common ancestor of two regions, in O(log n).
+ * 
+ * <p>
+ * The nodes are designated by their {@link Node#name name}, i.e. their position in the array of nodes of the tree.
+ * The index is never modified once built, so it can be read by several threads at the same time; it is not updated if the tree changes.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * RegionIndex index = new RegionIndex(tree);
+ * int region = index.regionAt(x, y, 10); // region containing (x, y) when the image is cut in 10 regions
+ * int[] pixels = index.getPixels(region); // y * index.getWidth() + x
+ * </pre>
+ *
+ */
+public class RegionIndex {
+
+	/**
+	 * Ancestors of each node at 2^k levels (ancestors[k][node]); a root is its own ancestor.
+	 */
+	private final int[][] ancestors;
+	
+	/**
+	 * Depth of each node (0 for a root); -1 for a missing node.
+	 */
+	private final int[] depths;
+	
+	/**
+	 * Position of the first leaf of each node in the order of the leaves.
+	 */
+	private final int[] firstLeaves;
+	
+	/**
+	 * Position after the last leaf of each node in the order of the leaves.
+	 */
+	private final int[] lastLeaves;
+	
+	/**
+	 * Leaf containing each pixel (y * width + x); -1 if no leaf contains the pixel.
+	 */
+	private final int[] leafOfPixels;
+	
+	/**
+	 * Highest merging score of each node and its descendants; it never decreases from a node to its father.
+	 */
+	private final double[] maxScores;
+	
+	/**
+	 * Number of leaves of the tree.
+	 */
+	private final int nbLeaves;
+	
+	/**
+	 * Leaves ordered by a depth first search.
+	 */
+	private final int[] orderOfLeaves;
+	
+	/**
+	 * Pixels (y * width + x) ordered as their leaves.
+	 */
+	private final int[] pixels;
+	
+	/**
+	 * Position of the first pixel of each leaf of {@link RegionIndex#orderOfLeaves the order of the leaves} in {@link RegionIndex#pixels the pixels}; one more value gives the total.
+	 */
+	private final int[] pixelStarts;
+	
+	/**
+	 * Height of the indexed image.
+	 */
+	private final int height;
+	
+	/**
+	 * Width of the indexed image.
+	 */
+	private final int width;
+	
+	/**
+	 * Builds the index of a grown tree.
+	 * 
+	 * @param tree having grown; should not be null
+	 * 
+	 * @throws NullPointerException if tree is null
+	 */
+	public RegionIndex(Tree tree) {
+		
+		this(tree.getNodes(), tree.getNbLeaves());
+	}
+	
+	/**
+	 * Builds the index of a grown tree.
+	 * 
+	 * <p>
+	 * The nodes after the leaves can be missing (i.e. null) if the tree is not complete; every subtree then has its own root.
+	 * 
+	 * @param nodes of the tree, leaves first; should not be null
+	 * @param nbLeaves number of leaves; should be in [0, nodes.length]
+	 * 
+	 * @throws NullPointerException if nodes is null
+	 */
+	public RegionIndex(Node[] nodes, int nbLeaves) {
+		
+		int nbNodes = nodes.length;
+		this.nbLeaves = nbLeaves;
+		
+		/* Size of the image from the runs of the leaves */
+		int maxX = 0;
+		int maxY = 0;
+		for(int i = 0; i < nbLeaves; ++i) {
+			
+			PixelRuns runs = nodes[i] == null ? null : nodes[i].pixelRuns;
+			if(runs != null) {
+				
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
+					
+					maxX = Math.max(maxX, runs.getEnd(run));
+					maxY = Math.max(maxY, runs.getRow(run) + 1);
+				}
+			}
+		}
+		this.width = maxX;
+		this.height = maxY;
+		
+		/* Fathers and maximum scores: a father is always created after its children */
+		int[] fathers = new int[nbNodes];
+		this.maxScores = new double[nbNodes];
+		Arrays.fill(fathers, -1);
+		for(int n = 0; n < nbNodes; ++n) {
+			
+			Node node = nodes[n];
+			if(node != null) {
+				
+				if(n >= nbLeaves) {
+					
+					this.maxScores[n] = Math.max(node.merginScore, 
+												 Math.max(this.maxScores[node.leftNode.name], this.maxScores[node.rightNode.name]));
+					fathers[node.leftNode.name] = n;
+					fathers[node.rightNode.name] = n;
+				}
+			}
+		}
+		
+		/* Depth first search from each root: leaves order, intervals and depths */
+		this.orderOfLeaves = new int[nbLeaves];
+		this.firstLeaves = new int[nbNodes];
+		this.lastLeaves = new int[nbNodes];
+		this.depths = new int[nbNodes];
+		Arrays.fill(this.depths, -1);
+		int nbOrderedLeaves = 0;
+		int[] stack = new int[Math.max(1, nbNodes)];
+		for(int root = nbNodes - 1; root >= 0; --root) {
+			
+			if(nodes[root] == null || fathers[root] != -1) {
+				
+				continue;
+			}
+			
+			this.depths[root] = 0;
+			int stackSize = 0;
+			stack[stackSize++] = root;
+			while(stackSize > 0) {
+				
+				int n = stack[--stackSize];
+				if(n >= 0) {
+					
+					this.firstLeaves[n] = nbOrderedLeaves;
+					if(n < nbLeaves) {
+						
+						this.orderOfLeaves[nbOrderedLeaves++] = n;
+						this.lastLeaves[n] = nbOrderedLeaves;
+						
+					}else {
+						
+						/* the node is closed (encoded as ~n) once both children are visited */
+						int left = nodes[n].leftNode.name;
+						int right = nodes[n].rightNode.name;
+						this.depths[left] = this.depths[n] + 1;
+						this.depths[right] = this.depths[n] + 1;
+						stack[stackSize++] = ~n;
+						stack[stackSize++] = right;
+						stack[stackSize++] = left;
+					}
+					
+				}else {
+					
+					this.lastLeaves[~n] = nbOrderedLeaves;
+				}
+			}
+		}
+		
+		/* Jump pointers */
+		int nbLevels = Math.max(1, 32 - Integer.numberOfLeadingZeros(nbNodes));
+		this.ancestors = new int[nbLevels][nbNodes];
+		for(int n = 0; n < nbNodes; ++n) {
+			
+			this.ancestors[0][n] = fathers[n] == -1 ? n : fathers[n];
+		}
+		for(int k = 1; k < nbLevels; ++k) {
+			
+			int[] previous = this.ancestors[k - 1];
+			int[] current = this.ancestors[k];
+			for(int n = 0; n < nbNodes; ++n) {
+				
+				current[n] = previous[previous[n]];
+			}
+		}
+		
+		/* Pixels ordered as the leaves and leaf of each pixel */
+		this.pixelStarts = new int[nbLeaves + 1];
+		for(int i = 0; i < nbLeaves; ++i) {
+			
+			Node leaf = i < nbOrderedLeaves ? nodes[this.orderOfLeaves[i]] : null;
+			this.pixelStarts[i + 1] = this.pixelStarts[i] + (leaf == null || leaf.pixelRuns == null ? 0 : leaf.pixelRuns.size());
+		}
+		this.pixels = new int[this.pixelStarts[nbLeaves]];
+		this.leafOfPixels = new int[this.width * this.height];
+		Arrays.fill(this.leafOfPixels, -1);
+		for(int i = 0; i < nbOrderedLeaves; ++i) {
+			
+			int leafName = this.orderOfLeaves[i];
+			PixelRuns runs = nodes[leafName].pixelRuns;
+			if(runs != null) {
+				
+				int position = this.pixelStarts[i];
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
+					
+					int rowStart = runs.getRow(run) * this.width;
+					for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+						
+						this.pixels[position++] = rowStart + x;
+						this.leafOfPixels[rowStart + x] = leafName;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param ancestor name of a node; should be indexed
+	 * @param node name of a node; should be indexed
+	 * @return true if ancestor is node or one of its ancestors
+	 */
+	public boolean contains(int ancestor, int node) {
+		
+		/* the intervals of leaves of different trees never overlap */
+		return this.depths[ancestor] >= 0 && this.depths[ancestor] <= this.depths[node]
+				&& this.firstLeaves[ancestor] <= this.firstLeaves[node] && this.lastLeaves[node] <= this.lastLeaves[ancestor];
+	}
+	
+	/**
+	 * 
+	 * @return an estimation of the memory used by the index, in bytes
+	 */
+	public long getEstimatedBytes() {
+		
+		long nbInts = (long) this.ancestors.length * this.depths.length + 3L * this.depths.length 
+					+ this.orderOfLeaves.length + this.pixelStarts.length + this.pixels.length + this.leafOfPixels.length;
+		return 4 * nbInts + 8L * this.maxScores.length;
+	}
+	
+	/**
+	 * 
+	 * @return the height of the indexed image
+	 */
+	public int getHeight() {
+		
+		return this.height;
+	}
+	
+	/**
+	 * 
+	 * @param x index of the column; should be in [0, width[
+	 * @param y index of the row; should be in [0, height[
+	 * @return the name of the leaf containing the pixel; -1 if there is none
+	 */
+	public int getLeaf(int x, int y) {
+		
+		if(x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			
+			return -1;
+		}
+		return this.leafOfPixels[y * this.width + x];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be indexed
+	 * @return the names of the leaves forming the node
+	 */
+	public int[] getLeaves(int node) {
+		
+		return Arrays.copyOfRange(this.orderOfLeaves, this.firstLeaves[node], this.lastLeaves[node]);
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be indexed
+	 * @return the number of pixels of the node, in O(1)
+	 */
+	public int getNbPixels(int node) {
+		
+		return this.pixelStarts[this.lastLeaves[node]] - this.pixelStarts[this.firstLeaves[node]];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be indexed
+	 * @param i index of the pixel in the node; should be in [0, {@link RegionIndex#getNbPixels(int) number of pixels}[
+	 * @return the i-th pixel of the node as y * width + x
+	 */
+	public int getPixel(int node, int i) {
+		
+		return this.pixels[this.pixelStarts[this.firstLeaves[node]] + i];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be indexed
+	 * @return a new array of the pixels of the node as y * width + x
+	 */
+	public int[] getPixels(int node) {
+		
+		return Arrays.copyOfRange(this.pixels, this.pixelStarts[this.firstLeaves[node]], this.pixelStarts[this.lastLeaves[node]]);
+	}
+	
+	/**
+	 * 
+	 * @return the width of the indexed image
+	 */
+	public int getWidth() {
+		
+		return this.width;
+	}
+	
+	/**
+	 * 
+	 * @param node1 name of a node; should be indexed
+	 * @param node2 name of a node; should be indexed
+	 * @return the name of the smallest node containing both nodes; -1 if they are in different trees
+	 */
+	public int lowestCommonAncestor(int node1, int node2) {
+		
+		if(this.depths[node1] < 0 || this.depths[node2] < 0) {
+			
+			return -1;
+		}
+		
+		/* bring both nodes at the same depth */
+		if(this.depths[node1] < this.depths[node2]) {
+			
+			int tmp = node1;
+			node1 = node2;
+			node2 = tmp;
+		}
+		int gap = this.depths[node1] - this.depths[node2];
+		for(int k = 0; gap > 0; ++k, gap >>= 1) {
+			
+			if((gap & 1) == 1) {
+				
+				node1 = this.ancestors[k][node1];
+			}
+		}
+		if(node1 == node2) {
+			
+			return node1;
+		}
+		
+		/* climb both nodes below their lowest common ancestor */
+		for(int k = this.ancestors.length - 1; k >= 0; --k) {
+			
+			if(this.ancestors[k][node1] != this.ancestors[k][node2]) {
+				
+				node1 = this.ancestors[k][node1];
+				node2 = this.ancestors[k][node2];
+			}
+		}
+		node1 = this.ancestors[0][node1];
+		node2 = this.ancestors[0][node2];
+		return node1 == node2 ? node1 : -1;
+	}
+	
+	/**
+	 * Region containing a pixel when the image is cut in a given number of regions (i.e. as {@link utils.CutBPT CutBPT} does).
+	 * 
+	 * @param x index of the column; should be in [0, width[
+	 * @param y index of the row; should be in [0, height[
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return the name of the region; -1 if no leaf contains the pixel
+	 */
+	public int regionAt(int x, int y, int nbRegions) {
+		
+		int node = this.getLeaf(x, y);
+		if(node < 0) {
+			
+			return -1;
+		}
+		
+		/* the nodes created by the first (nbLeaves - nbRegions) mergings are kept */
+		int lastKept = this.nbLeaves + (this.nbLeaves - nbRegions) - 1;
+		for(int k = this.ancestors.length - 1; k >= 0; --k) {
+			
+			int ancestor = this.ancestors[k][node];
+			if(ancestor <= lastKept) {
+				
+				node = ancestor;
+			}
+		}
+		return node;
+	}
+	
+	/**
+	 * Region containing a pixel when all mergings scored above a threshold are undone.
+	 * 
+	 * @param x index of the column; should be in [0, width[
+	 * @param y index of the row; should be in [0, height[
+	 * @param score highest merging score kept in the region
+	 * @return the name of the biggest region containing the pixel whose mergings are all scored at most score; -1 if no leaf contains the pixel
+	 */
+	public int regionAtScore(int x, int y, double score) {
+		
+		int node = this.getLeaf(x, y);
+		if(node < 0) {
+			
+			return -1;
+		}
+		
+		for(int k = this.ancestors.length - 1; k >= 0; --k) {
+			
+			int ancestor = this.ancestors[k][node];
+			if(this.maxScores[ancestor] <= score) {
+				
+				node = ancestor;
+			}
+		}
+		return node;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be indexed
+	 * @return the name of the root of the tree containing the node
+	 */
+	public int rootOf(int node) {
+		
+		for(int k = this.ancestors.length - 1; k >= 0; --k) {
+			
+			node = this.ancestors[k][node];
+		}
+		return node;
+	}
+}
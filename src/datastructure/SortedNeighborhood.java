@@ -0,0 +1,255 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Neighborhood stored in two primitive arrays sorted by the names of the neighbors: names and adjacency links.
+ * 
+ * <p>
+ * A neighbor is found by a binary search and is given by its adjacency link (i.e. the node of the link having its name).
+ * Since a new node is named after all the existing ones, linking it to its neighbors only appends it at their end, 
+ * and the {@link SortedNeighborhood#union(Neighborhood, Node, Node) neighborhood of a merging} is a linear merge of two sorted arrays.
+ * 
+ * <p>
+ * (!) The names of the nodes should not change while they are neighbors; the adjacency of a neighbor should link it.
+ * Not thread safe: see {@link ConcurrentNeighborhood}.
+ */
+public class SortedNeighborhood extends Neighborhood {
+
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Initial capacity, enough for a pixel in 8-connectivity.
+	 */
+	public static final int DEFAULT_CAPACITY = 8;
+	
+	/**
+	 * Adjacency link with each neighbor.
+	 */
+	private Adjacency[] adjacencies;
+	
+	/**
+	 * Names of the neighbors, in ascending order.
+	 */
+	private int[] names;
+	
+	/**
+	 * Number of neighbors.
+	 */
+	private int size;
+	
+	/**
+	 * Creates an empty neighborhood.
+	 */
+	public SortedNeighborhood() {
+		
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an empty neighborhood.
+	 * 
+	 * @param capacity number of neighbors before growing; should be >= 0
+	 */
+	public SortedNeighborhood(int capacity) {
+		
+		this.adjacencies = new Adjacency[capacity];
+		this.names = new int[capacity];
+	}
+	
+	/**
+	 * 
+	 * @param position of a neighbor in the arrays
+	 * @return the neighbor at the position, read from its adjacency link
+	 */
+	private Node neighborAt(int position) {
+		
+		Adjacency adjacency = this.adjacencies[position];
+		return adjacency.node1.name == this.names[position] ? adjacency.node1 : adjacency.node2;
+	}
+
+	@Override
+	public Cursor cursor() {
+		
+		return new Cursor() {
+			
+			private int position = 0;
+			
+			@Override
+			public boolean next() {
+				
+				if(this.position >= SortedNeighborhood.this.size) {
+					
+					return false;
+				}
+				this.adjacency = SortedNeighborhood.this.adjacencies[this.position];
+				this.neighbor = SortedNeighborhood.this.neighborAt(this.position);
+				this.position++;
+				return true;
+			}
+		};
+	}
+
+	@Override
+	public Adjacency get(Node neighbor) {
+		
+		int position = Arrays.binarySearch(this.names, 0, this.size, neighbor.name);
+		return position >= 0 ? this.adjacencies[position] : null;
+	}
+
+	@Override
+	public void put(Node neighbor, Adjacency adjacency) {
+		
+		int name = neighbor.name;
+		
+		/* most of the time, the neighbor is a new node: it goes at the end */
+		int position;
+		if(this.size == 0 || this.names[this.size - 1] < name) {
+			
+			position = -(this.size + 1);
+			
+		}else {
+			
+			position = Arrays.binarySearch(this.names, 0, this.size, name);
+		}
+		
+		if(position >= 0) {
+			
+			this.adjacencies[position] = adjacency;
+			return;
+		}
+		
+		position = -(position + 1);
+		if(this.size == this.names.length) {
+			
+			int capacity = Math.max(DEFAULT_CAPACITY, this.size + (this.size >> 1));
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.adjacencies = Arrays.copyOf(this.adjacencies, capacity);
+		}
+		System.arraycopy(this.names, position, this.names, position + 1, this.size - position);
+		System.arraycopy(this.adjacencies, position, this.adjacencies, position + 1, this.size - position);
+		this.names[position] = name;
+		this.adjacencies[position] = adjacency;
+		this.size++;
+	}
+
+	@Override
+	public Adjacency remove(Node neighbor) {
+		
+		int position = Arrays.binarySearch(this.names, 0, this.size, neighbor.name);
+		if(position < 0) {
+			
+			return null;
+		}
+		
+		Adjacency adjacency = this.adjacencies[position];
+		this.size--;
+		System.arraycopy(this.names, position + 1, this.names, position, this.size - position);
+		System.arraycopy(this.adjacencies, position + 1, this.adjacencies, position, this.size - position);
+		this.adjacencies[this.size] = null;
+		return adjacency;
+	}
+
+	@Override
+	public int size() {
+		
+		return this.size;
+	}
+
+	@Override
+	public Neighborhood union(Neighborhood other, Node region1, Node region2) {
+		
+		if(!(other instanceof SortedNeighborhood)) {
+			
+			SortedNeighborhood union = new SortedNeighborhood(this.size + other.size());
+			for(int i = 0; i < this.size; ++i) {
+				
+				union.put(this.neighborAt(i), this.adjacencies[i]);
+			}
+			for(Cursor cursor = other.cursor(); cursor.next();) {
+				
+				union.put(cursor.neighbor, cursor.adjacency);
+			}
+			union.remove(region1);
+			union.remove(region2);
+			return union;
+		}
+		
+		SortedNeighborhood sorted = (SortedNeighborhood) other;
+		SortedNeighborhood union = new SortedNeighborhood(this.size + sorted.size);
+		int excluded1 = region1.name;
+		int excluded2 = region2.name;
+		int i = 0;
+		int j = 0;
+		while(i < this.size || j < sorted.size) {
+			
+			int name;
+			Adjacency adjacency;
+			if(j == sorted.size || (i < this.size && this.names[i] < sorted.names[j])) {
+				
+				name = this.names[i];
+				adjacency = this.adjacencies[i++];
+				
+			}else if(i == this.size || sorted.names[j] < this.names[i]) {
+				
+				name = sorted.names[j];
+				adjacency = sorted.adjacencies[j++];
+				
+			}else { // common neighbor: the link of the second region is kept
+				
+				name = sorted.names[j];
+				adjacency = sorted.adjacencies[j++];
+				i++;
+			}
+			
+			if(name != excluded1 && name != excluded2) {
+				
+				union.names[union.size] = name;
+				union.adjacencies[union.size] = adjacency;
+				union.size++;
+			}
+		}
+		return union;
+	}
+}
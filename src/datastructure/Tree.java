@@ -66,13 +66,20 @@ public interface Tree {
 	 * 4 5 6  |  Neighbors of 5 considering 4-CN: 2, 4, 6, 8 </br>
 	 * 7 8 9  |
 	 * </pre>
+	 * 
+	 * <p>
+	 * For a tree built from a set of values (i.e. no image):
+	 * <li> ALL links each value to all the others (n*(n-1)/2 adjacencies).
+	 * <li> SORTED only links each value to its predecessor and its successor once the values are sorted (n-1 adjacencies).
+	 * It is only allowed with an {@link metric.bricks.Metric#isIntervalBased() interval-based metric}, for which it builds the same hierarchy as ALL when the values are distinct.
 	 *
 	 */
 	public enum TypeOfConnectivity{
 		
 		CN8,
 		CN4,
-		ALL;
+		ALL,
+		SORTED;
 
 		/**
 		 * 
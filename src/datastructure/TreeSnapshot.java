@@ -0,0 +1,517 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import standard.sequential.BPT;
+import standard.sequential.BPT.OpenMode;
+import utils.ImTool;
+import utils.d2.LabelMatrix;
+
+/**
+ * Frozen copy of a grown tree that can serve many threads at the same time.
+ * 
+ * <p>
+ * A {@link Tree tree} exposes mutable fields and its progression is changed by the tools reading it (e.g. {@link utils.CutBPT CutBPT}), 
+ * so it can not be read by several threads.
+ * A snapshot keeps the structure of the tree in final arrays and a {@link RegionIndex region index}; nothing is modified after its creation,
+ * so the cuts, extractions and statistics below can be requested concurrently without any lock nor copy of the tree.
+ * It does not refer to the nodes of the tree, which can then be released.
+ * 
+ * <p>
+ * The nodes are designated by their {@link Node#name name}, i.e. their position in the array of nodes of the tree.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * TreeSnapshot snapshot = TreeSnapshot.of(bpt); // or TreeSnapshot.load("saves/bpt_file.h5")
+ * ... from any thread:
+ * LabelMatrix partition = snapshot.cut(50);
+ * int[] pixels = snapshot.getPixels(snapshot.regionAt(x, y, 50));
+ * </pre>
+ *
+ */
+public final class TreeSnapshot {
+
+	/**
+	 * Father of each node; -1 for a root or a missing node.
+	 */
+	private final int[] fathers;
+	
+	/**
+	 * Source image; only read.
+	 */
+	private final BufferedImage image;
+	
+	/**
+	 * Index of the regions.
+	 */
+	private final RegionIndex index;
+	
+	/**
+	 * Label of each node, as set by the builder.
+	 */
+	private final int[] labels;
+	
+	/**
+	 * First son of each node; -1 for a leaf or a missing node.
+	 */
+	private final int[] lefts;
+	
+	/**
+	 * Depth of the subtree of each node (i.e. 0 for leaves).
+	 */
+	private final int[] levels;
+	
+	/**
+	 * Merging score of each node.
+	 */
+	private final double[] merginScores;
+	
+	/**
+	 * Name of the tree.
+	 */
+	private final String name;
+	
+	/**
+	 * Number of leaves.
+	 */
+	private final int nbLeaves;
+	
+	/**
+	 * Number of nodes (including leaves) actually created.
+	 */
+	private final int nbNodes;
+	
+	/**
+	 * Perimeter of each node.
+	 */
+	private final int[] perimeters;
+	
+	/**
+	 * Second son of each node; -1 for a leaf or a missing node.
+	 */
+	private final int[] rights;
+	
+	/**
+	 * Number of pixels of each node.
+	 */
+	private final int[] sizes;
+	
+	/**
+	 * Freezes the nodes of a grown tree.
+	 * 
+	 * @param name of the tree
+	 * @param image source of the tree; can be null
+	 * @param nodes of the tree, leaves first; should not be null
+	 * @param nbLeaves number of leaves; should be in [0, nodes.length]
+	 * 
+	 * @throws NullPointerException if nodes is null
+	 */
+	public TreeSnapshot(String name, BufferedImage image, Node[] nodes, int nbLeaves) {
+		
+		int length = nodes.length;
+		this.name = name;
+		this.image = image;
+		this.nbLeaves = nbLeaves;
+		this.fathers = new int[length];
+		this.lefts = new int[length];
+		this.rights = new int[length];
+		this.labels = new int[length];
+		this.levels = new int[length];
+		this.merginScores = new double[length];
+		this.perimeters = new int[length];
+		this.sizes = new int[length];
+		Arrays.fill(this.fathers, -1);
+		Arrays.fill(this.lefts, -1);
+		Arrays.fill(this.rights, -1);
+		
+		int nbCreatedNodes = 0;
+		for(int n = 0; n < length; ++n) {
+			
+			Node node = nodes[n];
+			if(node != null) {
+				
+				nbCreatedNodes++;
+				this.labels[n] = node.label;
+				this.levels[n] = node.lvl;
+				this.merginScores[n] = node.merginScore;
+				this.perimeters[n] = node.perimeter;
+				this.sizes[n] = node.getSize();
+				if(node.leftNode != null && node.rightNode != null) {
+					
+					this.lefts[n] = node.leftNode.name;
+					this.rights[n] = node.rightNode.name;
+					this.fathers[node.leftNode.name] = n;
+					this.fathers[node.rightNode.name] = n;
+				}
+			}
+		}
+		this.nbNodes = nbCreatedNodes;
+		this.index = new RegionIndex(nodes, nbLeaves);
+	}
+	
+	/**
+	 * Freezes a grown tree (e.g. {@link BPT}, {@link standard.parallel.BPTP BPTP}).
+	 * 
+	 * @param tree having grown; should not be null
+	 * @return a snapshot of the tree
+	 * 
+	 * @throws NullPointerException if tree is null
+	 */
+	public static TreeSnapshot of(Tree tree) {
+		
+		return new TreeSnapshot(tree.getName(), tree.getImage(), tree.getNodes(), tree.getNbLeaves());
+	}
+	
+	/**
+	 * Re-grows a tree saved in a HDF5 file and freezes it; the re-grown tree is not kept.
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * @return a snapshot of the saved tree
+	 * 
+	 * @throws NullPointerException if filePath is null
+	 */
+	public static TreeSnapshot load(String filePath) {
+		
+		return of(new BPT(filePath));
+	}
+	
+	/**
+	 * Re-grows a tree saved in a HDF5 file and freezes it; the re-grown tree is not kept.
+	 * 
+	 * <p>
+	 * With {@link OpenMode#STRUCTURE_ONLY}, the image is not decoded: the snapshot serves cuts and extractions but no {@link TreeSnapshot#getMeans(int) statistics on the image}.
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * @param openMode EAGER, LAZY_IMAGE or STRUCTURE_ONLY; should not be null
+	 * @return a snapshot of the saved tree
+	 * 
+	 * @throws NullPointerException if filePath is null or openMode is null
+	 */
+	public static TreeSnapshot load(String filePath, OpenMode openMode) {
+		
+		return of(new BPT(filePath, openMode));
+	}
+	
+	/**
+	 * Partition of the image in a number of regions, as {@link utils.CutBPT CutBPT} does, without modifying anything.
+	 * 
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return a new label matrix where each pixel has the label of its region
+	 */
+	public LabelMatrix cut(int nbRegions) {
+		
+		int[] regions = this.getRegions(nbRegions);
+		int width = this.index.getWidth();
+		LabelMatrix labelMatrix = new LabelMatrix(width, this.index.getHeight());
+		for(int region: regions) {
+			
+			int label = this.labels[region];
+			int nbPixels = this.index.getNbPixels(region);
+			for(int i = 0; i < nbPixels; ++i) {
+				
+				int pixel = this.index.getPixel(region, i);
+				labelMatrix.setLabel(label, pixel % width, pixel / width);
+			}
+		}
+		labelMatrix.setNbRegions(regions.length);
+		return labelMatrix;
+	}
+	
+	/**
+	 * Partition of the image in a number of regions drawn with random colors.
+	 * 
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return a new image of the regions
+	 */
+	public BufferedImage cutImage(int nbRegions) {
+		
+		return ImTool.generateRegions(this.cut(nbRegions), new HashMap<Integer, Color>());
+	}
+	
+	/**
+	 * 
+	 * @return an estimation of the memory used by the snapshot and its image, in bytes
+	 */
+	public long getEstimatedBytes() {
+		
+		long bytes = 4L * 7 * this.fathers.length + 8L * this.merginScores.length + this.index.getEstimatedBytes();
+		if(this.image != null) {
+			
+			Raster raster = this.image.getRaster();
+			int bytesPerSample = Math.max(1, DataBuffer.getDataTypeSize(raster.getDataBuffer().getDataType()) / 8);
+			bytes += (long) raster.getWidth() * raster.getHeight() * raster.getNumBands() * bytesPerSample;
+		}
+		return bytes;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the name of its father; -1 for a root
+	 */
+	public int getFather(int node) {
+		
+		return this.fathers[node];
+	}
+	
+	/**
+	 * 
+	 * @return the source image; should only be read
+	 */
+	public BufferedImage getImage() {
+		
+		return this.image;
+	}
+	
+	/**
+	 * 
+	 * @return the index of the regions of the tree
+	 */
+	public RegionIndex getIndex() {
+		
+		return this.index;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the label of the node
+	 */
+	public int getLabel(int node) {
+		
+		return this.labels[node];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the name of its first son; -1 for a leaf
+	 */
+	public int getLeft(int node) {
+		
+		return this.lefts[node];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the depth of its subtree (i.e. 0 for leaves)
+	 */
+	public int getLevel(int node) {
+		
+		return this.levels[node];
+	}
+	
+	/**
+	 * Average value of each band of the image on the pixels of a region.
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return a new array containing the mean of each band
+	 * 
+	 * @throws NullPointerException if the snapshot has no image
+	 */
+	public double[] getMeans(int node) {
+		
+		Raster raster = this.image.getRaster();
+		int nbBands = raster.getNumBands();
+		int width = this.index.getWidth();
+		int nbPixels = this.index.getNbPixels(node);
+		double[] means = new double[nbBands];
+		for(int i = 0; i < nbPixels; ++i) {
+			
+			int pixel = this.index.getPixel(node, i);
+			int x = pixel % width;
+			int y = pixel / width;
+			for(int b = 0; b < nbBands; ++b) {
+				
+				means[b] += raster.getSampleDouble(x, y, b);
+			}
+		}
+		for(int b = 0; b < nbBands; ++b) {
+			
+			means[b] /= Math.max(1, nbPixels);
+		}
+		return means;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the merging score of the node
+	 */
+	public double getMerginScore(int node) {
+		
+		return this.merginScores[node];
+	}
+	
+	/**
+	 * 
+	 * @return the name of the tree
+	 */
+	public String getName() {
+		
+		return this.name;
+	}
+	
+	/**
+	 * 
+	 * @return the number of leaves
+	 */
+	public int getNbLeaves() {
+		
+		return this.nbLeaves;
+	}
+	
+	/**
+	 * 
+	 * @return the number of nodes (including leaves) actually created
+	 */
+	public int getNbNodes() {
+		
+		return this.nbNodes;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the perimeter of the node
+	 */
+	public int getPerimeter(int node) {
+		
+		return this.perimeters[node];
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return a new array of the pixels of the node as y * width + x
+	 */
+	public int[] getPixels(int node) {
+		
+		return this.index.getPixels(node);
+	}
+	
+	/**
+	 * Regions kept when the image is cut in a number of regions.
+	 * 
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return a new array containing the names of the regions
+	 */
+	public int[] getRegions(int nbRegions) {
+		
+		/* the nodes created by the first (nbLeaves - nbRegions) mergings are kept */
+		int lastKept = Math.min(this.fathers.length - 1, this.nbLeaves + (this.nbLeaves - nbRegions) - 1);
+		int[] regions = new int[Math.max(0, nbRegions)];
+		int nbFound = 0;
+		for(int n = 0; n <= lastKept; ++n) {
+			
+			if((n < this.nbLeaves || this.lefts[n] != -1) && (this.fathers[n] == -1 || this.fathers[n] > lastKept)) {
+				
+				if(nbFound == regions.length) {
+					
+					regions = Arrays.copyOf(regions, Math.max(1, 2 * nbFound));
+				}
+				regions[nbFound++] = n;
+			}
+		}
+		return Arrays.copyOf(regions, nbFound);
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the name of its second son; -1 for a leaf
+	 */
+	public int getRight(int node) {
+		
+		return this.rights[node];
+	}
+	
+	/**
+	 * 
+	 * @return the name of the last created root; -1 if the tree is empty
+	 */
+	public int getRoot() {
+		
+		for(int n = this.fathers.length - 1; n >= 0; --n) {
+			
+			if(this.fathers[n] == -1 && (n < this.nbLeaves || this.lefts[n] != -1)) {
+				
+				return n;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * @param node name of a node; should be in [0, number of nodes[
+	 * @return the number of pixels of the node
+	 */
+	public int getSize(int node) {
+		
+		return this.sizes[node];
+	}
+	
+	/**
+	 * Region containing a pixel when the image is cut in a given number of regions.
+	 * 
+	 * @param x index of the column
+	 * @param y index of the row
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return the name of the region; -1 if no leaf contains the pixel
+	 * 
+	 * @see RegionIndex#regionAt(int, int, int)
+	 */
+	public int regionAt(int x, int y, int nbRegions) {
+		
+		return this.index.regionAt(x, y, nbRegions);
+	}
+}
@@ -0,0 +1,364 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure.d3;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import datastructure.Node;
+import utils.d3.LabelMatrix3D;
+
+/**
+ * Voxels of all regions of a cube stored as linear indices in a single array.
+ * 
+ * <p>
+ * Each leaf owns a range of the array starting at {@link Node#firstVoxel} and containing {@link Node#nbVoxels} voxels.
+ * While the tree grows, the ranges follow the order of the leaves and a node created by merging two regions does not own a range: 
+ * its voxels are visited through the leaves of its subtree.
+ * Once the tree is complete, {@link VoxelStore#orderSubtrees(Node[], int) the voxels are reordered} so that every node owns the range of its subtree.
+ * 
+ * <p>
+ * The voxels are read through a {@link VoxelStore.Cursor cursor} so that no object is created per voxel:
+ * <pre>
+ * VoxelStore.Cursor cursor = node.getVoxelCursor();
+ * while(cursor.next()) {
+ * 
+ *     ... cursor.x, cursor.y, cursor.z ...
+ * }
+ * </pre>
+ * 
+ * <p>
+ * (!) A cube can not contain more than {@link Integer#MAX_VALUE} voxels.
+ *
+ */
+public class VoxelStore implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Reads the voxels of a region one by one.
+	 * 
+	 * <p>
+	 * A cursor can be {@link Cursor#reset(Node) reset} to read another region without any allocation.
+	 * (!) Not thread safe: each thread should use its own cursor.
+	 */
+	public static class Cursor {
+		
+		/**
+		 * Position of the current voxel along the x axis.
+		 */
+		public int x;
+		
+		/**
+		 * Position of the current voxel along the y axis.
+		 */
+		public int y;
+		
+		/**
+		 * Position of the current voxel along the z axis.
+		 */
+		public int z;
+		
+		/**
+		 * Position after the last voxel of the current range.
+		 */
+		private int end;
+		
+		/**
+		 * Position of the next voxel to read.
+		 */
+		private int position;
+		
+		/**
+		 * Subtrees whose voxels remain to read when the region does not own a range.
+		 */
+		private Node[] stack = new Node[16];
+		
+		/**
+		 * Number of subtrees in the stack.
+		 */
+		private int stackSize;
+		
+		/**
+		 * Store containing the voxels.
+		 */
+		private final VoxelStore store;
+		
+		/**
+		 * Prepares a cursor on a store.
+		 * 
+		 * @param store containing the voxels; should not be null
+		 */
+		public Cursor(VoxelStore store) {
+			
+			this.store = store;
+		}
+		
+		/**
+		 * Moves to the next voxel of the region and sets its coordinates.
+		 * 
+		 * @return true if a voxel has been read, false if all voxels of the region have been read
+		 */
+		public boolean next() {
+			
+			while(this.position == this.end) {
+				
+				if(this.stackSize == 0) {
+					
+					return false;
+				}
+				
+				Node node = this.stack[--this.stackSize];
+				this.stack[this.stackSize] = null;
+				if(node.firstVoxel >= 0) {
+					
+					this.position = node.firstVoxel;
+					this.end = node.firstVoxel + node.nbVoxels;
+					
+				}else {
+					
+					this.push(node.rightNode);
+					this.push(node.leftNode);
+				}
+			}
+			
+			int index = this.store.voxels[this.position++];
+			int plane = this.store.width * this.store.height;
+			this.z = index / plane;
+			index -= this.z * plane;
+			this.y = index / this.store.width;
+			this.x = index - this.y * this.store.width;
+			return true;
+		}
+		
+		/**
+		 * Restarts the cursor on the voxels of a region.
+		 * 
+		 * @param node region to read; should not be null
+		 * @return the cursor itself
+		 * 
+		 * @throws NullPointerException if node is null
+		 */
+		public Cursor reset(Node node) {
+			
+			while(this.stackSize > 0) {
+				
+				this.stack[--this.stackSize] = null;
+			}
+			
+			if(node.firstVoxel >= 0) {
+				
+				this.position = node.firstVoxel;
+				this.end = node.firstVoxel + node.nbVoxels;
+				
+			}else {
+				
+				this.position = 0;
+				this.end = 0;
+				this.push(node);
+			}
+			return this;
+		}
+		
+		/**
+		 * Schedules the reading of a subtree.
+		 * 
+		 * @param node root of the subtree; should not be null
+		 */
+		private void push(Node node) {
+			
+			if(this.stackSize == this.stack.length) {
+				
+				this.stack = Arrays.copyOf(this.stack, this.stackSize * 2);
+			}
+			this.stack[this.stackSize++] = node;
+		}
+	}
+	
+	/**
+	 * Depth of the cube.
+	 */
+	public final int depth;
+	
+	/**
+	 * Height of the cube.
+	 */
+	public final int height;
+	
+	/**
+	 * Linear indices of the voxels: (z * height + y) * width + x.
+	 */
+	private int[] voxels;
+	
+	/**
+	 * Width of the cube.
+	 */
+	public final int width;
+	
+	/**
+	 * Prepares an empty store.
+	 * 
+	 * @param width of the cube; should be > 0
+	 * @param height of the cube; should be > 0
+	 * @param depth of the cube; should be > 0
+	 * 
+	 * @throws IllegalArgumentException if the cube contains more than {@link Integer#MAX_VALUE} voxels
+	 */
+	public VoxelStore(int width, int height, int depth) {
+		
+		long nbVoxels = (long) width * height * depth;
+		if(nbVoxels > Integer.MAX_VALUE) {
+			
+			throw new IllegalArgumentException("Too many voxels to store: "+ nbVoxels);
+		}
+		
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		this.voxels = new int[(int) nbVoxels];
+	}
+	
+	/**
+	 * Stores the voxels of the leaves defined from a matrix of labels.
+	 * 
+	 * <p>
+	 * The leaves should be stored at the position of their label and their {@link Node#nbVoxels number of voxels} should already be counted.
+	 * Each leaf gets its range of voxels and a reference to the store.
+	 * 
+	 * @param labelMatrix3D defining the leaves; should not be null
+	 * @param nodes containing the leaves at the position of their label; should not be null
+	 * @param nbLeaves number of leaves; should be >= 0
+	 * @return a store containing the voxels of all leaves
+	 * 
+	 * @throws NullPointerException if labelMatrix3D is null or nodes is null
+	 * @throws IllegalArgumentException if the cube contains more than {@link Integer#MAX_VALUE} voxels
+	 */
+	public static VoxelStore of(LabelMatrix3D labelMatrix3D, Node[] nodes, int nbLeaves) {
+		
+		VoxelStore store = new VoxelStore(labelMatrix3D.getWidth(), labelMatrix3D.getHeight(), labelMatrix3D.getDepth());
+		
+		/* Give a range to each leaf */
+		int[] positions = new int[nbLeaves];
+		int firstVoxel = 0;
+		for(int i = 0; i < nbLeaves; ++i) {
+			
+			Node leaf = nodes[i];
+			leaf.firstVoxel = firstVoxel;
+			leaf.voxelStore = store;
+			positions[i] = firstVoxel;
+			firstVoxel += leaf.nbVoxels;
+		}
+		
+		/* Fill the ranges */
+		for(int z = 0; z < store.depth; z++) {
+			for(int y = 0; y < store.height; y++) {
+				for(int x = 0; x < store.width; x++) {
+					
+					int label = labelMatrix3D.getLabel(x, y, z);
+					store.voxels[positions[label]++] = store.indexOf(x, y, z);
+				}
+			}
+		}
+		
+		return store;
+	}
+	
+	/**
+	 * 
+	 * @param x position along the x axis; should be in [0, width[
+	 * @param y position along the y axis; should be in [0, height[
+	 * @param z position along the z axis; should be in [0, depth[
+	 * @return the linear index of the voxel
+	 */
+	public int indexOf(int x, int y, int z) {
+		
+		return (z * this.height + y) * this.width + x;
+	}
+	
+	/**
+	 * Reorders the voxels so that every node owns the range of voxels of its subtree.
+	 * 
+	 * <p>
+	 * The nodes should be stored after their children, as done when growing a tree.
+	 * The ranges are given from the fathers to their children: the left child takes the beginning of the range of its father and the right child the end.
+	 * 
+	 * @param nodes of the tree, leaves first; should not be null
+	 * @param nbNodes number of nodes; should be >= 0
+	 * 
+	 * @throws NullPointerException if nodes is null
+	 */
+	public void orderSubtrees(Node[] nodes, int nbNodes) {
+		
+		/* Remember the ranges of the leaves before giving the new ones */
+		int[] previousFirstVoxels = new int[nbNodes];
+		for(int i = 0; i < nbNodes; ++i) {
+			
+			previousFirstVoxels[i] = nodes[i].firstVoxel;
+		}
+		
+		int[] orderedVoxels = new int[this.voxels.length];
+		int firstVoxel = 0;
+		for(int i = nbNodes - 1; i >= 0; --i) {
+			
+			Node node = nodes[i];
+			
+			/* A root takes the next free range */
+			if(node.father == null) {
+				
+				node.firstVoxel = firstVoxel;
+				firstVoxel += node.nbVoxels;
+			}
+			node.voxelStore = this;
+			
+			if(node.leftNode != null) {
+				
+				node.leftNode.firstVoxel = node.firstVoxel;
+				node.rightNode.firstVoxel = node.firstVoxel + node.leftNode.nbVoxels;
+				
+			}else {
+				
+				System.arraycopy(this.voxels, previousFirstVoxels[i], orderedVoxels, node.firstVoxel, node.nbVoxels);
+			}
+		}
+		this.voxels = orderedVoxels;
+	}
+}
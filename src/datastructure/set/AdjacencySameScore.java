@@ -41,32 +41,64 @@
 
 package datastructure.set;
 
-import java.util.LinkedHashSet;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Set;
 import datastructure.Adjacency;
 import utils.Log;
 
+/**
+ * Adjacencies having the same distance, ordered as {@link Adjacency#compareTieTo(Adjacency) ties}.
+ * 
+ * <p>
+ * The adjacencies are stored in a binary heap where each one knows its {@link Adjacency#bucketPosition position}, 
+ * so that removing one costs no search; an adjacency is then stored by one bucket at most.
+ */
 public class AdjacencySameScore implements Comparable<AdjacencySameScore>{
 
 	public double score;
 	
-	public Set<Adjacency> bucket;
+	/**
+	 * Binary heap of the adjacencies: the first one is the optimal one.
+	 */
+	private Adjacency[] heap = new Adjacency[2];
+	
+	/**
+	 * Number of adjacencies.
+	 */
+	private int size;
 	
 	public AdjacencySameScore(double distance) {
 
 		this.score = distance;
-		this.bucket = new LinkedHashSet<Adjacency>();
 	}
 
-	public boolean add(Adjacency adjacency) {
+	/**
+	 * 
+	 * @param adjacency to add; should not be null and should not be stored by a bucket
+	 * 
+	 * @throws NullPointerException if adjacency is null
+	 * @throws IllegalStateException if the adjacency is already stored by a bucket
+	 */
+	public void add(Adjacency adjacency) {
 
-		return this.bucket.add(adjacency);
+		if(adjacency.bucket != null) {
+			
+			throw new IllegalStateException("The adjacency "+ adjacency.getIndex() +" is already stored");
+		}
+		
+		if(this.size == this.heap.length) {
+			
+			this.heap = Arrays.copyOf(this.heap, this.size * 2);
+		}
+		adjacency.bucket = this;
+		this.place(adjacency, this.size);
+		this.size++;
+		this.siftUp(adjacency.bucketPosition);
 	}
 
 	public boolean contains(Adjacency adjacency) {
 
-		return this.bucket.contains(adjacency);
+		return adjacency.bucket == this;
 	}
 
 	@Override
@@ -104,27 +136,94 @@ public class AdjacencySameScore implements Comparable<AdjacencySameScore>{
 	
 	public boolean isEmpty() {
 
-		return this.bucket.isEmpty();
+		return this.size == 0;
 	}
 
 	public Adjacency optimal() {
 	
-		return this.bucket.iterator().next();
+		return this.size == 0 ? null : this.heap[0];
 	}
 
 	public boolean remove(Adjacency adjacency) {
 
-		boolean removed = this.bucket.remove(adjacency);
-		
-		if(!removed) {
+		if(adjacency.bucket != this) {
 			
 			Log.println("SetOfAdjacencies", adjacency.getIndex() +"Not found");
+			return false;
+		}
+		
+		int position = adjacency.bucketPosition;
+		this.size--;
+		Adjacency last = this.heap[this.size];
+		this.heap[this.size] = null;
+		if(last != adjacency) {
+			
+			this.place(last, position);
+			this.siftUp(position);
+			this.siftDown(last.bucketPosition);
 		}
-		return removed;
+		adjacency.bucket = null;
+		adjacency.bucketPosition = 0;
+		return true;
 	}
 
 	public int size() {
 
-		return this.bucket.size();
-	}	
+		return this.size;
+	}
+	
+	/**
+	 * Stores an adjacency at a position of the heap.
+	 */
+	private void place(Adjacency adjacency, int position) {
+		
+		this.heap[position] = adjacency;
+		adjacency.bucketPosition = position;
+	}
+	
+	/**
+	 * Moves an adjacency down until its children come after it.
+	 */
+	private void siftDown(int position) {
+		
+		Adjacency adjacency = this.heap[position];
+		while(true) {
+			
+			int child = 2 * position + 1;
+			if(child >= this.size) {
+				
+				break;
+			}
+			if(child + 1 < this.size && this.heap[child + 1].compareTieTo(this.heap[child]) < 0) {
+				
+				child++;
+			}
+			if(adjacency.compareTieTo(this.heap[child]) <= 0) {
+				
+				break;
+			}
+			this.place(this.heap[child], position);
+			position = child;
+		}
+		this.place(adjacency, position);
+	}
+	
+	/**
+	 * Moves an adjacency up until its parent comes before it.
+	 */
+	private void siftUp(int position) {
+		
+		Adjacency adjacency = this.heap[position];
+		while(position > 0) {
+			
+			int parent = (position - 1) / 2;
+			if(this.heap[parent].compareTieTo(adjacency) <= 0) {
+				
+				break;
+			}
+			this.place(this.heap[parent], position);
+			position = parent;
+		}
+		this.place(adjacency, position);
+	}
 }
@@ -0,0 +1,375 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package datastructure.set;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import datastructure.Adjacency;
+import metric.bricks.Metric;
+import utils.Log;
+
+/**
+ * Set of adjacencies ordered by distance, where the removals are lazy.
+ * 
+ * <p>
+ * The adjacencies are stored in a binary heap made of primitive arrays.
+ * Removing an adjacency only increments its {@link Adjacency#version version}: 
+ * its entry stays in the heap and is discarded when it reaches the top.
+ * The heap is compacted when the dead entries outnumber the alive ones.
+ * 
+ * <p>
+ * The adjacencies having the same distance are given as {@link Adjacency#compareTieTo(Adjacency) ties}, as in {@link SetOfAdjacencyBuckets}:
+ * both sets lead to the same tree.
+ *
+ */
+public class LazyAdjacencyHeap implements AdjacencySet, Serializable{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Initial number of entries.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * Number of dead entries tolerated whatever the number of alive ones.
+	 */
+	public static final int MIN_DEAD_ENTRIES = 1024;
+	
+	/**
+	 * Adjacency of each entry.
+	 */
+	private Adjacency[] adjacencies;
+	
+	/**
+	 * Distance of each entry, as it was when the adjacency was added.
+	 */
+	private double[] distances;
+	
+	/**
+	 * Number of adjacencies stored and not removed.
+	 */
+	private int nbAlive;
+	
+	/**
+	 * MINIMUM: the lowest value is optimal.
+	 * MAXIMUM: the highest value is optimal.
+	 */
+	private OptimalOption optimalOption = OptimalOption.MINIMUM;
+	
+	/**
+	 * {@link Adjacency#tieRank() Rank} of the adjacency of each entry, as it was when the adjacency was added.
+	 */
+	private long[] ranks;
+	
+	/**
+	 * {@link Adjacency#tieSize() Size} of the adjacency of each entry, as it was when the adjacency was added.
+	 */
+	private long[] sizes;
+	
+	/**
+	 * Number of entries, dead or alive.
+	 */
+	private int size;
+	
+	/**
+	 * {@link Adjacency#version Version} of the adjacency of each entry when it was added.
+	 */
+	private int[] versions;
+	
+	/**
+	 * Prepares and creates an empty structure.
+	 * @param optimalOption 
+	 */
+	public LazyAdjacencyHeap(OptimalOption optimalOption) {
+		
+		this.optimalOption = optimalOption;
+		this.adjacencies = new Adjacency[DEFAULT_CAPACITY];
+		this.distances = new double[DEFAULT_CAPACITY];
+		this.ranks = new long[DEFAULT_CAPACITY];
+		this.sizes = new long[DEFAULT_CAPACITY];
+		this.versions = new int[DEFAULT_CAPACITY];
+	}
+
+	@Override
+	public void add(Adjacency adjacency) {
+		
+		if(adjacency.isRegistered()) {
+			
+			return;
+		}
+		
+		if(this.size == this.adjacencies.length) {
+			
+			int capacity = this.adjacencies.length * 2;
+			this.adjacencies = Arrays.copyOf(this.adjacencies, capacity);
+			this.distances = Arrays.copyOf(this.distances, capacity);
+			this.ranks = Arrays.copyOf(this.ranks, capacity);
+			this.sizes = Arrays.copyOf(this.sizes, capacity);
+			this.versions = Arrays.copyOf(this.versions, capacity);
+		}
+		
+		int entry = this.size++;
+		this.adjacencies[entry] = adjacency;
+		this.distances[entry] = adjacency.distance;
+		this.ranks[entry] = adjacency.tieRank();
+		this.sizes[entry] = adjacency.tieSize();
+		this.versions[entry] = adjacency.version;
+		this.siftUp(entry);
+		
+		adjacency.register();
+		this.nbAlive++;
+	}
+
+	@Override
+	public void add(Adjacency adjacency, Metric metric) {
+		
+		adjacency.computeDistance(metric);
+		this.add(adjacency);
+		adjacency.sideAdjaSet = this;
+	}
+	
+	/**
+	 * Removes all the dead entries and rebuilds the heap.
+	 */
+	public void compact() {
+		
+		int nbEntries = 0;
+		for(int entry = 0; entry < this.size; ++entry) {
+			
+			if(this.isAlive(entry)) {
+				
+				this.move(entry, nbEntries++);
+			}
+		}
+		for(int entry = nbEntries; entry < this.size; ++entry) {
+			
+			this.adjacencies[entry] = null;
+		}
+		this.size = nbEntries;
+		
+		for(int entry = this.size / 2 - 1; entry >= 0; --entry) {
+			
+			this.siftDown(entry);
+		}
+	}
+
+	@Override
+	public boolean containsAdjacency(Adjacency adjacency) {
+		
+		return adjacency.isRegistered();
+	}
+	
+	/**
+	 * 
+	 * @return the number of entries, including the removed adjacencies not discarded yet
+	 */
+	public int getNbEntries() {
+		
+		return this.size;
+	}
+	
+	/**
+	 * 
+	 * @param entry position in the heap
+	 * @return true if the adjacency of the entry has not been removed since it was added
+	 */
+	private boolean isAlive(int entry) {
+		
+		return this.adjacencies[entry].version == this.versions[entry];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		
+		return this.nbAlive == 0;
+	}
+	
+	/**
+	 * 
+	 * @return true if the entry 'e1' must be given before the entry 'e2'
+	 */
+	private boolean isBefore(int e1, int e2) {
+		
+		int comparison = Double.compare(this.distances[e1], this.distances[e2]);
+		if(comparison != 0) {
+			
+			return this.optimalOption == OptimalOption.MAXIMUM ? comparison > 0 : comparison < 0;
+		}
+		if(this.sizes[e1] != this.sizes[e2]) {
+			
+			return this.sizes[e1] < this.sizes[e2];
+		}
+		return this.ranks[e1] < this.ranks[e2];
+	}
+	
+	/**
+	 * Copies an entry to another position.
+	 */
+	private void move(int from, int to) {
+		
+		this.adjacencies[to] = this.adjacencies[from];
+		this.distances[to] = this.distances[from];
+		this.ranks[to] = this.ranks[from];
+		this.sizes[to] = this.sizes[from];
+		this.versions[to] = this.versions[from];
+	}
+
+	@Override
+	public Adjacency optimalAdjacency() {
+		
+		/* discard the dead entries reaching the top */
+		while(this.size > 0 && !this.isAlive(0)) {
+			
+			this.size--;
+			this.move(this.size, 0);
+			this.adjacencies[this.size] = null;
+			this.siftDown(0);
+		}
+		return this.size > 0 ? this.adjacencies[0] : null;
+	}
+
+	@Override
+	public void remove(Adjacency adjacency) {
+		
+		if(!adjacency.isRegistered()) {
+			
+			Log.println("SetOfAdjacencies", adjacency.getIndex() +"Not found");
+			return;
+		}
+		
+		adjacency.unregister();
+		adjacency.version++;
+		this.nbAlive--;
+		
+		if(this.size - this.nbAlive > Math.max(MIN_DEAD_ENTRIES, this.nbAlive)) {
+			
+			this.compact();
+		}
+	}
+	
+	@Override
+	public void setOptimalOption(OptimalOption optimalOption) {
+		
+		this.optimalOption = optimalOption;
+		for(int entry = this.size / 2 - 1; entry >= 0; --entry) {
+			
+			this.siftDown(entry);
+		}
+	}
+	
+	/**
+	 * Moves an entry down until its children are given after it.
+	 */
+	private void siftDown(int entry) {
+		
+		while(true) {
+			
+			int first = entry;
+			int left = 2 * entry + 1;
+			int right = left + 1;
+			if(left < this.size && this.isBefore(left, first)) {
+				
+				first = left;
+			}
+			if(right < this.size && this.isBefore(right, first)) {
+				
+				first = right;
+			}
+			if(first == entry) {
+				
+				return;
+			}
+			this.swap(entry, first);
+			entry = first;
+		}
+	}
+	
+	/**
+	 * Moves an entry up until its parent is given before it.
+	 */
+	private void siftUp(int entry) {
+		
+		while(entry > 0) {
+			
+			int parent = (entry - 1) / 2;
+			if(!this.isBefore(entry, parent)) {
+				
+				return;
+			}
+			this.swap(entry, parent);
+			entry = parent;
+		}
+	}
+
+	@Override
+	public int size() {
+		
+		return this.nbAlive;
+	}
+	
+	private void swap(int e1, int e2) {
+		
+		Adjacency adjacency = this.adjacencies[e1];
+		this.adjacencies[e1] = this.adjacencies[e2];
+		this.adjacencies[e2] = adjacency;
+		
+		double distance = this.distances[e1];
+		this.distances[e1] = this.distances[e2];
+		this.distances[e2] = distance;
+		
+		long rank = this.ranks[e1];
+		this.ranks[e1] = this.ranks[e2];
+		this.ranks[e2] = rank;
+		long size = this.sizes[e1];
+		this.sizes[e1] = this.sizes[e2];
+		this.sizes[e2] = size;
+		
+		int version = this.versions[e1];
+		this.versions[e1] = this.versions[e2];
+		this.versions[e2] = version;
+	}
+}
@@ -43,7 +43,6 @@ package datastructure.set;
 
 import java.io.Serializable;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 
 import datastructure.Adjacency;
 import datastructure.Node;
@@ -64,12 +63,6 @@ public class SetOfAdjacencies implements AdjacencySet, Serializable{
 	 */
 	public int currentNodeIndex = 0;
 	
-	/**
-	 * <b> For parallel fashion purpose: </b>
-	 * nodes belonging to other sides having neighbors in the current side.
-	 */
-	public ConcurrentHashMap<Integer, Node> foreignNodes;
-	
 	/**
 	 * <b> For parallel fashion purpose: </b>
 	 * each side of the construction has an unique matrix of labels. 
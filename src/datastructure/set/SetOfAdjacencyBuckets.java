@@ -43,7 +43,6 @@ package datastructure.set;
 
 import java.io.Serializable;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
 
 import datastructure.Adjacency;
 import datastructure.Node;
@@ -64,12 +63,6 @@ public class SetOfAdjacencyBuckets implements AdjacencySet, Serializable{
 	 */
 	public int currentNodeIndex = 0;
 	
-	/**
-	 * <b> For parallel fashion purpose: </b>
-	 * nodes belonging to other sides having neighbors in the current side.
-	 */
-	public ConcurrentHashMap<Integer, Node> foreignNodes;
-	
 	/**
 	 * <b> For parallel fashion purpose: </b>
 	 * each side of the construction has an unique matrix of labels. 
@@ -145,18 +138,23 @@ public class SetOfAdjacencyBuckets implements AdjacencySet, Serializable{
 	
 		AdjacencySameScore adjacencySameScore = this.set.get(adjacency.distance);
 		
+		if(adjacency.bucket != null) {
+			
+			if(adjacency.bucket != adjacencySameScore) {
+				
+				throw new IllegalStateException("The adjacency "+ adjacency.getIndex() +" is already stored with another distance");
+			}
+			return; /* already stored */
+		}
+		
 		if(adjacencySameScore == null) {
 			
 			adjacencySameScore = new AdjacencySameScore(adjacency.distance);
 			this.set.put(adjacency.distance, adjacencySameScore);
 		}
 		
-		boolean added = adjacencySameScore.add(adjacency);
-	
-		if(added) {
-	
-			adjacency.register();
-		}
+		adjacencySameScore.add(adjacency);
+		adjacency.register();
 	}
 
 	@Override
@@ -171,7 +169,7 @@ public class SetOfAdjacencyBuckets implements AdjacencySet, Serializable{
 	public boolean containsAdjacency(Adjacency adjacency) { 
 		
 		AdjacencySameScore adjacencySameScore = this.set.get(adjacency.distance);
-		return adjacencySameScore.contains(adjacency); 
+		return adjacencySameScore != null && adjacencySameScore.contains(adjacency); 
 	}
 
 	@Override
@@ -77,6 +77,7 @@ public class Strings {
 	public static final String NB_NODES_CREATED = "Nb. nodes created";
 	public static final String NB_NODES_TO_CREATE = "Nb. nodes to create";
 	public static final String NB_REMAINING_ADJACENCIES = "Nb. remaining Adjacencies";
+	public static final String NOT_REDUCIBLE_METRIC = "The metric is not reducible, the regions are merged sequentially";
 	
 	public static final String PREPARING_LABEL_MATRIX = "Preparing label matrix";
 	public static final String PREPARING_LEAVES = "Creating leaves";
@@ -103,6 +104,10 @@ public class Strings {
 	public static final String VAR_IMAGE_PATH = "image_path";
 	public static final String VAR_IMAGE_SIZE = "image_size";
 	public static final String VAR_LEAVES = "leaves";
+	public static final String VAR_LEAVES_ENCODING = "leaves_encoding";
+	public static final String VAR_LEAVES_ENCODING_PIXELS = "pixels";
+	public static final String VAR_LEAVES_ENCODING_RUNS = "runs";
+	public static final String VAR_LEAVES_RUNS = "leaves_runs";
 	public static final String VAR_MAX_LONGER = "max_longer";
 	public static final String VAR_METRIC = "metric";
 	public static final String VAR_NAME = "name";
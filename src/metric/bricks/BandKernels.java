@@ -0,0 +1,169 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.bricks;
+
+import java.util.Arrays;
+
+import datastructure.Node;
+
+/**
+ * Distance kernels working on the contiguous band features of the nodes (see {@link Node#bandFeatures}).
+ * 
+ * <p>
+ * Each kernel is a plain loop over primitive arrays without boxing nor call per band, so that the JIT compiler can unroll and vectorize it.
+ * The sums are done in the same order as the former per-band implementations, hence the distances are unchanged.
+ * 
+ * <p>
+ * Layouts used by the metrics:
+ * <li> min/max: [min<sub>0</sub>, max<sub>0</sub>, min<sub>1</sub>, max<sub>1</sub>, ...]
+ * <li> mean or vector: [v<sub>0</sub>, v<sub>1</sub>, ...]
+ *
+ */
+public final class BandKernels {
+	
+	private BandKernels() { }
+	
+	/**
+	 * Returns the band features of a node, allocating or growing them if necessary.
+	 * The array is sized from the range of the calling metric only (i.e. its offset plus its number of values), 
+	 * so it grows only when several metrics of a {@link BandLayout layout} share the node.
+	 * 
+	 * @param n concerned node; should not be null
+	 * @param length minimal number of values required by the calling metric, i.e. the end of its range
+	 * @return the band features of the node, with at least 'length' values
+	 * 
+	 * @throws NullPointerException if n is null
+	 */
+	public static double[] of(Node n, int length) {
+		
+		double[] values = n.bandFeatures;
+		if(values == null) {
+			
+			values = new double[length];
+			n.bandFeatures = values;
+			
+		}else if(values.length < length) {
+			
+			values = Arrays.copyOf(values, length);
+			n.bandFeatures = values;
+		}
+		return values;
+	}
+	
+	/**
+	 * Sums, over the bands, the absolute difference between the values of two vectors.
+	 * 
+	 * @param a first vector; should not be null
+	 * @param aOffset position of the first band in 'a'
+	 * @param b second vector; should not be null
+	 * @param bOffset position of the first band in 'b'
+	 * @param nbBands number of bands
+	 * @return the L1 distance between the two vectors
+	 * 
+	 * @throws NullPointerException if a or b is null
+	 */
+	public static double l1(double[] a, int aOffset, double[] b, int bOffset, int nbBands) {
+		
+		double score = 0;
+		for(int i = 0; i < nbBands; ++i) {
+			
+			score += Math.abs(a[aOffset + i] - b[bOffset + i]);
+		}
+		return score;
+	}
+	
+	/**
+	 * Sums, over the bands, the spread between the min of the mins and the max of the maxs of two regions.
+	 * 
+	 * @param a min/max features of the first region; should not be null
+	 * @param aOffset position of the min of the first band in 'a'
+	 * @param b min/max features of the second region; should not be null
+	 * @param bOffset position of the min of the first band in 'b'
+	 * @param nbBands number of bands
+	 * @return the spread of the union of the two regions
+	 * 
+	 * @throws NullPointerException if a or b is null
+	 */
+	public static double minMaxSpread(double[] a, int aOffset, double[] b, int bOffset, int nbBands) {
+		
+		double score = 0;
+		int length = 2 * nbBands;
+		for(int i = 0; i < length; i += 2) {
+			
+			double miniMini = Math.min(a[aOffset + i], b[bOffset + i]);
+			double maxiMaxi = Math.max(a[aOffset + i + 1], b[bOffset + i + 1]);
+			score += Math.abs(maxiMaxi - miniMini);
+		}
+		return score;
+	}
+	
+	/**
+	 * Sums, over the bands, the squared differences between the mean of each region and the mean of their union, weighted by the size of each region.
+	 * 
+	 * @param a means of the first region; should not be null
+	 * @param aOffset position of the first band in 'a'
+	 * @param aSize number of pixels of the first region
+	 * @param b means of the second region; should not be null
+	 * @param bOffset position of the first band in 'b'
+	 * @param bSize number of pixels of the second region
+	 * @param nbBands number of bands
+	 * @return the weighted spread of the union of the two regions
+	 * 
+	 * @throws NullPointerException if a or b is null
+	 */
+	public static double wardSpread(double[] a, int aOffset, int aSize, double[] b, int bOffset, int bSize, int nbBands) {
+		
+		double score = 0;
+		int size = aSize + bSize;
+		for(int i = 0; i < nbBands; ++i) {
+			
+			double diff = a[aOffset + i] - (a[aOffset + i] * aSize + b[bOffset + i] * bSize) / size;
+			score += aSize * (diff * diff);
+		}
+		for(int i = 0; i < nbBands; ++i) {
+			
+			double diff = b[bOffset + i] - (a[aOffset + i] * aSize + b[bOffset + i] * bSize) / size;
+			score += bSize * (diff * diff);
+		}
+		return score;
+	}
+}
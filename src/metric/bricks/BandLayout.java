@@ -0,0 +1,86 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.bricks;
+
+import datastructure.Node;
+
+/**
+ * Positions of the band features in the nodes of one creation (see {@link Node#bandFeatures}).
+ * 
+ * <p>
+ * Each metric using band features {@link Metric#reserveBandFeatures(BandLayout) reserves} its own range of values in the layout of the creation,
+ * so the metrics sharing the nodes of a tree (e.g. the metrics of a {@link multi.sequential.MBPT}) do not overlap.
+ * A metric never placed in a layout uses the values from 0, as if it were the only one.
+ * 
+ * <p>
+ * A layout belongs to one creation: several trees can be created at the same time, each with its own layout.
+ *
+ */
+public class BandLayout {
+	
+	/**
+	 * Number of values reserved so far.
+	 */
+	private int length = 0;
+	
+	/**
+	 * Reserves a range of values after the ones already reserved.
+	 * 
+	 * @param nbValues number of values to reserve; should be >= 0
+	 * @return the position of the first reserved value
+	 */
+	public int reserve(int nbValues) {
+		
+		int offset = this.length;
+		this.length += nbValues;
+		return offset;
+	}
+	
+	/**
+	 * 
+	 * @return the number of values reserved by the metrics, i.e. the length of the band features of a node having all of them
+	 */
+	public int getLength() {
+		
+		return this.length;
+	}
+}
@@ -0,0 +1,249 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.bricks;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+import datastructure.Node;
+import datastructure.PixelRuns;
+import utils.ImTool;
+
+/**
+ * Metric whose distance is a weighted sum of sub-scores, each one computed by a {@link FeatureProvider feature provider}.
+ * 
+ * <p>
+ * A combined metric only declares the providers it needs and their weights:
+ * <pre>
+ * this.addTerm(new MinMaxFeatures(nbBands), 1.0);
+ * this.addTerm(IndexFeatures.ndvi(nbBands), 1.0);
+ * </pre>
+ * A provider declared several times (i.e. same {@link FeatureProvider#getKey() key}) is computed once per node.
+ * The pixels of a leaf are read once, band by band, and given to all providers requiring them.
+ *
+ */
+public abstract class CompositeMetric extends Metric implements MetricInterface {
+	
+	/**
+	 * Number of accumulators required by the providers for a leaf.
+	 */
+	private int nbAccumulators;
+	
+	/**
+	 * Number of bands of the image.
+	 */
+	protected int nbBands;
+	
+	/**
+	 * Position of the accumulators of each provider.
+	 */
+	private final ArrayList<Integer> offsets = new ArrayList<Integer>();
+	
+	/**
+	 * Providers computed for each node, without duplicates.
+	 */
+	private final ArrayList<FeatureProvider> providers = new ArrayList<FeatureProvider>();
+	
+	/**
+	 * Provider of each term of the distance.
+	 */
+	private final ArrayList<FeatureProvider> terms = new ArrayList<FeatureProvider>();
+	
+	/**
+	 * Weight of each term of the distance.
+	 */
+	private final ArrayList<Double> weights = new ArrayList<Double>();
+	
+	/**
+	 * Registers an image within the metric; the terms are then added by the combined metric.
+	 * 
+	 * @param type of the combined metric
+	 * @param image; should not be null
+	 * 
+	 * @throws NullPointerException if image is null
+	 */
+	protected CompositeMetric(TypeOfMetric type, BufferedImage image) {
+		
+		this.type = type;
+		this.img = image;
+		this.nbBands = ImTool.getNbBandsOf(image);
+	}
+	
+	/**
+	 * Adds a weighted term to the distance.
+	 * 
+	 * @param provider computing the sub-score; should not be null
+	 * @param weight of the sub-score in the distance
+	 * @return the provider actually used (i.e. a previously required one having the same key)
+	 * 
+	 * @throws NullPointerException if provider is null
+	 */
+	protected FeatureProvider addTerm(FeatureProvider provider, double weight) {
+		
+		FeatureProvider shared = this.require(provider);
+		this.terms.add(shared);
+		this.weights.add(weight);
+		return shared;
+	}
+	
+	/**
+	 * Registers a provider whose features are computed for each node, without adding a term to the distance.
+	 * 
+	 * @param provider; should not be null
+	 * @return the provider actually used (i.e. a previously required one having the same key)
+	 * 
+	 * @throws NullPointerException if provider is null
+	 */
+	protected FeatureProvider require(FeatureProvider provider) {
+		
+		for(FeatureProvider p: this.providers) {
+			
+			if(p.getKey().equals(provider.getKey())) {
+				
+				return p;
+			}
+		}
+		this.providers.add(provider);
+		this.offsets.add(this.nbAccumulators);
+		this.nbAccumulators += provider.getNbAccumulators();
+		return provider;
+	}
+
+	@Override
+	public double computeDistances(Node n1, Node n2) {
+		
+		double score = 0;
+		for(int t = 0; t < this.terms.size(); ++t) {
+			
+			score += this.weights.get(t) * this.terms.get(t).score(n1, n2);
+		}
+		return score;
+	}
+
+	@Override
+	public boolean needsPixels() {
+		
+		for(FeatureProvider provider: this.providers) {
+			
+			if(provider.needsPixels()) {
+				
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		for(FeatureProvider provider: this.providers) {
+			
+			provider.reserveBandFeatures(layout);
+		}
+	}
+
+	@Override
+	public void initMF(Node n) {
+		
+		for(FeatureProvider provider: this.providers) {
+			
+			provider.initMF(n);
+		}
+	}
+
+	@Override
+	public void updateMF(Node n) {
+		
+		switch(n.type) {
+		
+			case LEAF: /* ONE PASS OVER THE PIXELS FOR ALL PROVIDERS */
+				double[] accumulators = new double[this.nbAccumulators];
+				ArrayList<FeatureProvider> readers = new ArrayList<FeatureProvider>(this.providers.size());
+				ArrayList<Integer> readerOffsets = new ArrayList<Integer>(this.providers.size());
+				for(int p = 0; p < this.providers.size(); ++p) {
+					
+					FeatureProvider provider = this.providers.get(p);
+					provider.startLeaf(accumulators, this.offsets.get(p));
+					if(provider.readsPixels()) {
+						
+						readers.add(provider);
+						readerOffsets.add(this.offsets.get(p));
+					}
+				}
+				
+				if(!readers.isEmpty()) {
+					
+					int nbReaders = readers.size();
+					double[] values = new double[this.nbBands];
+					for(PixelRuns runs: n.getPixelRuns()) {
+						for(int run = 0; run < runs.getNbRuns(); ++run) {
+							
+							int y = runs.getRow(run);
+							for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+								
+								for(int b = 0; b < this.nbBands; ++b) {
+									
+									values[b] = ImTool.getPixelValue(x, y, b, this.img);
+								}
+								for(int r = 0; r < nbReaders; ++r) {
+									
+									readers.get(r).addPixel(values, accumulators, readerOffsets.get(r));
+								}
+							}
+						}
+					}
+				}
+				
+				for(int p = 0; p < this.providers.size(); ++p) {
+					
+					this.providers.get(p).endLeaf(n, accumulators, this.offsets.get(p));
+				}
+				break;
+				
+			default: /* FROM THE FEATURES OF THE TWO DIRECT SUB-REGIONS (CHILDREN) */
+				for(FeatureProvider provider: this.providers) {
+					
+					provider.merge(n);
+				}
+		}
+	}
+}
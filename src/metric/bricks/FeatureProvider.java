@@ -0,0 +1,173 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.bricks;
+
+import datastructure.Node;
+
+/**
+ * Computes a group of Metric Features (MF) of the nodes and the sub-score of two nodes from them, as a term of a {@link CompositeMetric composite metric}.
+ * 
+ * <p>
+ * A provider is computed once per node whatever the number of terms using it.
+ * For a leaf, the providers reading the pixels share a single pass over them:
+ * <li> {@link FeatureProvider#startLeaf(double[], int)} prepares the accumulators of the provider;
+ * <li> {@link FeatureProvider#addPixel(double[], double[], int)} receives the values of all bands of each pixel;
+ * <li> {@link FeatureProvider#endLeaf(Node, double[], int)} stores the features of the leaf.
+ * 
+ * <p>
+ * The accumulators belong to the caller so that the leaves can be treated by several threads at the same time.
+ *
+ */
+public abstract class FeatureProvider {
+	
+	/**
+	 * Accumulates the values of a pixel.
+	 * 
+	 * @param values of all bands of the pixel; should not be null
+	 * @param accumulators shared by all providers; should not be null
+	 * @param offset position of the accumulators of the provider
+	 */
+	public void addPixel(double[] values, double[] accumulators, int offset) {
+		
+		/* no pixel required by default */
+	}
+	
+	/**
+	 * Stores the features of a leaf once all its pixels are accumulated.
+	 * 
+	 * @param leaf; should not be null
+	 * @param accumulators shared by all providers; should not be null
+	 * @param offset position of the accumulators of the provider
+	 * 
+	 * @throws NullPointerException if leaf is null
+	 */
+	public abstract void endLeaf(Node leaf, double[] accumulators, int offset);
+	
+	/**
+	 * Two providers having the same key compute the same features: only one of them is kept by a composite metric.
+	 * 
+	 * @return the identification of the features computed
+	 */
+	public abstract String getKey();
+	
+	/**
+	 * 
+	 * @return the number of accumulators required by a leaf
+	 */
+	public int getNbAccumulators() {
+		
+		return 0;
+	}
+	
+	/**
+	 * 
+	 * @return true if the provider reads the pixels of the leaves
+	 */
+	public boolean readsPixels() {
+		
+		return this.getNbAccumulators() > 0;
+	}
+	
+	/**
+	 * 
+	 * @return true if the provider reads the pixels of the nodes (not only the ones of the leaves), see {@link Metric#needsPixels()}
+	 */
+	public boolean needsPixels() {
+		
+		return false;
+	}
+	
+	/**
+	 * Prepares the features of a node before its update.
+	 * 
+	 * @param n; should not be null
+	 * 
+	 * @throws NullPointerException if n is null
+	 */
+	public void initMF(Node n) {
+		
+		/* nothing to prepare by default */
+	}
+	
+	/**
+	 * Stores the features of a node from the ones of its children.
+	 * 
+	 * @param n having two children; should not be null
+	 * 
+	 * @throws NullPointerException if n is null
+	 */
+	public abstract void merge(Node n);
+	
+	/**
+	 * Places the band features of the provider in the layout of a creation (see {@link Metric#reserveBandFeatures(BandLayout)}).
+	 * 
+	 * @param layout of the band features of the creation; should not be null
+	 * 
+	 * @throws NullPointerException if layout is null and the provider uses band features
+	 */
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		/* no band features by default */
+	}
+	
+	/**
+	 * Sub-score of two nodes computed from their features.
+	 * 
+	 * @param n1; should not be null
+	 * @param n2; should not be null
+	 * @return the sub-score (~ distance) between 'n1' and 'n2'
+	 * 
+	 * @throws NullPointerException if n1 or n2 is null
+	 */
+	public abstract double score(Node n1, Node n2);
+	
+	/**
+	 * Resets the accumulators of the provider before the pass over the pixels of a leaf.
+	 * 
+	 * @param accumulators shared by all providers; should not be null
+	 * @param offset position of the accumulators of the provider
+	 */
+	public void startLeaf(double[] accumulators, int offset) {
+		
+		/* no accumulator by default */
+	}
+}
@@ -64,7 +64,7 @@ public class Metric implements MetricInterface{
 	 * Current position of feature.
 	 */
 	public static int currentFeaturePos = -1;
-
+	
 	/**
 	 * Image of interest
 	 */
@@ -138,6 +138,88 @@ public class Metric implements MetricInterface{
 		return Double.MAX_VALUE;
 	}
 
+	/**
+	 * Computes the distances between a node and several neighbors at once.
+	 * 
+	 * <p>
+	 * distances[i] is the same as computeDistances(neighbors[i], node), i.e. the order of the nodes of an adjacency created for a new node.
+	 * By default, the pairs are scored one by one; the metrics reading their {@link Node#bandFeatures band features} override it to read the features of the node once 
+	 * and loop over the neighbors without any allocation nor call per band.
+	 * 
+	 * @param node common to all pairs; should not be null
+	 * @param neighbors of the node; should not be null
+	 * @param nbNeighbors number of neighbors to score; should be in [0, neighbors.length]
+	 * @param distances receiving the scores; should have at least nbNeighbors values
+	 * 
+	 * @throws NullPointerException if node, neighbors or distances is null
+	 */
+	public void computeDistances(Node node, Node[] neighbors, int nbNeighbors, double[] distances) {
+		
+		for(int i = 0; i < nbNeighbors; ++i) {
+			
+			distances[i] = this.computeDistances(neighbors[i], node);
+		}
+	}
+	
+	/**
+	 * States if the metric is reducible, i.e. if merging two regions never brings them closer to a third one:
+	 * d(A U B, C) >= min(d(A, C), d(B, C)).
+	 * 
+	 * <p>
+	 * Such a metric builds the same hierarchy whatever the order in which the reciprocal nearest neighbors are merged,
+	 * which allows {@link standard.parallel.bricks.RNNMergings merging them concurrently}.
+	 * The equal distances are ordered by {@link datastructure.Adjacency#compareTieTo(datastructure.Adjacency) the sizes and the leaves of the regions}, which keeps the property.
+	 * 
+	 * @return false by default; true for the metrics guaranteeing the property
+	 */
+	public boolean isReducible() {
+		
+		return false;
+	}
+	
+	/**
+	 * States if the metric, on scalar values, always finds a region closer to an interval of values among the intervals just below and just above it, 
+	 * e.g. the gap between the values of two regions (single linkage) or the range of the values of their union.
+	 * 
+	 * <p>
+	 * With such a metric, the best neighbor of a region is always a contiguous one once the values are sorted: 
+	 * the {@link datastructure.Tree.TypeOfConnectivity#SORTED SORTED connectivity} builds the same hierarchy as ALL with n-1 initial links instead of n*(n-1)/2, 
+	 * as long as the values are distinct.
+	 * 
+	 * @return false by default; true for the metrics guaranteeing the property
+	 */
+	public boolean isIntervalBased() {
+		
+		return false;
+	}
+	
+	/**
+	 * States if the metric reads the pixels of the regions (or structures built from them, e.g. their border points) to merge two nodes, 
+	 * instead of the features of their children only.
+	 * 
+	 * <p>
+	 * Such a metric can not merge regions whose pixels are not in memory, e.g. the roots of the tiles of {@link standard.sequential.OutOfCoreBPT}.
+	 * 
+	 * @return false by default; true for the metrics reading the pixels of the nodes
+	 */
+	public boolean needsPixels() {
+		
+		return false;
+	}
+	
+	/**
+	 * Places the {@link Node#bandFeatures band features} of the metric in the layout of a creation, after the ones of the other metrics sharing the nodes.
+	 * Should be called before the features of any node are prepared; without it, the metric uses the values from 0.
+	 * 
+	 * @param layout of the band features of the creation; should not be null
+	 * 
+	 * @throws NullPointerException if layout is null and the metric uses band features
+	 */
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		/* no band features by default */
+	}
+	
 	/**
 	 * Prepares all the Metric Features (MF) corresponding to the chosen metric.
 	 * @param n; should not be null
@@ -48,6 +48,7 @@ import java.util.TreeSet;
 
 import datastructure.Node;
 import datastructure.Node.TypeOfNode;
+import datastructure.PixelRuns;
 
 /**
  * Utilities helping the definition of some metrics such as: 
@@ -198,11 +199,15 @@ public class ToolsMetric {
 				Arrays.fill(matrice[i], false);
 
 			int x, y, xp, yp;
-			for(Point p : n.getPixels()) {
+			for(PixelRuns runs : n.getPixelRuns()) {
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
 
-				x = p.x - minX;
-				y = p.y - minY;
-				matrice[x][y]=true;
+					y = runs.getRow(run) - minY;
+					for(x = runs.getStart(run) - minX; x < runs.getEnd(run) - minX; ++x) {
+
+						matrice[x][y]=true;
+					}
+				}
 			}
 
 			/* For each point */
@@ -263,19 +268,22 @@ public class ToolsMetric {
 			int minY = Integer.MAX_VALUE;
 			int maxY = Integer.MIN_VALUE;
 	
-			for(Point p: n.getPixels()) {	
-				
-				int x= p.x;
-				int y= p.y;
-	
-				if(x < minX)
-					minX = x;
-				if(x > maxX)
-					maxX = x;
-				if(y < minY)
-					minY = y;
-				if(y > maxY)
-					maxY = y;
+			for(PixelRuns runs: n.getPixelRuns()) {
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
+					
+					int y = runs.getRow(run);
+					int firstX = runs.getStart(run);
+					int lastX = runs.getEnd(run) - 1;
+		
+					if(firstX < minX)
+						minX = firstX;
+					if(lastX > maxX)
+						maxX = lastX;
+					if(y < minY)
+						minY = y;
+					if(y > maxY)
+						maxY = y;
+				}
 			}
 			
 			n.boundingBox[0]=minX;
@@ -41,10 +41,10 @@
 
 package metric.color;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -145,13 +145,18 @@ public class NdviMetric extends Metric implements MetricInterface{
 
 			double meanR = 0.0; // mean of the Red pixels values of the region.
 			double meanNIR = 0.0; // mean of the NIR pixels values of the region.
-			for(Point point: n.getPixels()){
+			for(PixelRuns runs: n.getPixelRuns()){
+				for(int run = 0; run < runs.getNbRuns(); ++run){
+					
+					int y = runs.getRow(run);
+					for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
 
-				r = ImTool.getPixelValue(point.x, point.y, rindex, this.img);
-				nir = ImTool.getPixelValue(point.x, point.y, this.nirindex, this.img);
-				meanR += r;
-				meanNIR += nir;
-				
+						r = ImTool.getPixelValue(x, y, rindex, this.img);
+						nir = ImTool.getPixelValue(x, y, this.nirindex, this.img);
+						meanR += r;
+						meanNIR += nir;
+					}
+				}
 			}
 			meanR /= n.getSize();
 			meanNIR /= n.getSize();
@@ -41,11 +41,12 @@
 
 package metric.color;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.BandKernels;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -66,14 +67,14 @@ public class Ominmax extends Metric implements MetricInterface {
 	}
 	
 	/**
-	 * Indicates, for each band of the image, the location of the max feature for all nodes
+	 * Number of bands of the image.
 	 */
-	ArrayList<Integer> maxPos;
-
+	int nbBands;
+	
 	/**
-	 * Indicates, for each band of the image, the location of the min feature for all nodes
+	 * Position of the min of the first band in the band features of the nodes (0 until {@link Ominmax#reserveBandFeatures(BandLayout) reserved}); the min and the max of each band are interleaved.
 	 */
-	ArrayList<Integer> minPos;
+	int offset;
 
 	/**
 	 * Registers an image within the metric and creates the radiometric object based on the min and the max values of the pixels.
@@ -85,23 +86,20 @@ public class Ominmax extends Metric implements MetricInterface {
 		
 		this.type = TypeOfMetric.OMIN_MAX;
 		this.img = image;
+		this.nbBands = ImTool.getNbBandsOf(this.img);
 		
-		/**
-		 * Allocate spaces for the 'minPos' and 'maxPos' array lists.
-		 */
-		this.minPos = new ArrayList<Integer>(ImTool.getNbBandsOf(this.img));
-		this.maxPos = new ArrayList<Integer>(ImTool.getNbBandsOf(this.img));
-		
-		/* Define the minimum pixel value position in the list of MF. */
-		for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
-			
-			this.minPos.add(++Metric.currentFeaturePos);
-			this.maxPos.add(++Metric.currentFeaturePos);
-		
-		}
 		Log.println(String.valueOf(Context.RADIOMETRIC_MIN_MAX), "Metric prepared!");
 	}
 	
+	/**
+	 * Reserves the min and the max of each band in the band features.
+	 */
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		this.offset = layout.reserve(2 * this.nbBands);
+	}
+	
 	/**
 	 * Compute a distance between 'n1' and 'n2' using the Metric Features (MF) such as:
 	 * - min: minimum value of the pixels of the region among the channels (~ bands).
@@ -115,21 +113,40 @@ public class Ominmax extends Metric implements MetricInterface {
 	@Override
 	public double computeDistances(Node n1, Node n2) {
 		
-		double score = 0;
-		double miniMini, maxiMaxi;
-	
-		int nbBands = ImTool.getNbBandsOf(this.img);
-		for(int b = 0; b < nbBands; ++b){
+		/*
+		 * Sum the differences between the max of max and the min of min of each channel (~ band).
+		 */
+		return BandKernels.minMaxSpread(n1.bandFeatures, this.offset, n2.bandFeatures, this.offset, this.nbBands);
+	}
+
+	/**
+	 * Computes the distances between a node and several neighbors at once, reading the min and the max of each neighbor in its own band features.
+	 * 
+	 * @param node common to all pairs; should not be null
+	 * @param neighbors of the node; should not be null
+	 * @param nbNeighbors number of neighbors to score; should be in [0, neighbors.length]
+	 * @param distances receiving the scores; should have at least nbNeighbors values
+	 * 
+	 * @throws NullPointerException if node, neighbors or distances is null
+	 */
+	@Override
+	public void computeDistances(Node node, Node[] neighbors, int nbNeighbors, double[] distances) {
+		
+		/* same sums as computeDistances(neighbor, node) */
+		double[] nodeFeatures = node.bandFeatures;
+		for(int i = 0; i < nbNeighbors; ++i) {
 			
-			/*
-			 * Sum the differences between the max of max and the min of min of each channel (~ band).
-			 */
-			miniMini = Math.min(n1.features.get(this.minPos.get(b)), n2.features.get(this.minPos.get(b)));
-			maxiMaxi = Math.max(n1.features.get(this.maxPos.get(b)), n2.features.get(this.maxPos.get(b)));
-			score += Math.abs(maxiMaxi - miniMini);
+			distances[i] = BandKernels.minMaxSpread(neighbors[i].bandFeatures, this.offset, nodeFeatures, this.offset, this.nbBands);
 		}
+	}
+
+	/**
+	 * The spread of the union of three regions is never lower than the spread of two of them.
+	 */
+	@Override
+	public boolean isReducible() {
 		
-		return score;
+		return true;
 	}
 
 	/**
@@ -144,11 +161,11 @@ public class Ominmax extends Metric implements MetricInterface {
 	public void initMF(Node n) {
 
 		/* - Initialize the minimum value with the possible maximum value of double. */
-		int nbBands = ImTool.getNbBandsOf(this.img);
-		for(int b = 0; b < nbBands; ++b){
+		double[] values = BandKernels.of(n, this.offset + 2 * this.nbBands);
+		for(int b = 0; b < this.nbBands; ++b){
 					
-			n.features.put(this.minPos.get(b), Double.MAX_VALUE);
-			n.features.put(this.maxPos.get(b), Double.MIN_VALUE);
+			values[this.offset + 2 * b] = Double.MAX_VALUE;
+			values[this.offset + 2 * b + 1] = Double.MIN_VALUE;
 		}
 	}
 
@@ -163,41 +180,44 @@ public class Ominmax extends Metric implements MetricInterface {
 	@Override
 	public void updateMF(Node n) {
 		
-		int minPosb;
-		int maxPosb;
+		double[] values = BandKernels.of(n, this.offset + 2 * this.nbBands);
 		switch(n.type){
 		
 			case LEAF: /* GET THE MIN AND MAX FOR EACH CHANNEL (~ BAND). */
 				
 				double pixelValue;
-				for(Point point: n.getPixels()){
-					for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				for(PixelRuns runs: n.getPixelRuns()){
+					for(int run = 0; run < runs.getNbRuns(); ++run){
 						
-						minPosb = this.minPos.get(b);
-						pixelValue = ImTool.getPixelValue(point.x, point.y, b, this.img);
-						if(n.features.get(minPosb) > pixelValue){
-							
-							n.features.put(minPosb, pixelValue);
-
-						}
-						maxPosb = this.maxPos.get(b);
-						if(n.features.get(maxPosb) < pixelValue){
-							
-							n.features.put(maxPosb, pixelValue);
-							
+						int y = runs.getRow(run);
+						for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
+							for(int b = 0; b < this.nbBands; ++b){
+								
+								int minPosb = this.offset + 2 * b;
+								pixelValue = ImTool.getPixelValue(x, y, b, this.img);
+								if(values[minPosb] > pixelValue){
+									
+									values[minPosb] = pixelValue;
+		
+								}
+								if(values[minPosb + 1] < pixelValue){
+									
+									values[minPosb + 1] = pixelValue;
+									
+								}
+							}
 						}
 					}
 				}
 				break;
 				
 			default: /* GET THE MIN OF MIN AND THE MAX OF MAX OF THE VALUES BETWEEN THE TWO DIRECT SUB-REGIONS (CHILDREN) */
-				for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				double[] left = n.leftNode.bandFeatures;
+				double[] right = n.rightNode.bandFeatures;
+				for(int i = this.offset; i < this.offset + 2 * this.nbBands; i += 2){
 					
-					minPosb = this.minPos.get(b);
-					n.features.put(minPosb, Math.min(n.leftNode.features.get(minPosb), n.rightNode.features.get(minPosb)));
-
-					maxPosb = this.maxPos.get(b);
-					n.features.put(maxPosb, Math.max(n.leftNode.features.get(maxPosb), n.rightNode.features.get(maxPosb)));
+					values[i] = Math.min(left[i], right[i]);
+					values[i + 1] = Math.max(left[i + 1], right[i + 1]);
 				}
 		}
 	}
@@ -41,11 +41,11 @@
 
 package metric.color;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -87,9 +87,8 @@ public class Omse extends Metric implements MetricInterface{
 		int s2 = n2.getSize();
 		double totalSize = s1 + s2;
 		
-		ArrayList<Point> points = new ArrayList<Point>();
-		points.addAll(n1.getPixels());
-		points.addAll(n2.getPixels());
+		ArrayList<PixelRuns> regions = n1.getPixelRuns();
+		regions.addAll(n2.getPixelRuns());
 
 		for(int band = 0; band < this.nbBands; ++band) {
 			
@@ -98,11 +97,17 @@ public class Omse extends Metric implements MetricInterface{
 
 			double mr1ur2 = combineMean(n1.features.get(posBand), n2.features.get(posBand), s1, s2);
 			
-			for(Point p: points) {
-				
-				double pixVal = ImTool.getPixelValue(p.x, p.y, band, this.img);
-				double diff = pixVal - mr1ur2;
-				scoreB += Math.pow(diff, 2.);
+			for(PixelRuns runs: regions) {
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
+					
+					int y = runs.getRow(run);
+					for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+						
+						double pixVal = ImTool.getPixelValue(x, y, band, this.img);
+						double diff = pixVal - mr1ur2;
+						scoreB += Math.pow(diff, 2.);
+					}
+				}
 			}
 			
 			score += scoreB;
@@ -113,6 +118,12 @@ public class Omse extends Metric implements MetricInterface{
 		return score;
 	}
 
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+
 	@Override
 	public void initMF(Node n) {
 		
@@ -129,9 +140,15 @@ public class Omse extends Metric implements MetricInterface{
 				for(int band = 0; band < this.nbBands; ++band){
 					
 					double mean = 0.0;
-					for(Point p: n.getPixels()){
+					for(PixelRuns runs: n.getPixelRuns()){
+						for(int run = 0; run < runs.getNbRuns(); ++run){
+							
+							int y = runs.getRow(run);
+							for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
 
-						mean += ImTool.getPixelValue(p.x, p.y, band, this.img);
+								mean += ImTool.getPixelValue(x, y, band, this.img);
+							}
+						}
 					}
 					mean /= n.getSize();			
 					int posB = this.pos.get(band);
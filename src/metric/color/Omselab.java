@@ -41,9 +41,11 @@
 
 package metric.color;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
 import datastructure.Node;
+import datastructure.PixelRuns;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -88,28 +90,24 @@ public class Omselab extends Metric implements MetricInterface{
 		double mr1ur2_2 = combineMean(n1.features.get(this.pos[1]), n2.features.get(this.pos[1]), s1, s2);
 		double mr1ur2_3 = combineMean(n1.features.get(this.pos[2]), n2.features.get(this.pos[2]), s1, s2);
 		
-		for(Point p: n1.getPixels()) {
-			
-			int r = ImTool.getNormPixelValues(p.x, p.y, 0, this.img);
-			int g = ImTool.getNormPixelValues(p.x, p.y, 1, this.img);
-			int b = ImTool.getNormPixelValues(p.x, p.y, 2, this.img);
-			double[] lab = ImTool.rgb2lab(r, g, b);
-			
-			score1 += Math.pow((lab[0] - mr1ur2_1), 2.0);
-			score2 += Math.pow((lab[1] - mr1ur2_2), 2.0);
-			score3 += Math.pow((lab[2] - mr1ur2_3), 2.0);
-		}
-		
-		for(Point p: n2.getPixels()) {
-			
-			int r = ImTool.getNormPixelValues(p.x, p.y, 0, this.img);
-			int g = ImTool.getNormPixelValues(p.x, p.y, 1, this.img);
-			int b = ImTool.getNormPixelValues(p.x, p.y, 2, this.img);
-			double[] lab = ImTool.rgb2lab(r, g, b);
-			
-			score1 += Math.pow((lab[0] - mr1ur2_1), 2.0);
-			score2 += Math.pow((lab[1] - mr1ur2_2), 2.0);
-			score3 += Math.pow((lab[2] - mr1ur2_3), 2.0);
+		ArrayList<PixelRuns> regions = n1.getPixelRuns();
+		regions.addAll(n2.getPixelRuns());
+		for(PixelRuns runs: regions) {
+			for(int run = 0; run < runs.getNbRuns(); ++run) {
+				
+				int y = runs.getRow(run);
+				for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+					
+					int r = ImTool.getNormPixelValues(x, y, 0, this.img);
+					int g = ImTool.getNormPixelValues(x, y, 1, this.img);
+					int b = ImTool.getNormPixelValues(x, y, 2, this.img);
+					double[] lab = ImTool.rgb2lab(r, g, b);
+					
+					score1 += Math.pow((lab[0] - mr1ur2_1), 2.0);
+					score2 += Math.pow((lab[1] - mr1ur2_2), 2.0);
+					score3 += Math.pow((lab[2] - mr1ur2_3), 2.0);
+				}
+			}
 		}
 		
 		score1 /= totalSize;
@@ -119,6 +117,12 @@ public class Omselab extends Metric implements MetricInterface{
 		return score1 + score2 + score3;
 	}
 
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+
 	@Override
 	public void initMF(Node n) {
 		
@@ -136,17 +140,22 @@ public class Omselab extends Metric implements MetricInterface{
 		
 			case LEAF: 
 
-				for(Point p: n.getPixels()){
-
-					int r = ImTool.getNormPixelValues(p.x, p.y, 0, this.img);
-					int g = ImTool.getNormPixelValues(p.x, p.y, 1, this.img);
-					int b = ImTool.getNormPixelValues(p.x, p.y, 2, this.img);
-					double[] lab = ImTool.rgb2lab(r, g, b);
-					
-					meanL += lab[0];
-					meanA += lab[1];
-					meanB += lab[2];
+				for(PixelRuns runs: n.getPixelRuns()){
+					for(int run = 0; run < runs.getNbRuns(); ++run){
+						
+						int y = runs.getRow(run);
+						for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
 
+							int r = ImTool.getNormPixelValues(x, y, 0, this.img);
+							int g = ImTool.getNormPixelValues(x, y, 1, this.img);
+							int b = ImTool.getNormPixelValues(x, y, 2, this.img);
+							double[] lab = ImTool.rgb2lab(r, g, b);
+							
+							meanL += lab[0];
+							meanA += lab[1];
+							meanB += lab[2];
+						}
+					}
 				}
 				
 				meanL /= n.getSize();
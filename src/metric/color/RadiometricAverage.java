@@ -41,11 +41,12 @@
 
 package metric.color;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.BandKernels;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -61,9 +62,14 @@ import utils.Log;
 public class RadiometricAverage extends Metric implements MetricInterface{
 
 	/**
-	 * Location of the average color feature in each node for each band.
+	 * Number of bands of the image.
 	 */
-	ArrayList<Integer> avgPos = new ArrayList<Integer>();
+	int nbBands;
+	
+	/**
+	 * Position of the average of the first band in the band features of the nodes (0 until {@link RadiometricAverage#reserveBandFeatures(BandLayout) reserved}).
+	 */
+	int offset;
 	
 	/**
 	 * Register an image within the metric and create the radiometric object based on the average values of the pixels.
@@ -76,19 +82,20 @@ public class RadiometricAverage extends Metric implements MetricInterface{
 		this.type = TypeOfMetric.RADIOMETRIC_AVERAGE;
 		this.img = image;
 
-		/* - Define the minimum pixel value position in the list of MF.
-		 * - Initialize the minimum value with the possible maximum value of double.
-		 */
-		this.avgPos = new ArrayList<Integer>(ImTool.getNbBandsOf(this.img));
-		for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
-			
-			this.avgPos.add(++Metric.currentFeaturePos);
-		
-		}
+		this.nbBands = ImTool.getNbBandsOf(this.img);
 		
 		Log.println(String.valueOf(this.type), "Metric prepared!");
 	}
 	
+	/**
+	 * Reserves the average of each band in the band features.
+	 */
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		this.offset = layout.reserve(this.nbBands);
+	}
+	
 	/**
 	 * Compute a distance between 'n1' and 'n2' using the Metric Features (MF):
 	 * - average: average value of the pixels of the region among the channels (~ bands).
@@ -101,17 +108,31 @@ public class RadiometricAverage extends Metric implements MetricInterface{
 	@Override
 	public double computeDistances(Node n1, Node n2) {
 		
-		double score = 0;
-	
-		for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+		/*
+		 * Sum the differences between the averages of the two nodes (~ regions) of each channel (~ band).
+		 */
+		return BandKernels.l1(n2.bandFeatures, this.offset, n1.bandFeatures, this.offset, this.nbBands);
+	}
+
+	/**
+	 * Computes the distances between a node and several neighbors at once, reading the averages of each neighbor in its own band features.
+	 * 
+	 * @param node common to all pairs; should not be null
+	 * @param neighbors of the node; should not be null
+	 * @param nbNeighbors number of neighbors to score; should be in [0, neighbors.length]
+	 * @param distances receiving the scores; should have at least nbNeighbors values
+	 * 
+	 * @throws NullPointerException if node, neighbors or distances is null
+	 */
+	@Override
+	public void computeDistances(Node node, Node[] neighbors, int nbNeighbors, double[] distances) {
+		
+		/* same sums as computeDistances(neighbor, node) */
+		double[] nodeAverages = node.bandFeatures;
+		for(int i = 0; i < nbNeighbors; ++i) {
 			
-			/*
-			 * Compute the difference between the two nodes (~ regions) and to the sum of all values of each channel (~ band).
-			 */
-			int avgPosb = this.avgPos.get(b);
-			score += Math.abs(n2.features.get(avgPosb) - n1.features.get(avgPosb));
+			distances[i] = BandKernels.l1(nodeAverages, this.offset, neighbors[i].bandFeatures, this.offset, this.nbBands);
 		}
-		return score;
 	}
 
 	/**
@@ -122,6 +143,7 @@ public class RadiometricAverage extends Metric implements MetricInterface{
 	@Override
 	public void initMF(Node n) {
 
+		BandKernels.of(n, this.offset + this.nbBands);
 	}
 
 	/**
@@ -134,34 +156,38 @@ public class RadiometricAverage extends Metric implements MetricInterface{
 	@Override
 	public void updateMF(Node n) {
 		
+		double[] values = BandKernels.of(n, this.offset + this.nbBands);
 		switch(n.type){
 		
 			case LEAF: /* GET THE AVERAGE PIXEL VALUE FOR EACH CHANNEL (~ BAND). */
-				for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				for(int b = 0; b < this.nbBands; ++b){
 					
-					int avgPosb = this.avgPos.get(b);
 					double sumPixelValues = 0.0;
-					for(Point point: n.getPixels()){
-						
-						sumPixelValues += ImTool.getPixelValue(point.x, point.y, b, this.img);
-						
+					for(PixelRuns runs: n.getPixelRuns()){
+						for(int run = 0; run < runs.getNbRuns(); ++run){
+							
+							int y = runs.getRow(run);
+							for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
+								
+								sumPixelValues += ImTool.getPixelValue(x, y, b, this.img);
+							}
+						}
 					}
-					n.features.put(avgPosb, sumPixelValues);
+					values[this.offset + b] = sumPixelValues;
 					
 				}
 				break;
 				
 			default: /* COMPUTE THE AVERAGE PIXEL VALUES BETWEEN THE TWO DIRECT SUB-REGIONS (CHILDREN) */
-				for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				for(int b = 0; b < this.nbBands; ++b){
 					
-					int avgPosb = this.avgPos.get(b);
 					Node leftChild = n.leftNode;
 					Node rightChild = n.rightNode;
-					double radiometricAvg = ((leftChild.features.get(avgPosb) * leftChild.getSize())
-							+ (rightChild.features.get(avgPosb) * rightChild.getSize()))
+					double radiometricAvg = ((leftChild.bandFeatures[this.offset + b] * leftChild.getSize())
+							+ (rightChild.bandFeatures[this.offset + b] * rightChild.getSize()))
 							/ (leftChild.getSize() + rightChild.getSize());
 					
-					n.features.put(avgPosb, radiometricAvg);
+					values[this.offset + b] = radiometricAvg;
 				}
 		}
 	}
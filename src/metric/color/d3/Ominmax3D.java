@@ -44,11 +44,11 @@ package metric.color.d3;
 import java.util.ArrayList;
 
 import datastructure.Node;
+import datastructure.d3.VoxelStore;
 import metric.bricks.MetricInterface;
 import metric.bricks.d3.Metric3D;
 import utils.Log;
 import utils.d3.RGBStruct;
-import utils.d3.Voxel;
 
 /**
  * 
@@ -170,7 +170,8 @@ public class Ominmax3D extends Metric3D implements MetricInterface {
 			case LEAF: /* GET THE MIN AND MAX FOR EACH CHANNEL (~ BAND). */
 				
 				double voxelColorValue;
-				for(Voxel voxel: n.getVoxels()){
+				VoxelStore.Cursor voxel = n.getVoxelCursor();
+				while(voxel.next()){
 					for(int b = 0; b < this.nbBands; ++b){
 						
 						minPosb = this.minPos.get(b);
@@ -44,6 +44,7 @@ package metric.combination;
 import java.awt.image.BufferedImage;
 
 import datastructure.Node;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import metric.color.Ominmax;
@@ -160,6 +161,19 @@ public class Ocolcont extends Metric implements MetricInterface{
 		return score;
 	}
 
+	@Override
+	public boolean needsPixels() {
+		
+		return this.ocol.needsPixels() || this.ocont.needsPixels();
+	}
+
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		this.ocol.reserveBandFeatures(layout);
+		this.ocont.reserveBandFeatures(layout);
+	}
+
 	@Override
 	public void initMF(Node n) {
 		
@@ -0,0 +1,118 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.features;
+
+import java.util.TreeSet;
+
+import datastructure.Node;
+import metric.bricks.FeatureProvider;
+import metric.bricks.Metric;
+import metric.shape.FastCompactness;
+
+/**
+ * Compactness of the regions computed from their size and their {@link Node#borderPoints border points}.
+ * 
+ * <p>
+ * The sub-score is the difference between the compactness of the potential father and the average compactness of the two regions.
+ *
+ */
+public class CompactnessFeatures extends FeatureProvider {
+
+	/**
+	 * Position of the compactness value in the metric features (MF) list.
+	 */
+	private final int compactPos;
+	
+	/**
+	 * Allocates the position of the feature.
+	 */
+	public CompactnessFeatures() {
+		
+		this.compactPos = ++Metric.currentFeaturePos;
+	}
+	
+	@Override
+	public void endLeaf(Node leaf, double[] accumulators, int offset) {
+		
+		this.merge(leaf);
+	}
+	
+	@Override
+	public String getKey() {
+		
+		return "compactness";
+	}
+	
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+	
+	@Override
+	public void merge(Node n) {
+		
+		n.features.put(this.compactPos, FastCompactness.computeCompactness(n.getSize(), n.borderPoints.size()));
+	}
+	
+	@Override
+	public double score(Node n1, Node n2) {
+		
+		double averageChildren = (n1.features.get(this.compactPos) + n2.features.get(this.compactPos)) / 2.0;
+		int sizeFakeFather = n1.getSize() + n2.getSize();
+		
+		// Border points fake father.
+		TreeSet<Integer> borderPoints = new TreeSet<Integer>();
+		borderPoints.addAll(n1.borderPoints);
+		borderPoints.addAll(n2.borderPoints);
+		for(Integer p: n1.borderPoints){
+			
+			if(n2.borderPoints.contains(p)){
+				
+				borderPoints.remove(p);
+			}
+		}
+		
+		double compactnessPotentialFather = FastCompactness.computeCompactness(sizeFakeFather, borderPoints.size());
+		return Math.abs(compactnessPotentialFather - averageChildren);
+	}
+}
@@ -0,0 +1,155 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.features;
+
+import java.util.ArrayList;
+
+import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.FeatureProvider;
+import metric.bricks.Metric;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.shape.Elongation;
+
+/**
+ * Elongation of the regions computed from their pixels and their bounding box.
+ * 
+ * <p>
+ * The sub-score is the difference between the elongation of the potential father and the average elongation of the two regions.
+ *
+ */
+public class ElongationFeatures extends FeatureProvider {
+
+	/**
+	 * Position of the elongation feature.
+	 */
+	private final int elongPos;
+	
+	/**
+	 * Height of the image.
+	 */
+	private final int imgHeight;
+	
+	/**
+	 * Width of the image.
+	 */
+	private final int imgWidth;
+	
+	/**
+	 * Defining how to compute the elongation (e.g.: fast, simple, ...).
+	 */
+	private final TypeOfMetric typeOfElongation;
+	
+	/**
+	 * Allocates the position of the feature.
+	 * 
+	 * @param typeOfElongation defining how to compute the elongation (e.g.: fast, simple, ...); should not be null
+	 * @param imgWidth should be > 0
+	 * @param imgHeight should be > 0
+	 */
+	public ElongationFeatures(TypeOfMetric typeOfElongation, int imgWidth, int imgHeight) {
+		
+		this.typeOfElongation = typeOfElongation;
+		this.imgWidth = imgWidth;
+		this.imgHeight = imgHeight;
+		this.elongPos = ++Metric.currentFeaturePos;
+	}
+	
+	@Override
+	public void endLeaf(Node leaf, double[] accumulators, int offset) {
+		
+		this.merge(leaf);
+	}
+	
+	@Override
+	public String getKey() {
+		
+		return "elongation:"+ this.typeOfElongation;
+	}
+	
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+	
+	@Override
+	public void merge(Node n) {
+		
+		n.features.put(this.elongPos, this.elongationOf(n.getSize(), n, null, n.boundingBox));
+	}
+	
+	@Override
+	public double score(Node n1, Node n2) {
+		
+		double averageChildren = (n1.features.get(this.elongPos) + n2.features.get(this.elongPos)) / 2.0;
+		
+		//Bounding box fake father
+		int [] boundingBox = new int[4];
+		boundingBox[0] = Math.min(n1.boundingBox[0], n2.boundingBox[0]);
+		boundingBox[1] = Math.max(n1.boundingBox[1], n2.boundingBox[1]);
+		boundingBox[2] = Math.min(n1.boundingBox[2], n2.boundingBox[2]);
+		boundingBox[3] = Math.max(n1.boundingBox[3], n2.boundingBox[3]);
+		
+		double elongationPotentialFather = this.elongationOf(n1.getSize() + n2.getSize(), n1, n2, boundingBox);
+		return Math.abs(elongationPotentialFather - averageChildren);
+	}
+	
+	/**
+	 * Computes the elongation of one or two regions, without gathering their pixels when the result does not depend on them.
+	 * 
+	 * @param size number of pixels of the regions
+	 * @param n1 first region; should not be null
+	 * @param n2 second region; can be null
+	 * @param boundingBox encompassing the regions; should not be null
+	 * @return the elongation
+	 */
+	private double elongationOf(int size, Node n1, Node n2, int[] boundingBox) {
+		
+		ArrayList<PixelRuns> regions = n1.getPixelRuns();
+		if(n2 != null) {
+			
+			regions.addAll(n2.getPixelRuns());
+		}
+		return Elongation.computeElongation(this.typeOfElongation, size, regions, boundingBox, this.imgWidth, this.imgHeight);
+	}
+}
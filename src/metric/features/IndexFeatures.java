@@ -0,0 +1,164 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.features;
+
+import datastructure.Node;
+import metric.bricks.FeatureProvider;
+import metric.bricks.Metric;
+
+/**
+ * Normalized difference index of two bands: (A - B) / (A + B), computed on the mean values of the bands (e.g. NDVI, NDWI).
+ * 
+ * <p>
+ * The index of a node is the average of the ones of its children weighted by their sizes.
+ * The sub-score is the absolute difference between the indices of the two regions.
+ *
+ */
+public class IndexFeatures extends FeatureProvider {
+
+	/**
+	 * Identification of the band A.
+	 */
+	private final int bandA;
+	
+	/**
+	 * Identification of the band B.
+	 */
+	private final int bandB;
+	
+	/**
+	 * Position of the index in the metric features (MF) list.
+	 */
+	private final int indexPos;
+	
+	/**
+	 * Allocates the position of the feature.
+	 * 
+	 * @param bandA identification of the band A; should be a band of the image
+	 * @param bandB identification of the band B; should be a band of the image
+	 */
+	public IndexFeatures(int bandA, int bandB) {
+		
+		this.bandA = bandA;
+		this.bandB = bandB;
+		this.indexPos = ++Metric.currentFeaturePos;
+	}
+	
+	/**
+	 * NDVI = (NIR - R) / (NIR + R).
+	 * 
+	 * <p>
+	 * (!) For this prototype, the R and NIR bands are not accurate: the first and the last bands.
+	 * 
+	 * @param nbBands number of bands of the image; should be > 0
+	 * @return the provider of the ndvi
+	 */
+	public static IndexFeatures ndvi(int nbBands) {
+		
+		int rindex = 0;
+		int nirindex = nbBands > 1 ? nbBands - 1 : 0;
+		return new IndexFeatures(nirindex, rindex);
+	}
+	
+	/**
+	 * NDWI = (G - NIR) / (G + NIR).
+	 * 
+	 * <p>
+	 * (!) For this prototype, the G and NIR bands are not accurate: the second and the last bands.
+	 * 
+	 * @param nbBands number of bands of the image; should be > 0
+	 * @return the provider of the ndwi
+	 */
+	public static IndexFeatures ndwi(int nbBands) {
+		
+		int gindex = nbBands > 1 ? 1 : 0;
+		int nirindex = nbBands > 1 ? nbBands - 1 : 0;
+		return new IndexFeatures(gindex, nirindex);
+	}
+	
+	@Override
+	public void addPixel(double[] values, double[] accumulators, int offset) {
+		
+		accumulators[offset] += values[this.bandA];
+		accumulators[offset + 1] += values[this.bandB];
+	}
+	
+	@Override
+	public void endLeaf(Node leaf, double[] accumulators, int offset) {
+		
+		double meanA = accumulators[offset] / leaf.getSize();
+		double meanB = accumulators[offset + 1] / leaf.getSize();
+		leaf.features.put(this.indexPos, (meanA - meanB) / (meanA + meanB));
+	}
+	
+	@Override
+	public String getKey() {
+		
+		return "index:"+ this.bandA +":"+ this.bandB;
+	}
+	
+	@Override
+	public int getNbAccumulators() {
+		
+		return 2;
+	}
+	
+	@Override
+	public void merge(Node n) {
+		
+		double index = (n.leftNode.features.get(this.indexPos) * n.leftNode.getSize() + n.rightNode.features.get(this.indexPos) * n.rightNode.getSize()) / (n.leftNode.getSize() + n.rightNode.getSize());
+		n.features.put(this.indexPos, index);
+	}
+	
+	@Override
+	public double score(Node n1, Node n2) {
+		
+		return Math.abs(n1.features.get(this.indexPos) - n2.features.get(this.indexPos));
+	}
+	
+	@Override
+	public void startLeaf(double[] accumulators, int offset) {
+		
+		accumulators[offset] = 0.0;
+		accumulators[offset + 1] = 0.0;
+	}
+}
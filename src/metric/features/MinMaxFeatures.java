@@ -0,0 +1,184 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package metric.features;
+
+import datastructure.Node;
+import metric.bricks.BandKernels;
+import metric.bricks.BandLayout;
+import metric.bricks.FeatureProvider;
+
+/**
+ * Minimum and maximum value of each band (RADIOMETRIC_MIN_MAX).
+ * 
+ * <p>
+ * The sub-score sums, for each band, the difference between the max of max and the min of min of the two regions, then normalizes it.
+ *
+ */
+public class MinMaxFeatures extends FeatureProvider {
+
+	/**
+	 * Number of bands of the image.
+	 */
+	private final int nbBands;
+	
+	/**
+	 * Position of the min of the first band in the band features of the nodes (0 until {@link MinMaxFeatures#reserveBandFeatures(BandLayout) reserved}); the min and the max of each band are interleaved.
+	 */
+	private int offset;
+	
+	/**
+	 * 
+	 * @param nbBands number of bands of the image; should be > 0
+	 */
+	public MinMaxFeatures(int nbBands) {
+		
+		this.nbBands = nbBands;
+	}
+	
+	@Override
+	public void addPixel(double[] values, double[] accumulators, int offset) {
+		
+		for(int b = 0; b < this.nbBands; ++b) {
+			
+			double pixelValue = values[b];
+			int a = offset + 2 * b;
+			if(accumulators[a] > pixelValue) {
+				
+				accumulators[a] = pixelValue;
+			}
+			if(accumulators[a + 1] < pixelValue) {
+				
+				accumulators[a + 1] = pixelValue;
+			}
+		}
+	}
+	
+	@Override
+	public void endLeaf(Node leaf, double[] accumulators, int offset) {
+		
+		/* the accumulators already have the layout of the band features */
+		System.arraycopy(accumulators, offset, BandKernels.of(leaf, this.offset + 2 * this.nbBands), this.offset, 2 * this.nbBands);
+	}
+	
+	@Override
+	public String getKey() {
+		
+		return "minmax";
+	}
+	
+	@Override
+	public int getNbAccumulators() {
+		
+		return 2 * this.nbBands;
+	}
+	
+	@Override
+	public void initMF(Node n) {
+		
+		/* - Initialize the minimum value with the possible maximum value of double. */ 
+		double[] values = BandKernels.of(n, this.offset + 2 * this.nbBands);
+		for(int b = 0; b < this.nbBands; ++b){
+			
+			values[this.offset + 2 * b] = Double.MAX_VALUE; // ADDING FICTIONNAL INITIAL MINIMUM VALUE.
+			values[this.offset + 2 * b + 1] = Double.MIN_VALUE; // ADDING FICTIONNAL INITIAL MAXIMUM VALUE.
+		}
+	}
+	
+	@Override
+	public void merge(Node n) {
+		
+		double[] values = BandKernels.of(n, this.offset + 2 * this.nbBands);
+		double[] left = n.leftNode.bandFeatures;
+		double[] right = n.rightNode.bandFeatures;
+		for(int i = this.offset; i < this.offset + 2 * this.nbBands; i += 2){
+			
+			values[i] = Math.min(left[i], right[i]);
+			values[i + 1] = Math.max(left[i + 1], right[i + 1]);
+		}
+	}
+	
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		this.offset = layout.reserve(2 * this.nbBands);
+	}
+	
+	@Override
+	public double score(Node n1, Node n2) {
+		
+		double radiometricScore = 0;
+		double min = Double.MAX_VALUE;
+		double max = Double.MIN_VALUE;
+		double[] values1 = n1.bandFeatures;
+		double[] values2 = n2.bandFeatures;
+		for(int i = this.offset; i < this.offset + 2 * this.nbBands; i += 2){
+
+			/* Sum the differences between the max of max and the min of min of each channel (~ band). */
+			double miniMini = Math.min(values1[i], values2[i]);
+			double maxiMaxi = Math.max(values1[i + 1], values2[i + 1]);
+			double bscore = Math.abs(maxiMaxi - miniMini);			
+			radiometricScore += bscore;
+
+			if(min > bscore)
+				min = bscore;
+			if(max < bscore)
+				max = bscore;
+		}
+		
+		/* normalize radiometric score */ 
+		double normalizedRadiometricScore;
+		if(radiometricScore > min)
+			normalizedRadiometricScore = (radiometricScore - min) / (max - min);
+		else normalizedRadiometricScore = radiometricScore;
+		return normalizedRadiometricScore / this.nbBands;
+	}
+	
+	@Override
+	public void startLeaf(double[] accumulators, int offset) {
+		
+		for(int b = 0; b < this.nbBands; ++b) {
+			
+			accumulators[offset + 2 * b] = Double.MAX_VALUE;
+			accumulators[offset + 2 * b + 1] = Double.MIN_VALUE;
+		}
+	}
+}
@@ -43,10 +43,10 @@ package metric.others;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.Map.Entry;
 
 import datastructure.Adjacency;
+import datastructure.Neighborhood;
 import datastructure.Node;
 import datastructure.Node.TypeOfNode;
 import datastructure.Tree.TypeOfConnectivity;
@@ -138,10 +138,10 @@ public class CooccurrenceMatrixMetric<T> extends Metric implements MetricInterfa
 		if(n.type != TypeOfNode.LEAF) {
 			
 			/* For each neighbor, Create a new couple */
-			for(Map.Entry<Node, Adjacency> entry: n.listOfNeighbors.entrySet()) {
+			for(Neighborhood.Cursor cursor = n.listOfNeighbors.cursor(); cursor.next();) {
 				
 				/* Create a new couple */
-				Node neighbor = entry.getKey();
+				Node neighbor = cursor.neighbor;
 				Couple<T> newCouple = new Couple<T>((T) neighbor.features.get(this.attributePos),
 													(T) n.features.get(this.attributePos));
 				Couple<T> leftCouple = new Couple<T>((T) n.leftNode.features.get(this.attributePos),
@@ -45,7 +45,10 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+
 import datastructure.Node;
+import datastructure.PixelRuns;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import metric.bricks.ToolsMetric;
@@ -111,9 +114,8 @@ public class Elongation extends Metric implements MetricInterface{
 		double averageChildren =  (elongation1 + elongation2)/2.0;
 		//double averageChildren =  (n1.size * elongation1 + n2.size * elongation2)/(n1.size + n2.size );
 			
-		ArrayList<Point> pointsFakeFather = new ArrayList<Point>();
-		pointsFakeFather.addAll(n1.getPixels());
-		pointsFakeFather.addAll(n2.getPixels());
+		ArrayList<PixelRuns> regionsFakeFather = n1.getPixelRuns();
+		regionsFakeFather.addAll(n2.getPixelRuns());
 		
 		//Bounding box fake father
 		int [] boundingBox = new int[4];
@@ -122,7 +124,7 @@ public class Elongation extends Metric implements MetricInterface{
 		boundingBox[2] = Math.min(n1.boundingBox[2], n2.boundingBox[2]);
 		boundingBox[3] = Math.max(n1.boundingBox[3], n2.boundingBox[3]);
 		
-		double elongationpotentialFather = Elongation.computeElongation(this.type, pointsFakeFather,boundingBox,this.img.getWidth(), this.img.getHeight());
+		double elongationpotentialFather = Elongation.computeElongation(this.type, n1.getSize() + n2.getSize(), regionsFakeFather, boundingBox, this.img.getWidth(), this.img.getHeight());
 		
 		score = Math.abs(elongationpotentialFather - averageChildren);
 		
@@ -157,6 +159,34 @@ public class Elongation extends Metric implements MetricInterface{
 			else return computeElongation2(listOfPoints, boundingBox,imgWidth,imgHeight);
 	}
 	
+	/**
+	 * Same as {@link Elongation#computeElongation(TypeOfMetric, ArrayList, int[], int, int)}, but the pixels are only gathered when the score depends on them.
+	 * 
+	 * @param typeOfElongation defining how to compute the elongation score (e.g.: fast, simple, ...)
+	 * @param nbPoints number of pixels of the region
+	 * @param regions runs of pixels forming the region (see {@link Node#getPixelRuns()}); should not be null
+	 * @param boundingBox encompassing the region
+	 * @param imgWidth should be > 0
+	 * @param imgHeight should be > 0
+	 * @return an elongation score of the region
+	 * 
+	 * @throws NullPointerException if typeOfElongation or regions or boundingBox is null
+	 */
+	public static double computeElongation(TypeOfMetric typeOfElongation, int nbPoints, List<PixelRuns> regions, int [] boundingBox,  int imgWidth, int imgHeight) {
+		
+		if(nbPoints > 10000 || nbPoints <= 1)
+			return 1.0;
+		if(typeOfElongation == TypeOfMetric.FAST_ELONGATION)
+			return computeElongation3(nbPoints, boundingBox, imgWidth, imgHeight);
+		
+		ArrayList<Point> listOfPoints = new ArrayList<Point>(nbPoints);
+		for(PixelRuns runs: regions) {
+			
+			runs.addTo(listOfPoints);
+		}
+		return computeElongation(typeOfElongation, listOfPoints, boundingBox, imgWidth, imgHeight);
+	}
+	
 	/**
 	 * 
 	 * @param listOfPoints group of connected pixels defining a region
@@ -378,6 +408,12 @@ public class Elongation extends Metric implements MetricInterface{
 			return y/x;
 	}
 	
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+	
 	/**
 	 * Prepares all the Metric Features (MF) corresponding to the elongation value of the specified region (~ node):</br>
 	 * - elongation: value associated with the elongation shape of the region (~ node).</br>
@@ -400,7 +436,7 @@ public class Elongation extends Metric implements MetricInterface{
 		/*
 		 * Compute region elongation.
 		 */
-		double elongation = Elongation.computeElongation(this.type, n.getPixels(), n.boundingBox, this.img.getWidth(), this.img.getHeight());
+		double elongation = Elongation.computeElongation(this.type, n.getSize(), n.getPixelRuns(), n.boundingBox, this.img.getWidth(), this.img.getHeight());
 		
 		/*
 		 * Set or Update the node metric feature (~ MF).
@@ -125,6 +125,12 @@ public class FastCompactness extends Metric implements MetricInterface{
 		return score;
 	}
 
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+
 	/**
 	 * Prepares all the Metric Features (MF) corresponding to the compactness value of the specified region (~ node).</br>
 	 * @param n Concerned node.
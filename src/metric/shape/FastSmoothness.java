@@ -133,6 +133,12 @@ public class FastSmoothness extends Metric implements MetricInterface{
 		return score;
 	}
 
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
+
 	/**
 	 * Prepares all the Metric Features (MF) corresponding to the smoothness value of the specified region (~ node)</br>
 	 * 
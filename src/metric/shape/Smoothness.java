@@ -44,7 +44,10 @@ package metric.shape;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.List;
+
 import datastructure.Node;
+import datastructure.PixelRuns;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.Log;
@@ -120,6 +123,26 @@ public class Smoothness extends Metric implements MetricInterface{
 		double smoothness_morpho = morpho.morphologicalSmoothness(listOfPoints);
 		return smoothness_morpho;
 	}
+	
+	/**
+	 * Same as {@link Smoothness#computeSmoothnessWithMorpho(ArrayList, int, int)}, without creating a point per pixel.
+	 * 
+	 * @param regions runs of pixels forming the region (see {@link Node#getPixelRuns()}); should not be null
+	 * @param imgWidth Width of the image.
+	 * @param imgHeight Height of the image.
+	 * @return value between 0 and 1 associated with the smoothness of the region
+	 */
+	public static double computeSmoothnessWithMorpho(List<PixelRuns> regions,int imgWidth,int imgHeight) {	
+	
+		Morphological morpho = new Morphological(imgWidth, imgHeight,5);
+		return morpho.morphologicalSmoothness(regions);
+	}
+
+	@Override
+	public boolean needsPixels() {
+		
+		return true;
+	}
 
 	/**
 	 * Prepares all the Metric Features (MF) corresponding to the elongation value of the specified region (~ node):</br>
@@ -145,7 +168,7 @@ public class Smoothness extends Metric implements MetricInterface{
 		/*
 		 * Compute region smoothness.
 		 */
-		double smoothness = Smoothness.computeSmoothnessWithMorpho(n.getPixels(), this.img.getWidth(), this.img.getHeight());
+		double smoothness = Smoothness.computeSmoothnessWithMorpho(n.getPixelRuns(), this.img.getWidth(), this.img.getHeight());
 		
 		/*
 		 * Set or Update the node metric feature (~ MF).
@@ -41,11 +41,13 @@
 
 package metric.vector;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.BandKernels;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric;
 import metric.bricks.MetricInterface;
 import utils.ImTool;
@@ -71,9 +73,14 @@ public class VectorialDistance extends Metric implements MetricInterface {
 	}
 	
 	/**
-	 * Indicates the location of the feature composed by the x, y, z positions
+	 * Number of bands of the image.
 	 */
-	ArrayList<Integer> pos;
+	int nbBands;
+	
+	/**
+	 * Position of the x value in the band features of the nodes (0 until {@link VectorialDistance#reserveBandFeatures(BandLayout) reserved}); y, z, ... follow it.
+	 */
+	int offset;
 
 	/**
 	 * Registers an image within the metric and creates it
@@ -85,22 +92,20 @@ public class VectorialDistance extends Metric implements MetricInterface {
 		
 		this.type = TypeOfMetric.VECTORIAL_DISTANCE;
 		this.img = image;
-		
-		/*
-		 * Allocate spaces for the positions of the values in the feature list
-		 */
-		this.pos = new ArrayList<Integer>(ImTool.getNbBandsOf(this.img));
-		
-		/* Define the position of x, y and z. */
-		for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
-			
-			this.pos.add(++Metric.currentFeaturePos);
-		
-		}
+		this.nbBands = ImTool.getNbBandsOf(this.img);
 		
 		Log.println(String.valueOf(Context.VECTORIAL_DISTANCE), "Metric prepared!");
 	}
 	
+	/**
+	 * Reserves the x, y, z, ... positions in the band features.
+	 */
+	@Override
+	public void reserveBandFeatures(BandLayout layout) {
+		
+		this.offset = layout.reserve(this.nbBands);
+	}
+	
 	/**
 	 * Compute a distance between 'n1' and 'n2' using the Metric Features (MF) based on positions:
 	 * 
@@ -117,17 +122,8 @@ public class VectorialDistance extends Metric implements MetricInterface {
 	@Override
 	public double computeDistances(Node n1, Node n2) {
 		
-		double score = 0;
-
 		/* pseudo euclidian distance */
-		int nbBands = ImTool.getNbBandsOf(this.img);
-		for(int b = 0; b < nbBands; ++b){
-			
-			double coord1 = n1.features.get(this.pos.get(b));
-			double coord2 = n2.features.get(this.pos.get(b));
-			score += Math.abs(coord1 - coord2);
-		}
-		return score;
+		return BandKernels.l1(n1.bandFeatures, this.offset, n2.bandFeatures, this.offset, this.nbBands);
 	}
 
 	/**
@@ -142,10 +138,8 @@ public class VectorialDistance extends Metric implements MetricInterface {
 	@Override
 	public void initMF(Node n) {
 
-		for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b) {
-			
-			n.features.put(this.pos.get(b), 0.0);
-		}
+		double[] values = BandKernels.of(n, this.offset + this.nbBands);
+		Arrays.fill(values, this.offset, this.offset + this.nbBands, 0.0);
 	}
 
 	/**
@@ -160,33 +154,35 @@ public class VectorialDistance extends Metric implements MetricInterface {
 	@Override
 	public void updateMF(Node n) {
 
-		int posb;
+		double[] values = BandKernels.of(n, this.offset + this.nbBands);
 		switch(n.type){
 
 			case LEAF:
 				
 				/* Define the position */
-				for(Point point: n.getPixels()){
-
-					for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				for(PixelRuns runs: n.getPixelRuns()){
+					for(int run = 0; run < runs.getNbRuns(); ++run){
 						
-						posb = this.pos.get(b);
-
-						double val = Math.max(n.features.get(posb), ImTool.getPixelValue(point.x, point.y, b, this.img));
-//						double val = n.features.get(posb) + ImTool.getPixelValue(point.x, point.y, b, this.img);
-						System.out.println(b +") "+ ImTool.getPixelValue(point.x, point.y, b, this.img));
-						n.features.put(posb, val);
+						int y = runs.getRow(run);
+						for(int x = runs.getStart(run); x < runs.getEnd(run); ++x){
+							for(int b = 0; b < this.nbBands; ++b){
+								
+								values[this.offset + b] = Math.max(values[this.offset + b], ImTool.getPixelValue(x, y, b, this.img));
+//								values[this.offset + b] += ImTool.getPixelValue(x, y, b, this.img);
+							}
+						}
 					}
 				}
 				break;
 				
 			default: 
 
-				for(int b = 0; b < ImTool.getNbBandsOf(this.img); ++b){
+				double[] left = n.leftNode.bandFeatures;
+				double[] right = n.rightNode.bandFeatures;
+				for(int i = this.offset; i < this.offset + this.nbBands; ++i){
 					
-					posb = this.pos.get(b);
-//					n.features.put(posb, n.leftNode.features.get(posb) + n.rightNode.features.get(posb));
-					n.features.put(posb, Math.max(n.leftNode.features.get(posb), n.rightNode.features.get(posb)));
+//					values[i] = left[i] + right[i];
+					values[i] = Math.max(left[i], right[i]);
 				}
 		}
 	}
@@ -44,18 +44,18 @@ package multi.sequential;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 import datastructure.Adjacency;
 import datastructure.Adjacency.State;
 import datastructure.ListW;
+import datastructure.Neighborhood;
 import datastructure.Node;
 import datastructure.Node.TypeOfNode;
 import datastructure.set.SetOfAdjacencies;
 import datastructure.set.SetW;
 import datastructure.set.AdjacencySet.OptimalOption;
 import lang.Strings;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric.TypeOfMetric;
 import multi.strategy.consensus.bricks.Consensus;
 import multi.strategy.consensus.bricks.Consensus.ConsensusStrategy;
@@ -145,6 +145,11 @@ public class MBPT extends BPT{
 			adjacency.scores[listW.getIndex()] = listW.getMetric().computeDistances(adjacency.node1, adjacency.node2);
 			listW.add(adjacency);
 		}
+		
+		if(this.profiler != null) {
+			
+			this.profiler.distancesEvaluated(this.listOfLists.size());
+		}
 	}
 	
 	/**
@@ -184,6 +189,22 @@ public class MBPT extends BPT{
 		this.listOfLists.add(list);
 	}
 	
+	/**
+	 * Places the band features of the metric of each image one after the other, since all metrics share the nodes.
+	 * 
+	 * @param layout of the band features of the creation; should not be null
+	 * 
+	 * @throws NullPointerException if layout is null
+	 */
+	@Override
+	protected void reserveBandFeatures(BandLayout layout) {
+		
+		for(ListW list: this.listOfLists) {
+			
+			list.getMetric().reserveBandFeatures(layout);
+		}
+	}
+	
 	/**
 	 * Leaves are the unitary regions initially defined in the image. 
 	 * 
@@ -268,6 +289,7 @@ public class MBPT extends BPT{
 		/* Number of estimated fusions */
 		int nbFusions = this.nbLeaves - 1;
 		int numFusion = 1;
+		String fusionContext = context +"_FUSION";
 		
 		long mergingStartingTime = System.nanoTime();
 		
@@ -275,8 +297,12 @@ public class MBPT extends BPT{
 		Node root = null;
 		while(!this.listOfLists.get(0).isEmpty()) {
 			
-			this.progress = (numFusion * 100) / nbFusions;
-			Log.println(context+"_FUSION", this.progress +"%");
+			int previousProgress = this.progress;
+			this.progress = Log.printProgress(fusionContext, this.progress, numFusion, nbFusions);
+			if(this.profiler != null && this.progress != previousProgress) {
+				
+				this.profiler.adjacenciesSampled(this.listOfLists.get(0).size());
+			}
 			
 			Adjacency potentialAdjacency = this.consensusStrategies.get(0).apply(this.listOfLists);
 	
@@ -303,42 +329,49 @@ public class MBPT extends BPT{
 			this.remove(potentialAdjacency);
 			
 			/* Remove the adjacency links corresponding to the left node*/
-			ConcurrentHashMap<Node, Adjacency> neighbors = leftNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			Neighborhood neighbors = leftNode.listOfNeighbors;
+			for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
 				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
+				Node neighbor = cursor.neighbor;
+				Adjacency adjacencyNeighbor = cursor.adjacency;
 				this.remove(adjacencyNeighbor);
 				neighbor.removeNeighbor(leftNode);
 			}
-			leftNode.listOfNeighbors = null;
+			leftNode.releaseNeighborhood();
 	
 			/* Remove the adjacency links corresponding to the right node*/
 			neighbors = rightNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
 				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
+				Node neighbor = cursor.neighbor;
+				Adjacency adjacencyNeighbor = cursor.adjacency;
 				this.remove(adjacencyNeighbor);
 				neighbor.removeNeighbor(rightNode);
 			}
-			rightNode.listOfNeighbors = null;			
+			rightNode.releaseNeighborhood();			
+			if(this.releasingFeatures) {
+				
+				leftNode.releaseFeatures();
+				rightNode.releaseFeatures();
+			}
 
 			/* Generate adjacency links between the new node and its neighbors */
 			neighbors = newNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
 				
-				Node neighbor = entry.getKey();
+				Node neighbor = cursor.neighbor;
 				this.add(new Adjacency(neighbor, newNode));
 			}
 			
 			numFusion++;
+			if(this.profiler != null) {
+				
+				this.profiler.nodeMerged();
+			}
 	
-			if(this.nbNodes % this.GC_ITERATION == 0) {
+			if(this.memoryBudget != null && this.nbNodes % this.GC_ITERATION == 0 && this.memoryBudget.isExceeded()) {
 				
-				Log.println("GC", Strings.CLEANING +"!");
-				System.gc();
-				System.runFinalization();
+				this.compact();
 			}
 			
 			/*
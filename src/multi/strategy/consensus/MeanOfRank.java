@@ -82,29 +82,47 @@ public class MeanOfRank extends Consensus implements ConsensusInterface{
 		this.progressive = progressive;
 	}
 	
+	/**
+	 * The listW(s) are browsed in parallel, one rank at a time (Fagin's Threshold Algorithm).
+	 * An adjacency not met yet at rank 'd' has a rank higher than 'd' in all listW(s), so its sum of ranks is at least 'nbLists * (d + 1)'.
+	 * The browsing stops as soon as the best sum is lower than this threshold, giving the same choice as considering all the first 'r%' adjacency links.
+	 */
 	@Override
 	public Adjacency apply(List<ListW> listOfLists) {
 		
 		Adjacency chosenAdjacency = null;
 		double chosenMeanRank = Double.MAX_VALUE;
 		
-		this.computeNbElementsToTreat(listOfLists.get(0).size());
+		int nbLists = listOfLists.size();
+		int nbAllElements = listOfLists.get(0).size();
 		
-		HashSet<Adjacency> treatedElements = new HashSet<Adjacency>();
+		this.computeNbElementsToTreat(nbAllElements);
+		int nbRanks = Math.min(this.nbElementsToTreat, nbAllElements);
 		
-		for(int il = 0; il < listOfLists.size(); ++il){
+		@SuppressWarnings("unchecked")
+		Iterator<Adjacency>[] iterators = new Iterator[nbLists];
+		for(int il = 0; il < nbLists; ++il) {
 			
-			Iterator<Adjacency> iterator = listOfLists.get(il).iterator();
+			iterators[il] = listOfLists.get(il).iterator();
+		}
+		
+		HashSet<Adjacency> treatedElements = new HashSet<Adjacency>();
+		
+		for(int rank = 1; rank <= nbRanks; ++rank) {
 			
-			int elementPos = 0;
-			while(elementPos < this.nbElementsToTreat && elementPos < listOfLists.get(il).size()){
+			for(int il = 0; il < nbLists; ++il){
 				
-				Adjacency adjacency = iterator.next();
+				if(!iterators[il].hasNext()) {
+					
+					continue;
+				}
 				
-				if(!treatedElements.contains(adjacency)) {
+				Adjacency adjacency = iterators[il].next();
+				
+				if(treatedElements.add(adjacency)) {
 					
 					double meanRank = 0;
-					for(int iil = 0; iil < listOfLists.size(); ++iil){
+					for(int iil = 0; iil < nbLists; ++iil){
 						
 						meanRank += listOfLists.get(iil).getRankOf(adjacency);
 					}
@@ -112,15 +130,19 @@ public class MeanOfRank extends Consensus implements ConsensusInterface{
 					if(meanRank < chosenMeanRank || (meanRank == chosenMeanRank && adjacency.compareTo(chosenAdjacency)==-1)){
 						
 						chosenAdjacency = adjacency;
-						chosenAdjacency.consensusScore = chosenMeanRank = meanRank;
+						chosenMeanRank = meanRank;
 					}
-					
-					treatedElements.add(adjacency);
 				}
+			}
+			
+			/* Threshold: lowest sum of ranks of an adjacency not met yet */
+			if(chosenMeanRank < nbLists * (rank + 1.0)) {
 				
-				elementPos++;
+				break;
 			}
 		}
+		
+		chosenAdjacency.consensusScore = chosenMeanRank;
 		return chosenAdjacency;
 	}
 }
@@ -41,22 +41,17 @@
 
 package multi.strategy.consensus;
 
-import java.util.Iterator;
-import java.util.List;
-
-import datastructure.Adjacency;
-import datastructure.ListW;
-import multi.strategy.consensus.bricks.Consensus;
-import multi.strategy.consensus.bricks.ConsensusInterface;
+import multi.strategy.consensus.bricks.TopKConsensus;
 
 /**
  * 
  * The MOST_FREQUENT is a consensus strategy of the relative local information.
  * This strategy focuses only on the first adjacency links included in a specified interval 'r'.
  * The choice of the adjacency will be determined by the adjacency having the most occurrence in the first 'r%' of the lists.
+ * The occurrences are counted again for each choice; the {@link datastructure.Adjacency#consensusScore consensus score} of the chosen adjacency is its number of occurrences.
  *
  */
-public class MostFrequent extends Consensus implements ConsensusInterface{
+public class MostFrequent extends TopKConsensus{
 	
 	/**
 	 * Relative local information consensus strategy based on the most frequent adjacency links among a specific interval 'r' firsts adjacencies having low scores 
@@ -76,35 +71,9 @@ public class MostFrequent extends Consensus implements ConsensusInterface{
 	}	
 
 	@Override
-	public Adjacency apply(List<ListW> listOfLists) {
-
-		
-		Adjacency chosenAdjacency = null;
-		double chosenOccurrency = 0;
-		
-		double nbAllElements = listOfLists.get(0).size();
-		
-		this.computeNbElementsToTreat(listOfLists.get(0).size());
-		
-		for(int il = 0; il < listOfLists.size(); ++il){
-			
-			Iterator<Adjacency> iterator = listOfLists.get(il).iterator();
-			
-			int nbElements = 1;
-			while(nbElements <= this.nbElementsToTreat && nbElements <= nbAllElements){
-				
-				Adjacency adjacency = iterator.next();
+	protected double contribution(int rank, int nbAllElements) {
 
-				adjacency.consensusScore += 1;
-				
-				if(adjacency.consensusScore > chosenOccurrency) {
-					
-					chosenOccurrency = adjacency.consensusScore;
-					chosenAdjacency = adjacency;
-				}
-				nbElements++;
-			}
-		}
-		return chosenAdjacency;
+		/* One occurrence */
+		return 1;
 	}
 }
@@ -41,12 +41,7 @@
 
 package multi.strategy.consensus;
 
-import java.util.Iterator;
-import java.util.List;
-import datastructure.Adjacency;
-import datastructure.ListW;
-import multi.strategy.consensus.bricks.Consensus;
-import multi.strategy.consensus.bricks.ConsensusInterface;
+import multi.strategy.consensus.bricks.TopKConsensus;
 
 /**
  * 
@@ -63,7 +58,7 @@ import multi.strategy.consensus.bricks.ConsensusInterface;
  * In the case of the relative global approach, all of the listW(s)' content have to be considered. It is obvious that this kind of strategy will show some performance cost problematic.
  *
  */
-public class ScoreOfRank extends Consensus implements ConsensusInterface{
+public class ScoreOfRank extends TopKConsensus{
 	
 	/**
 	 * Relative local/global information consensus strategy based on the mean of the ranks of the adjacency links stored in all listW(s) 
@@ -84,34 +79,8 @@ public class ScoreOfRank extends Consensus implements ConsensusInterface{
 	}
 	
 	@Override
-	public Adjacency apply(List<ListW> listOfLists) {
-		
-		Adjacency chosenAdjacency = null;
-		double chosenScoreRank = -Double.MAX_VALUE;
-		
-		double nbAllElements = listOfLists.get(0).size();
-		
-		this.computeNbElementsToTreat(listOfLists.get(0).size());
+	protected double contribution(int rank, int nbAllElements) {
 
-		for(int il = 0; il < listOfLists.size(); ++il){
-			
-			Iterator<Adjacency> iterator = listOfLists.get(il).iterator();
-			
-			int rank = 1;
-			while(rank <= this.nbElementsToTreat && rank <= nbAllElements){
-				
-				Adjacency adjacency = iterator.next();
-
-				adjacency.consensusScore += (nbAllElements - rank);
-				
-				if(adjacency.consensusScore > chosenScoreRank) {
-					
-					chosenScoreRank = adjacency.consensusScore;
-					chosenAdjacency = adjacency;
-				}
-				rank++;
-			}
-		}
-		return chosenAdjacency;
+		return nbAllElements - rank;
 	}
 }
@@ -0,0 +1,218 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package multi.strategy.consensus.bricks;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import datastructure.Adjacency;
+import datastructure.ListW;
+
+/**
+ * 
+ * Parent of the consensus strategies summing, for each adjacency, a contribution depending on its rank in each listW (e.g. MOST_FREQUENT, SCORE_OF_RANK).
+ * Only the first ranks (~ top-k) of each listW, determined by the {@linkplain Consensus#consensusRange consensusRange}, bring a contribution.
+ * 
+ * <p>
+ * The listW(s) are browsed in parallel, one rank at a time, without accessing the ranks directly (Fagin's No Random Access algorithm).
+ * As the contribution does not increase with the rank, the best possible score of an adjacency not fully seen yet is bounded.
+ * The browsing stops as soon as the best adjacency cannot be beaten anymore, so only the first ranks of the listW(s) are read in most cases.
+ * 
+ * <p>
+ * The chosen adjacency is the same as the one obtained by browsing all the top-k elements of the first listW, then of the second one, etc.:
+ * the highest score, then the first one to reach it.
+ *
+ */
+public abstract class TopKConsensus extends Consensus implements ConsensusInterface{
+	
+	/**
+	 * Score of an adjacency met in the listW(s).
+	 */
+	private static class Candidate{
+		
+		/**
+		 * Last listW in which the adjacency brought a contribution (-1 if none).
+		 */
+		int lastList = -1;
+		
+		/**
+		 * Rank of the adjacency in the {@linkplain Candidate#lastList last listW}.
+		 */
+		int lastRank;
+		
+		/**
+		 * Number of listW(s) in which the adjacency has been met.
+		 */
+		int nbLists;
+		
+		/**
+		 * Sum of the contributions already known.
+		 */
+		double score;
+		
+		/**
+		 * 
+		 * @param candidate to compare with; should not be null
+		 * @return true if the candidate has a higher score, or the same score reached earlier when browsing the listW(s) one after the other
+		 */
+		boolean isBetterThan(Candidate candidate) {
+			
+			if(this.score != candidate.score) {
+				
+				return this.score > candidate.score;
+			}
+			
+			if(this.lastList != candidate.lastList) {
+				
+				return this.lastList < candidate.lastList;
+			}
+			return this.lastRank < candidate.lastRank;
+		}
+	}
+	
+	/**
+	 * Contribution of an adjacency found at a specific rank of a listW.
+	 * (!) Should not increase with the rank.
+	 * 
+	 * @param rank position of the adjacency in the listW (starting from 1)
+	 * @param nbAllElements number of elements of the listW
+	 * @return the value added to the score of the adjacency
+	 */
+	protected abstract double contribution(int rank, int nbAllElements);
+	
+	@Override
+	public Adjacency apply(List<ListW> listOfLists) {
+		
+		int nbLists = listOfLists.size();
+		int nbAllElements = listOfLists.get(0).size();
+		
+		this.computeNbElementsToTreat(nbAllElements);
+		int nbRanks = Math.min(this.nbElementsToTreat, nbAllElements);
+		
+		@SuppressWarnings("unchecked")
+		Iterator<Adjacency>[] iterators = new Iterator[nbLists];
+		for(int il = 0; il < nbLists; ++il) {
+			
+			iterators[il] = listOfLists.get(il).iterator();
+		}
+		
+		HashMap<Adjacency, Candidate> candidates = new HashMap<Adjacency, Candidate>();
+		Adjacency chosenAdjacency = null;
+		Candidate chosen = null;
+		
+		int nextCheck = 1;
+		for(int rank = 1; rank <= nbRanks; ++rank) {
+			
+			double contribution = this.contribution(rank, nbAllElements);
+			
+			for(int il = 0; il < nbLists; ++il) {
+				
+				if(!iterators[il].hasNext()) {
+					
+					continue;
+				}
+				
+				Adjacency adjacency = iterators[il].next();
+				Candidate candidate = candidates.get(adjacency);
+				if(candidate == null) {
+					
+					candidate = new Candidate();
+					candidates.put(adjacency, candidate);
+				}
+				
+				candidate.nbLists++;
+				if(contribution > 0) {
+					
+					candidate.score += contribution;
+					candidate.lastList = il;
+					candidate.lastRank = rank;
+				}
+				
+				if(chosen == null || candidate.isBetterThan(chosen)) {
+					
+					chosen = candidate;
+					chosenAdjacency = adjacency;
+				}
+			}
+			
+			/* The stopping test browses all the candidates, so it is only done when the number of ranks read doubles. */
+			if(rank == nextCheck && rank < nbRanks) {
+				
+				nextCheck *= 2;
+				if(this.cannotBeBeaten(chosen, candidates, nbLists, this.contribution(rank + 1, nbAllElements))) {
+					
+					break;
+				}
+			}
+		}
+		
+		chosenAdjacency.consensusScore = chosen.score;
+		return chosenAdjacency;
+	}
+	
+	/**
+	 * 
+	 * @param chosen best candidate so far; should not be null
+	 * @param candidates all the adjacencies met; should not be null
+	 * @param nbLists number of listW(s)
+	 * @param nextContribution highest contribution that can still be brought by a listW
+	 * @return true if no other adjacency can obtain a score higher or equal to the one of the chosen candidate
+	 */
+	private boolean cannotBeBeaten(Candidate chosen, HashMap<Adjacency, Candidate> candidates, int nbLists, double nextContribution) {
+		
+		/* The score of the chosen one must be complete and higher than the score of an adjacency never met */
+		if(chosen.nbLists < nbLists || nbLists * nextContribution >= chosen.score) {
+			
+			return false;
+		}
+		
+		for(Candidate candidate: candidates.values()) {
+			
+			if(candidate != chosen && candidate.score + (nbLists - candidate.nbLists) * nextContribution >= chosen.score) {
+				
+				return false;
+			}
+		}
+		return true;
+	}
+}
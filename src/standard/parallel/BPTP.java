@@ -42,15 +42,48 @@
 package standard.parallel;
 
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import datastructure.Adjacency;
 import datastructure.Node;
+import datastructure.Node.TypeOfNode;
+import datastructure.Tree.TypeOfConnectivity;
 import datastructure.set.AdjacencySet.OptimalOption;
 import datastructure.set.SetOfAdjacencies;
+import datastructure.set.SetOfAdjacencyBuckets;
+import lang.Strings;
+import metric.bricks.BandLayout;
+import metric.bricks.Metric;
+import metric.color.Ominmax;
 import standard.parallel.bricks.IndividualTask;
 import standard.sequential.BPT;
 import utils.Log;
+import utils.profiling.BuildProfiler.Phase;
 
+/**
+ * Parallel creation of the BPT of an image split in {@link BPTP#nbTilesPerSide nbTilesPerSide x nbTilesPerSide} parts (four by default).
+ * 
+ * <p>
+ * <li> each part defines its leaves, links them and merges them until obtaining its own root, as a task of the {@link BPTP#pool pool}
+ * <li> the nodes of all parts are regrouped by merging score and renamed after the leaves
+ * <li> the frontiers of each part are read as tasks of the pool; the roots of the parts are then linked and merged until obtaining the root
+ * 
+ * <p>
+ * No region crosses a frontier before all parts are completed, so the hierarchy above the parts may differ from the one obtained with {@link BPT}.
+ * The numbering of the nodes does not depend on the scheduling of the threads: a given image and metric always give the same tree.
+ * 
+ * <p>
+ * (!) The metric is used concurrently on distinct nodes: it should only read and write the features of the nodes it receives.
+ */
 public class BPTP extends BPT{
 
 	/**
@@ -67,14 +100,40 @@ public class BPTP extends BPT{
 		COMMON
 	}
 	
-	public HashMap<Side, SetOfAdjacencies> sideResource;
-	public HashMap<Side, IndividualTask> sideTasks;
+	/**
+	 * Default number of parts along each side of the image.
+	 */
+	public static final int DEFAULT_NB_TILES_PER_SIDE = 2;
+	
+	/**
+	 * Number of parts along each side of the image (i.e. nbTilesPerSide x nbTilesPerSide parts); should be > 0.
+	 * More parts than {@link BPTP#nbThreads threads} balance the load between the threads.
+	 */
+	public int nbTilesPerSide = DEFAULT_NB_TILES_PER_SIDE;
+	
+	/**
+	 * Number of threads of the pool created when no {@link BPTP#pool pool} is given; should be > 0.
+	 */
+	public int nbThreads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Work-stealing pool treating the parts of the image and their frontiers. 
+	 * 
+	 * <p>
+	 * May be shared by several trees created at the same time; it is not shut down by the tree.
+	 * If null, a pool of {@link BPTP#nbThreads} threads is created for each creation and shut down once the parts are linked.
+	 */
+	public transient ForkJoinPool pool;
 	
 	/**
 	 * Precise if the optimal distance value to consider for mergin nodes is the MAXIMUM or the MINIMUM.
 	 */
 	private OptimalOption optimalOption = OptimalOption.MINIMUM; // by default
 
+	/**
+	 * Non empty parts of the image, row by row.
+	 */
+	private transient SetOfAdjacencies[] sides;
 	
 	public BPTP() {
 		
@@ -86,268 +145,382 @@ public class BPTP extends BPT{
 		super(image);
 	}
 
+	/**
+	 * <li> Prepares the matrix of labels
+	 * <li> Creates the tree of each part in parallel
+	 * <li> Regroups the nodes and links the roots of the parts
+	 * <li> Merges the roots of the parts until obtaining the root
+	 */
 	@Override
 	public void grow() {
 		
-		this.prepareLabelMatrix();
-		
-		/* Split limit */
-		int verticalFrontier = this.image.getWidth() / 2;
-		int horizontalFrontier = this.image.getHeight() / 2;
-	
-		/* Prepare set of adjacencies structures */
-		this.setOfAdjacencies = null;
-		SetOfAdjacencies adjaSet1 = new SetOfAdjacencies(this.optimalOption);
-		adjaSet1.currentNodeIndex = 0;
-		adjaSet1.xMin = 0;
-		adjaSet1.xMax = verticalFrontier;
-		adjaSet1.yMin = 0;
-		adjaSet1.yMax = horizontalFrontier;
-	
-		SetOfAdjacencies adjaSet2 = new SetOfAdjacencies(this.optimalOption);
-		adjaSet2.currentNodeIndex = 0;
-		adjaSet2.xMin = verticalFrontier;
-		adjaSet2.xMax = this.image.getWidth();
-		adjaSet2.yMin = 0;
-		adjaSet2.yMax = horizontalFrontier;
-	
-		SetOfAdjacencies adjaSet3 = new SetOfAdjacencies(this.optimalOption);
-		adjaSet3.currentNodeIndex = 0;
-		adjaSet3.xMin = 0;
-		adjaSet3.xMax = verticalFrontier;
-		adjaSet3.yMin = horizontalFrontier;
-		adjaSet3.yMax = this.image.getHeight();
-	
-		SetOfAdjacencies adjaSet4 = new SetOfAdjacencies(this.optimalOption);
-		adjaSet4.currentNodeIndex = 0;
-		adjaSet4.xMin = verticalFrontier;
-		adjaSet4.xMax = this.image.getWidth();
-		adjaSet4.yMin = horizontalFrontier;
-		adjaSet4.yMax = this.image.getHeight();
-	
-		this.sideResource = new HashMap<Side, SetOfAdjacencies>();
-		this.sideResource.put(Side.PART1, adjaSet1);
-		this.sideResource.put(Side.PART2, adjaSet2);
-		this.sideResource.put(Side.PART3, adjaSet3);
-		this.sideResource.put(Side.PART4, adjaSet4);
+		/* Reset the static position of metric features,
+		 *  useful when you want to create more than one BPT;
+		 *  locked so that trees can be created concurrently (see BatchBuilder) */
+		synchronized(Metric.class) {
+			
+			Metric.currentFeaturePos = -1;
+			
+			if(this.metric == null) { // Default metric
+				
+				this.metric = new Ominmax(this.image);
+			}
+		}
 		
-		Log.println(context, "Starting tree creation.");
+		/* The band features are placed in the nodes of this creation only */
+		this.bandLayout = new BandLayout();
+		this.reserveBandFeatures(this.bandLayout);
 		
+		this.processName = Strings.STARTING_TO_GROW;
+		Log.println(context, Strings.STARTING_TREE_CREATION);
 		long startingTime = System.nanoTime();
+		if(this.profiler != null) {
+			
+			this.profiler.start();
+		}
+		
+		this.processName = Strings.PREPARING_LABEL_MATRIX;
+		this.startPhase(Phase.LABEL_MATRIX);
+		this.prepareLabelMatrix();
+		this.endPhase(Phase.LABEL_MATRIX);
 		
 		/* Prepare the list of nodes */
 		int nbPixels = this.image.getWidth() * this.image.getHeight();
 		this.nodes = new Node[(nbPixels * 2) - 1];
-		Log.println(context, "Nb nodes to create: "+ this.nodes.length +" (including leaves)");
-		
-		/* Prepare the indifidual tasks */
-		IndividualTask task1 = new IndividualTask(adjaSet1, this, Side.PART1, false);
-		IndividualTask task2 = new IndividualTask(adjaSet2, this, Side.PART2, false);
-		IndividualTask task3 = new IndividualTask(adjaSet3, this, Side.PART3, false);
-		IndividualTask task4 = new IndividualTask(adjaSet4, this, Side.PART4, true);
-	
-		this.sideTasks = new HashMap<Side, IndividualTask>();
-		this.sideTasks.put(task1.side, task1);
-		this.sideTasks.put(task2.side, task2);
-		this.sideTasks.put(task3.side, task3);
-		this.sideTasks.put(task4.side, task4);
+		Log.println(context, Strings.NB_NODES_TO_CREATE +": "+ this.nodes.length +" (including leaves)");
 		
-		/* Start and join individual tasks */
+		/* One pool for all the tasks of the creation */
+		ForkJoinPool pool = this.pool != null ? this.pool : new ForkJoinPool(Math.max(1, this.nbThreads));
 		try {
 			
-			task1.start();
-			task2.start();
-			task3.start();
-			task4.start();
+			this.processName = Strings.MERGING_NODES;
+			this.startPhase(Phase.TILES);
+			this.prepareSides();
+			this.mergeSides(pool);
+			this.endPhase(Phase.TILES);
 			
-			task1.join();
-			task2.join();
-			task3.join();
-			task4.join();
+			this.startPhase(Phase.REGROUPING);
+			this.regroupNodes();
+			this.linkSides(pool);
+			this.endPhase(Phase.REGROUPING);
 			
-		} catch (InterruptedException e) {
-	
-			e.printStackTrace();
-		}
-	
-		this.nbLeaves = adjaSet1.nbLeaves + adjaSet2.nbLeaves + adjaSet3.nbLeaves + adjaSet4.nbLeaves;
-		Log.println(context, "Nb leaves created: "+ this.nbLeaves +" nb leaves1: "+ adjaSet1.currentNodeIndex +" nb leaves2: "+ adjaSet2.currentNodeIndex +" nb leaves3: "+ adjaSet3.currentNodeIndex +" nb Leaves4: "+ adjaSet4.currentNodeIndex);
-	
-		/* Regroup leaves */
-		adjaSet1.currentNodeIndex = 0;
-		adjaSet2.currentNodeIndex = 0;
-		adjaSet3.currentNodeIndex = 0;
-		adjaSet4.currentNodeIndex = 0;
-		int index = 0;
-		for(int i = 0; i < adjaSet1.nbLeaves; i++) {
+		} finally {
 			
-			this.nodes[index] = adjaSet1.nodes[i];
-			this.nodes[index].name = index;
-			this.nodes[index].label = index;
-			adjaSet1.currentNodeIndex++;
-			index++;
+			if(pool != this.pool) {
+				
+				pool.shutdown();
+			}
 		}
 		
-		for(int i = 0; i < adjaSet2.nbLeaves; i++) {
+		/* The roots of the parts are merged by the sequential process */
+		MergingEngine mergingEngine = this.mergingEngine;
+		this.mergingEngine = MergingEngine.SEQUENTIAL;
+		try {
 			
-			this.nodes[index] = adjaSet2.nodes[i];
-			this.nodes[index].name = index;
-			this.nodes[index].label = index;
-			adjaSet2.currentNodeIndex++;
-			index++;
+			this.startPhase(Phase.MERGINGS);
+			this.nodeMergings();
+			this.endPhase(Phase.MERGINGS);
+			
+		} finally {
+			
+			this.mergingEngine = mergingEngine;
 		}
 		
-		for(int i = 0; i < adjaSet3.nbLeaves; i++) {
+		/* The last node is the root even if the roots of the parts did not need to be merged */
+		if(this.nbNodes > this.nbLeaves && this.nodes[this.nbNodes - 1].father == null) {
 			
-			this.nodes[index] = adjaSet3.nodes[i];
-			this.nodes[index].name = index;
-			this.nodes[index].label = index;
-			adjaSet3.currentNodeIndex++;
-			index++;
+			this.nodes[this.nbNodes - 1].type = TypeOfNode.ROOT;
 		}
+		this.sides = null;
+		
+		long endingTime = System.nanoTime();
+		this.timeMs = (endingTime - startingTime)/1000000;
+		this.timeS = this.timeMs / 1000;
+		Log.println(context, Strings.NB_REMAINING_ADJACENCIES +": "+ this.getNbAdjacencies());
+		Log.println(context, Strings.NB_NODES_CREATED +": "+ this.nbNodes);
+		Log.println(context, Strings.TREE_CREATION_IN +" "+ this.timeMs +" ms ("+ this.timeS +" s)/n");
 		
-		for(int i = 0; i < adjaSet4.nbLeaves; i++) {
+		if(this.profiler != null) {
 			
-			this.nodes[index] = adjaSet4.nodes[i];
-			this.nodes[index].name = index;
-			this.nodes[index].label = index;
-			adjaSet4.currentNodeIndex++;
-			index++;
+			this.profiler.end();
 		}
+		
+		this.processName = Strings.FINALIZING;
+		this.ended = true;
+	}
 	
+	/**
+	 * Links the roots of the parts: two roots are linked if a pixel of one part is a neighbor of a pixel of the other part.
+	 * The frontiers of the parts are read in parallel, then the links are created in the order of the parts 
+	 * so that they do not depend on the scheduling of the tasks.
+	 * 
+	 * @param pool running the tasks; should not be null
+	 */
+	private void linkSides(ForkJoinPool pool) {
 		
-		/* Regroup nodes */
-		try {
-		while(adjaSet1.currentNodeIndex < adjaSet1.nodes.length ||
-			  adjaSet2.currentNodeIndex < adjaSet2.nodes.length ||
-			  adjaSet3.currentNodeIndex < adjaSet3.nodes.length ||
-			  adjaSet4.currentNodeIndex < adjaSet4.nodes.length) {
+		final int[][] offsets = this.connectivity == TypeOfConnectivity.CN8 ?
+				new int[][] {{-1, -1}, {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1}, {0, 1}, {1, 1}} :
+				new int[][] {{0, -1}, {-1, 0}, {1, 0}, {0, 1}};
+		
+		List<Callable<Collection<Node>>> tasks = new ArrayList<Callable<Collection<Node>>>(this.sides.length);
+		for(final SetOfAdjacencies side: this.sides) {
 			
-			Node node1 = null, node2 = null, node3 = null, node4 = null, nodeL = null, nodeR = null;
-			SetOfAdjacencies setToUseL = null, setToUseR = null;
-	
-			if(adjaSet1.currentNodeIndex < adjaSet1.nodes.length) {
+			tasks.add(new Callable<Collection<Node>>() {
 				
-				node1 = adjaSet1.nodes[adjaSet1.currentNodeIndex];
-			}
+				@Override
+				public Collection<Node> call() {
+					
+					return neighborRootsOf(side, offsets);
+				}
+			});
+		}
+		List<Collection<Node>> neighborRoots = this.invoke(pool, tasks);
+		
+		this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption);
+		for(int s = 0; s < this.sides.length; ++s) {
 			
-			if(adjaSet2.currentNodeIndex < adjaSet2.nodes.length) {
+			SetOfAdjacencies side = this.sides[s];
+			Node root = topOf(this.nodes[this.labelMatrix.getLabel(side.xMin, side.yMin)]);
+			for(Node neighborRoot: neighborRoots.get(s)) {
 				
-				node2 = adjaSet2.nodes[adjaSet2.currentNodeIndex];
+				if(root.listOfNeighbors.get(neighborRoot) == null) {
+					
+					this.add(new Adjacency(neighborRoot, root));
+				}
 			}
+		}
+		Log.println(context, "Nb links between the parts: "+ this.getNbAdjacencies());
+	}
 	
-			if(adjaSet3.currentNodeIndex < adjaSet3.nodes.length) {
+	/**
+	 * Reads the frontiers of a part; only reads the tree.
+	 * 
+	 * @param side part of the image; should not be null
+	 * @param offsets positions of the neighbors of a pixel; should not be null
+	 * @return the roots of the other parts touching the part, in the order they are met
+	 */
+	private Collection<Node> neighborRootsOf(SetOfAdjacencies side, int[][] offsets) {
+		
+		LinkedHashSet<Node> neighborRoots = new LinkedHashSet<Node>();
+		for(int y = side.yMin; y < side.yMax; y++) {
+			for(int x = side.xMin; x < side.xMax; x++) {
 				
-				node3 = adjaSet3.nodes[adjaSet3.currentNodeIndex];
-			}
-			
-			if(adjaSet4.currentNodeIndex < adjaSet4.nodes.length) {
+				/* only the pixels along the frontiers of the part can have a neighbor in another part: jump to the last column */
+				if(x != side.xMin && x != side.xMax - 1 && y != side.yMin && y != side.yMax - 1) {
+					
+					x = side.xMax - 2;
+					continue;
+				}
 				
-				node4 = adjaSet4.nodes[adjaSet4.currentNodeIndex];
+				for(int[] offset: offsets) {
+					
+					int xNeighbor = x + offset[0];
+					int yNeighbor = y + offset[1];
+					if(this.isInStudiedAread(xNeighbor, yNeighbor) && !side.isInStudiedAread(xNeighbor, yNeighbor)) {
+						
+						neighborRoots.add(topOf(this.nodes[this.labelMatrix.getLabel(xNeighbor, yNeighbor)]));
+					}
+				}
 			}
+		}
+		return neighborRoots;
+	}
+	
+	/**
+	 * Runs tasks on a pool and waits for all of them.
+	 * 
+	 * @param pool running the tasks; should not be null
+	 * @param tasks to run; should not be null
+	 * @return the results of the tasks, in the same order
+	 * 
+	 * @throws IllegalStateException if a task fails or if the waiting thread is interrupted
+	 */
+	private <T> List<T> invoke(ForkJoinPool pool, List<Callable<T>> tasks) {
+		
+		try {
 			
-			if(node1 != null) {
+			List<T> results = new ArrayList<T>(tasks.size());
+			for(Future<T> future: pool.invokeAll(tasks)) {
 				
-				nodeL = node1;
-				setToUseL = adjaSet1;
+				results.add(future.get());
 			}
+			return results;
+			
+		} catch (InterruptedException e) {
 			
-			if(node2 != null) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while treating the parts", e);
+			
+		} catch (ExecutionException e) {
+			
+			throw new IllegalStateException("A part could not be treated", e.getCause());
+		}
+	}
+	
+	/**
+	 * Creates the tree of each part in parallel.
+	 * 
+	 * @param pool running the tasks; should not be null
+	 * 
+	 * @throws IllegalStateException if a part fails or if the waiting thread is interrupted
+	 */
+	private void mergeSides(ForkJoinPool pool) {
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.sides.length);
+		for(SetOfAdjacencies side: this.sides) {
+			
+			boolean inform = side == this.sides[this.sides.length - 1]; // the last part reports the progress
+			tasks.add(new IndividualTask(side, this, this.quadrantOf(side), inform));
+		}
+		this.invoke(pool, tasks);
+	}
+	
+	/**
+	 * Splits the image in {@link BPTP#nbTilesPerSide nbTilesPerSide x nbTilesPerSide} parts; the empty parts are ignored.
+	 */
+	private void prepareSides() {
+		
+		int width = this.image.getWidth();
+		int height = this.image.getHeight();
+		
+		this.setOfAdjacencies = null;
+		ArrayList<SetOfAdjacencies> sides = new ArrayList<SetOfAdjacencies>(this.nbTilesPerSide * this.nbTilesPerSide);
+		for(int ty = 0; ty < this.nbTilesPerSide; ++ty) {
+			for(int tx = 0; tx < this.nbTilesPerSide; ++tx) {
 				
-				if(nodeL != null) {
-					
-					if(node2.merginScore < nodeL.merginScore) {
-						
-						nodeL = node2;
-						setToUseL = adjaSet2;
-					}
+				SetOfAdjacencies side = new SetOfAdjacencies(this.optimalOption);
+				side.currentNodeIndex = 0;
+				side.xMin = (int) ((long) tx * width / this.nbTilesPerSide);
+				side.xMax = (int) ((long) (tx + 1) * width / this.nbTilesPerSide);
+				side.yMin = (int) ((long) ty * height / this.nbTilesPerSide);
+				side.yMax = (int) ((long) (ty + 1) * height / this.nbTilesPerSide);
+				
+				if(side.xMin < side.xMax && side.yMin < side.yMax) {
 					
-				}else {
+					sides.add(side);
+				}
+			}
+		}
+		this.sides = sides.toArray(new SetOfAdjacencies[sides.size()]);
+		Log.println(context, "Nb parts: "+ this.sides.length);
+	}
+	
+	/**
+	 * 
+	 * @param side part of the image; should not be null
+	 * @return the quadrant of the image containing the center of the part
+	 */
+	private Side quadrantOf(SetOfAdjacencies side) {
+		
+		boolean right = side.xMin + side.xMax > this.image.getWidth();
+		boolean bottom = side.yMin + side.yMax > this.image.getHeight();
+		return Side.values()[(right ? 1 : 0) + (bottom ? 2 : 0)];
+	}
+	
+	/**
+	 * Stores the leaves of the parts, then the nodes created in the parts by increasing merging score.
+	 * The order of creation is kept inside each part so that each node is stored after its children; 
+	 * equal scores are ordered by part.
+	 * The nodes are renamed according to their position and the matrix of labels refers to the new names of the leaves.
+	 */
+	private void regroupNodes() {
+		
+		/* Regroup leaves */
+		int index = 0;
+		for(SetOfAdjacencies side: this.sides) {
+			
+			for(int y = side.yMin; y < side.yMax; y++) {
+				for(int x = side.xMin; x < side.xMax; x++) {
 					
-					nodeL = node2;
-					setToUseL = adjaSet2;
+					this.labelMatrix.setLabel(index + side.labelMatrix.getLabel(x - side.xMin, y - side.yMin), x, y);
 				}
 			}
 			
-			if(node3 != null) {
+			for(int i = 0; i < side.nbLeaves; i++) {
 				
-				nodeR = node3;
-				setToUseR = adjaSet3;
+				this.nodes[index] = side.nodes[i];
+				this.nodes[index].name = index;
+				this.nodes[index].label = index;
+				index++;
 			}
+			side.currentNodeIndex = side.nbLeaves;
+			side.labelMatrix = null;
+		}
+		this.nbLeaves = index;
+		Log.println(context, Strings.NB_LEAVES_CREATED +": "+ this.nbLeaves);
+		
+		/* Regroup nodes */
+		final SetOfAdjacencies[] sides = this.sides;
+		PriorityQueue<Integer> nextNodes = new PriorityQueue<Integer>(Math.max(1, sides.length), new Comparator<Integer>() {
 			
-			if(node4 != null) {
+			@Override
+			public int compare(Integer side1, Integer side2) {
 				
-				if(nodeR != null) {
-					
-					if(node4.merginScore< nodeR.merginScore) {
-						
-						nodeR = node4;
-						setToUseR = adjaSet4;
-					}
+				int comparison = Double.compare(next(sides[side1]).merginScore, next(sides[side2]).merginScore);
+				if(comparison == 0) {
 					
-				}else {
-					
-					nodeR = node4;
-					setToUseR = adjaSet4;
+					comparison = Integer.compare(side1, side2);
 				}
+				return comparison;
 			}
+		});
+		
+		for(int s = 0; s < sides.length; ++s) {
 			
-			if(nodeL != null) {
+			if(next(sides[s]) != null) {
 				
-				if(nodeR != null) {
-					
-					if(nodeL.merginScore < nodeR.merginScore) {
-						
-						this.nodes[index] = nodeL;
-						this.nodes[index].setName(index);
-						this.nodes[index].updateLabel();
-						setToUseL.currentNodeIndex++;
-						index++;
-						continue;
-						
-					}else {
-						
-						this.nodes[index] = nodeR;
-						this.nodes[index].setName(index);
-						this.nodes[index].updateLabel();
-						setToUseR.currentNodeIndex++;
-						index++;
-						continue;
-					}
-				}else {
-					
-					this.nodes[index] = nodeL;
-					this.nodes[index].setName(index);
-					this.nodes[index].updateLabel();
-					setToUseL.currentNodeIndex++;
-					index++;
-					continue;
-				}
-				
-			}else {
+				nextNodes.add(s);
+			}
+		}
+		
+		this.maxDepth = 0;
+		while(!nextNodes.isEmpty()) {
+			
+			int s = nextNodes.poll();
+			SetOfAdjacencies side = sides[s];
+			Node node = next(side);
+			node.setName(index);
+			node.updateLabel();
+			node.type = TypeOfNode.NODE;
+			this.nodes[index] = node;
+			this.maxDepth = Math.max(this.maxDepth, node.lvl);
+			index++;
+			
+			side.currentNodeIndex++;
+			if(next(side) != null) {
 				
-				if(nodeR != null) {
-					
-					this.nodes[index] = nodeR;
-					this.nodes[index].setName(index);
-					this.nodes[index].updateLabel();
-					setToUseR.currentNodeIndex++;
-					index++;
-					continue;
-				}
+				nextNodes.add(s);
 			}
 		}
-		}catch(Exception e) {e.printStackTrace();}
+		this.nbNodes = index;
 		
-		this.nbNodes = adjaSet1.currentNodeIndex + adjaSet2.currentNodeIndex + adjaSet3.currentNodeIndex + adjaSet4.currentNodeIndex;
-		long endingTime = System.nanoTime();
-		this.timeMs = (endingTime - startingTime)/1000000;
-		this.timeS = this.timeMs / 1000;
-		Log.println(context, "Part1 Nb Adjacencies remaining: "+ adjaSet1.size());
-		Log.println(context, "Part2 Nb Adjacencies remaining: "+ adjaSet2.size());
-		Log.println(context, "Part3 Nb Adjacencies remaining: "+ adjaSet3.size());
-		Log.println(context, "Part4 Nb Adjacencies remaining: "+ adjaSet4.size());
-		Log.println(context, "Nb nodes created: "+ (this.nbNodes + adjaSet1.foreignNodes.size() + adjaSet2.foreignNodes.size() + adjaSet3.foreignNodes.size() + adjaSet4.foreignNodes.size()));		
-		Log.println(context, "Tree creation in "+ timeMs +" ms ("+ this.timeS +" s)");
+		for(SetOfAdjacencies side: sides) {
+			
+			side.nodes = null;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param side part of the image; should not be null
+	 * @return the next node of the part to store; null if all its nodes are stored
+	 */
+	private static Node next(SetOfAdjacencies side) {
+		
+		return side.currentNodeIndex < side.nodes.length ? side.nodes[side.currentNodeIndex] : null;
+	}
+	
+	/**
+	 * 
+	 * @param node should not be null
+	 * @return the highest ancestor of the node 
+	 */
+	private static Node topOf(Node node) {
+		
+		while(node.father != null) {
+			
+			node = node.father;
+		}
+		return node;
 	}
 }
@@ -0,0 +1,742 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package standard.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import datastructure.Adjacency;
+import datastructure.AdjacencyPool;
+import datastructure.ConcurrentNeighborhood;
+import datastructure.Node;
+import datastructure.Node.TypeOfNode;
+import datastructure.d3.VoxelStore;
+import datastructure.set.AdjacencySet;
+import datastructure.set.SetOfAdjacencyBuckets;
+import lang.Strings;
+import metric.bricks.d3.Metric3D;
+import metric.color.d3.Ominmax3D;
+import standard.sequential.BPTVS;
+import utils.Log;
+import utils.d3.Neighborhood3D;
+import utils.d3.RGBStruct;
+import utils.profiling.BuildProfiler.Phase;
+
+/**
+ * Parallel and tiled creation of the BPT of a cube (~3D image).
+ * 
+ * <p>
+ * The cube is split in bricks of {@link BPTVSP#brickSize} voxels per side, treated by a pool of {@link BPTVSP#nbThreads threads}:
+ * 
+ * <li> the leaves are defined brick by brick; each leaf belongs to the first brick containing one of its voxels
+ * <li> each brick builds the links (~ adjacencies) between its own leaves; the links between leaves of different bricks are kept aside
+ * <li> each brick merges its own leaves until no link is left inside it
+ * <li> the nodes of all bricks are regrouped by merging score and renamed after the leaves
+ * <li> the roots of the bricks are linked with the links kept aside and merged until obtaining the root
+ * 
+ * <p>
+ * As for {@link BPTP}, no region crosses a brick boundary before all bricks are completed, 
+ * so the hierarchy above the bricks may differ from the one obtained with {@link BPTVS}.
+ * The nodes are stored as in {@link BPTVS} (i.e. the leaves first, then each node after its children) so the tree can be cut with {@link utils.d3.CutBPT3D}.
+ * 
+ * <p>
+ * (!) The metric is used concurrently on distinct nodes: it should only read and write the features of the nodes it receives.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * BPTVSP bpt = new BPTVSP(cube);
+ * bpt.brickSize = 64;
+ * bpt.grow();
+ * </pre>
+ *
+ */
+public class BPTVSP extends BPTVS {
+
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Default number of voxels per side of a brick.
+	 */
+	public static final int DEFAULT_BRICK_SIZE = 32;
+	
+	/**
+	 * Number of locks shared by the leaves while they are defined.
+	 */
+	private static final int NB_LOCKS = 1024;
+	
+	/**
+	 * Part of the cube treated by one thread at a time.
+	 */
+	private static class Brick {
+		
+		/**
+		 * Links between the leaves of the brick, emptied by the node mergings of the brick.
+		 */
+		AdjacencySet adjacencies;
+		
+		/**
+		 * Number of voxels of the biggest leaf of the brick.
+		 */
+		int biggestLeafSize;
+		
+		/**
+		 * Name of the first node created in the brick, so that the names are unique among all bricks.
+		 */
+		int firstName;
+		
+		/**
+		 * Links between a leaf of the brick and a leaf of another brick.
+		 * Each pair of leaves is encoded as 'smallest label * nbLeaves + biggest label'. 
+		 */
+		HashSet<Long> frontierLinks = new HashSet<Long>();
+		
+		/**
+		 * Position of the brick in the list of bricks.
+		 */
+		final int index;
+		
+		/**
+		 * Leaves belonging to the brick.
+		 */
+		ArrayList<Node> leaves = new ArrayList<Node>();
+		
+		/**
+		 * Depth of the deepest node created in the brick.
+		 */
+		int maxDepth;
+		
+		/**
+		 * Nodes created in the brick, in the order of their creation.
+		 */
+		ArrayList<Node> nodes = new ArrayList<Node>();
+		
+		/**
+		 * Position of the next node to regroup.
+		 */
+		int currentNodeIndex;
+		
+		/**
+		 * Limits of the brick; the maximums are excluded.
+		 */
+		final int xMin, xMax, yMin, yMax, zMin, zMax;
+		
+		Brick(int index, int xMin, int xMax, int yMin, int yMax, int zMin, int zMax) {
+			
+			this.index = index;
+			this.xMin = xMin;
+			this.xMax = xMax;
+			this.yMin = yMin;
+			this.yMax = yMax;
+			this.zMin = zMin;
+			this.zMax = zMax;
+		}
+	}
+	
+	/**
+	 * Number of voxels per side of a brick; should be > 0.
+	 */
+	public int brickSize = DEFAULT_BRICK_SIZE;
+	
+	/**
+	 * Bricks of the cube.
+	 */
+	private transient Brick[] bricks;
+	
+	/**
+	 * Executes the tasks of the bricks.
+	 */
+	private transient ExecutorService executor;
+	
+	/**
+	 * Locks protecting the leaves while they are defined. 
+	 */
+	private transient Object[] locks;
+	
+	/**
+	 * Number of threads treating the bricks; should be > 0.
+	 */
+	public int nbThreads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * For each leaf, index of the brick it belongs to.
+	 */
+	private transient int[] owners;
+	
+	/**
+	 * Prepares an empty parallel BPT creation of a cube.
+	 */
+	public BPTVSP() {
+		
+		super();
+		this.context = "BPTVP";
+	}
+	
+	/**
+	 * Prepares a parallel BPT creation of a cube.
+	 * 
+	 * @param cube should not be null
+	 * 
+	 * @throws NullPointerException if cube is null
+	 */
+	public BPTVSP(RGBStruct cube) {
+		
+		super(cube);
+		this.context = "BPTVP";
+	}
+	
+	/**
+	 * Links the leaves of each brick in parallel.
+	 * 
+	 * <p>
+	 * A link between two leaves is created by the brick owning the leaf having the smallest label.
+	 * If both leaves belong to the same brick, the link is stored in the set of adjacencies of the brick.
+	 * Otherwise, it is kept aside until {@link BPTVSP#linkBricks() the bricks are linked}.
+	 */
+	@Override
+	public void createRAG() {
+		
+		long ragStartingTime = System.nanoTime();
+		Log.println(Strings.RAG, Strings.CREATING_ADJACENCIES);
+		
+		final Neighborhood3D neighborhood = this.getNeighborhood();
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.bricks.length);
+		for(final Brick brick: this.bricks) {
+			
+			tasks.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					
+					brick.adjacencies = new SetOfAdjacencyBuckets(optimalOption);
+					VoxelStore.Cursor cursor = new VoxelStore.Cursor(voxelStore);
+					for(Node leaf: brick.leaves) {
+						
+						linkLeaf(brick, leaf, neighborhood, cursor);
+					}
+					return null;
+				}
+			});
+		}
+		this.execute(tasks);
+		
+		this.nbInitialAdjacencies = 0;
+		for(Brick brick: this.bricks) {
+			
+			this.nbInitialAdjacencies += brick.adjacencies.size() + brick.frontierLinks.size();
+		}
+		this.nbNodes = this.nbLeaves;
+		
+		long ragEndingTime = System.nanoTime();
+		long ragTimeMs = (ragEndingTime - ragStartingTime)/1000000;
+		long ragTimeS = ragTimeMs / 1000;
+		Log.println(Strings.RAG, Strings.TIME_OF_CREATION +": "+ ragTimeMs +" ms | "+ ragTimeS +" s");
+	}
+	
+	/**
+	 * Defines the leaves brick by brick in parallel.
+	 * 
+	 * <p>
+	 * Each leaf belongs to the brick having the smallest index among the bricks containing its voxels.
+	 * Note that the order of the voxels inside a leaf depends on the scheduling of the bricks.
+	 */
+	@Override
+	public void defineLeaves() {
+		
+		int nbRegions = this.labelMatrix3D.getNbRegions();
+		this.nodes = new Node[nbRegions * 2 - 1];
+		Log.println(context, Strings.NB_NODES_TO_CREATE +": "+ this.nodes.length +" (including leaves)");
+		Log.println(context, Strings.NB_LEAVES_TO_CREATE +": "+ nbRegions);
+		
+		this.prepareBricks();
+		this.owners = new int[nbRegions];
+		Arrays.fill(this.owners, Integer.MAX_VALUE);
+		this.locks = new Object[NB_LOCKS];
+		for(int i = 0; i < NB_LOCKS; ++i) {
+			
+			this.locks[i] = new Object();
+		}
+		
+		/* Regroup voxels in the leaves */
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.bricks.length);
+		for(final Brick brick: this.bricks) {
+			
+			tasks.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					
+					fillLeaves(brick);
+					return null;
+				}
+			});
+		}
+		this.execute(tasks);
+		this.locks = null;
+		
+		/* Give the leaves to their bricks */
+		this.nbLeaves = 0;
+		for(int label = 0; label < nbRegions; ++label) {
+			
+			Node leaf = this.nodes[label];
+			if(leaf != null) {
+				
+				this.bricks[this.owners[label]].leaves.add(leaf);
+				this.nbLeaves++;
+			}
+		}
+		
+		/* Store the voxels of all leaves in a single array */
+		this.voxelStore = VoxelStore.of(this.labelMatrix3D, this.nodes, this.nbLeaves);
+		
+		/*
+		 * Update the values of the features within the leaves.
+		 * (!) this can be done only after adding all points (~ pixels) in the leaf (~ region)
+		 */
+		tasks.clear();
+		for(final Brick brick: this.bricks) {
+			
+			tasks.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					
+					for(Node leaf: brick.leaves) {
+						
+						metric3D.updateMF(leaf);
+						brick.biggestLeafSize = Math.max(brick.biggestLeafSize, leaf.getNbVoxels());
+					}
+					return null;
+				}
+			});
+		}
+		this.execute(tasks);
+		
+		for(Brick brick: this.bricks) {
+			
+			this.biggestLeafSize = Math.max(this.biggestLeafSize, brick.biggestLeafSize);
+		}
+	}
+	
+	/**
+	 * Creates the tree in a bottom-up fashion, brick by brick in parallel and then from the roots of the bricks.
+	 * 
+	 * <p>
+	 * <li> Defines the leaves
+	 * <li> Builds the RAG of each brick
+	 * <li> Merges the regions (~nodes) of each brick
+	 * <li> Regroups the nodes and links the roots of the bricks
+	 * <li> Merges the roots of the bricks until obtaining the root
+	 */
+	@Override
+	public void grow() {
+		
+		/* Reset the static position of metric features,
+		 *  useful when you want to create more than one BPT*/
+		Metric3D.currentFeaturePos = -1;
+		
+		if(this.metric3D == null) { // Default metric
+			
+			this.metric3D = new Ominmax3D(this.cube);
+		}
+		
+		this.processName = Strings.STARTING_TO_GROW;
+		Log.println(context, Strings.STARTING_TREE_CREATION);	
+		long startingTime = System.nanoTime();
+		if(this.profiler != null) {
+			
+			this.profiler.start();
+		}
+		
+		this.executor = Executors.newFixedThreadPool(this.nbThreads);
+		try {
+			
+			this.processName = Strings.PREPARING_LABEL_MATRIX;
+			this.startPhase(Phase.LABEL_MATRIX);
+			this.prepareLabelMatrix3D();
+			this.endPhase(Phase.LABEL_MATRIX);
+			
+			this.processName = Strings.PREPARING_LEAVES;
+			this.startPhase(Phase.LEAVES);
+			this.defineLeaves();
+			this.endPhase(Phase.LEAVES);
+			Log.println(context, Strings.NB_LEAVES_CREATED +": "+ this.nbLeaves);
+			
+			this.processName = Strings.CREATING_ADJACENCIES;
+			this.startPhase(Phase.RAG);
+			this.createRAG();
+			this.endPhase(Phase.RAG);
+			Log.println(context, Strings.NB_ADJACENCIES_GENERATED +": "+ this.nbInitialAdjacencies);
+			
+			this.processName = Strings.MERGING_NODES;
+			this.startPhase(Phase.TILES);
+			this.mergeBricks();
+			this.endPhase(Phase.TILES);
+			
+		} finally {
+			
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		
+		this.startPhase(Phase.REGROUPING);
+		this.regroupNodes();
+		this.linkBricks();
+		this.endPhase(Phase.REGROUPING);
+		
+		this.startPhase(Phase.MERGINGS);
+		this.nodeMergings();
+		this.endPhase(Phase.MERGINGS);
+		
+		/* The last node is the root even if the roots of the bricks did not need to be merged */
+		if(this.nbNodes > this.nbLeaves && this.nodes[this.nbNodes - 1].father == null) {
+			
+			this.nodes[this.nbNodes - 1].type = TypeOfNode.ROOT;
+		}
+		this.bricks = null;
+		this.owners = null;
+		
+		long endingTime = System.nanoTime();
+		this.timeMs = (endingTime - startingTime)/1000000;
+		this.timeS = this.timeMs / 1000;
+		Log.println(context, Strings.NB_REMAINING_ADJACENCIES +": "+ this.getNbAdjacencies());
+		Log.println(context, Strings.NB_NODES_CREATED +": "+ this.nbNodes);		
+		Log.println(context, Strings.TREE_CREATION_IN +" "+ this.timeMs +" ms ("+ this.timeS +" s)/n");
+		
+		if(this.profiler != null) {
+			
+			this.profiler.end();
+		}
+		
+		this.processName = Strings.FINALIZING;
+		this.ended = true;
+	}
+	
+	/**
+	 * Runs tasks on the {@link BPTVSP#executor executor} and waits for all of them.
+	 * 
+	 * @param tasks to run; should not be null
+	 * 
+	 * @throws IllegalStateException if a task fails or if the waiting thread is interrupted
+	 */
+	private void execute(List<Callable<Void>> tasks) {
+		
+		try {
+			
+			for(Future<Void> future: this.executor.invokeAll(tasks)) {
+				
+				future.get();
+			}
+			
+		} catch (InterruptedException e) {
+			
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while treating the bricks", e);
+			
+		} catch (ExecutionException e) {
+			
+			throw new IllegalStateException("A brick could not be treated", e.getCause());
+		}
+	}
+	
+	/**
+	 * Associates the voxels of a brick to their leaves, creating the leaves if needed.
+	 * 
+	 * @param brick to treat; should not be null
+	 */
+	private void fillLeaves(Brick brick) {
+		
+		for(int y = brick.yMin; y < brick.yMax; y++) {
+			for(int x = brick.xMin; x < brick.xMax; x++) {
+				for(int z = brick.zMin; z < brick.zMax; z++) {
+					
+					int nodeName = this.labelMatrix3D.getLabel(x, y, z);
+					synchronized(this.locks[nodeName % NB_LOCKS]) {
+						
+						Node leaf = this.nodes[nodeName];
+						
+						/* Create the leaf if it does not exist */
+						if(leaf == null) {
+							
+							leaf = new Node(nodeName);
+							leaf.listOfNeighbors = new ConcurrentNeighborhood(); // the nodes are renamed once the bricks are built
+							leaf.label = nodeName;
+							leaf.type = TypeOfNode.LEAF;
+							this.metric3D.initMF(leaf);
+							this.nodes[nodeName] = leaf;
+						}
+						
+						/* Count the voxels of the leaf */
+						leaf.nbVoxels++;
+						if(this.owners[nodeName] > brick.index) {
+							
+							this.owners[nodeName] = brick.index;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Links the roots of the bricks using the links kept aside when {@link BPTVSP#createRAG() creating the RAG}.
+	 * Each link between two leaves becomes a link between the roots of their bricks.
+	 */
+	private void linkBricks() {
+		
+		this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption);
+		for(Brick brick: this.bricks) {
+			
+			for(long link: brick.frontierLinks) {
+				
+				Node leaf = this.nodes[(int) (link / this.nbLeaves)];
+				Node neighbor = this.nodes[(int) (link % this.nbLeaves)];
+				Node root = topOf(leaf);
+				Node neighborRoot = topOf(neighbor);
+				
+				if(root.listOfNeighbors.get(neighborRoot) == null) {
+					
+					this.add(new Adjacency(neighborRoot, root));
+				}
+			}
+			brick.frontierLinks = null;
+		}
+		Log.println(context, "Nb links between the bricks: "+ this.getNbAdjacencies());
+	}
+	
+	/**
+	 * Links a leaf to its neighbors having a bigger label.
+	 * 
+	 * @param brick owning the leaf; should not be null
+	 * @param leaf to link; should not be null
+	 * @param neighborhood of each voxel; should not be null
+	 * @param cursor reading the voxels of the leaf; should not be null
+	 */
+	private void linkLeaf(Brick brick, Node leaf, Neighborhood3D neighborhood, VoxelStore.Cursor cursor) {
+		
+		int labelLeaf = leaf.name;
+		cursor.reset(leaf);
+		while(cursor.next()) {
+			for(int i = 0; i < neighborhood.size(); i++) {
+				
+				int xNeighbor = cursor.x + neighborhood.dx[i];
+				int yNeighbor = cursor.y + neighborhood.dy[i];
+				int zNeighbor = cursor.z + neighborhood.dz[i];
+				if(!this.isInStudiedAread(xNeighbor, yNeighbor, zNeighbor)) {
+					
+					continue;
+				}
+				
+				/* The link is created once, from the leaf having the smallest label */
+				int labelNeighbor = this.labelMatrix3D.getLabel(xNeighbor, yNeighbor, zNeighbor);
+				if(labelNeighbor <= labelLeaf) {
+					
+					continue;
+				}
+				
+				if(this.owners[labelNeighbor] == brick.index) {
+					
+					Node neighbor = this.nodes[labelNeighbor];
+					if(leaf.listOfNeighbors.get(neighbor) == null) {
+						
+						this.add(brick.adjacencies, new Adjacency(neighbor, leaf));
+					}
+					
+				}else {
+					
+					brick.frontierLinks.add((long) labelLeaf * this.nbLeaves + labelNeighbor);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Merges the nodes of each brick in parallel until no link is left inside the bricks.
+	 */
+	private void mergeBricks() {
+		
+		long mergingStartingTime = System.nanoTime();
+		
+		int firstName = this.nbLeaves;
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.bricks.length);
+		for(final Brick brick: this.bricks) {
+			
+			brick.firstName = firstName;
+			firstName += Math.max(0, brick.leaves.size() - 1);
+			tasks.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					
+					AdjacencyPool pool = new AdjacencyPool();
+					int name = brick.firstName;
+					while(!brick.adjacencies.isEmpty()) {
+						
+						Adjacency potentialAdjacency = brick.adjacencies.optimalAdjacency();
+						Node newNode = merge(potentialAdjacency, name, brick.adjacencies, pool);
+						brick.nodes.add(newNode);
+						brick.maxDepth = Math.max(brick.maxDepth, newNode.lvl);
+						name++;
+						if(profiler != null) {
+							
+							profiler.nodeMerged();
+						}
+					}
+					brick.adjacencies = null;
+					return null;
+				}
+			});
+		}
+		this.execute(tasks);
+		
+		long mergingEndingTime= System.nanoTime();
+		long mergingTimeMs = (mergingEndingTime - mergingStartingTime)/1000000;
+		long mergingTimeS = mergingTimeMs / 1000;
+		Log.println(context +"_BRICKS", Strings.TIME_OF_MERGINGS +": "+ mergingTimeMs +" ms | "+ mergingTimeS +" s");
+	}
+	
+	/**
+	 * Splits the cube in bricks of {@link BPTVSP#brickSize} voxels per side.
+	 */
+	private void prepareBricks() {
+		
+		int width = this.labelMatrix3D.getWidth();
+		int height = this.labelMatrix3D.getHeight();
+		int depth = this.labelMatrix3D.getDepth();
+		int nbBricksX = (width + this.brickSize - 1) / this.brickSize;
+		int nbBricksY = (height + this.brickSize - 1) / this.brickSize;
+		int nbBricksZ = (depth + this.brickSize - 1) / this.brickSize;
+		
+		this.bricks = new Brick[nbBricksX * nbBricksY * nbBricksZ];
+		int index = 0;
+		for(int by = 0; by < nbBricksY; ++by) {
+			for(int bx = 0; bx < nbBricksX; ++bx) {
+				for(int bz = 0; bz < nbBricksZ; ++bz) {
+					
+					int xMin = bx * this.brickSize;
+					int yMin = by * this.brickSize;
+					int zMin = bz * this.brickSize;
+					this.bricks[index] = new Brick(index, 
+							xMin, Math.min(width, xMin + this.brickSize), 
+							yMin, Math.min(height, yMin + this.brickSize), 
+							zMin, Math.min(depth, zMin + this.brickSize));
+					index++;
+				}
+			}
+		}
+		Log.println(context, "Nb bricks: "+ this.bricks.length +" ("+ nbBricksX +" x "+ nbBricksY +" x "+ nbBricksZ +")");
+	}
+	
+	/**
+	 * Stores the nodes created in the bricks after the leaves, by increasing merging score.
+	 * The order of creation is kept inside each brick so that each node is stored after its children.
+	 * The nodes are renamed according to their position.
+	 */
+	private void regroupNodes() {
+		
+		PriorityQueue<Brick> nextNodes = new PriorityQueue<Brick>(Math.max(1, this.bricks.length), new Comparator<Brick>() {
+			
+			@Override
+			public int compare(Brick brick1, Brick brick2) {
+				
+				int comparison = Double.compare(brick1.nodes.get(brick1.currentNodeIndex).merginScore, brick2.nodes.get(brick2.currentNodeIndex).merginScore);
+				if(comparison == 0) {
+					
+					comparison = Integer.compare(brick1.index, brick2.index);
+				}
+				return comparison;
+			}
+		});
+		
+		for(Brick brick: this.bricks) {
+			
+			this.maxDepth = Math.max(this.maxDepth, brick.maxDepth);
+			if(!brick.nodes.isEmpty()) {
+				
+				nextNodes.add(brick);
+			}
+		}
+		
+		this.nbNodes = this.nbLeaves;
+		while(!nextNodes.isEmpty()) {
+			
+			Brick brick = nextNodes.poll();
+			Node node = brick.nodes.get(brick.currentNodeIndex);
+			node.setName(this.nbNodes);
+			this.nodes[this.nbNodes] = node;
+			this.nbNodes++;
+			
+			brick.currentNodeIndex++;
+			if(brick.currentNodeIndex < brick.nodes.size()) {
+				
+				nextNodes.add(brick);
+				
+			}else {
+				
+				brick.nodes = null;
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param node should not be null
+	 * @return the highest ancestor of the node 
+	 */
+	private static Node topOf(Node node) {
+		
+		while(node.father != null) {
+			
+			node = node.father;
+		}
+		return node;
+	}
+}
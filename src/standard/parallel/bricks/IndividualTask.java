@@ -41,14 +41,12 @@
 
 package standard.parallel.bricks;
 
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
 
 import datastructure.Adjacency;
+import datastructure.Neighborhood;
 import datastructure.Node;
+import datastructure.PixelRuns;
 import datastructure.Node.TypeOfNode;
 import datastructure.Tree.TypeOfConnectivity;
 import datastructure.set.SetOfAdjacencies;
@@ -58,22 +56,38 @@ import standard.parallel.BPTP.Side;
 import utils.Log;
 import utils.d2.LabelMatrix;
 
-public class IndividualTask extends Thread {
+/**
+ * Creation of the tree of one part of the image: leaves, links between the leaves and mergings until obtaining the root of the part.
+ * 
+ * <p>
+ * The task only reads and writes the nodes of its part, so the parts of an image can be built by any pool of threads
+ * (see {@link BPTP#pool}); the parts are linked once they are all built.
+ */
+public class IndividualTask implements Callable<Void> {
 	
-	private AtomicInteger waitingRequest = new AtomicInteger(0);
-
+	/**
+	 * Reports the progress of the mergings.
+	 */
 	private boolean inform = false;
-	private boolean running;
-	private boolean ended = false;
+	
+	/**
+	 * If true, the features of the nodes of the part are {@link Node#releaseFeatures() released} as soon as they are merged; set by {@link IndividualTask#compact(int)}.
+	 */
+	private boolean releasingFeatures = false;
 
 	BPTP tree;
 
-	Object lock = new Object();
-
 	SetOfAdjacencies adjaSet;
 	
 	public Side side;
 	
+	/**
+	 * 
+	 * @param adjaSet part of the image; should not be null
+	 * @param tree being created; should not be null
+	 * @param side quadrant of the image containing the part
+	 * @param inform if the task reports the progress of the mergings
+	 */
 	public IndividualTask(SetOfAdjacencies adjaSet, BPTP tree, Side side, boolean inform) {
 		
 		this.adjaSet = adjaSet;
@@ -81,17 +95,10 @@ public class IndividualTask extends Thread {
 		this.side = side;
 		this.inform = inform;
 	}
-	
-	public void dismissWaitingRequest() {
-	
-		waitingRequest.set(0);
-	}
 
 	@Override
-	public void run() {
+	public Void call() {
 
-		running = true;
-		
 		/* Prepare the array of nodes */
 		adjaSet.nbLeaves = (adjaSet.xMax - adjaSet.xMin) * (adjaSet.yMax - adjaSet.yMin);
 		int nbNodes = (adjaSet.nbLeaves * 2) - 1;
@@ -100,10 +107,7 @@ public class IndividualTask extends Thread {
 		adjaSet.labelMatrix.setNbRegions(adjaSet.nbLeaves);
 		adjaSet.labelMatrix.setLabels(new int[adjaSet.xMax - adjaSet.xMin][adjaSet.yMax - adjaSet.yMin]);
 		
-		/* Prepare the list of foreign nodes */
-		adjaSet.foreignNodes = new ConcurrentHashMap<Integer, Node>();
-	
-		/* Regroup pixels in the leaves and detect the frontier nodes */
+		/* Regroup pixels in the leaves */
 		Node leaf;
 		adjaSet.currentNodeIndex = 0;
 		for(int y = adjaSet.yMin; y < adjaSet.yMax; y++) {
@@ -119,35 +123,6 @@ public class IndividualTask extends Thread {
 				leaf.addPixel(x, y);
 				adjaSet.labelMatrix.setLabel(adjaSet.currentNodeIndex, x - adjaSet.xMin, y - adjaSet.yMin);
 				
-				/* Define the frontier */
-				if(adjaSet.xMin == 0) { // columns
-					
-					if(adjaSet.xMax < tree.image.getWidth() && x == adjaSet.xMax - 1) {
-						
-						leaf.setFrontier(true);
-					}
-				}else {
-					
-					if(x == adjaSet.xMin) {
-
-						leaf.setFrontier(true);
-					}
-				}
-				
-				if(adjaSet.yMin == 0) { // rows
-					
-					if(adjaSet.yMax < tree.image.getHeight() && y == adjaSet.yMax - 1) {
-						
-						leaf.setFrontier(true);
-					}
-				}else {
-					
-					if(y == adjaSet.yMin) {
-
-						leaf.setFrontier(true);
-					}
-				}
-
 				adjaSet.currentNodeIndex++;
 			}
 		}
@@ -163,145 +138,69 @@ public class IndividualTask extends Thread {
 			tree.metric.updateMF(leaf);
 		}
 		
-		/* Create adjacency edges between the leaves */
+		/* Create adjacency edges between the leaves; the frontiers with the other sides are linked once all sides are built (see BPTP) */
 		Log.println(side+"", "RAG-Creating adjacencies ... ");
 		adjaSet.currentNodeIndex = 0;
 		while(adjaSet.currentNodeIndex < adjaSet.nbLeaves) {
 			
 			leaf = adjaSet.nodes[adjaSet.currentNodeIndex];
-			ArrayList<Point> listOfPixels = leaf.getPixels();
-			boolean frontier = leaf.isFrontier;
-			for(int ip = 0; ip < listOfPixels.size(); ip++){
+			PixelRuns runs = leaf.pixelRuns;
+			for(int run = 0; run < runs.getNbRuns(); ++run) {
 				
-				Point pixel = listOfPixels.get(ip);
+				int yPixel = runs.getRow(run);
+				int end = runs.getEnd(run);
+				for(int xPixel = runs.getStart(run); xPixel < end; ++xPixel) {
 				
-				int xPixel = (int) pixel.getX();
-				int yPixel = (int) pixel.getY();
-				int labelPixel = adjaSet.labelMatrix.getLabel(xPixel - adjaSet.xMin, yPixel - adjaSet.yMin);
-				Node leafContainingPixel = adjaSet.nodes[labelPixel];
+					int labelPixel = adjaSet.labelMatrix.getLabel(xPixel - adjaSet.xMin, yPixel - adjaSet.yMin);
+					Node leafContainingPixel = adjaSet.nodes[labelPixel];
 				
-				if(tree.connectivity == TypeOfConnectivity.CN8) {
+					if(tree.connectivity == TypeOfConnectivity.CN8) {
 					
-					/* 8 connectivities */
-					for(int yNeighbor = yPixel-1; yNeighbor <= yPixel+1; yNeighbor++) {
-						for(int xNeighbor = xPixel-1; xNeighbor <= xPixel+1; xNeighbor++) {
-							if((xNeighbor != xPixel || yNeighbor != yPixel) && adjaSet.isInStudiedAread(xNeighbor, yNeighbor)) {
+						/* 8 connectivities */
+						for(int yNeighbor = yPixel-1; yNeighbor <= yPixel+1; yNeighbor++) {
+							for(int xNeighbor = xPixel-1; xNeighbor <= xPixel+1; xNeighbor++) {
+								if((xNeighbor != xPixel || yNeighbor != yPixel) && adjaSet.isInStudiedAread(xNeighbor, yNeighbor)) {
 
-								int labelNeighbor = adjaSet.labelMatrix.getLabel(xNeighbor - adjaSet.xMin, yNeighbor - adjaSet.yMin);
-								Node neighbor = adjaSet.nodes[labelNeighbor];
+									int labelNeighbor = adjaSet.labelMatrix.getLabel(xNeighbor - adjaSet.xMin, yNeighbor - adjaSet.yMin);
+									Node neighbor = adjaSet.nodes[labelNeighbor];
 
-								if(labelNeighbor != labelPixel) {
+									if(labelNeighbor != labelPixel) {
 									
-									Adjacency newAdjacency = new Adjacency(neighbor, leafContainingPixel);
-									adjaSet.add(newAdjacency, tree.metric);
+										Adjacency newAdjacency = new Adjacency(neighbor, leafContainingPixel);
+										this.add(adjaSet, newAdjacency);
+									}
 								}
 							}
 						}
-					}
-					
-					/* case of a frontier pixel */
-					if(frontier) {
-						
-						if(adjaSet.xMin == 0) { // columns
-							
-							if(adjaSet.xMax < tree.image.getWidth() && pixel.getX() == adjaSet.xMax - 1) {
-
-								int x = xPixel + 1;
-								int y = yPixel - 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel + 1;
-								y = yPixel;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel + 1;
-								y = yPixel + 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-							}
-						}else {
-							
-							if(pixel.getX() == adjaSet.xMin) {
-
-								int x = xPixel - 1;
-								int y = yPixel - 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel - 1;
-								y = yPixel;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel - 1;
-								y = yPixel + 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-																		
-							}
-						}
 						
-						if(adjaSet.yMin == 0) { // rows
-							
-							if(adjaSet.yMax < tree.image.getHeight() && pixel.getY() == adjaSet.yMax - 1) {
-							
-								int x = xPixel - 1;
-								int y = yPixel + 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel;
-								y = yPixel + 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel + 1;
-								y = yPixel + 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-							}
-						}else {
-							
-							if(pixel.getY() == adjaSet.yMin) {
-
-								int x = xPixel - 1;
-								int y = yPixel - 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel;
-								y = yPixel - 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-								x = xPixel + 1;
-								y = yPixel - 1;
-								manageAdjaFrontier(x, y, leafContainingPixel);
-
-							}
-						}
-					}
+					}else {
+
+						/* 4 connectivities */
+						int[][] coords = new int[4][2];
+						coords[0][0] = xPixel;
+						coords[0][1] = yPixel - 1;
+						coords[1][0] = xPixel - 1;
+						coords[1][1] = yPixel;
+						coords[2][0] = xPixel + 1;
+						coords[2][1] = yPixel;
+						coords[3][0] = xPixel;
+						coords[3][1] = yPixel + 1;
 					
-				}else { // TODO - manage frontiers for 4-cn
-
-					/* 4 connectivities */
-					int[][] coords = new int[4][2];
-					coords[0][0] = xPixel;
-					coords[0][1] = yPixel - 1;
-					coords[1][0] = xPixel - 1;
-					coords[1][1] = yPixel;
-					coords[2][0] = xPixel + 1;
-					coords[2][1] = yPixel;
-					coords[3][0] = xPixel;
-					coords[3][1] = yPixel + 1;
-					
-					for(int i = 0; i < coords.length; i++) {
+						for(int i = 0; i < coords.length; i++) {
 
-						int xNeighbor = coords[i][0];
-						int yNeighbor = coords[i][1];
+							int xNeighbor = coords[i][0];
+							int yNeighbor = coords[i][1];
 						
-						if((xNeighbor != xPixel || yNeighbor != yPixel) && adjaSet.isInStudiedAread(xNeighbor, yNeighbor)) {
+							if((xNeighbor != xPixel || yNeighbor != yPixel) && adjaSet.isInStudiedAread(xNeighbor, yNeighbor)) {
 
-							int labelNeighbor = adjaSet.labelMatrix.getLabel(xNeighbor - adjaSet.xMin, yNeighbor - adjaSet.yMin);
-							Node neighbor = adjaSet.nodes[labelNeighbor];
+								int labelNeighbor = adjaSet.labelMatrix.getLabel(xNeighbor - adjaSet.xMin, yNeighbor - adjaSet.yMin);
+								Node neighbor = adjaSet.nodes[labelNeighbor];
 
-							if(labelNeighbor != labelPixel) {
+								if(labelNeighbor != labelPixel) {
 								
-								Adjacency newAdjacency = new Adjacency(neighbor, leafContainingPixel);
-								adjaSet.add(newAdjacency, tree.metric);
+									Adjacency newAdjacency = new Adjacency(neighbor, leafContainingPixel);
+									this.add(adjaSet, newAdjacency);
+								}
 							}
 						}
 					}
@@ -336,6 +235,7 @@ public class IndividualTask extends Thread {
 					tree.metric.initMF(newNode);
 					tree.metric.updateMF(newNode);
 					newNode.rememberMerginScore(potentialAdjacency.distance);
+					newNode.updateLvl(Math.max(node1.lvl, node2.lvl) + 1);
 					newNode.setSide(side);
 
 					/* Let the two nodes forget each other and break the link */
@@ -343,10 +243,10 @@ public class IndividualTask extends Thread {
 					node2.removeNeighbor(node1);
 
 					/* Remove the adjacencies of the neighbors of node1 */ 
-					for(Entry <Node, Adjacency> entry: node1.listOfNeighbors.entrySet()) {
+					for(Neighborhood.Cursor cursor = node1.listOfNeighbors.cursor(); cursor.next();) {
 
-						Node neighborNode = entry.getKey();
-						Adjacency neighborAdja = entry.getValue();
+						Node neighborNode = cursor.neighbor;
+						Adjacency neighborAdja = cursor.adjacency;
 						neighborNode.removeNeighbor(node1);
 						if(neighborAdja.isRegistered()) {
 
@@ -359,16 +259,16 @@ public class IndividualTask extends Thread {
 
 						/* Generate adjacencies between the new node and its neighbors */
 						Adjacency newAdja = new Adjacency(neighborNode, newNode);
-						adjaSet.add(newAdja, tree.metric);
+						this.add(adjaSet, newAdja);
 						newAdja.sideAdjaSet = adjaSet;
 					}
 					node1.listOfNeighbors = null;
 
 					/* Remove the adjacencies of the neighbors of node2 */ 
-					for(Entry<Node, Adjacency> entry: node2.listOfNeighbors.entrySet()) {
+					for(Neighborhood.Cursor cursor = node2.listOfNeighbors.cursor(); cursor.next();) {
 
-						Node neighborNode = entry.getKey();
-						Adjacency neighborAdja = entry.getValue();
+						Node neighborNode = cursor.neighbor;
+						Adjacency neighborAdja = cursor.adjacency;
 
 						neighborNode.removeNeighbor(node2);
 
@@ -385,29 +285,35 @@ public class IndividualTask extends Thread {
 
 							/* Generate adjacencies between the new node and its neighbors */
 							Adjacency newAdja = new Adjacency(neighborNode, newNode);
-							adjaSet.add(newAdja, tree.metric);
+							this.add(adjaSet, newAdja);
 							newAdja.sideAdjaSet = adjaSet;
 						}
 					}
 					node2.listOfNeighbors = null;
+					if(this.releasingFeatures) {
+						
+						node1.releaseFeatures();
+						node2.releaseFeatures();
+					}
+					
 					numFusion++;
+					if(tree.profiler != null) {
 
-					if(inform) {
-
-						if(adjaSet.currentNodeIndex % tree.GC_ITERATION == 0) {
+						tree.profiler.nodeMerged();
+					}
 
-							Log.println("GC", "Cleaning!");
-							System.gc();
-							System.runFinalization();
-						}
+					if(inform) {
 
-						long progress = (numFusion * 100) / nbFusions;
-						tree.progress = (int) progress;
-						Log.println("FUSION", progress +"%");
+						tree.progress = Log.printProgress("FUSION", tree.progress, numFusion, nbFusions);
 					}
 
 					adjaSet.nodes[index] = newNode;
 					index++;
+					
+					if(tree.memoryBudget != null && numFusion % tree.GC_ITERATION == 0 && tree.memoryBudget.isExceeded()) {
+						
+						this.compact(index);
+					}
 				}
 			}				
 		}
@@ -416,45 +322,42 @@ public class IndividualTask extends Thread {
 			
 			newNode.type = TypeOfNode.ROOT;
 		}
+		return null;
 	}
 
-	public boolean running() { return this.running && !this.ended ; }
-
-	public void waitingRequest() { waitingRequest.set(1); }
-
-	private SetOfAdjacencies getConcernedAdjaSet(int x, int y) {
-	
-		for(Entry<Side, SetOfAdjacencies> entry: tree.sideResource.entrySet()) {
+	/**
+	 * Frees the {@link Node#releaseFeatures() features} of the merged nodes of the part, no longer needed once their father is created.
+	 * From then on, the features of each node of the part are released as soon as it is merged: only the ones of the root of the part are kept for the mergings between the parts.
+	 * Called when the {@link BPTP#memoryBudget memory budget} of the tree is exceeded.
+	 * 
+	 * @param nbNodes number of nodes already created in the part; should be >= 0
+	 */
+	private void compact(int nbNodes) {
+		
+		for(int n = 0; n < nbNodes; ++n) {
 			
-			if(entry.getValue().isInStudiedAread(x, y)) {
+			Node node = this.adjaSet.nodes[n];
+			if(node != null && node.father != null) {
 				
-				return entry.getValue();
+				node.releaseFeatures();
 			}
 		}
-		
-		return null;
+		this.releasingFeatures = true;
+		Log.println(this.side +"", Strings.CLEANING +"!");
 	}
 
-	private void manageAdjaFrontier(int x, int y, Node node) {
+	/**
+	 * Computes the distance of the adjacency and adds it to the set of adjacencies of the part.
+	 * 
+	 * @param adjaSet set of adjacencies of the part
+	 * @param adjacency to add
+	 */
+	private void add(SetOfAdjacencies adjaSet, Adjacency adjacency) {
 
-		try {
-			
-			SetOfAdjacencies concernedAdjaSet = this.getConcernedAdjaSet(x, y);
+		adjaSet.add(adjacency, tree.metric);
+		if(tree.profiler != null) {
 
-			int labelNeighbor = concernedAdjaSet.labelMatrix.getLabel(x - concernedAdjaSet.xMin, y - concernedAdjaSet.yMin);
-			Node neighbor = concernedAdjaSet.nodes[labelNeighbor];
-			
-			if(!node.listOfForeignNeighbors.containsKey(neighbor)) {
-
-				Adjacency newAdja = new Adjacency(node.name, neighbor.name);
-				newAdja.computeDistance(tree.metric);
-				node.listOfForeignNeighbors.put(neighbor, newAdja);
-				neighbor.listOfForeignNeighbors.put(node, newAdja);
-			}
-			
-		}catch(Exception e) {
-			
-			System.err.println("Frontier managing: over flow /n");
+			tree.profiler.distancesEvaluated(1);
 		}
 	}
 
@@ -0,0 +1,562 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package standard.parallel.bricks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import datastructure.Adjacency;
+import datastructure.AdjacencyPool;
+import datastructure.Neighborhood;
+import datastructure.Node;
+import datastructure.Node.TypeOfNode;
+import lang.Strings;
+import metric.bricks.Metric;
+import standard.sequential.BPT;
+import utils.Log;
+
+/**
+ * Node merging process based on the Reciprocal Nearest Neighbors (RNN), for the {@link Metric#isReducible() reducible metrics}.
+ * 
+ * <p>
+ * Two regions are reciprocal nearest neighbors when each one is the closest neighbor of the other.
+ * With a reducible metric, such a pair is merged by the {@link BPT#nodeMergings() sequential process} sooner or later, 
+ * whatever the mergings done elsewhere: all the pairs found at a time can then be merged together.
+ * Each round:
+ * <li> finds the nearest neighbor of the regions whose neighborhood changed (concurrently);
+ * <li> merges all the reciprocal pairs (the links are updated in a fixed order);
+ * <li> computes the features of the new regions and scores their links (concurrently).
+ * 
+ * <p>
+ * The links having the same distance are ordered {@link Adjacency#compareTieTo(Adjacency) as in the sequential process}:
+ * this order does not depend on the names of the regions and keeps the metric reducible, so that the ties are broken the same way.
+ * The new regions are finally named by increasing merging score then by this order, which is the order of the sequential process:
+ * the tree is identical to the sequential one, whatever the number of threads.
+ *
+ */
+public class RNNMergings {
+	
+	/**
+	 * Number of regions below which a step is not split between the threads.
+	 */
+	public static final int MIN_PARALLEL_SIZE = 256;
+	
+	/**
+	 * Tree whose leaves and RAG are created.
+	 */
+	private final BPT<?> tree;
+	
+	/**
+	 * Metric of the tree; should be {@link Metric#isReducible() reducible}.
+	 */
+	private final Metric metric;
+	
+	/**
+	 * Closest link of each region, indexed by the name of the region.
+	 */
+	private Adjacency[] nearests;
+	
+	/**
+	 * States, for each region indexed by its name, if its nearest neighbor has just been updated.
+	 */
+	private boolean[] updated;
+	
+	/**
+	 * Number of threads sharing the concurrent steps.
+	 */
+	private final int nbThreads;
+	
+	/**
+	 * Created regions, in the order of their creation.
+	 */
+	private final ArrayList<Node> newNodes = new ArrayList<Node>();
+	
+	/**
+	 * Links removed during the mergings and ready to be reused.
+	 */
+	private final AdjacencyPool adjacencyPool = new AdjacencyPool();
+	
+	private ExecutorService executor;
+	
+	/**
+	 * A step applied to each element of a list.
+	 */
+	private interface Step<E> {
+		
+		void apply(E element);
+	}
+
+	/**
+	 * Prepares the merging of the regions of a tree.
+	 * 
+	 * @param tree whose {@link BPT#createRAG() RAG is created}; should not be null
+	 * @param nbThreads number of threads sharing the concurrent steps; 1 to work in the calling thread only
+	 * 
+	 * @throws NullPointerException if tree is null
+	 */
+	public RNNMergings(BPT<?> tree, int nbThreads) {
+		
+		this.tree = tree;
+		this.metric = tree.getMetric();
+		this.nbThreads = Math.max(1, nbThreads);
+	}
+	
+	/**
+	 * 
+	 * @param metric to use; could be null
+	 * @return true if the regions can be merged by reciprocal nearest neighbors with the metric
+	 */
+	public static boolean isEligible(Metric metric) {
+		
+		return metric != null && metric.isReducible();
+	}
+	
+	/**
+	 * Order of the links of the sequential process: by distance, then {@link Adjacency#compareTieTo(Adjacency) as ties}.
+	 * 
+	 * @return true if 'a' comes strictly before 'b'
+	 */
+	private static boolean precedes(Adjacency a, Adjacency b) {
+		
+		int comparison = Double.compare(a.distance, b.distance);
+		if(comparison != 0) {
+			
+			return comparison < 0;
+		}
+		return a.compareTieTo(b) < 0;
+	}
+	
+	/**
+	 * Merges the regions until each connected part of the image is a single region.
+	 * Fills the nodes of the tree, its number of nodes and its max depth as the {@link BPT#nodeMergings() sequential process} does.
+	 */
+	public void execute() {
+		
+		int nbLeaves = this.tree.nbLeaves;
+		int nbFusions = nbLeaves - 1;
+		String fusionContext = this.tree.context +"_FUSION";
+		this.nearests = new Adjacency[Math.max(1, 2 * nbLeaves - 1)];
+		this.updated = new boolean[this.nearests.length];
+		if(this.nbThreads > 1) {
+			
+			this.executor = Executors.newFixedThreadPool(this.nbThreads);
+		}
+		
+		try {
+			
+			/* All the leaves are to be considered first */
+			ArrayList<Node> toUpdate = new ArrayList<Node>(nbLeaves);
+			for(int l = 0; l < nbLeaves; ++l) {
+				
+				Node leaf = this.tree.nodes[l];
+				if(leaf != null && leaf.listOfNeighbors != null && !leaf.listOfNeighbors.isEmpty()) {
+					
+					toUpdate.add(leaf);
+				}
+			}
+			
+			boolean everything = true;
+			while(!toUpdate.isEmpty()) {
+				
+				/* 1. Nearest neighbor of each updated region */
+				this.forEach(toUpdate, new Step<Node>() {
+	
+					@Override
+					public void apply(Node node) {
+						
+						Adjacency nearest = null;
+						for(Neighborhood.Cursor cursor = node.listOfNeighbors.cursor(); cursor.next();) {
+							
+							if(nearest == null || precedes(cursor.adjacency, nearest)) {
+								
+								nearest = cursor.adjacency;
+							}
+						}
+						RNNMergings.this.nearests[node.name] = nearest;
+					}
+				});
+				
+				/* 2. Reciprocal pairs; at least one of the two regions has been updated */
+				ArrayList<Adjacency> pairs = new ArrayList<Adjacency>();
+				for(Node node: toUpdate) {
+					
+					this.updated[node.name] = true;
+				}
+				for(Node node: toUpdate) {
+					
+					Adjacency nearest = this.nearests[node.name];
+					Node neighbor = nearest.node1 == node ? nearest.node2 : nearest.node1;
+					if(this.nearests[neighbor.name] == nearest && (node == nearest.node1 || !this.updated[neighbor.name])) {
+						
+						pairs.add(nearest);
+					}
+				}
+				for(Node node: toUpdate) {
+					
+					this.updated[node.name] = false;
+				}
+				
+				if(pairs.isEmpty()) {
+					
+					/* Only possible if the metric is not strictly reducible (e.g. rounding): consider all the remaining regions again */
+					if(everything) {
+						
+						break;
+					}
+					toUpdate = this.remainingRegions();
+					everything = true;
+					continue;
+				}
+				Collections.sort(pairs, new Comparator<Adjacency>() {
+	
+					@Override
+					public int compare(Adjacency a1, Adjacency a2) {
+						
+						return a1.node1.name != a2.node1.name ? Integer.compare(a1.node1.name, a2.node1.name) : Integer.compare(a1.node2.name, a2.node2.name);
+					}
+				});
+				
+				/* 3. Mergings, in a fixed order */
+				int firstNewNode = this.newNodes.size();
+				for(Adjacency pair: pairs) {
+					
+					this.merge(pair, nbLeaves + this.newNodes.size());
+				}
+				final List<Node> created = this.newNodes.subList(firstNewNode, this.newNodes.size());
+				
+				/* 4. Features of the new regions */
+				this.forEach(created, new Step<Node>() {
+	
+					@Override
+					public void apply(Node newNode) {
+						
+						RNNMergings.this.metric.initMF(newNode);
+						RNNMergings.this.metric.updateMF(newNode);
+					}
+				});
+				
+				/* 5. Links of the new regions, each one scored once */
+				ArrayList<Adjacency> links = new ArrayList<Adjacency>();
+				LinkedHashSet<Node> next = new LinkedHashSet<Node>();
+				for(Node newNode: created) {
+					
+					next.add(newNode);
+					for(Neighborhood.Cursor cursor = newNode.listOfNeighbors.cursor(); cursor.next();) {
+						
+						next.add(cursor.neighbor);
+						if(cursor.adjacency.node2 == newNode) {
+							
+							links.add(cursor.adjacency);
+						}
+					}
+				}
+				this.forEach(links, new Step<Adjacency>() {
+	
+					@Override
+					public void apply(Adjacency adjacency) {
+						
+						adjacency.computeDistance(RNNMergings.this.metric);
+					}
+				});
+				if(this.tree.profiler != null) {
+					
+					this.tree.profiler.distancesEvaluated(links.size());
+				}
+				
+				/* 6. Regions whose nearest neighbor may have changed */
+				toUpdate = new ArrayList<Node>(next.size());
+				for(Node node: next) {
+					
+					if(!node.listOfNeighbors.isEmpty()) {
+						
+						toUpdate.add(node);
+					}
+				}
+				everything = false;
+				this.tree.progress = Log.printProgress(fusionContext, this.tree.progress, this.newNodes.size(), nbFusions);
+			}
+			
+		}finally {
+			
+			if(this.executor != null) {
+				
+				this.executor.shutdown();
+				this.executor = null;
+			}
+		}
+		
+		this.name(nbLeaves);
+		this.nearests = null;
+		this.updated = null;
+	}
+	
+	/**
+	 * Applies a step to all the elements of a list, split between the threads if the list is big enough.
+	 */
+	private <E> void forEach(final List<E> elements, final Step<E> step) {
+		
+		int size = elements.size();
+		if(this.executor == null || size < MIN_PARALLEL_SIZE) {
+			
+			for(E element: elements) {
+				
+				step.apply(element);
+			}
+			return;
+		}
+		
+		int chunk = (size + this.nbThreads - 1) / this.nbThreads;
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.nbThreads);
+		for(int start = 0; start < size; start += chunk) {
+			
+			final int from = start;
+			final int to = Math.min(size, start + chunk);
+			tasks.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					
+					for(int i = from; i < to; ++i) {
+						
+						step.apply(elements.get(i));
+					}
+					return null;
+				}
+			});
+		}
+		
+		try {
+			
+			for(Future<Void> future: this.executor.invokeAll(tasks)) {
+				
+				future.get();
+			}
+			
+		}catch(InterruptedException e) {
+			
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+			
+		}catch(ExecutionException e) {
+			
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Merges two reciprocal nearest neighbors and links the new region to their neighbors, the same way as the sequential process.
+	 * The new links are not scored yet.
+	 * 
+	 * @param pair link between the two regions; should not be null
+	 * @param name temporary name of the new region
+	 */
+	private void merge(Adjacency pair, int name) {
+		
+		Node leftNode = pair.node1;
+		Node rightNode = pair.node2;
+		Node newNode = new Node(name, leftNode, rightNode);
+		newNode.type = TypeOfNode.NODE;
+		newNode.rememberMerginScore(pair.distance);
+		this.newNodes.add(newNode);
+		
+		leftNode.removeNeighbor(rightNode);
+		rightNode.removeNeighbor(leftNode);
+		
+		this.relink(leftNode, newNode);
+		this.relink(rightNode, newNode);
+		this.adjacencyPool.release(pair);
+		
+		if(this.tree.profiler != null) {
+			
+			this.tree.profiler.nodeMerged();
+		}
+	}
+	
+	/**
+	 * Replaces a merged region by the new one in the neighborhood of its neighbors; the frontiers are summed.
+	 */
+	private void relink(Node child, Node newNode) {
+		
+		for(Neighborhood.Cursor cursor = child.listOfNeighbors.cursor(); cursor.next();) {
+			
+			Node neighbor = cursor.neighbor;
+			Adjacency adjacencyNeighbor = cursor.adjacency;
+			neighbor.removeNeighbor(child);
+			
+			Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
+			if(createdAdjacency == null) {
+				
+				createdAdjacency = this.adjacencyPool.obtain(neighbor, newNode);
+			}
+			createdAdjacency.frontier += adjacencyNeighbor.frontier;
+			this.adjacencyPool.release(adjacencyNeighbor);
+		}
+		child.releaseNeighborhood();
+	}
+	
+	/**
+	 * Names the new regions by increasing merging score then {@link Adjacency#compareTieTo(Adjacency) as ties} of the merged link, 
+	 * stores them in the tree and sets their levels as the sequential process does.
+	 * 
+	 * <p>
+	 * The key used to sort a region is never lower than the ones of its children, so that a father is always named after them.
+	 */
+	private void name(int nbLeaves) {
+		
+		final int nbNewNodes = this.newNodes.size();
+		final double[] scores = new double[nbNewNodes];
+		final long[] sizes = new long[nbNewNodes];
+		final long[] ranks = new long[nbNewNodes];
+		ArrayList<Integer> order = new ArrayList<Integer>(nbNewNodes);
+		for(int i = 0; i < nbNewNodes; ++i) {
+			
+			/* size and rank of the merged link, from the children */
+			Node newNode = this.newNodes.get(i);
+			scores[i] = newNode.merginScore;
+			sizes[i] = (long) newNode.nbPixels + newNode.nbVoxels;
+			ranks[i] = (long) newNode.lastLeaf << 32 | Math.min(newNode.leftNode.lastLeaf, newNode.rightNode.lastLeaf);
+			for(Node child: new Node[] {newNode.leftNode, newNode.rightNode}) {
+				
+				int c = child.name - nbLeaves;
+				if(c >= 0) {
+					
+					if(compare(scores[c], sizes[c], ranks[c], scores[i], sizes[i], ranks[i]) > 0) {
+						
+						scores[i] = scores[c];
+						sizes[i] = sizes[c];
+						ranks[i] = ranks[c];
+					}
+				}
+			}
+			order.add(i);
+		}
+		
+		/* stable: a father found after its children stays after them */
+		Collections.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				
+				return RNNMergings.compare(scores[i1], sizes[i1], ranks[i1], scores[i2], sizes[i2], ranks[i2]);
+			}
+		});
+		
+		for(int rank = 0; rank < nbNewNodes; ++rank) {
+			
+			this.newNodes.get(order.get(rank)).name = nbLeaves + rank;
+		}
+		
+		Node newNode = null;
+		for(int rank = 0; rank < nbNewNodes; ++rank) {
+			
+			newNode = this.newNodes.get(order.get(rank));
+			
+			/* the child with the lowest name is on the left */
+			if(newNode.leftNode.name > newNode.rightNode.name) {
+				
+				Node leftNode = newNode.leftNode;
+				newNode.leftNode = newNode.rightNode;
+				newNode.rightNode = leftNode;
+			}
+			newNode.updateLabel();
+			this.tree.nodes[newNode.name] = newNode;
+			
+			newNode.updateLvl(Math.max(newNode.leftNode.lvl, newNode.rightNode.lvl) + 1);
+			if(this.tree.maxDepth < newNode.lvl) this.tree.maxDepth = newNode.lvl;
+		}
+		this.tree.nbNodes = nbLeaves + nbNewNodes;
+		
+		if(newNode != null) {
+			
+			newNode.type = TypeOfNode.ROOT;
+		}
+		this.newNodes.clear();
+	}
+	
+	/**
+	 * Compares two mergings by score, then {@link Adjacency#compareTieTo(Adjacency) as ties}.
+	 * 
+	 * @return a negative value, zero or a positive value if the first merging comes before, with or after the second one
+	 */
+	private static int compare(double score1, long size1, long rank1, double score2, long size2, long rank2) {
+		
+		int comparison = Double.compare(score1, score2);
+		if(comparison == 0) {
+			
+			comparison = Long.compare(size1, size2);
+		}
+		return comparison != 0 ? comparison : Long.compare(rank1, rank2);
+	}
+	
+	/**
+	 * 
+	 * @return the regions not merged yet and still having neighbors
+	 */
+	private ArrayList<Node> remainingRegions() {
+		
+		ArrayList<Node> remaining = new ArrayList<Node>();
+		for(int l = 0; l < this.tree.nbLeaves; ++l) {
+			
+			Node leaf = this.tree.nodes[l];
+			if(leaf != null && leaf.father == null && leaf.listOfNeighbors != null && !leaf.listOfNeighbors.isEmpty()) {
+				
+				remaining.add(leaf);
+			}
+		}
+		for(Node newNode: this.newNodes) {
+			
+			if(newNode.father == null && !newNode.listOfNeighbors.isEmpty()) {
+				
+				remaining.add(newNode);
+			}
+		}
+		return remaining;
+	}
+}
@@ -42,37 +42,53 @@
 package standard.sequential;
 
 import java.awt.Color;
-import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FilenameUtils;
 
 import ch.systemsx.cisd.hdf5.HDF5Factory;
 import ch.systemsx.cisd.hdf5.IHDF5Reader;
 import datastructure.Adjacency;
+import datastructure.AdjacencyPool;
+import datastructure.Neighborhood;
 import datastructure.Node;
+import datastructure.PixelRuns;
 import datastructure.Tree;
 import datastructure.Node.TypeOfNode;
 import datastructure.set.AdjacencySet;
 import datastructure.set.AdjacencySet.OptimalOption;
+import datastructure.set.LazyAdjacencyHeap;
 import datastructure.set.SetOfAdjacencyBuckets;
 import lang.Strings;
+import metric.bricks.BandLayout;
 import metric.bricks.Metric;
 import metric.bricks.MetricFactory;
 import metric.bricks.Metric.TypeOfMetric;
 import metric.color.Ominmax;
+import standard.parallel.bricks.RNNMergings;
 import utils.ImTool;
 import utils.Log;
+import utils.MemoryBudget;
+import utils.RunLabelling;
+import utils.Log.Level;
 import utils.d2.Formula;
 import utils.d2.LabelMatrix;
 import utils.d2.SegmentByConnexityRaw;
+import utils.profiling.BuildProfiler;
+import utils.profiling.BuildProfiler.Phase;
 
 
 /**
@@ -92,6 +108,35 @@ public class BPT<T> implements Tree, Serializable{
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * How a BPT saved in a HDF5 file is opened.
+	 * 
+	 * <p>
+	 * <li> EAGER: the images are decoded and the metric is prepared while opening;
+	 * <li> LAZY_IMAGE: the images are decoded and the metric is prepared when they are first requested (i.e. {@link BPT#getImage()}, {@link BPT#getPreSegImage()}, {@link BPT#getMetric()});
+	 * <li> STRUCTURE_ONLY: only the structure is read, the images and the metric are never prepared.
+	 */
+	public enum OpenMode {
+		
+		EAGER,
+		LAZY_IMAGE,
+		STRUCTURE_ONLY
+	}
+
+	/**
+	 * How the regions are merged once the RAG is created.
+	 * 
+	 * <p>
+	 * <li> SEQUENTIAL: the closest pair of the whole RAG is merged at each iteration;
+	 * <li> RNN: all the pairs of {@link RNNMergings reciprocal nearest neighbors} are merged at once, concurrently; 
+	 * only used with a {@link Metric#isReducible() reducible metric}, the sequential merging is used otherwise.
+	 */
+	public enum MergingEngine {
+		
+		SEQUENTIAL,
+		RNN
+	}
 
 	/**
 	 * The active nodes represents the regions forming a partition of an image.
@@ -107,6 +152,11 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	private Set<Adjacency> adjacenciesBuffer = new HashSet<Adjacency>();
 
+	/**
+	 * Adjacencies removed during the node mergings and ready to be reused.
+	 */
+	protected transient AdjacencyPool adjacencyPool;
+
 	/**
 	 * Defines the size of the biggest leaf.
 	 */
@@ -133,7 +183,7 @@ public class BPT<T> implements Tree, Serializable{
 	public boolean ended;
 	
 	/**
-	 * The garbage collector (GC) is invoked manually after some numbers of iterations. 
+	 * Number of node mergings between two checks of the {@link BPT#memoryBudget memory budget}. 
 	 */
 	public final int GC_ITERATION = 100000;
 	
@@ -152,6 +202,13 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	public LabelMatrix labelMatrix;
 	
+	/**
+	 * If true, the adjacencies are stored in a {@link LazyAdjacencyHeap heap} where the removed ones are discarded 
+	 * only when they reach the top, instead of {@link SetOfAdjacencyBuckets buckets} where each removal is done at once.
+	 * The tree is the same in both cases.
+	 */
+	public boolean lazyAdjacencyRemoval = false;
+	
 	/**
 	 * Maximum depth value
 	 */
@@ -162,16 +219,47 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	public int maxLonger;
 
+	/**
+	 * Optional upper limit of the heap used during the creation.
+	 * When exceeded, the structures of the builder are {@link BPT#compact() compacted} instead of forcing a garbage collection.
+	 */
+	public transient MemoryBudget memoryBudget;
+	
+	/**
+	 * If true, the features of the nodes are {@link Node#releaseFeatures() released} as soon as they are merged; set by {@link BPT#compact()}.
+	 */
+	protected transient boolean releasingFeatures = false;
+	
+	/**
+	 * How the regions are merged; sequentially by default.
+	 */
+	public MergingEngine mergingEngine = MergingEngine.SEQUENTIAL;
+
 	/**
 	 * Metric computing the similarity distance between two regions.
 	 * By default, the RADIOMETRIC_MIN_MAX is used.
 	 */
 	public Metric metric;
+	
+	/**
+	 * Positions of the band features of the metric in the nodes, prepared at the beginning of each creation (see {@link BPT#reserveBandFeatures(BandLayout)}).
+	 */
+	public transient BandLayout bandLayout;
+	
+	/**
+	 * When the tree is read from an HDF5 file: type and parameters of the metric (e.g. "RADIOMETRIC_MIN_MAX;0.5"), kept until the metric is prepared.
+	 */
+	private String metricInfo;
 
 	/**
 	 * Used essentially for BPT file saving.
 	 */
 	public String name;
+	
+	/**
+	 * Number of threads used by the {@link MergingEngine#RNN RNN merging}.
+	 */
+	public int nbMergingThreads = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * According to the type of neighbor connectivity chosen, the number of the initial adjacencies can vary.  
@@ -204,17 +292,53 @@ public class BPT<T> implements Tree, Serializable{
 	 * Leaves can be defined as the set of pixels but also a set of pre-segmented regions previously obtained.
 	 */
 	public transient BufferedImage preSegImage;
+	
+	/**
+	 * If true, the regions of the pre-segmented image are saved in a .png file next to it, in a separate thread, when defining the leaves.
+	 */
+	public boolean exportPreSegRegions = false;
+	
+	/**
+	 * Saving of the regions of the pre-segmented image, if {@link BPT#exportPreSegRegions requested}; 
+	 * wait for it (i.e. get()) before reading the file.
+	 */
+	public transient Future<?> preSegExport;
+	
+	/**
+	 * Executor saving the regions of the pre-segmented image, if {@link BPT#exportPreSegRegions requested}.
+	 * 
+	 * <p>
+	 * If null when the leaves are defined, an executor of one thread is created here; the thread is not a daemon (i.e. the file is written before the JVM ends) and ends once idle.
+	 * Either way, the caller can shut it down and wait for its end (i.e. awaitTermination()).
+	 */
+	public transient ExecutorService preSegExportExecutor;
+	
+	/**
+	 * Number of seconds the thread of the created {@link BPT#preSegExportExecutor executor} waits for a new saving before ending.
+	 */
+	private static final long PRESEG_EXPORT_KEEP_ALIVE_S = 1;
 
 	/**
 	 * Location of the pre-segmented image
 	 */
 	public String preSegPath;
 	
+	/**
+	 * When the tree is read from an HDF5 file: how it has been opened.
+	 */
+	public OpenMode openMode = OpenMode.EAGER;
+	
 	/**
 	 * Name of the current building or cutting process
 	 */
 	public String processName;
 
+	/**
+	 * Optional collector of measures about the creation (phases, mergings, distances, memory).
+	 * Nothing is measured when null.
+	 */
+	public transient BuildProfiler profiler;
+
 	/**
 	 * BPT process progression
 	 */
@@ -224,6 +348,21 @@ public class BPT<T> implements Tree, Serializable{
 	 * Accessing the HDF5 file.
 	 */
 	public IHDF5Reader reader;
+	
+	/**
+	 * When the tree is read from an HDF5 file: true if the pixels of the leaves are saved as runs.
+	 */
+	public boolean runEncodedLeaves = false;
+
+	/**
+	 * Distances computed by the last {@link BPT#addAll(Node, Neighborhood) batch of adjacencies}.
+	 */
+	private transient double[] batchDistances;
+	
+	/**
+	 * Neighbors scored by the last {@link BPT#addAll(Node, Neighborhood) batch of adjacencies}.
+	 */
+	private transient Node[] batchNeighbors;
 
 	/**
 	 * A specific data structure used to store the links between neighbors.
@@ -235,6 +374,18 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	protected AdjacencySet setOfAdjacencies;
 
+	/**
+	 * <b> For value set purpose: </b>
+	 * when the connectivity is SORTED, the predecessor of each leaf once the values are sorted (null for the lowest value).
+	 */
+	private transient Node[] predecessors;
+
+	/**
+	 * <b> For value set purpose: </b>
+	 * when the connectivity is SORTED, the successor of each leaf once the values are sorted (null for the greatest value).
+	 */
+	private transient Node[] successors;
+
 	/**
 	 * The amount of time, in ms, needed for the BPT creation. 
 	 */
@@ -330,22 +481,46 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	public BPT(String filePath) {
 		
+		this(filePath, OpenMode.EAGER);
+	}
+	
+	/**
+	 * Prepares a BPT to be re-grown from a HDF5 file while precising when the images are decoded.
+	 * 
+	 * <p>
+	 * Example:
+	 * <pre>
+	 * String filePath = "saves/bpt_file.h5";
+	 * BPT bpt = new BPT(filePath, OpenMode.STRUCTURE_ONLY); // for cuts and structural queries
+	 * </pre>	 
+	 * No need to regrow.
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * @param openMode EAGER, LAZY_IMAGE or STRUCTURE_ONLY; should not be null
+	 * 
+	 * @throws NullPointerException if filePath is null or openMode is null
+	 * 
+	 * @see BPT#BPT(String) re-grows a BPT and decodes its images
+	 */
+	public BPT(String filePath, OpenMode openMode) {
+		
 		this.processName = Strings.PLANTING_A_SEED;
+		this.openMode = openMode;
 		
 		this.reader = HDF5Factory.openForReading(filePath);
 		this.name = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_NAME);
 		this.directory = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_DIRECTORY);
 		this.imgPath = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_PATH);
 		this.imgPath = FilenameUtils.separatorsToSystem(this.imgPath);
-		this.image = ImTool.read(this.imgPath);
 		try{
 			this.preSegPath = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_PRESEG_PATH);
 //			this.preSegPath = "xp/PR2020/DATA/weizmann1obj/slic/img_3083_modif.tif";
 			this.preSegPath = FilenameUtils.separatorsToSystem(this.preSegPath);
 		}catch(Exception e) {/* no preseg */};
 //		System.out.println("presegpath: "+ this.preSegPath);
-		try{this.preSegImage = ImTool.read(this.preSegPath);}catch(Exception e) {/* no preseg */}
-//		System.exit(0);
+		try{
+			this.runEncodedLeaves = Strings.VAR_LEAVES_ENCODING_RUNS.equals(this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_LEAVES_ENCODING));
+		}catch(Exception e) {/* pixels only */};
 		this.connectivity = TypeOfConnectivity.valueOf(this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_CONNEXITY));
 		this.nbInitialAdjacencies = this.reader.readInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_INITIAL_ADJACENCIES);
 		this.nbNodes = this.reader.readInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_NODES);
@@ -354,20 +529,18 @@ public class BPT<T> implements Tree, Serializable{
 		this.timeMs = this.reader.readLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_MS);
 		this.timeS = this.reader.readLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_S);
 		this.maxLonger = this.reader.readInt(Strings.VAR_INFO +"/"+ Strings.VAR_MAX_LONGER);
+		this.metricInfo = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_METRIC);
 		
-		String metricInfo = this.reader.readString(Strings.VAR_INFO +"/"+ Strings.VAR_METRIC);
-		String splitMetricInfo[] = metricInfo.split(";");
-		String metricName = splitMetricInfo[0];
-		ArrayList<Double> metricParams = new ArrayList<Double>();
-		for(int i = 1; i < splitMetricInfo.length; ++i) {
+		if(openMode == OpenMode.EAGER) {
 			
-			metricParams.add(Double.valueOf(splitMetricInfo[i]));
+			this.loadImages();
+			this.loadMetric();
+			Log.println(context, Strings.IMAGE+": "+ ImTool.getNameOf(this.image) +" ("+ this.image.getWidth() +"x"+ this.image.getHeight() +")");
+			
+		}else {
+			
+			Log.println(context, Strings.IMAGE+": "+ this.imgPath +" ("+ openMode +")");
 		}
-		TypeOfMetric metricType = TypeOfMetric.valueOf(metricName);
-		this.metric = MetricFactory.initMetric(metricType, this.image);
-		this.metric.setParams(metricParams);
-		
-		Log.println(context, Strings.IMAGE+": "+ ImTool.getNameOf(this.image) +" ("+ this.image.getWidth() +"x"+ this.image.getHeight() +")");
 		Log.println(context, Strings.DIRECTORY +": "+ this.directory);
 		Log.println(context, Strings.CONNEXITY +": "+ this.connectivity);
 		
@@ -406,8 +579,23 @@ public class BPT<T> implements Tree, Serializable{
 	}
 
 	/**
+	 * Prepares a BPT from a set of values.
+	 * 
+	 * <p>
+	 * By default, all values are connected to each other ({@link TypeOfConnectivity#ALL}).
+	 * For large value sets and an {@link Metric#isIntervalBased() interval-based metric}, 
+	 * {@link TypeOfConnectivity#SORTED} only links the consecutive sorted values.
+	 * 
+	 * <p>
+	 * Example:
+	 * <pre>
+	 * BPT&lt;Double&gt; bpt = new BPT&lt;Double&gt;(valueSet);
+	 * bpt.setConnectivity(TypeOfConnectivity.SORTED);
+	 * bpt.setMetric(metric);
+	 * bpt.grow();
+	 * </pre>
 	 * 
-	 * @param valueSet
+	 * @param valueSet values representing the leaves; should not be null
 	 */
 	public BPT(ArrayList<T> valueSet) {
 		
@@ -432,9 +620,102 @@ public class BPT<T> implements Tree, Serializable{
 	@Override
 	public void add(Adjacency adjacency) {
 
+		/* The nodes keep the first adjacency created between them: an equal one created again (e.g. with the ALL connectivity) is already stored */
+		if(adjacency.node1.listOfNeighbors.get(adjacency.node2) != adjacency) {
+			
+			return;
+		}
+		
 		/* The score determines the position of the adjacency in the dedicated data structure */
 		adjacency.computeDistance(this.metric); 
 		this.setOfAdjacencies.add(adjacency);
+		
+		if(this.profiler != null) {
+			
+			this.profiler.distancesEvaluated(1);
+		}
+	}
+
+	/**
+	 * Creates and records the links between a new node and all its neighbors.
+	 * 
+	 * <p>
+	 * The distances are computed by a {@link Metric#computeDistances(Node, Node[], int, double[]) single call to the metric}, 
+	 * which reads the features of the new node once.
+	 * 
+	 * @param newNode created by a merging; should not be null
+	 * @param neighbors of the new node; should not be null
+	 */
+	protected void addAll(Node newNode, Neighborhood neighbors) {
+		
+		int nbNeighbors = neighbors.size();
+		if(this.batchNeighbors == null || this.batchNeighbors.length < nbNeighbors) {
+			
+			int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, nbNeighbors)) << 1);
+			this.batchNeighbors = new Node[capacity];
+			this.batchDistances = new double[capacity];
+		}
+		
+		nbNeighbors = 0;
+		for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
+			
+			this.batchNeighbors[nbNeighbors++] = cursor.neighbor;
+		}
+		
+		this.metric.computeDistances(newNode, this.batchNeighbors, nbNeighbors, this.batchDistances);
+		for(int i = 0; i < nbNeighbors; ++i) {
+			
+			Adjacency adjacency = this.adjacencyPool.obtain(this.batchNeighbors[i], newNode);
+			adjacency.distance = this.batchDistances[i];
+			this.setOfAdjacencies.add(adjacency);
+			this.batchNeighbors[i] = null;
+		}
+		
+		if(this.profiler != null) {
+			
+			this.profiler.distancesEvaluated(nbNeighbors);
+		}
+	}
+
+	/**
+	 * Places the band features of the metric of the tree in the layout of the creation; called by {@link BPT#grow()} before any node is created.
+	 * 
+	 * @param layout of the band features of the creation; should not be null
+	 * 
+	 * @throws NullPointerException if layout is null
+	 */
+	protected void reserveBandFeatures(BandLayout layout) {
+		
+		this.metric.reserveBandFeatures(layout);
+	}
+
+	/**
+	 * Frees the memory kept by the builder for its own efficiency (i.e. the {@link BPT#adjacencyPool pool of adjacencies} 
+	 * and the removed adjacencies still stored by a {@link LazyAdjacencyHeap lazy set}), 
+	 * and the {@link Node#releaseFeatures() features} of the merged nodes, no longer needed once their father is created.
+	 * From then on, the features of each node are released as soon as it is merged: only the ones of the root are kept in the final tree.
+	 * Called when the {@link BPT#memoryBudget memory budget} is exceeded.
+	 */
+	protected void compact() {
+
+		if(this.adjacencyPool != null) {
+
+			this.adjacencyPool.clear();
+		}
+		if(this.setOfAdjacencies instanceof LazyAdjacencyHeap) {
+			
+			((LazyAdjacencyHeap) this.setOfAdjacencies).compact();
+		}
+		for(int n = 0; n < this.nbNodes; ++n) {
+			
+			Node node = this.nodes[n];
+			if(node != null && node.father != null) {
+				
+				node.releaseFeatures();
+			}
+		}
+		this.releasingFeatures = true;
+		Log.println(context, Strings.CLEANING +"!");
 	}
 
 	/**
@@ -454,7 +735,14 @@ public class BPT<T> implements Tree, Serializable{
 		
 		/* Create adjacency edges between the leaves */
 		Log.println(Strings.RAG, Strings.CREATING_ADJACENCIES);
-		this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption);
+		if(this.lazyAdjacencyRemoval) {
+			
+			this.setOfAdjacencies = new LazyAdjacencyHeap(this.optimalOption);
+			
+		}else {
+			
+			this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption);
+		}
 		
 		this.nbNodes = 0;
 		while(this.nbNodes < this.nbLeaves) {
@@ -480,6 +768,8 @@ public class BPT<T> implements Tree, Serializable{
 			this.nbNodes++;
 		}
 		this.nbInitialAdjacencies = this.getNbAdjacencies();
+		this.predecessors = null;
+		this.successors = null;
 		
 		long ragEndingTime = System.nanoTime();
 		long ragTimeMs = (ragEndingTime - ragStartingTime)/1000000;
@@ -506,9 +796,64 @@ public class BPT<T> implements Tree, Serializable{
 				}
 			}
 			break;
+			
+		case SORTED: // Connect each node to its predecessor and its successor among the sorted values
+			
+			if(this.successors == null) {
+				
+				if(!this.metric.isIntervalBased()) {
+					
+					throw new IllegalStateException("The "+ TypeOfConnectivity.SORTED +" connectivity needs an interval-based metric: "+ this.metric.type);
+				}
+				this.sortLeavesByValue();
+			}
+			
+			/* Each link is created by its node having the lowest name, in the order of the names as with ALL */
+			Node predecessor = this.predecessors[leaf.name];
+			Node successor = this.successors[leaf.name];
+			if(predecessor != null && successor != null && successor.name < predecessor.name) {
+				
+				predecessor = successor;
+				successor = this.predecessors[leaf.name];
+			}
+			for(Node neighbor: new Node[] {predecessor, successor}) {
+				
+				if(neighbor != null && neighbor.name > leaf.name) {
+					
+					this.add(new Adjacency(leaf, neighbor));
+				}
+			}
+			break;
 		
 		default:
-			System.exit(1); // Nothing else, only ALL is allowed.
+			System.exit(1); // Nothing else, only ALL and SORTED are allowed.
+		}
+	}
+
+	/**
+	 * Sorts the leaves according to their value and fills the {@link BPT#predecessors predecessors} and the {@link BPT#successors successors}.
+	 * 
+	 * <p>
+	 * The leaves having the same value stay in the order of their index.
+	 */
+	private void sortLeavesByValue() {
+		
+		Node[] sortedLeaves = Arrays.copyOf(this.nodes, this.nbLeaves);
+		Arrays.sort(sortedLeaves, new Comparator<Node>() {
+
+			@Override
+			public int compare(Node n1, Node n2) {
+				
+				return Double.compare((Double) n1.getValues().get(0), (Double) n2.getValues().get(0));
+			}
+		});
+		
+		this.predecessors = new Node[this.nbLeaves];
+		this.successors = new Node[this.nbLeaves];
+		for(int i = 0; i < sortedLeaves.length - 1; ++i) {
+			
+			this.successors[sortedLeaves[i].name] = sortedLeaves[i + 1];
+			this.predecessors[sortedLeaves[i + 1].name] = sortedLeaves[i];
 		}
 	}
 
@@ -518,43 +863,32 @@ public class BPT<T> implements Tree, Serializable{
 	 */
 	private void createRAGFromImage(Node leaf) {
 
-		ArrayList<Point> listOfPixels = leaf.getPixels();
-		for(int ip = 0; ip < listOfPixels.size(); ip++){
-			
-			Point pixel = listOfPixels.get(ip);
-		
-			int xPixel = pixel.x;
-			int yPixel = pixel.y;
-			int labelPixel = this.labelMatrix.getLabel(xPixel, yPixel);
-			Node leafContainingPixel = this.nodes[labelPixel];
+		PixelRuns runs = leaf.pixelRuns;
+		for(int run = 0; run < runs.getNbRuns(); ++run) {
 			
-			if(this.connectivity == TypeOfConnectivity.CN8) {
+			int yPixel = runs.getRow(run);
+			int end = runs.getEnd(run);
+			for(int xPixel = runs.getStart(run); xPixel < end; ++xPixel) {
 				
-				/* 8 connectivities */
-				for(int yNeighbor = yPixel-1; yNeighbor <= yPixel+1; yNeighbor++) {
-					for(int xNeighbor = xPixel-1; xNeighbor <= xPixel+1; xNeighbor++) {
-						
-						this.treat(leafContainingPixel, pixel, xPixel, yPixel, labelPixel, xNeighbor, yNeighbor);
-					}
-				}
-			}else {
-
-				/* 4 connectivities */
-				int[][] coords = new int[4][2];
-				coords[0][0] = xPixel;
-				coords[0][1] = yPixel - 1;
-				coords[1][0] = xPixel - 1;
-				coords[1][1] = yPixel;
-				coords[2][0] = xPixel + 1;
-				coords[2][1] = yPixel;
-				coords[3][0] = xPixel;
-				coords[3][1] = yPixel + 1;
+				int labelPixel = this.labelMatrix.getLabel(xPixel, yPixel);
+				Node leafContainingPixel = this.nodes[labelPixel];
 				
-				for(int i = 0; i < coords.length; i++) {
-
-					int xNeighbor = coords[i][0];
-					int yNeighbor = coords[i][1];
-					this.treat(leafContainingPixel, pixel, xPixel, yPixel, labelPixel, xNeighbor, yNeighbor);
+				if(this.connectivity == TypeOfConnectivity.CN8) {
+					
+					/* 8 connectivities */
+					for(int yNeighbor = yPixel-1; yNeighbor <= yPixel+1; yNeighbor++) {
+						for(int xNeighbor = xPixel-1; xNeighbor <= xPixel+1; xNeighbor++) {
+							
+							this.treat(leafContainingPixel, xPixel, yPixel, labelPixel, xNeighbor, yNeighbor);
+						}
+					}
+				}else {
+	
+					/* 4 connectivities */
+					this.treat(leafContainingPixel, xPixel, yPixel, labelPixel, xPixel, yPixel - 1);
+					this.treat(leafContainingPixel, xPixel, yPixel, labelPixel, xPixel - 1, yPixel);
+					this.treat(leafContainingPixel, xPixel, yPixel, labelPixel, xPixel + 1, yPixel);
+					this.treat(leafContainingPixel, xPixel, yPixel, labelPixel, xPixel, yPixel + 1);
 				}
 			}
 		}
@@ -627,52 +961,46 @@ public class BPT<T> implements Tree, Serializable{
 
 	/**
 	 * Define leaves from image.
+	 * 
+	 * <p>
+	 * If a pre-segmented image is defined, each run of its connected regions (see {@link SegmentByConnexityRaw}) is given to its leaf.
+	 * Otherwise, each pixel of the {@link BPT#labelMatrix matrix of labels} is given to its leaf.
+	 * 
 	 * @param estimatedNbLeaves
 	 */
 	private void defineLeavesFromImage(int estimatedNbLeaves) {
 		
 		if(this.preSegImage != null){
 			
-			/* Get all the connected regions contained in the preseg image */
-			SegmentByConnexityRaw sbc = new SegmentByConnexityRaw(this.preSegImage);
-			this.labelMatrix = sbc.runForFullImage();
-			estimatedNbLeaves = this.labelMatrix.getNbInitialRegions();
+			this.defineLeavesFromPreSeg();
 			
-			/* saving the preseg label matrix -- only if needed */
-			HashMap<Integer, Color> lut = new HashMap<Integer, Color>();
-			BufferedImage pixelRegions = ImTool.generateRegions(this.labelMatrix, lut);
-			ImTool.save(pixelRegions, ImTool.getDirOf(this.preSegImage) +"//"+ ImTool.getNameOf(this.preSegImage) +".png");
-		}
-		
-		/* Prepare the list of leaves */
-		this.nodes = new Node[estimatedNbLeaves];
-		Log.println(context, Strings.NB_NODES_TO_CREATE +": "+ this.nodes.length +" (including leaves)");
-		Log.println(context, Strings.NB_LEAVES_TO_CREATE +": "+ this.labelMatrix.getNbRegions());
+		}else {
 		
-		/* Regroup pixels in the leaves */
-		for(int y = 0; y < this.labelMatrix.getHeight(); y++) {
-			for(int x = 0; x < this.labelMatrix.getWidth(); x++) {
-				
-				int nodeName = this.labelMatrix.getLabel(x, y);
-				Node leaf = this.nodes[nodeName];
-				
-				/* Create the leaf if it does not exist */
-				if(leaf == null) {
+			/* Prepare the list of leaves */
+			this.nodes = new Node[estimatedNbLeaves];
+			Log.println(context, Strings.NB_NODES_TO_CREATE +": "+ this.nodes.length +" (including leaves)");
+			Log.println(context, Strings.NB_LEAVES_TO_CREATE +": "+ this.labelMatrix.getNbRegions());
+			
+			/* Regroup pixels in the leaves */
+			for(int y = 0; y < this.labelMatrix.getHeight(); y++) {
+				for(int x = 0; x < this.labelMatrix.getWidth(); x++) {
 					
-					leaf = new Node(nodeName);
-					leaf.label = nodeName; 
-					this.metric.initMF(leaf);
-					this.nodes[nodeName] = leaf;
-					this.nbLeaves++;
-				}				
-				leaf.type = TypeOfNode.LEAF;
-				
-				/* Associate the pixels to the leaf */
-				leaf.addPixel(x, y);
-				int lsize = leaf.getSize();
-				if(this.biggestLeafSize < lsize) {
+					int nodeName = this.labelMatrix.getLabel(x, y);
+					Node leaf = this.nodes[nodeName];
 					
-					this.biggestLeafSize = lsize;
+					/* Create the leaf if it does not exist */
+					if(leaf == null) {
+						
+						leaf = new Node(nodeName);
+						leaf.label = nodeName; 
+						this.metric.initMF(leaf);
+						this.nodes[nodeName] = leaf;
+						this.nbLeaves++;
+					}				
+					leaf.type = TypeOfNode.LEAF;
+					
+					/* Associate the pixels to the leaf */
+					leaf.addPixel(x, y);
 				}
 			}
 		}
@@ -685,8 +1013,90 @@ public class BPT<T> implements Tree, Serializable{
 			
 			Node leaf = this.nodes[i];
 			this.metric.updateMF(leaf);
+			
+			int lsize = leaf.getSize();
+			if(this.biggestLeafSize < lsize) {
+				
+				this.biggestLeafSize = lsize;
+			}
+		}
+	}
+	
+	/**
+	 * Defines the leaves from the connected regions of the pre-segmented image (8-connected, as with {@link SegmentByConnexityRaw}).
+	 * 
+	 * <p>
+	 * The image is read row by row (see {@link RunLabelling}) and the runs of each region directly become the pixels of its leaf;
+	 * the {@link BPT#labelMatrix matrix of labels} is then filled from the leaves.
+	 * The regions can also be {@link BPT#exportPreSegRegions saved} in a .png file by the {@link BPT#preSegExportExecutor export executor}.
+	 */
+	private void defineLeavesFromPreSeg() {
+		
+		/* Get all the connected regions contained in the preseg image */
+		RunLabelling labelling = RunLabelling.of(this.preSegImage);
+		int nbRegions = labelling.getNbRegions();
+		
+		/* Prepare the list of leaves */
+		this.nodes = new Node[nbRegions + nbRegions - 1];
+		Log.println(context, Strings.NB_NODES_TO_CREATE +": "+ this.nodes.length +" (including leaves)");
+		Log.println(context, Strings.NB_LEAVES_TO_CREATE +": "+ nbRegions);
+		
+		this.labelMatrix = new LabelMatrix(labelling.getWidth(), labelling.getNbRows());
+		this.labelMatrix.setNbRegions(nbRegions);
+		for(int nodeName = 0; nodeName < nbRegions; nodeName++) {
+			
+			Node leaf = new Node(nodeName);
+			leaf.label = nodeName;
+			leaf.type = TypeOfNode.LEAF;
+			this.metric.initMF(leaf);
+			this.nodes[nodeName] = leaf;
+			this.nbLeaves++;
+			
+			/* Associate the pixels to the leaf */
+			PixelRuns runs = labelling.getRuns(nodeName);
+			leaf.setPixelRuns(runs);
+			runs.fill(this.labelMatrix, nodeName);
+		}
+		
+		/* saving the preseg label matrix -- only if needed */
+		if(this.exportPreSegRegions) {
+			
+			final LabelMatrix labelMatrix = this.labelMatrix;
+			final String path = ImTool.getDirOf(this.preSegImage) +"//"+ ImTool.getNameOf(this.preSegImage) +".png";
+			this.preSegExport = this.preSegExportExecutor().submit(new Runnable() {
+				
+				@Override
+				public void run() {
+					
+					HashMap<Integer, Color> lut = new HashMap<Integer, Color>();
+					BufferedImage pixelRegions = ImTool.generateRegions(labelMatrix, lut);
+					ImTool.save(pixelRegions, path);
+				}
+			});
 		}
 	}
+	
+	/**
+	 * 
+	 * @return the {@link BPT#preSegExportExecutor export executor}, created if not given
+	 */
+	private ExecutorService preSegExportExecutor() {
+		
+		if(this.preSegExportExecutor == null) {
+			
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, PRESEG_EXPORT_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					
+					return new Thread(r, context +"_PRESEG_EXPORT");
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			this.preSegExportExecutor = executor;
+		}
+		return this.preSegExportExecutor;
+	}
 
 	@Override
 	public void endingState() {
@@ -715,6 +1125,10 @@ public class BPT<T> implements Tree, Serializable{
 	@Override
 	public BufferedImage getImage() {
 
+		if(this.image == null && this.openMode == OpenMode.LAZY_IMAGE) {
+			
+			this.loadImages();
+		}
 		return this.image;
 	}
 
@@ -760,6 +1174,10 @@ public class BPT<T> implements Tree, Serializable{
 	@Override
 	public Metric getMetric() {
 	
+		if(this.metric == null && this.openMode == OpenMode.LAZY_IMAGE) {
+			
+			this.loadMetric();
+		}
 		return this.metric;
 	}
 
@@ -818,9 +1236,23 @@ public class BPT<T> implements Tree, Serializable{
 
 		int[] points = null;
 		
-		if(this.reader != null) {
+		if(this.reader != null && this.runEncodedLeaves) {
 			
-			int[][] row = reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, 1, leaf.getSize(), leaf.name, 1);
+			int[][] nbRunsCell = reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS, 1, 2, leaf.name, 0);
+			int nbRuns = nbRunsCell[0][1];
+			int[][] runs = reader.int32().readMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS, 1, 3 * nbRuns, leaf.name, 2);
+			points = new int[nbRunsCell[0][0]];
+			int p = 0;
+			for(int k = 0; k < 3 * nbRuns; k += 3) {
+				for(int x = runs[0][k + 1]; x < runs[0][k + 2]; ++x) {
+					
+					points[p++] = Formula.toVal(x, runs[0][k], this.maxLonger);
+				}
+			}
+			
+		}else if(this.reader != null) {
+			
+			int[][] row = reader.int32().readMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, 1, leaf.getSize(), leaf.name, 1);
 			points = row[0];
 		}
 		
@@ -830,6 +1262,10 @@ public class BPT<T> implements Tree, Serializable{
 	@Override
 	public BufferedImage getPreSegImage() {
 
+		if(this.preSegImage == null && this.openMode == OpenMode.LAZY_IMAGE) {
+			
+			this.loadImages();
+		}
 		return this.preSegImage;
 	}
 
@@ -888,32 +1324,52 @@ public class BPT<T> implements Tree, Serializable{
 	public void grow() {
 		
 		/* Reset the static position of metric features,
-		 *  useful when you want to create more than one BPT*/
-		Metric.currentFeaturePos = -1;
-		
-		if(this.metric == null) { // Default metric
+		 *  useful when you want to create more than one BPT;
+		 *  locked so that trees can be created concurrently (see BatchBuilder) */
+		synchronized(Metric.class) {
+			
+			Metric.currentFeaturePos = -1;
 			
-			this.metric = new Ominmax(image);
+			if(this.metric == null) { // Default metric
+				
+				this.metric = new Ominmax(image);
+			}
 		}
 		
+		/* The band features are placed in the nodes of this creation only */
+		this.bandLayout = new BandLayout();
+		this.reserveBandFeatures(this.bandLayout);
+		
 		this.processName = Strings.STARTING_TO_GROW;
 		Log.println(context, Strings.STARTING_TREE_CREATION);	
 		long startingTime = System.nanoTime();
+		if(this.profiler != null) {
+			
+			this.profiler.start();
+		}
 		
 		this.processName = Strings.PREPARING_LABEL_MATRIX;
+		this.startPhase(Phase.LABEL_MATRIX);
 		this.prepareLabelMatrix();
+		this.endPhase(Phase.LABEL_MATRIX);
 		
 		this.processName = Strings.PREPARING_LEAVES;
+		this.startPhase(Phase.LEAVES);
 		this.defineLeaves();
+		this.endPhase(Phase.LEAVES);
 		Log.println(context, Strings.NB_LEAVES_CREATED +": "+ this.nbLeaves);
 		
 		this.processName = Strings.CREATING_ADJACENCIES;
+		this.startPhase(Phase.RAG);
 		this.createRAG();
+		this.endPhase(Phase.RAG);
 		
 		Log.println(context, Strings.NB_ADJACENCIES_GENERATED +": "+ this.nbInitialAdjacencies);
 		
 		this.processName = Strings.MERGING_NODES;
+		this.startPhase(Phase.MERGINGS);
 		this.nodeMergings();
+		this.endPhase(Phase.MERGINGS);
 		
 		long endingTime = System.nanoTime();
 		this.timeMs = (endingTime - startingTime)/1000000;
@@ -922,6 +1378,11 @@ public class BPT<T> implements Tree, Serializable{
 		Log.println(context, Strings.NB_NODES_CREATED +": "+ this.nbNodes);		
 		Log.println(context, Strings.TREE_CREATION_IN +" "+ this.timeMs +" ms ("+ this.timeS +" s)/n");
 		
+		if(this.profiler != null) {
+			
+			this.profiler.end();
+		}
+		
 		this.processName = Strings.FINALIZING;
 		this.ended = true;
 	}
@@ -962,20 +1423,42 @@ public class BPT<T> implements Tree, Serializable{
 	public void nodeMergings() {
 		
 		long mergingStartingTime = System.nanoTime();
+		if(this.mergingEngine == MergingEngine.RNN) {
+			
+			if(this.optimalOption == OptimalOption.MINIMUM && RNNMergings.isEligible(this.metric)) {
+				
+				new RNNMergings(this, this.nbMergingThreads).execute();
+				this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption); // all the links are merged
+				
+				long mergingTimeMs = (System.nanoTime() - mergingStartingTime)/1000000;
+				Log.println(context+"_FUSION", Strings.TIME_OF_MERGINGS +": "+ mergingTimeMs +" ms | "+ (mergingTimeMs / 1000) +" s");
+				return;
+			}
+			Log.println(context, Strings.NOT_REDUCIBLE_METRIC);
+		}
+		this.adjacencyPool = new AdjacencyPool();
 		
 		/* Number of estimated fusions */
 		int nbFusions = this.nbLeaves - 1;
 		int numFusion = 1;
+		String fusionContext = context +"_FUSION";
 		
 		/* Merge leaves and nodes until obtaining the root */
 		Node newNode = null;
 		while(!this.setOfAdjacencies.isEmpty()) {
 			
-			this.progress = (numFusion * 100) / nbFusions;
-			Log.println(context +"_FUSION", this.progress +"%");
+			int previousProgress = this.progress;
+			this.progress = Log.printProgress(fusionContext, this.progress, numFusion, nbFusions);
+			if(this.profiler != null && this.progress != previousProgress) {
+				
+				this.profiler.adjacenciesSampled(this.setOfAdjacencies.size());
+			}
 			
 			Adjacency potentialAdjacency = this.setOfAdjacencies.optimalAdjacency();
-			Log.println(context +"_FUSION", potentialAdjacency.toString() +" Optimal Score: "+ potentialAdjacency.distance);
+			if(Log.isEnabled(Level.DEBUG)) {
+				
+				Log.println(Level.DEBUG, fusionContext, potentialAdjacency.toString() +" Optimal Score: "+ potentialAdjacency.distance);
+			}
 	
 			/* Create a new node */
 			Node leftNode = potentialAdjacency.node1;
@@ -997,50 +1480,55 @@ public class BPT<T> implements Tree, Serializable{
 			rightNode.removeNeighbor(leftNode);
 			this.remove(potentialAdjacency);
 			
-			/* Generate adjacencies between the new node and its neighbors */
-			ConcurrentHashMap<Node, Adjacency> neighbors = newNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
-				
-				Node neighbor = entry.getKey();
-				Adjacency adjacency = new Adjacency(neighbor, newNode);
-				this.add(adjacency);
-			}	
+			/* Generate adjacencies between the new node and its neighbors, scored all at once */
+			Neighborhood neighbors = newNode.listOfNeighbors;
+			this.addAll(newNode, neighbors);
 	
 			/* Remove the adjacencies corresponding to the left node*/
 			neighbors = leftNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
 				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
+				Node neighbor = cursor.neighbor;
+				Adjacency adjacencyNeighbor = cursor.adjacency;
 				this.remove(adjacencyNeighbor);
 				neighbor.removeNeighbor(leftNode);
 				
 				Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
 				createdAdjacency.frontier += adjacencyNeighbor.frontier;
+				this.adjacencyPool.release(adjacencyNeighbor);
 			}
-			leftNode.listOfNeighbors = null;
+			leftNode.releaseNeighborhood();
 	
 			/* Remove the adjacencies corresponding to the right node*/
 			neighbors = rightNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
 				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
+				Node neighbor = cursor.neighbor;
+				Adjacency adjacencyNeighbor = cursor.adjacency;
 				this.remove(adjacencyNeighbor);
 				neighbor.removeNeighbor(rightNode);
 
 				Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
 				createdAdjacency.frontier += adjacencyNeighbor.frontier;
+				this.adjacencyPool.release(adjacencyNeighbor);
+			}
+			rightNode.releaseNeighborhood();
+			this.adjacencyPool.release(potentialAdjacency);
+			if(this.releasingFeatures) {
+				
+				leftNode.releaseFeatures();
+				rightNode.releaseFeatures();
 			}
-			rightNode.listOfNeighbors = null;
 			
 			numFusion++;
+			if(this.profiler != null) {
+				
+				this.profiler.nodeMerged();
+			}
 	
-			if(this.nbNodes % this.GC_ITERATION == 0) {
+			if(this.memoryBudget != null && this.nbNodes % this.GC_ITERATION == 0 && this.memoryBudget.isExceeded()) {
 				
-				Log.println("GC", Strings.CLEANING +"!");
-				System.gc();
-				System.runFinalization();
+				this.compact();
 			}
 		}
 		
@@ -1048,6 +1536,7 @@ public class BPT<T> implements Tree, Serializable{
 			
 			newNode.type = TypeOfNode.ROOT;
 		}
+		this.adjacencyPool = null;
 		
 		long mergingEndingTime= System.nanoTime();
 		long mergingTimeMs = (mergingEndingTime - mergingStartingTime)/1000000;
@@ -1074,6 +1563,44 @@ public class BPT<T> implements Tree, Serializable{
 		}
 	}
 
+	/**
+	 * When the tree is read from an HDF5 file: decodes the image and the pre-segmented image if they are not decoded yet.
+	 */
+	private synchronized void loadImages() {
+		
+		if(this.image == null) {
+			
+			this.image = ImTool.read(this.imgPath);
+		}
+		if(this.preSegImage == null && this.preSegPath != null) {
+			
+			try{this.preSegImage = ImTool.read(this.preSegPath);}catch(Exception e) {/* no preseg */}
+		}
+	}
+	
+	/**
+	 * When the tree is read from an HDF5 file: prepares the saved metric on the image if it is not prepared yet.
+	 */
+	private synchronized void loadMetric() {
+		
+		if(this.metric != null || this.metricInfo == null) {
+			
+			return;
+		}
+		
+		String splitMetricInfo[] = this.metricInfo.split(";");
+		String metricName = splitMetricInfo[0];
+		ArrayList<Double> metricParams = new ArrayList<Double>();
+		for(int i = 1; i < splitMetricInfo.length; ++i) {
+			
+			metricParams.add(Double.valueOf(splitMetricInfo[i]));
+		}
+		TypeOfMetric metricType = TypeOfMetric.valueOf(metricName);
+		Metric metric = MetricFactory.initMetric(metricType, this.getImage());
+		metric.setParams(metricParams);
+		this.metric = metric;
+	}
+	
 	/**
 	 * Label Matrix from a value set
 	 */
@@ -1122,19 +1649,34 @@ public class BPT<T> implements Tree, Serializable{
 			Node l = new Node(i);
 			l.label = i;
 			l.type = TypeOfNode.LEAF;
-			int[][] nbPixelCell = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
-																	  1, 1, i, 0);
-			l.nbPixels = nbPixelCell[0][0];
-			
-			int[][] pixelLocations = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, 
-																		 1, (l.nbPixels+1), i, 0);
-			int lastI = l.nbPixels;
-			for(int k = 1; k <= lastI; ++k) {
+			if(this.runEncodedLeaves) {
 				
-				int posVal = pixelLocations[0][k];
-				int x = Formula.toX(posVal, this.maxLonger);
-				int y = Formula.toY(posVal, this.maxLonger);
-				l.addPixel(x, y);
+				int[][] nbRunsCell = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS,
+																		 1, 2, i, 0);
+				int nbRuns = nbRunsCell[0][1];
+				int[][] runs = this.reader.int32().readMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS, 
+																		     1, 3 * nbRuns, i, 2);
+				l.pixelRuns = new PixelRuns(Math.max(1, nbRuns));
+				for(int k = 0; k < 3 * nbRuns; k += 3) {
+					
+					l.addRun(runs[0][k], runs[0][k + 1], runs[0][k + 2]);
+				}
+				
+			}else {
+			
+				int[][] nbPixelCell = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
+																		  1, 1, i, 0);
+				int nbPixels = nbPixelCell[0][0];
+				
+				int[][] pixelLocations = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, 
+																			 1, (nbPixels+1), i, 0);
+				for(int k = 1; k <= nbPixels; ++k) {
+					
+					int posVal = pixelLocations[0][k];
+					int x = Formula.toX(posVal, this.maxLonger);
+					int y = Formula.toY(posVal, this.maxLonger);
+					l.addPixel(x, y);
+				}
 			}
 			this.nodes[i] = l;
 		}
@@ -1145,13 +1687,13 @@ public class BPT<T> implements Tree, Serializable{
 		/* Number of estimated fusions */
 		int nbFusions = this.nbLeaves - 1;
 		int numFusion = 1;
+		String fusionContext = context +"_FUSION";
 		
 		/* Merge leaves and nodes until obtaining the root */
 		Node n = null;
 		for(int i = 0; i < nbFusions; ++i) {
 			
-			this.progress = (numFusion * 100) / nbFusions;
-			Log.println(context +"_FUSION", this.progress +"%");
+			this.progress = Log.printProgress(fusionContext, this.progress, numFusion, nbFusions);
 			
 			int[][] childMatrix = this.reader.int32().readMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_NODES,
 																	  1, 4, i, 0);
@@ -1281,17 +1823,42 @@ public class BPT<T> implements Tree, Serializable{
 		this.ended = false;
 	}
 
+	/**
+	 * Informs the {@link BPT#profiler profiler}, if any, that a phase of the creation starts.
+	 *
+	 * @param phase starting
+	 */
+	protected void startPhase(Phase phase) {
+
+		if(this.profiler != null) {
+
+			this.profiler.startPhase(phase);
+		}
+	}
+
+	/**
+	 * Informs the {@link BPT#profiler profiler}, if any, that a phase of the creation ends.
+	 *
+	 * @param phase ending
+	 */
+	protected void endPhase(Phase phase) {
+
+		if(this.profiler != null) {
+
+			this.profiler.endPhase(phase);
+		}
+	}
+
 	/**
 	 * Creates an adjacency if the required conditions are gathered.
 	 * @param leafContainingPixel
-	 * @param pixel
 	 * @param xPixel
 	 * @param yPixel
 	 * @param labelPixel
 	 * @param xNeighbor
 	 * @param yNeighbor
 	 */
-	private void treat(Node leafContainingPixel, Point pixel, int xPixel, int yPixel, int labelPixel, int xNeighbor, int yNeighbor) {
+	private void treat(Node leafContainingPixel, int xPixel, int yPixel, int labelPixel, int xNeighbor, int yNeighbor) {
 	
 		if(!this.isInStudiedAread(xNeighbor, yNeighbor)) {
 			
@@ -45,14 +45,15 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 import ch.systemsx.cisd.hdf5.IHDF5Reader;
 import datastructure.Adjacency;
+import datastructure.AdjacencyPool;
+import datastructure.Neighborhood;
 import datastructure.Node;
 import datastructure.Node.TypeOfNode;
 import datastructure.d3.Tree3D;
+import datastructure.d3.VoxelStore;
 import datastructure.set.AdjacencySet;
 import datastructure.set.AdjacencySet.OptimalOption;
 import datastructure.set.SetOfAdjacencyBuckets;
@@ -61,9 +62,12 @@ import metric.bricks.d3.Metric3D;
 import metric.color.d3.Ominmax3D;
 import utils.ImTool;
 import utils.Log;
+import utils.MemoryBudget;
 import utils.d3.LabelMatrix3D;
+import utils.d3.Neighborhood3D;
 import utils.d3.RGBStruct;
-import utils.d3.Voxel;
+import utils.profiling.BuildProfiler;
+import utils.profiling.BuildProfiler.Phase;
 
 /**
  * MULTI-FEATURES BINARY PARTITION TREE known as MBPT.
@@ -98,6 +102,11 @@ public class BPTVS implements Tree3D, Serializable {
 	 */
 	private Set<Adjacency> adjacenciesBuffer = new HashSet<Adjacency>();
 
+	/**
+	 * Adjacencies removed during the node mergings and ready to be reused.
+	 */
+	private transient AdjacencyPool adjacencyPool;
+
 	/**
 	 * Defines the size of the biggest leaf.
 	 */
@@ -119,7 +128,7 @@ public class BPTVS implements Tree3D, Serializable {
 	public boolean ended;
 	
 	/**
-	 * The garbage collector (GC) is invoked manually after some numbers of iterations. 
+	 * Number of node mergings between two checks of the {@link BPTVS#memoryBudget memory budget}. 
 	 */
 	public final int GC_ITERATION = 100000;
 	
@@ -143,6 +152,17 @@ public class BPTVS implements Tree3D, Serializable {
 	 */
 	public int maxLonger;
 
+	/**
+	 * Optional upper limit of the heap used during the creation.
+	 * When exceeded, the structures of the builder are {@link BPTVS#compact() compacted} instead of forcing a garbage collection.
+	 */
+	public transient MemoryBudget memoryBudget;
+	
+	/**
+	 * If true, the features of the nodes are {@link Node#releaseFeatures() released} as soon as they are merged; set by {@link BPTVS#compact()}.
+	 */
+	private transient boolean releasingFeatures = false;
+
 	/**
 	 * Metric computing the similarity distance between two regions.
 	 * By default, the RADIOMETRIC_MIN_MAX is used.
@@ -186,6 +206,12 @@ public class BPTVS implements Tree3D, Serializable {
 	 */
 	public String processName;
 
+	/**
+	 * Optional collector of measures about the creation (phases, mergings, distances, memory).
+	 * Nothing is measured when null.
+	 */
+	public transient BuildProfiler profiler;
+
 	/**
 	 * BPT process progression
 	 */
@@ -215,11 +241,16 @@ public class BPTVS implements Tree3D, Serializable {
 	 * The amount of time, in s, needed for the BPT creation. 
 	 */
 	public long timeS;
+	
+	/**
+	 * Voxels of all regions, stored once and shared by the nodes.
+	 */
+	public VoxelStore voxelStore;
 
 	/**
 	 * Precise if the optimal distance value to consider for mergin nodes is the MAXIMUM or the MINIMUM.
 	 */
-	private OptimalOption optimalOption = OptimalOption.MINIMUM; // by default
+	protected OptimalOption optimalOption = OptimalOption.MINIMUM; // by default
 
 	
 	/**
@@ -280,8 +311,50 @@ public class BPTVS implements Tree3D, Serializable {
 	@Override
 	public void add(Adjacency adjacency) {
 		
+		this.add(this.setOfAdjacencies, adjacency);
+	}
+	
+	/**
+	 * Computes the distance of an adjacency and stores it in a set of adjacencies.
+	 * 
+	 * @param adjacencies receiving the adjacency; should not be null
+	 * @param adjacency to store; should not be null
+	 * 
+	 * @throws NullPointerException if adjacencies is null or adjacency is null
+	 */
+	protected void add(AdjacencySet adjacencies, Adjacency adjacency) {
+		
 		adjacency.computeDistance(this.metric3D);
-		this.setOfAdjacencies.add(adjacency);
+		adjacencies.add(adjacency);
+		
+		if(this.profiler != null) {
+			
+			this.profiler.distancesEvaluated(1);
+		}
+	}
+
+	/**
+	 * Frees the memory kept by the builder for its own efficiency (i.e. the {@link BPTVS#adjacencyPool pool of adjacencies}), 
+	 * and the {@link Node#releaseFeatures() features} of the merged nodes, no longer needed once their father is created.
+	 * From then on, the features of each node are released as soon as it is merged.
+	 * Called when the {@link BPTVS#memoryBudget memory budget} is exceeded.
+	 */
+	private void compact() {
+
+		if(this.adjacencyPool != null) {
+
+			this.adjacencyPool.clear();
+		}
+		for(int n = 0; n < this.nbNodes; ++n) {
+			
+			Node node = this.nodes[n];
+			if(node != null && node.father != null) {
+				
+				node.releaseFeatures();
+			}
+		}
+		this.releasingFeatures = true;
+		Log.println(context, Strings.CLEANING +"!");
 	}
 
 	/**
@@ -303,29 +376,30 @@ public class BPTVS implements Tree3D, Serializable {
 		Log.println(Strings.RAG, Strings.CREATING_ADJACENCIES);
 		this.setOfAdjacencies = new SetOfAdjacencyBuckets(this.optimalOption);
 		
+		Neighborhood3D neighborhood = this.getNeighborhood();
+		VoxelStore.Cursor cursor = new VoxelStore.Cursor(this.voxelStore);
+		
 		this.nbNodes = 0;
 		while(this.nbNodes < this.nbLeaves) {
 			
 			Node leaf = this.nodes[this.nbNodes];
 			
-			ArrayList<Voxel> listOfVoxels = leaf.getVoxels();
-			for(Voxel voxel: listOfVoxels){
+			cursor.reset(leaf);
+			while(cursor.next()){
 				
-				int xVoxel = voxel.x;
-				int yVoxel = voxel.y;
-				int zVoxel = voxel.z;
+				int xVoxel = cursor.x;
+				int yVoxel = cursor.y;
+				int zVoxel = cursor.z;
 				int labelVoxel = this.labelMatrix3D.getLabel(xVoxel, yVoxel, zVoxel);
 				Node leafContainingVoxel = this.nodes[labelVoxel];
 				
-				int[][] coords = ImTool.getConnectedNeibhorgs(6, voxel); // CN6
-				
-				for(int i = 0; i < coords.length; i++) {
+				/* Visit the neighbors without allocating their coordinates */
+				for(int i = 0; i < neighborhood.size(); i++) {
 					
-					int xNeighbor = coords[i][0];
-					int yNeighbor = coords[i][1];
-					int zNeighbor = coords[i][2];
-//					System.out.println("voxel pos x: "+ xNeighbor +" y: "+ yNeighbor +" z: "+ zNeighbor);
-					this.treat(leafContainingVoxel, voxel, labelVoxel, xNeighbor, yNeighbor, zNeighbor);
+					int xNeighbor = xVoxel + neighborhood.dx[i];
+					int yNeighbor = yVoxel + neighborhood.dy[i];
+					int zNeighbor = zVoxel + neighborhood.dz[i];
+					this.treat(leafContainingVoxel, labelVoxel, xNeighbor, yNeighbor, zNeighbor);
 				}
 			}
 			
@@ -388,17 +462,19 @@ public class BPTVS implements Tree3D, Serializable {
 					}				
 					leaf.type = TypeOfNode.LEAF;
 					
-					/* Associate the pixels to the leaf */
-					leaf.addVoxel(x, y, z);
-					int lsize = leaf.getNbVoxels();
-					if(this.biggestLeafSize < lsize) {
+					/* Count the voxels of the leaf */
+					leaf.nbVoxels++;
+					if(this.biggestLeafSize < leaf.nbVoxels) {
 						
-						this.biggestLeafSize = lsize;
+						this.biggestLeafSize = leaf.nbVoxels;
 					}
 				}
 			}
 		}
 		
+		/* Store the voxels of all leaves in a single array */
+		this.voxelStore = VoxelStore.of(this.labelMatrix3D, this.nodes, this.nbLeaves);
+		
 		/*
 		 * Update the values of the features within the leaves.
 		 * (!) this can be done only after adding all points (~ pixels) in the leaf (~ region)
@@ -576,21 +652,33 @@ public class BPTVS implements Tree3D, Serializable {
 		this.processName = Strings.STARTING_TO_GROW;
 		Log.println(context, Strings.STARTING_TREE_CREATION);	
 		long startingTime = System.nanoTime();
+		if(this.profiler != null) {
+			
+			this.profiler.start();
+		}
 		
 		this.processName = Strings.PREPARING_LABEL_MATRIX;
+		this.startPhase(Phase.LABEL_MATRIX);
 		this.prepareLabelMatrix3D();
+		this.endPhase(Phase.LABEL_MATRIX);
 		
 		this.processName = Strings.PREPARING_LEAVES;
+		this.startPhase(Phase.LEAVES);
 		this.defineLeaves();
+		this.endPhase(Phase.LEAVES);
 		Log.println(context, Strings.NB_LEAVES_CREATED +": "+ this.nbLeaves);
 		
 		this.processName = Strings.CREATING_ADJACENCIES;
+		this.startPhase(Phase.RAG);
 		this.createRAG();
+		this.endPhase(Phase.RAG);
 		//System.exit(0);
 		Log.println(context, Strings.NB_ADJACENCIES_GENERATED +": "+ this.nbInitialAdjacencies);
 		
 		this.processName = Strings.MERGING_NODES;
+		this.startPhase(Phase.MERGINGS);
 		this.nodeMergings();
+		this.endPhase(Phase.MERGINGS);
 		
 		long endingTime = System.nanoTime();
 		this.timeMs = (endingTime - startingTime)/1000000;
@@ -599,6 +687,11 @@ public class BPTVS implements Tree3D, Serializable {
 		Log.println(context, Strings.NB_NODES_CREATED +": "+ this.nbNodes);		
 		Log.println(context, Strings.TREE_CREATION_IN +" "+ this.timeMs +" ms ("+ this.timeS +" s)/n");
 		
+		if(this.profiler != null) {
+			
+			this.profiler.end();
+		}
+		
 /*		System.out.println("colour: ["+ ((Ocolcont) this.metric).ocolMinScore +", "+ ((Ocolcont) this.metric).ocolMaxScore +"]");
 		System.out.println("contour: ["+ ((Ocolcont) this.metric).ocontMinScore +", "+ ((Ocolcont) this.metric).ocontMaxScore +"]");
 		System.exit(0); */
@@ -607,6 +700,19 @@ public class BPTVS implements Tree3D, Serializable {
 		this.ended = true;
 	}
 
+	/**
+	 * 
+	 * @return the neighbors to visit around a voxel according to the {@link BPTVS#connectivity type of connectivity}; the 6 faces neighbors if it is not defined
+	 */
+	public Neighborhood3D getNeighborhood() {
+		
+		if(this.connectivity == null) {
+			
+			return Neighborhood3D.FACES;
+		}
+		return Neighborhood3D.of(this.connectivity);
+	}
+
 	@Override
 	public boolean hasEnded() {
 
@@ -628,6 +734,89 @@ public class BPTVS implements Tree3D, Serializable {
 		return (x >= 0 && y >=0 && z >= 0 && x < this.cube.getxLevels() && y < this.cube.getyLevels() && z < this.cube.getzLevels());
 	}
 
+	/**
+	 * Merges the two nodes linked by an adjacency into a new node and updates the RAG around it.
+	 * 
+	 * <p>
+	 * The new node gathers the voxels of its children, gets its features and its level.
+	 * The links of the merged nodes are removed from the set of adjacencies and replaced by the links of the new node.
+	 * The caller is in charge of storing the new node.
+	 * 
+	 * @param potentialAdjacency linking the two nodes to merge; should not be null
+	 * @param name of the new node; should be unique among the nodes linked in the set of adjacencies
+	 * @param adjacencies containing the links of the merged nodes; should not be null
+	 * @param pool recycling the removed links; should not be null
+	 * @return the new node
+	 * 
+	 * @throws NullPointerException if potentialAdjacency, adjacencies or pool is null
+	 */
+	protected Node merge(Adjacency potentialAdjacency, int name, AdjacencySet adjacencies, AdjacencyPool pool) {
+		
+		/* Create a new node */
+		Node leftNode = potentialAdjacency.node1;
+		Node rightNode = potentialAdjacency.node2;
+		Node newNode = new Node(name, leftNode, rightNode);
+		
+		/* The voxels are not copied: they are read through the leaves until the subtrees are ordered */
+		newNode.voxelStore = leftNode.voxelStore;
+		newNode.nbVoxels = leftNode.nbVoxels + rightNode.nbVoxels;
+		
+		newNode.type = TypeOfNode.NODE;
+		newNode.rememberMerginScore(potentialAdjacency.distance);
+		this.metric3D.initMF(newNode);
+		this.metric3D.updateMF(newNode);
+		
+		/* set the node level */
+		newNode.updateLvl(Math.max(newNode.leftNode.lvl, newNode.rightNode.lvl) + 1);
+		
+		/* Let the two nodes to forget each other and break the link */
+		leftNode.removeNeighbor(rightNode);
+		rightNode.removeNeighbor(leftNode);
+		adjacencies.remove(potentialAdjacency);
+		
+		/* Generate adjacencies between the new node and its neighbors */
+		Neighborhood neighbors = newNode.listOfNeighbors;
+		for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
+			
+			Node neighbor = cursor.neighbor;
+			Adjacency adjacency = pool.obtain(neighbor, newNode);
+			this.add(adjacencies, adjacency);
+		}	
+
+		/* Remove the adjacencies corresponding to the left node*/
+		neighbors = leftNode.listOfNeighbors;
+		for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
+			
+			Node neighbor = cursor.neighbor;
+			Adjacency adjacencyNeighbor = cursor.adjacency;
+			adjacencies.remove(adjacencyNeighbor);
+			neighbor.removeNeighbor(leftNode);
+			
+			Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
+			createdAdjacency.frontier += adjacencyNeighbor.frontier;
+			pool.release(adjacencyNeighbor);
+		}
+		leftNode.releaseNeighborhood();
+
+		/* Remove the adjacencies corresponding to the right node*/
+		neighbors = rightNode.listOfNeighbors;
+		for(Neighborhood.Cursor cursor = neighbors.cursor(); cursor.next();) {
+			
+			Node neighbor = cursor.neighbor;
+			Adjacency adjacencyNeighbor = cursor.adjacency;
+			adjacencies.remove(adjacencyNeighbor);
+			neighbor.removeNeighbor(rightNode);
+
+			Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
+			createdAdjacency.frontier += adjacencyNeighbor.frontier;
+			pool.release(adjacencyNeighbor);
+		}
+		rightNode.releaseNeighborhood();
+		pool.release(potentialAdjacency);
+		
+		return newNode;
+	}
+
 	/**
 	 * The core process of the BPT creation relies on a binary node merging.
 	 * 
@@ -644,90 +833,45 @@ public class BPTVS implements Tree3D, Serializable {
 	public void nodeMergings() {
 		
 		long mergingStartingTime = System.nanoTime();
+		this.adjacencyPool = new AdjacencyPool();
 		
 		/* Number of estimated fusions */
 		int nbFusions = this.nbLeaves - 1;
 		int numFusion = 1;
+		String fusionContext = context +"_FUSION";
 		
 		/* Merge leaves and nodes until obtaining the root */
 		Node newNode = null;
 		while(!this.setOfAdjacencies.isEmpty()) {
 			
-			this.progress = (numFusion * 100) / nbFusions;
-			Log.println(context +"_FUSION", this.progress +"%");
+			int previousProgress = this.progress;
+			this.progress = Log.printProgress(fusionContext, this.progress, numFusion, nbFusions);
+			if(this.profiler != null && this.progress != previousProgress) {
+				
+				this.profiler.adjacenciesSampled(this.setOfAdjacencies.size());
+			}
 			
 			Adjacency potentialAdjacency = this.setOfAdjacencies.optimalAdjacency();
 	
-			/* Create a new node */
-			Node leftNode = potentialAdjacency.node1;
-			Node rightNode = potentialAdjacency.node2;
-			newNode = new Node(this.nbNodes, leftNode, rightNode);
-			
-			/* TODO for now it not optimized */
-			newNode.listOfVoxels.addAll(leftNode.getVoxels());
-			newNode.listOfVoxels.addAll(rightNode.getVoxels());
-			newNode.nbVoxels += leftNode.nbVoxels + rightNode.nbVoxels;
-			
-			newNode.type = TypeOfNode.NODE;
-			newNode.rememberMerginScore(potentialAdjacency.distance);
-			this.metric3D.initMF(newNode);
-			this.metric3D.updateMF(newNode);
+			newNode = this.merge(potentialAdjacency, this.nbNodes, this.setOfAdjacencies, this.adjacencyPool);
 			this.nodes[this.nbNodes] = newNode;
 			this.nbNodes++;
-			
-			/* set the node level and the tree max depth */
-			newNode.updateLvl(Math.max(newNode.leftNode.lvl, newNode.rightNode.lvl) + 1);
-			if(this.maxDepth < newNode.lvl) this.maxDepth = newNode.lvl;
-			
-			/* Let the two nodes to forget each other and break the link */
-			leftNode.removeNeighbor(rightNode);
-			rightNode.removeNeighbor(leftNode);
-			this.remove(potentialAdjacency);
-			
-			/* Generate adjacencies between the new node and its neighbors */
-			ConcurrentHashMap<Node, Adjacency> neighbors = newNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
+			if(this.releasingFeatures) {
 				
-				Node neighbor = entry.getKey();
-				Adjacency adjacency = new Adjacency(neighbor, newNode);
-				this.add(adjacency);
-			}	
-	
-			/* Remove the adjacencies corresponding to the left node*/
-			neighbors = leftNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
-				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
-				this.remove(adjacencyNeighbor);
-				neighbor.removeNeighbor(leftNode);
-				
-				Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
-				createdAdjacency.frontier += adjacencyNeighbor.frontier;
+				newNode.leftNode.releaseFeatures();
+				newNode.rightNode.releaseFeatures();
 			}
-			leftNode.listOfNeighbors = null;
-	
-			/* Remove the adjacencies corresponding to the right node*/
-			neighbors = rightNode.listOfNeighbors;
-			for(Entry<Node, Adjacency> entry: neighbors.entrySet()) {
-				
-				Node neighbor = entry.getKey();
-				Adjacency adjacencyNeighbor = entry.getValue();
-				this.remove(adjacencyNeighbor);
-				neighbor.removeNeighbor(rightNode);
-
-				Adjacency createdAdjacency = neighbor.listOfNeighbors.get(newNode);
-				createdAdjacency.frontier += adjacencyNeighbor.frontier;
-			}
-			rightNode.listOfNeighbors = null;
+			if(this.maxDepth < newNode.lvl) this.maxDepth = newNode.lvl;
 			
 			numFusion++;
+			if(this.profiler != null) {
+				
+				this.profiler.nodeMerged();
+			}
 	
-			if(this.nbNodes % this.GC_ITERATION == 0) {
+			if(this.memoryBudget != null && this.nbNodes % this.GC_ITERATION == 0 && this.memoryBudget.isExceeded()) {
 				
-				Log.println("GC", Strings.CLEANING +"!");
-				System.gc();
-				System.runFinalization();
+				this.compact();
 			}
 		}
 		
@@ -735,6 +879,13 @@ public class BPTVS implements Tree3D, Serializable {
 			
 			newNode.type = TypeOfNode.ROOT;
 		}
+		this.adjacencyPool = null;
+		
+		/* Give each node the range of voxels of its subtree */
+		if(this.voxelStore != null) {
+			
+			this.voxelStore.orderSubtrees(this.nodes, this.nbNodes);
+		}
 		
 		long mergingEndingTime= System.nanoTime();
 		long mergingTimeMs = (mergingEndingTime - mergingStartingTime)/1000000;
@@ -823,25 +974,46 @@ public class BPTVS implements Tree3D, Serializable {
 		this.ended = false;
 	}
 
+	/**
+	 * Informs the {@link BPTVS#profiler profiler}, if any, that a phase of the creation starts.
+	 *
+	 * @param phase starting
+	 */
+	protected void startPhase(Phase phase) {
+
+		if(this.profiler != null) {
+
+			this.profiler.startPhase(phase);
+		}
+	}
+
+	/**
+	 * Informs the {@link BPTVS#profiler profiler}, if any, that a phase of the creation ends.
+	 *
+	 * @param phase ending
+	 */
+	protected void endPhase(Phase phase) {
+
+		if(this.profiler != null) {
+
+			this.profiler.endPhase(phase);
+		}
+	}
+
 	
 	/**
 	 * Creates an adjacency if the required conditions are gathered.
 	 * 
 	 * @param leafContainingVoxel
-	 * @param voxel
 	 * @param labelVoxel
 	 * @param xNeighbor
 	 * @param yNeighbor
 	 * @param zNeighbor
 	 */
-	private void treat(Node leafContainingVoxel, Voxel voxel, int labelVoxel, int xNeighbor, int yNeighbor, int zNeighbor) {
-	
-		int xVoxel = voxel.x;
-		int yVoxel = voxel.y;
-		int zVoxel = voxel.z;
+	private void treat(Node leafContainingVoxel, int labelVoxel, int xNeighbor, int yNeighbor, int zNeighbor) {
 		
-		/* Do only something for a Neighboring Voxel in the studied area ant if it is not the Voxel itself */
-		if(this.isInStudiedAread(xNeighbor, yNeighbor, zNeighbor) && (xNeighbor != xVoxel || yNeighbor != yVoxel || zNeighbor != zVoxel)) {
+		/* Do only something for a Neighboring Voxel in the studied area (the neighborhood never contains the Voxel itself) */
+		if(this.isInStudiedAread(xNeighbor, yNeighbor, zNeighbor)) {
 			
 			int labelNeighbor = this.labelMatrix3D.getLabel(xNeighbor, yNeighbor, zNeighbor);
 			Node neighbor = this.nodes[labelNeighbor];
@@ -0,0 +1,637 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package standard.sequential;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.FilenameUtils;
+
+import ch.systemsx.cisd.hdf5.HDF5Factory;
+import ch.systemsx.cisd.hdf5.IHDF5Writer;
+import datastructure.Adjacency;
+import datastructure.Neighborhood;
+import datastructure.Node;
+import datastructure.PixelRuns;
+import datastructure.Node.TypeOfNode;
+import datastructure.Tree.TypeOfConnectivity;
+import datastructure.set.AdjacencySet;
+import datastructure.set.AdjacencySet.OptimalOption;
+import datastructure.set.SetOfAdjacencyBuckets;
+import lang.Strings;
+import metric.bricks.BandLayout;
+import metric.bricks.Metric;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.bricks.MetricFactory;
+import utils.Formula;
+import utils.ImTool;
+import utils.Log;
+import utils.MemoryBudget;
+
+/**
+ * Creation of the BPT of an image too big to be loaded in memory.
+ * 
+ * <p>
+ * The image is never decoded as a whole: it is read tile by tile from the disk.
+ * <li> the BPT of each tile is created in memory, then its leaves and nodes are directly written in the HDF5 file of the tree and forgotten
+ * <li> only the root of each tile (i.e. its features and its links with the neighboring tiles) is kept in memory
+ * <li> the roots of the tiles are finally merged until obtaining the root of the image
+ * 
+ * <p>
+ * The leaves are the pixels of the image and the file has the format written by {@link utils.SaveBPT#toHDF5(datastructure.Tree) SaveBPT}, 
+ * so the tree can be loaded with {@link BPT#BPT(String)}.
+ * As for {@link standard.parallel.BPTP}, no region crosses a tile boundary before all tiles are completed, 
+ * so the hierarchy above the tiles may differ from the one obtained with {@link BPT}.
+ * 
+ * <p>
+ * (!) The metric used to merge the roots of the tiles is prepared from a subsampled version of the image 
+ * and it should compute the features of a node from the features of its children only: 
+ * the metrics {@link Metric#needsPixels() reading the pixels of the nodes} (e.g. elongation, compactness, smoothness, MSE) are rejected.
+ * 
+ * <p>
+ * (!) The pixel positions and the node names are stored as int in the file (as read by {@link BPT#BPT(String)}): 
+ * the image should have fewer than 2^30 pixels (i.e. less than 32768 x 32768) and sides of at most 46340 pixels.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * OutOfCoreBPT bpt = new OutOfCoreBPT("xp//ortho.tif", "xp", "ortho");
+ * bpt.memoryBudget = new MemoryBudget(4L * 1024 * 1024 * 1024); // 4 GB
+ * if(bpt.grow()) {
+ * 
+ *     Tree tree = new BPT(bpt.filePath);
+ * }
+ * </pre>
+ *
+ */
+public class OutOfCoreBPT {
+	
+	/**
+	 * Number of pixels per side of a tile when no {@link OutOfCoreBPT#memoryBudget memory budget} is defined.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 512;
+	
+	/**
+	 * Maximum number of pixels per side of the subsampled image used to prepare the metric merging the tiles.
+	 */
+	public static final int OVERVIEW_SIZE = 1024;
+	
+	/**
+	 * Neighbor connection of the pixels (CN4 or CN8).
+	 */
+	public TypeOfConnectivity connectivity = TypeOfConnectivity.CN8;
+	
+	/**
+	 * Identification of the process.
+	 */
+	public String context = "BPT_OOC";
+	
+	/**
+	 * Directory where the tree is saved.
+	 */
+	public String directory;
+	
+	/**
+	 * Path of the HDF5 file containing the tree, defined once it is created.
+	 */
+	public String filePath;
+	
+	/**
+	 * Path of the image.
+	 */
+	public String imagePath;
+	
+	/**
+	 * Upper limit of the heap used; it defines the size of the tiles if {@link OutOfCoreBPT#tileSize} is not defined, 
+	 * from the {@link MemoryBudget#estimateBytes(long, int, int) estimation} of the heap needed by the metric.
+	 */
+	public MemoryBudget memoryBudget;
+	
+	/**
+	 * Parameters of the metric.
+	 */
+	public ArrayList<Double> metricParams = new ArrayList<Double>();
+	
+	/**
+	 * Metric computing the similarity distance between two regions.
+	 */
+	public TypeOfMetric metricType = TypeOfMetric.RADIOMETRIC_MIN_MAX;
+	
+	/**
+	 * Name of the tree.
+	 */
+	public String name;
+	
+	/**
+	 * Number of adjacencies generated in all tiles and between the tiles.
+	 */
+	public int nbInitialAdjacencies;
+	
+	/**
+	 * Number of leaves (i.e. pixels).
+	 */
+	public int nbLeaves;
+	
+	/**
+	 * Number of nodes, including the leaves.
+	 */
+	public int nbNodes;
+	
+	/**
+	 * Number of pixels per side of a tile; if <= 0, it is defined from the {@link OutOfCoreBPT#memoryBudget memory budget}.
+	 */
+	public int tileSize;
+	
+	/**
+	 * The amount of time, in ms, needed for the BPT creation. 
+	 */
+	public long timeMs;
+	
+	/**
+	 * The amount of time, in s, needed for the BPT creation. 
+	 */
+	public long timeS;
+	
+	/**
+	 * Height of the image.
+	 */
+	private int height;
+	
+	/**
+	 * Greatest side of the image; used to store the position of the pixels.
+	 */
+	private int maxLonger;
+	
+	/**
+	 * Reads the regions of the image.
+	 */
+	private ImageReader reader;
+	
+	/**
+	 * Width of the image.
+	 */
+	private int width;
+	
+	/**
+	 * Writes the tree in the HDF5 file.
+	 */
+	private IHDF5Writer writer;
+	
+	/**
+	 * Prepares the creation of the BPT of an image stored on the disk.
+	 * 
+	 * @param imagePath path of the image; should not be null
+	 * @param directory where the tree is saved; should not be null
+	 * @param name of the tree; should not be null
+	 */
+	public OutOfCoreBPT(String imagePath, String directory, String name) {
+		
+		this.imagePath = imagePath;
+		this.directory = directory;
+		this.name = name;
+	}
+	
+	/**
+	 * Creates the tree tile by tile and saves it in {@link OutOfCoreBPT#filePath the HDF5 file}.
+	 * 
+	 * @return true if the tree is created and saved successfully; else false
+	 * 
+	 * @throws IllegalArgumentException if the metric {@link Metric#needsPixels() needs the pixels} of the nodes
+	 */
+	public boolean grow() {
+		
+		boolean success = false;
+		Log.println(context, Strings.STARTING_TREE_CREATION);
+		long startingTime = System.nanoTime();
+		
+		try (ImageInputStream input = ImageIO.createImageInputStream(new File(this.imagePath))) {
+			
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if(!readers.hasNext()) {
+				
+				Log.println(context, "No reader for the image: "+ this.imagePath);
+				return false;
+			}
+			this.reader = readers.next();
+			this.reader.setInput(input, true, true);
+			this.width = this.reader.getWidth(0);
+			this.height = this.reader.getHeight(0);
+			this.maxLonger = Math.max(this.width, this.height);
+			
+			/* The positions of the pixels and the names of the nodes are stored as int */
+			long nbPixels = (long) this.width * this.height;
+			if((long) this.maxLonger * this.maxLonger > Integer.MAX_VALUE || 2 * nbPixels - 1 > Integer.MAX_VALUE) {
+				
+				Log.println(context, "Image too big to be saved: "+ this.width +"x"+ this.height);
+				return false;
+			}
+			this.nbLeaves = (int) nbPixels;
+			this.nbNodes = this.nbLeaves;
+			this.nbInitialAdjacencies = 0;
+			
+			/* The roots of the tiles have no pixels: the metric merging them should only need the features of the children */
+			int nbFeatures;
+			Metric metric;
+			synchronized(Metric.class) {
+				
+				Metric.currentFeaturePos = -1;
+				metric = MetricFactory.initMetric(this.metricType, this.readOverview());
+				nbFeatures = Metric.currentFeaturePos + 1;
+			}
+			BandLayout bandLayout = new BandLayout();
+			metric.reserveBandFeatures(bandLayout);
+			int nbBandFeatures = bandLayout.getLength();
+			if(metric.needsPixels()) {
+				
+				throw new IllegalArgumentException("The metric "+ this.metricType +" reads the pixels of the nodes: it can not merge the tiles");
+			}
+			metric.setParams(this.metricParams);
+			
+			int size = this.getTileSize(nbFeatures, nbBandFeatures);
+			int nbTilesX = (this.width + size - 1) / size;
+			int nbTilesY = (this.height + size - 1) / size;
+			Log.println(context, Strings.IMAGE +": "+ this.imagePath +" ("+ this.width +"x"+ this.height +")");
+			Log.println(context, "Nb tiles: "+ (nbTilesX * nbTilesY) +" ("+ size +"x"+ size +" pixels)");
+			
+			/* The size of the matrices is fixed, and written by blocks of about a tile */
+			this.filePath = this.directory +"//"+ this.name +".h5";
+			this.writer = HDF5Factory.open(this.filePath);
+			int blockSize = (int) Math.min(this.nbLeaves, (long) size * size);
+			this.writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, this.nbLeaves, 2, blockSize, 2);
+			this.writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_NODES, Math.max(1, this.nbLeaves - 1), 4, 
+											 Math.max(1, Math.min(this.nbLeaves - 1, blockSize)), 4);
+			
+			/* Create the tree of each tile and only keep its root */
+			Node[][] roots = new Node[nbTilesY][nbTilesX];
+			for(int ty = 0; ty < nbTilesY; ++ty) {
+				for(int tx = 0; tx < nbTilesX; ++tx) {
+					
+					Log.println(context, "Tile "+ (ty * nbTilesX + tx + 1) +"/"+ (nbTilesX * nbTilesY));
+					int x0 = tx * size;
+					int y0 = ty * size;
+					roots[ty][tx] = this.growTile(x0, y0, Math.min(size, this.width - x0), Math.min(size, this.height - y0));
+				}
+			}
+			
+			/* Merge the roots of the tiles */
+			this.mergeTiles(roots, size, metric);
+			
+			long endingTime = System.nanoTime();
+			this.timeMs = (endingTime - startingTime)/1000000;
+			this.timeS = this.timeMs / 1000;
+			this.writeInfo();
+			
+			Log.println(context, Strings.NB_NODES_CREATED +": "+ this.nbNodes);
+			Log.println(context, Strings.TREE_CREATION_IN +" "+ this.timeMs +" ms ("+ this.timeS +" s)");
+			success = true;
+			
+		} catch (IOException e) {
+			
+			e.printStackTrace();
+			
+		} finally {
+			
+			if(this.writer != null) {
+				
+				this.writer.close();
+				this.writer = null;
+			}
+			if(this.reader != null) {
+				
+				this.reader.dispose();
+				this.reader = null;
+			}
+		}
+		
+		return success;
+	}
+	
+	/**
+	 * Links two roots of tiles and computes the distance of the link.
+	 * 
+	 * @param root1 should not be null
+	 * @param root2 should not be null
+	 * @param frontier number of pixels on the border shared by the two tiles
+	 * @param metric computing the distance; should not be null
+	 * @param adjacencies receiving the link; should not be null
+	 */
+	private void link(Node root1, Node root2, int frontier, Metric metric, AdjacencySet adjacencies) {
+		
+		Adjacency adjacency = new Adjacency(root1, root2);
+		adjacency.frontier = frontier;
+		adjacency.computeDistance(metric);
+		adjacencies.add(adjacency);
+		this.nbInitialAdjacencies++;
+	}
+	
+	/**
+	 * 
+	 * @param nbFeatures number of features of the metric
+	 * @param nbBandFeatures number of values per node of the metric
+	 * @return the number of pixels per side of a tile
+	 */
+	private int getTileSize(int nbFeatures, int nbBandFeatures) {
+		
+		if(this.tileSize > 0) {
+			
+			return this.tileSize;
+		}
+		
+		if(this.memoryBudget != null) {
+			
+			/* Half of the budget for the tree of the tile, the rest for the tile itself and the roots */
+			long bytesPerPixel = MemoryBudget.estimateBytes(1, nbFeatures, nbBandFeatures);
+			return (int) Math.max(16, Math.sqrt(this.memoryBudget.maxBytes / 2 / bytesPerPixel));
+		}
+		
+		return DEFAULT_TILE_SIZE;
+	}
+	
+	/**
+	 * Creates the tree of a tile, writes its leaves and its nodes in the file and keeps only its root.
+	 * 
+	 * @param x0 column of the top left pixel of the tile
+	 * @param y0 row of the top left pixel of the tile
+	 * @param tileWidth width of the tile
+	 * @param tileHeight height of the tile
+	 * @return a node having the name and the features of the root of the tile, without pixels nor children
+	 * 
+	 * @throws IOException if the tile can not be read
+	 */
+	private Node growTile(int x0, int y0, int tileWidth, int tileHeight) throws IOException {
+		
+		/* Read only the tile */
+		ImageReadParam param = this.reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(x0, y0, tileWidth, tileHeight));
+		BufferedImage tile = this.reader.read(0, param);
+		
+		BPT bpt = new BPT(tile, this.connectivity);
+		Metric metric;
+		synchronized(Metric.class) {
+			
+			Metric.currentFeaturePos = -1;
+			metric = MetricFactory.initMetric(this.metricType, tile);
+		}
+		metric.setParams(this.metricParams);
+		bpt.setMetric(metric);
+		bpt.memoryBudget = this.memoryBudget;
+		bpt.grow();
+		this.nbInitialAdjacencies += bpt.getNbInitialAdjacencies();
+		
+		/* Leaves: one row per pixel named after its position in the image */
+		for(int y = y0; y < y0 + tileHeight; ++y) {
+			
+			int[][] leavesData = new int[tileWidth][2];
+			for(int x = x0; x < x0 + tileWidth; ++x) {
+				
+				leavesData[x - x0][0] = 1;
+				leavesData[x - x0][1] = Formula.toVal(x, y, this.maxLonger);
+			}
+			this.writer.int32().writeMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES, leavesData, (long) y * this.width + x0, 0);
+		}
+		
+		/* Nodes: named after the nodes of the previous tiles, in the order of their creation */
+		Node[] nodes = bpt.getNodes();
+		int tileNbLeaves = bpt.getNbLeaves();
+		int tileNbNodes = bpt.getNbNodes();
+		int firstName = this.nbNodes;
+		if(tileNbNodes > tileNbLeaves) {
+			
+			int[][] nodesData = new int[tileNbNodes - tileNbLeaves][4];
+			for(int n = tileNbLeaves; n < tileNbNodes; ++n) {
+				
+				Node node = nodes[n];
+				int[] nodeData = nodesData[n - tileNbLeaves];
+				nodeData[0] = this.nameOf(node, x0, y0, firstName, tileNbLeaves);
+				nodeData[1] = this.nameOf(node.leftNode, x0, y0, firstName, tileNbLeaves);
+				nodeData[2] = this.nameOf(node.rightNode, x0, y0, firstName, tileNbLeaves);
+				nodeData[3] = node.perimeter;
+			}
+			this.writer.int32().writeMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_NODES, nodesData, (long) firstName - this.nbLeaves, 0);
+			this.nbNodes += tileNbNodes - tileNbLeaves;
+		}
+		
+		/* Keep the root only */
+		Node root = bpt.getRoot();
+		Node tileRoot = new Node(this.nameOf(root, x0, y0, firstName, tileNbLeaves));
+		tileRoot.type = TypeOfNode.NODE;
+		tileRoot.features.putAll(root.features);
+		if(root.bandFeatures != null) {
+			
+			tileRoot.bandFeatures = root.bandFeatures.clone();
+		}
+		tileRoot.nbPixels = tileWidth * tileHeight;
+		tileRoot.perimeter = root.perimeter;
+		tileRoot.label = tileRoot.name;
+		return tileRoot;
+	}
+	
+	/**
+	 * Merges the roots of the tiles until obtaining the root of the image; each node created is written in the file.
+	 * 
+	 * @param roots of the tiles by row and column; should not be null
+	 * @param size number of pixels per side of a tile
+	 * @param metric prepared from {@link OutOfCoreBPT#readOverview() the overview of the image}; should not be null
+	 */
+	private void mergeTiles(Node[][] roots, int size, Metric metric) {
+		
+		/* Link the neighboring tiles */
+		AdjacencySet adjacencies = new SetOfAdjacencyBuckets(OptimalOption.MINIMUM);
+		int nbTilesY = roots.length;
+		int nbTilesX = roots[0].length;
+		for(int ty = 0; ty < nbTilesY; ++ty) {
+			for(int tx = 0; tx < nbTilesX; ++tx) {
+				
+				int tileWidth = Math.min(size, this.width - tx * size);
+				int tileHeight = Math.min(size, this.height - ty * size);
+				if(tx + 1 < nbTilesX) {
+					
+					this.link(roots[ty][tx], roots[ty][tx + 1], tileHeight, metric, adjacencies);
+				}
+				if(ty + 1 < nbTilesY) {
+					
+					this.link(roots[ty][tx], roots[ty + 1][tx], tileWidth, metric, adjacencies);
+				}
+				if(this.connectivity == TypeOfConnectivity.CN8 && ty + 1 < nbTilesY) {
+					
+					if(tx + 1 < nbTilesX) this.link(roots[ty][tx], roots[ty + 1][tx + 1], 1, metric, adjacencies);
+					if(tx > 0) this.link(roots[ty][tx], roots[ty + 1][tx - 1], 1, metric, adjacencies);
+				}
+			}
+		}
+		
+		/* Merge the roots of the tiles until obtaining the root */
+		Node newNode = null;
+		while(!adjacencies.isEmpty()) {
+			
+			Adjacency potentialAdjacency = adjacencies.optimalAdjacency();
+			Node leftNode = potentialAdjacency.node1;
+			Node rightNode = potentialAdjacency.node2;
+			newNode = new Node(this.nbNodes, leftNode, rightNode);
+			newNode.type = TypeOfNode.NODE;
+			newNode.rememberMerginScore(potentialAdjacency.distance);
+			metric.initMF(newNode);
+			metric.updateMF(newNode);
+			
+			int[][] nodeData = {{newNode.name, leftNode.name, rightNode.name, newNode.perimeter}};
+			this.writer.int32().writeMatrixBlockWithOffset(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_NODES, nodeData, (long) this.nbNodes - this.nbLeaves, 0);
+			this.nbNodes++;
+			
+			/* Let the two nodes to forget each other and break the link */
+			leftNode.removeNeighbor(rightNode);
+			rightNode.removeNeighbor(leftNode);
+			adjacencies.remove(potentialAdjacency);
+			
+			/* Generate adjacencies between the new node and its neighbors */
+			for(Neighborhood.Cursor cursor = newNode.listOfNeighbors.cursor(); cursor.next();) {
+				
+				Adjacency adjacency = new Adjacency(cursor.neighbor, newNode);
+				adjacency.computeDistance(metric);
+				adjacencies.add(adjacency);
+			}
+			
+			/* Remove the adjacencies of the merged nodes */
+			for(Node mergedNode: new Node[] {leftNode, rightNode}) {
+				
+				for(Neighborhood.Cursor cursor = mergedNode.listOfNeighbors.cursor(); cursor.next();) {
+					
+					Node neighbor = cursor.neighbor;
+					Adjacency adjacencyNeighbor = cursor.adjacency;
+					adjacencies.remove(adjacencyNeighbor);
+					neighbor.removeNeighbor(mergedNode);
+					neighbor.listOfNeighbors.get(newNode).frontier += adjacencyNeighbor.frontier;
+				}
+				mergedNode.releaseNeighborhood();
+			}
+		}
+		
+		if(newNode != null) {
+			
+			newNode.type = TypeOfNode.ROOT;
+		}
+	}
+	
+	/**
+	 * Gives the name of a node of a tile in the whole tree.
+	 * 
+	 * @param node of the tree of the tile; should not be null
+	 * @param x0 column of the top left pixel of the tile
+	 * @param y0 row of the top left pixel of the tile
+	 * @param firstName name of the first node (not leaf) of the tile in the whole tree
+	 * @param tileNbLeaves number of leaves of the tile
+	 * @return the position of the pixel for a leaf, otherwise the name of the node shifted after the nodes of the previous tiles
+	 */
+	private int nameOf(Node node, int x0, int y0, int firstName, int tileNbLeaves) {
+		
+		if(node.leftNode == null) {
+			
+			PixelRuns runs = node.pixelRuns;
+			return (y0 + runs.getRow(0)) * this.width + x0 + runs.getStart(0);
+		}
+		return firstName + node.name - tileNbLeaves;
+	}
+	
+	/**
+	 * Reads a subsampled version of the image, used to prepare the metric merging the tiles so that its normalization considers the whole image.
+	 * 
+	 * @return the image subsampled to at most {@link OutOfCoreBPT#OVERVIEW_SIZE} pixels per side
+	 * 
+	 * @throws IOException if the image can not be read
+	 */
+	private BufferedImage readOverview() throws IOException {
+		
+		ImageReadParam param = this.reader.getDefaultReadParam();
+		int step = Math.max(1, (this.maxLonger + OVERVIEW_SIZE - 1) / OVERVIEW_SIZE);
+		param.setSourceSubsampling(step, step, 0, 0);
+		return this.reader.read(0, param);
+	}
+	
+	/**
+	 * Writes the information of the tree as {@link utils.SaveBPT#toHDF5(datastructure.Tree) SaveBPT} does.
+	 */
+	private void writeInfo() {
+		
+		BufferedImage sample;
+		try {
+			
+			ImageReadParam param = this.reader.getDefaultReadParam();
+			param.setSourceRegion(new Rectangle(0, 0, 1, 1));
+			sample = this.reader.read(0, param);
+			
+		} catch (IOException e) {
+			
+			throw new IllegalStateException("The image can not be read anymore: "+ this.imagePath, e);
+		}
+		
+		StringBuilder metricInfo = new StringBuilder(this.metricType +"");
+		for(double param: this.metricParams) {
+			
+			metricInfo.append(";"+ param);
+		}
+		
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NAME, this.name);
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_NAME, FilenameUtils.getBaseName(this.imagePath));
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_PATH, this.imagePath);
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_SIZE, this.width +"x"+ this.height);
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NB_BANDS, ImTool.getNbBandsOf(sample) +"");
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_DIRECTORY, this.directory);
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_METRIC, metricInfo.toString());
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_SOURCE, "pixels");
+		this.writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_CONNEXITY, this.connectivity +"");
+		this.writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_INITIAL_ADJACENCIES, this.nbInitialAdjacencies);
+		this.writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_NODES, this.nbNodes);
+		this.writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_LEAVES, this.nbLeaves);
+		this.writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_MAX_LONGER, this.maxLonger);
+		this.writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_BIGGEST_LEAF_SIZE, 1);
+		this.writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_MS, this.timeMs);
+		this.writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_S, this.timeS);
+	}
+}
@@ -0,0 +1,68 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests;
+
+import tests.standard.parallel.bricks.RNNMergingsTest;
+import tests.standard.sequential.OutOfCoreBPTTest;
+import tests.standard.sequential.PreSegLeavesTest;
+import tests.standard.sequential.SortedConnectivityTest;
+import tests.utils.SaveBPTTest;
+
+/**
+ * Runs all tests; each test stops with an exception at the first failed check.
+ * 
+ * <p>
+ * The tests write their files in a temporary directory, so the native libraries of HDF5 should be available (see <i>-Dnative.libpath</i>).
+ * They should be run from the root of the repository, where some of them read their images (e.g. <i>fig1.png</i>).
+ *
+ */
+public class AllTests {
+
+	public static void main(String[] args) throws Exception {
+		
+		OutOfCoreBPTTest.main(args);
+		PreSegLeavesTest.main(args);
+		SortedConnectivityTest.main(args);
+		SaveBPTTest.main(args);
+		RNNMergingsTest.main(args);
+	}
+}
@@ -0,0 +1,202 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests.standard.parallel.bricks;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import datastructure.Node;
+import metric.bricks.Metric;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.bricks.MetricFactory;
+import standard.parallel.bricks.RNNMergings;
+import standard.sequential.BPT;
+import standard.sequential.BPT.MergingEngine;
+import tests.bricks.Check;
+import utils.Log;
+
+/**
+ * Test of {@link RNNMergings} with a {@link Metric#isReducible() reducible metric}.
+ * 
+ * <p>
+ * Checked, whatever the number of threads, the tree is the one of the sequential process (with both {@link BPT#lazyAdjacencyRemoval sets of adjacencies}), merging by merging:
+ * <li> with distinct distances;
+ * <li> with tied distances (an image of a few grey levels);
+ * <li> with the tied distances of a real 8-bit image (a crop of <i>fig1.png</i>, read from the working directory, i.e. the root of the repository).
+ *
+ */
+public class RNNMergingsTest {
+
+	public static void main(String[] args) throws IOException {
+		
+		Log.show = false;
+		int width = 32;
+		int height = 24;
+		
+		/* Distinct distances */
+		ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB), false, false, Transparency.OPAQUE, DataBuffer.TYPE_DOUBLE);
+		WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+		Random random = new Random(11);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				for(int b = 0; b < 3; ++b) {
+					
+					raster.setSample(x, y, b, random.nextDouble());
+				}
+			}
+		}
+		BufferedImage distinct = new BufferedImage(colorModel, raster, false, null);
+		checkEngines(distinct, "distinct distances");
+		
+		/* Tied distances */
+		BufferedImage tied = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				int grey = random.nextInt(4) * 40;
+				tied.setRGB(x, y, grey << 16 | grey << 8 | grey);
+			}
+		}
+		checkEngines(tied, "tied distances");
+		
+		/* Real image */
+		BufferedImage figure = ImageIO.read(new File("fig1.png"));
+		BufferedImage crop = new BufferedImage(100, 80, BufferedImage.TYPE_3BYTE_BGR);
+		crop.getGraphics().drawImage(figure.getSubimage(240, 60, 100, 80), 0, 0, null);
+		checkEngines(crop, "fig1.png");
+		
+		System.out.println("[Test] RNNMergings succeded!");
+	}
+	
+	/**
+	 * Checks that the RNN mergings give the tree of the sequential process, with 1 and 4 threads.
+	 * 
+	 * @param image to segment; should not be null
+	 * @param context of the check
+	 */
+	private static void checkEngines(BufferedImage image, String context) {
+		
+		BPT<?> expected = grow(image, MergingEngine.SEQUENTIAL, 1, false);
+		checkValid(expected);
+		checkSame(expected, grow(image, MergingEngine.SEQUENTIAL, 1, true), context +" (lazy removal)");
+		checkSame(expected, grow(image, MergingEngine.RNN, 1, false), context +" (RNN, 1 thread)");
+		checkSame(expected, grow(image, MergingEngine.RNN, 4, false), context +" (RNN, 4 threads)");
+	}
+	
+	/**
+	 * 
+	 * @param image to segment; should not be null
+	 * @param engine merging the regions; should not be null
+	 * @param nbThreads sharing the mergings
+	 * @param lazyAdjacencyRemoval see {@link BPT#lazyAdjacencyRemoval}
+	 * @return the tree grown with the {@link TypeOfMetric#OMIN_MAX min-max metric}
+	 */
+	private static BPT<?> grow(BufferedImage image, MergingEngine engine, int nbThreads, boolean lazyAdjacencyRemoval) {
+		
+		Metric metric;
+		synchronized(Metric.class) {
+			
+			Metric.currentFeaturePos = -1;
+			metric = MetricFactory.initMetric(TypeOfMetric.OMIN_MAX, image);
+		}
+		BPT<?> tree = new BPT<Object>(image);
+		tree.setMetric(metric);
+		tree.mergingEngine = engine;
+		tree.nbMergingThreads = nbThreads;
+		tree.lazyAdjacencyRemoval = lazyAdjacencyRemoval;
+		tree.grow();
+		return tree;
+	}
+	
+	/**
+	 * Checks that two trees have the same nodes, with the same children and the same scores.
+	 * 
+	 * @param expected tree; should not be null
+	 * @param actual tree; should not be null
+	 * @param context of the check
+	 */
+	private static void checkSame(BPT<?> expected, BPT<?> actual, String context) {
+		
+		Check.equals(expected.getNbNodes(), actual.getNbNodes(), "number of nodes with "+ context);
+		for(int n = expected.getNbLeaves(); n < expected.getNbNodes(); ++n) {
+			
+			Node e = expected.getNode(n);
+			Node a = actual.getNode(n);
+			Check.isTrue(e.leftNode.name == a.leftNode.name && e.rightNode.name == a.rightNode.name, "children of the node "+ n +" with "+ context);
+			Check.isTrue(e.merginScore == a.merginScore, "score of the node "+ n +" with "+ context);
+		}
+	}
+	
+	/**
+	 * Checks that each node but the root has one father created after it, and that the scores do not decrease with the names.
+	 * 
+	 * @param tree to check; should not be null
+	 */
+	private static void checkValid(BPT<?> tree) {
+		
+		Check.equals(2 * tree.getNbLeaves() - 1, tree.getNbNodes(), "number of nodes");
+		int[] nbFathers = new int[tree.getNbNodes()];
+		double previousScore = Double.NEGATIVE_INFINITY;
+		for(int n = tree.getNbLeaves(); n < tree.getNbNodes(); ++n) {
+			
+			Node node = tree.getNode(n);
+			Check.isTrue(node.leftNode.name < n && node.rightNode.name < n, "children of the node "+ n +" created after it");
+			Check.isTrue(node.merginScore >= previousScore, "score of the node "+ n +" lower than the previous one");
+			nbFathers[node.leftNode.name]++;
+			nbFathers[node.rightNode.name]++;
+			previousScore = node.merginScore;
+		}
+		for(int n = 0; n < tree.getNbNodes() - 1; ++n) {
+			
+			Check.equals(1, nbFathers[n], "number of fathers of the node "+ n);
+		}
+	}
+}
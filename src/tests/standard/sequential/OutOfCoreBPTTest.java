@@ -0,0 +1,172 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests.standard.sequential;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.Metric.TypeOfMetric;
+import standard.sequential.BPT;
+import standard.sequential.BPT.OpenMode;
+import standard.sequential.OutOfCoreBPT;
+import tests.bricks.Check;
+import utils.Log;
+
+/**
+ * Test of {@link OutOfCoreBPT}: the tree of an image of 3 x 3 tiles (the last ones being partial) is written, then read back with {@link BPT#BPT(String, OpenMode)}.
+ * 
+ * <p>
+ * Checked:
+ * <li> the leaf of each row is the pixel named after it;
+ * <li> the node of each row has two children created before it, and each node but the root is the child of exactly one node;
+ * <li> each tile is exactly the region of one node;
+ * <li> a metric reading the pixels of the nodes is rejected.
+ *
+ */
+public class OutOfCoreBPTTest {
+	
+	public static void main(String[] args) throws Exception {
+		
+		Log.show = false;
+		int width = 10;
+		int height = 9;
+		int tileSize = 4;
+		
+		File directory = Files.createTempDirectory("bpt_ooc").toFile();
+		File imageFile = new File(directory, "image.png");
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(42);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				image.setRGB(x, y, random.nextInt(0xFFFFFF));
+			}
+		}
+		ImageIO.write(image, "png", imageFile);
+		
+		OutOfCoreBPT creation = new OutOfCoreBPT(imageFile.getPath(), directory.getPath(), "tree");
+		creation.metricType = TypeOfMetric.RADIOMETRIC_AVERAGE;
+		creation.tileSize = tileSize;
+		Check.isTrue(creation.grow(), "the tree is not created");
+		
+		BPT tree = new BPT(creation.filePath, OpenMode.STRUCTURE_ONLY);
+		int nbLeaves = width * height;
+		Check.equals(nbLeaves, tree.getNbLeaves(), "number of leaves");
+		Check.equals(2 * nbLeaves - 1, tree.getNbNodes(), "number of nodes");
+		
+		/* Leaves */
+		for(int l = 0; l < nbLeaves; ++l) {
+			
+			Node leaf = tree.getNode(l);
+			PixelRuns runs = leaf.pixelRuns;
+			Check.equals(1, leaf.getSize(), "size of the leaf "+ l);
+			Check.equals(l / width, runs.getRow(0), "row of the leaf "+ l);
+			Check.equals(l % width, runs.getStart(0), "column of the leaf "+ l);
+		}
+		
+		/* Nodes */
+		int[] nbFathers = new int[tree.getNbNodes()];
+		for(int n = nbLeaves; n < tree.getNbNodes(); ++n) {
+			
+			Node node = tree.getNode(n);
+			Check.equals(n, node.name, "name of the node "+ n);
+			Check.isTrue(node.leftNode.name < n && node.rightNode.name < n, "children of the node "+ n +" created after it");
+			nbFathers[node.leftNode.name]++;
+			nbFathers[node.rightNode.name]++;
+		}
+		for(int n = 0; n < tree.getNbNodes() - 1; ++n) {
+			
+			Check.equals(1, nbFathers[n], "number of fathers of the node "+ n);
+		}
+		
+		/* Tiles */
+		for(int y0 = 0; y0 < height; y0 += tileSize) {
+			for(int x0 = 0; x0 < width; x0 += tileSize) {
+				
+				int tileWidth = Math.min(tileSize, width - x0);
+				int tileHeight = Math.min(tileSize, height - y0);
+				Node tileRoot = tree.getNode(y0 * width + x0);
+				while(tileRoot.father != null && tileRoot.father.getSize() <= tileWidth * tileHeight) {
+					
+					tileRoot = tileRoot.father;
+				}
+				Check.equals(tileWidth * tileHeight, tileRoot.getSize(), "size of the tile at "+ x0 +","+ y0);
+				for(PixelRuns runs: tileRoot.getPixelRuns()) {
+					for(int run = 0; run < runs.getNbRuns(); ++run) {
+						
+						int y = runs.getRow(run);
+						Check.isTrue(y >= y0 && y < y0 + tileHeight && runs.getStart(run) >= x0 && runs.getEnd(run) <= x0 + tileWidth, 
+									 "pixel out of the tile at "+ x0 +","+ y0);
+					}
+				}
+			}
+		}
+		tree.reader.close();
+		
+		/* Metric needing the pixels */
+		OutOfCoreBPT rejected = new OutOfCoreBPT(imageFile.getPath(), directory.getPath(), "rejected");
+		rejected.metricType = TypeOfMetric.OMSE;
+		rejected.tileSize = tileSize;
+		try {
+			
+			rejected.grow();
+			Check.isTrue(false, "the metric "+ rejected.metricType +" is accepted");
+			
+		}catch(IllegalArgumentException e) {
+			
+			/* expected */
+		}
+		
+		for(File file: directory.listFiles()) {
+			
+			file.delete();
+		}
+		directory.delete();
+		System.out.println("[Test] OutOfCoreBPT succeded!");
+	}
+}
@@ -0,0 +1,164 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests.standard.sequential;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import datastructure.Node;
+import datastructure.PixelRuns;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.bricks.MetricFactory;
+import standard.sequential.BPT;
+import tests.bricks.Check;
+import utils.Log;
+import utils.d2.LabelMatrix;
+import utils.d2.SegmentByConnexityRaw;
+
+/**
+ * Test of the leaves defined from a pre-segmented image: they must be the connected regions found by {@link SegmentByConnexityRaw}.
+ * 
+ * <p>
+ * Checked, on several images whose regions touch each other by corners and join late (i.e. U shapes):
+ * <li> there is one leaf per region of {@link SegmentByConnexityRaw};
+ * <li> each pixel of a leaf has the label of the leaf in the matrix of {@link SegmentByConnexityRaw} and in the one of the tree;
+ * <li> each pixel of the image belongs to exactly one leaf;
+ * <li> the runs of each leaf are ordered row by row, from left to right.
+ *
+ */
+public class PreSegLeavesTest {
+
+	public static void main(String[] args) {
+		
+		Log.show = false;
+		int[][] sizes = { {13, 11}, {1, 9}, {9, 1}, {40, 30} };
+		for(int seed = 0; seed < 5; ++seed) {
+			for(int[] size: sizes) {
+				
+				check(size[0], size[1], seed);
+			}
+		}
+		
+		System.out.println("[Test] PreSegLeaves succeded!");
+	}
+	
+	/**
+	 * Compares the leaves of a tree grown from a random pre-segmented image to the regions of {@link SegmentByConnexityRaw}.
+	 * 
+	 * @param width of the image
+	 * @param height of the image
+	 * @param seed of the random colors
+	 */
+	private static void check(int width, int height, int seed) {
+		
+		String image = width +"x"+ height +" (seed "+ seed +")";
+		BufferedImage preSegImage = preSegImage(width, height, seed);
+		LabelMatrix expected = new SegmentByConnexityRaw(preSegImage).runForFullImage();
+		
+		BufferedImage pixels = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(seed);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				pixels.setRGB(x, y, random.nextInt(0xFFFFFF));
+			}
+		}
+		BPT tree = new BPT(pixels);
+		tree.setPreSegImage(preSegImage);
+		tree.setMetric(MetricFactory.initMetric(TypeOfMetric.RADIOMETRIC_AVERAGE, pixels));
+		tree.grow();
+		
+		Check.equals(expected.getNbRegions(), tree.getNbLeaves(), "number of leaves of "+ image);
+		Check.equals(expected.getNbRegions(), tree.labelMatrix.getNbRegions(), "number of regions of "+ image);
+		
+		int[][] nbLeavesPerPixel = new int[width][height];
+		for(int l = 0; l < tree.getNbLeaves(); ++l) {
+			
+			Node leaf = tree.getNode(l);
+			Check.equals(l, leaf.label, "label of the leaf "+ l +" of "+ image);
+			int previousRow = -1;
+			int previousEnd = -1;
+			for(PixelRuns runs: leaf.getPixelRuns()) {
+				for(int run = 0; run < runs.getNbRuns(); ++run) {
+					
+					int y = runs.getRow(run);
+					Check.isTrue(y > previousRow || runs.getStart(run) > previousEnd, "order of the runs of the leaf "+ l +" of "+ image);
+					previousRow = y;
+					previousEnd = runs.getEnd(run);
+					for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+						
+						Check.equals(expected.getLabel(x, y), leaf.label, "label of the pixel "+ x +","+ y +" in the leaf "+ l +" of "+ image);
+						Check.equals(leaf.label, tree.labelMatrix.getLabel(x, y), "label of the pixel "+ x +","+ y +" in the tree of "+ image);
+						nbLeavesPerPixel[x][y]++;
+					}
+				}
+			}
+		}
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				Check.equals(1, nbLeavesPerPixel[x][y], "number of leaves of the pixel "+ x +","+ y +" of "+ image);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param width of the image
+	 * @param height of the image
+	 * @param seed of the random colors
+	 * @return blocks of 3 x 2 pixels of 3 colors, randomly shifted, so that some regions of the same color touch only by corners
+	 */
+	private static BufferedImage preSegImage(int width, int height, int seed) {
+		
+		BufferedImage preSegImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		int[] colors = { 0x000000, 0xFF0000, 0x00FF00 };
+		Random random = new Random(seed + 7);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				preSegImage.setRGB(x, y, colors[(x / 3 + y / 2 + random.nextInt(2)) % colors.length]);
+			}
+		}
+		return preSegImage;
+	}
+}
@@ -0,0 +1,200 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests.standard.sequential;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import datastructure.Node;
+import datastructure.Node.TypeOfNode;
+import datastructure.Tree.TypeOfConnectivity;
+import metric.bricks.Metric;
+import standard.sequential.BPT;
+import tests.bricks.Check;
+import utils.Log;
+
+/**
+ * Test of the {@link TypeOfConnectivity#SORTED SORTED connectivity} of the trees built from a set of values.
+ * 
+ * <p>
+ * Checked:
+ * <li> with an {@link Metric#isIntervalBased() interval-based metric} and distinct values, the tree is the one built with ALL (same mergings, in the same order);
+ * <li> it is refused with a metric that is not interval-based.
+ *
+ */
+public class SortedConnectivityTest {
+
+	public static void main(String[] args) {
+		
+		Log.show = false;
+		Random random = new Random(3);
+		
+		/* Distinct values, some gaps being tied */
+		ArrayList<Double> valueSet = new ArrayList<Double>();
+		for(int v = 0; v < 400; ++v) {
+			
+			valueSet.add((double) v);
+		}
+		Collections.shuffle(valueSet, random);
+		for(int i = 0; i < 100; ++i) {
+			
+			valueSet.remove(random.nextInt(valueSet.size()));
+		}
+		
+		checkSame(grow(valueSet, TypeOfConnectivity.ALL, new RangeMetric()), grow(valueSet, TypeOfConnectivity.SORTED, new RangeMetric()));
+		
+		/* Distinct values, distinct gaps */
+		valueSet.clear();
+		for(int v = 0; v < 300; ++v) {
+			
+			valueSet.add(random.nextDouble());
+		}
+		checkSame(grow(valueSet, TypeOfConnectivity.ALL, new RangeMetric()), grow(valueSet, TypeOfConnectivity.SORTED, new RangeMetric()));
+		
+		/* Not interval-based */
+		boolean refused = false;
+		try {
+			
+			grow(valueSet, TypeOfConnectivity.SORTED, new RangeMetric() {
+				
+				@Override
+				public boolean isIntervalBased() {
+					
+					return false;
+				}
+			});
+			
+		}catch(IllegalStateException e) {
+			
+			refused = true;
+		}
+		Check.isTrue(refused, "SORTED accepted with a metric that is not interval-based");
+		
+		System.out.println("[Test] SortedConnectivity succeded!");
+	}
+	
+	/**
+	 * 
+	 * @param valueSet values of the leaves; should not be null
+	 * @param connectivity linking the leaves; should not be null
+	 * @param metric to use; should not be null
+	 * @return the grown tree
+	 */
+	private static BPT<Double> grow(ArrayList<Double> valueSet, TypeOfConnectivity connectivity, Metric metric) {
+		
+		BPT<Double> tree = new BPT<Double>(valueSet);
+		tree.setConnectivity(connectivity);
+		tree.setMetric(metric);
+		tree.grow();
+		return tree;
+	}
+	
+	/**
+	 * Checks that two trees have the same nodes, with the same children and the same scores.
+	 * 
+	 * @param expected tree; should not be null
+	 * @param actual tree; should not be null
+	 */
+	private static void checkSame(BPT<Double> expected, BPT<Double> actual) {
+		
+		Check.equals(expected.getNbNodes(), actual.getNbNodes(), "number of nodes");
+		for(int n = expected.getNbLeaves(); n < expected.getNbNodes(); ++n) {
+			
+			Node e = expected.getNode(n);
+			Node a = actual.getNode(n);
+			Check.isTrue(e.leftNode.name == a.leftNode.name && e.rightNode.name == a.rightNode.name, "children of the node "+ n);
+			Check.isTrue(e.merginScore == a.merginScore, "score of the node "+ n);
+		}
+	}
+	
+	/**
+	 * Range of the values of the union of two regions: an interval-based metric.
+	 */
+	private static class RangeMetric extends Metric {
+		
+		/**
+		 * Positions of the lowest and of the greatest value of a region among its features.
+		 */
+		private final int minPos;
+		private final int maxPos;
+		
+		RangeMetric() {
+			
+			this.minPos = ++currentFeaturePos;
+			this.maxPos = ++currentFeaturePos;
+		}
+		
+		@Override
+		public double computeDistances(Node n1, Node n2) {
+			
+			return Math.max(n1.features.get(this.maxPos), n2.features.get(this.maxPos)) - Math.min(n1.features.get(this.minPos), n2.features.get(this.minPos));
+		}
+		
+		@Override
+		public void initMF(Node n) {
+			
+			if(n.leftNode == null) {
+				
+				double value = (Double) n.getValues().get(0);
+				n.features.put(this.minPos, value);
+				n.features.put(this.maxPos, value);
+			}
+		}
+		
+		@Override
+		public boolean isIntervalBased() {
+			
+			return true;
+		}
+		
+		@Override
+		public void updateMF(Node n) {
+			
+			if(n.type != TypeOfNode.LEAF) {
+				
+				n.features.put(this.minPos, Math.min(n.leftNode.features.get(this.minPos), n.rightNode.features.get(this.minPos)));
+				n.features.put(this.maxPos, Math.max(n.leftNode.features.get(this.maxPos), n.rightNode.features.get(this.maxPos)));
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package tests.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import datastructure.Node;
+import datastructure.PixelRuns;
+import standard.sequential.BPT;
+import standard.sequential.BPT.OpenMode;
+import tests.bricks.Check;
+import utils.ImTool;
+import utils.Log;
+import utils.SaveBPT;
+import utils.d2.Formula;
+
+/**
+ * Test of the leaves saved by {@link SaveBPT#toHDF5(datastructure.Tree)} then read back with {@link BPT#BPT(String, OpenMode)}.
+ * 
+ * <p>
+ * Both encodings are checked: leaves of one pixel (saved pixel by pixel) and leaves of blocks from a pre-segmented image (saved as runs).
+ * The pixels of each leaf, re-grown or read from the file (see {@link BPT#getPixels(Node)}), must be the ones of the saved leaf.
+ * 
+ * <p>
+ * A file saved by {@link SaveBPT#toHDF5Async(datastructure.Tree)} in another JVM, ending without waiting for the saving, must be complete.
+ *
+ */
+public class SaveBPTTest {
+
+	/**
+	 * 
+	 * @param args none to run the test; [image path, directory, exit] to save a tree asynchronously and end without waiting for the saving 
+	 * (by returning, or with {@link System#exit(int)} if exit is true)
+	 * @throws Exception if the test cannot run
+	 */
+	public static void main(String[] args) throws Exception {
+		
+		Log.show = false;
+		if(args.length == 3) {
+			
+			BPT tree = new BPT(ImTool.read(args[0]));
+			tree.grow();
+			tree.setName("async");
+			tree.setDirectory(args[1]);
+			SaveBPT.toHDF5Async(tree);
+			if(Boolean.parseBoolean(args[2])) {
+				
+				System.exit(0);
+			}
+			return;
+		}
+		
+		int width = 24;
+		int height = 16;
+		int blockSize = 8;
+		
+		File directory = Files.createTempDirectory("bpt_save").toFile();
+		File imageFile = new File(directory, "image.png");
+		File preSegFile = new File(directory, "preseg.png");
+		BufferedImage pixels = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage blocks = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(3);
+		for(int y = 0; y < height; ++y) {
+			for(int x = 0; x < width; ++x) {
+				
+				pixels.setRGB(x, y, random.nextInt(0xFFFFFF));
+				blocks.setRGB(x, y, ((x / blockSize) * 50) << 16 | ((y / blockSize) * 50) << 8);
+			}
+		}
+		ImageIO.write(pixels, "png", imageFile);
+		ImageIO.write(blocks, "png", preSegFile);
+		
+		/* the paths of the images are saved with the tree */
+		BufferedImage image = ImTool.read(imageFile.getPath());
+		BufferedImage preSegImage = ImTool.read(preSegFile.getPath());
+		
+		BPT pixelTree = new BPT(image);
+		pixelTree.grow();
+		check(pixelTree, directory, "pixels", false);
+		
+		BPT blockTree = new BPT(image);
+		blockTree.setPreSegImage(preSegImage);
+		blockTree.grow();
+		check(blockTree, directory, "blocks", true);
+		
+		checkAsync(imageFile, directory, pixelTree.getNbLeaves(), false);
+		checkAsync(imageFile, directory, pixelTree.getNbLeaves(), true);
+		
+		for(File file: directory.listFiles()) {
+			
+			file.delete();
+		}
+		directory.delete();
+		System.out.println("[Test] SaveBPT succeded!");
+	}
+	
+	/**
+	 * Saves the tree, reads it back and compares the pixels of the leaves.
+	 * 
+	 * @param tree grown tree; should not be null
+	 * @param directory where the file is written; should not be null
+	 * @param name of the file
+	 * @param runEncoded true if the leaves should be saved as runs
+	 */
+	private static void check(BPT tree, File directory, String name, boolean runEncoded) {
+		
+		int nbLeaves = tree.getNbLeaves();
+		int maxLonger = tree.getMaxLonger();
+		int[][] expected = new int[nbLeaves][];
+		for(int l = 0; l < nbLeaves; ++l) {
+			
+			expected[l] = valuesOf(tree.getNode(l).getPixelRuns(), maxLonger);
+		}
+		
+		tree.setName(name);
+		tree.setDirectory(directory.getPath());
+		Check.isTrue(SaveBPT.toHDF5(tree), "the tree "+ name +" is not saved");
+		
+		BPT loaded = new BPT(new File(directory, name +".h5").getPath(), OpenMode.STRUCTURE_ONLY);
+		Check.isTrue(loaded.runEncodedLeaves == runEncoded, "encoding of the leaves of "+ name);
+		Check.equals(nbLeaves, loaded.getNbLeaves(), "number of leaves of "+ name);
+		for(int l = 0; l < nbLeaves; ++l) {
+			
+			Node leaf = loaded.getNode(l);
+			Check.isTrue(Arrays.equals(expected[l], valuesOf(leaf.getPixelRuns(), maxLonger)), "re-grown pixels of the leaf "+ l +" of "+ name);
+			
+			int[] read = loaded.getPixels(leaf);
+			Arrays.sort(read);
+			Check.isTrue(Arrays.equals(expected[l], read), "read pixels of the leaf "+ l +" of "+ name);
+		}
+		loaded.reader.close();
+	}
+	
+	/**
+	 * Saves the tree of an image asynchronously in another JVM ending without waiting for the saving, then reads the file back.
+	 * 
+	 * @param imageFile image of the tree; should not be null
+	 * @param directory where the file is written; should not be null
+	 * @param nbLeaves expected number of leaves
+	 * @param exit true if the other JVM ends with {@link System#exit(int)}, false if its main method returns
+	 * @throws Exception if the other JVM cannot run
+	 */
+	private static void checkAsync(File imageFile, File directory, int nbLeaves, boolean exit) throws Exception {
+		
+		File file = new File(directory, "async.h5");
+		file.delete();
+		
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator +"bin"+ File.separator +"java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		if(System.getProperty("native.libpath") != null) {
+			
+			command.add("-Dnative.libpath="+ System.getProperty("native.libpath"));
+		}
+		command.addAll(Arrays.asList(SaveBPTTest.class.getName(), imageFile.getPath(), directory.getPath(), String.valueOf(exit)));
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.inheritIO();
+		Check.equals(0, builder.start().waitFor(), "exit code of the JVM saving asynchronously (exit: "+ exit +")");
+		
+		Check.isTrue(file.exists(), "the file saved asynchronously is not written (exit: "+ exit +")");
+		BPT loaded = new BPT(file.getPath(), OpenMode.STRUCTURE_ONLY);
+		Check.equals(nbLeaves, loaded.getNbLeaves(), "number of leaves saved asynchronously (exit: "+ exit +")");
+		loaded.reader.close();
+	}
+	
+	/**
+	 * @param regions runs of pixels; should not be null
+	 * @param maxLonger longest side of the image
+	 * @return the sorted values of the pixels (see {@link Formula#toVal(int, int, int)})
+	 */
+	private static int[] valuesOf(Iterable<PixelRuns> regions, int maxLonger) {
+		
+		int size = 0;
+		for(PixelRuns runs: regions) {
+			
+			size += runs.size();
+		}
+		int[] values = new int[size];
+		int v = 0;
+		for(PixelRuns runs: regions) {
+			for(int run = 0; run < runs.getNbRuns(); ++run) {
+				for(int x = runs.getStart(run); x < runs.getEnd(run); ++x) {
+					
+					values[v++] = Formula.toVal(x, runs.getRow(run), maxLonger);
+				}
+			}
+		}
+		Arrays.sort(values);
+		return values;
+	}
+}
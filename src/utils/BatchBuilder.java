@@ -0,0 +1,599 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.FilenameUtils;
+
+import metric.bricks.BandLayout;
+import metric.bricks.Metric;
+import metric.bricks.Metric.TypeOfMetric;
+import metric.bricks.MetricFactory;
+import standard.sequential.BPT;
+
+/**
+ * Creates and saves the BPTs of many images at the same time, within a budget of heap.
+ * 
+ * <p>
+ * Each image goes through a pipeline of three pools of threads, so that the reading, the creation and the saving of different images overlap:
+ * <li> the {@link BatchBuilder#nbReaders readers} decode the images;
+ * <li> the {@link BatchBuilder#nbBuilders builders} create the trees;
+ * <li> the {@link BatchBuilder#nbSavers savers} write the trees in HDF5 files (see {@link SaveBPT#toHDF5(datastructure.Tree)}) from a {@link SaveBPT.Snapshot snapshot} of their structure.
+ * 
+ * <p>
+ * The memory needed by an image is {@link BatchBuilder#estimateBytes(int, int, BufferedImage, TypeOfMetric) estimated} from its size and the features of the metric, 
+ * read in the header of the file when possible.
+ * An image is admitted in the pipeline only when its estimation fits in the budget along with the images in progress; 
+ * an image bigger than the whole budget is treated alone. 
+ * {@link BatchBuilder#submit(String)} waits for the admission, so the images are never queued beyond the budget.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * BatchBuilder batch = new BatchBuilder(TypeOfMetric.OMIN_MAX, "xp//trees", 8L * 1024 * 1024 * 1024); // 8 GB
+ * for(String path: paths) {
+ *     batch.submit(path);
+ * }
+ * List&lt;BatchBuilder.Report&gt; reports = batch.shutdown();
+ * </pre>
+ *
+ */
+public class BatchBuilder {
+	
+	private static final String CONTEXT = "BATCH";
+	
+	/**
+	 * Outcome of one image.
+	 */
+	public static class Report {
+		
+		/**
+		 * Time spent in each stage, in milliseconds.
+		 */
+		public long admissionMs, readingMs, creationMs, savingMs;
+		
+		/**
+		 * Heap reserved in the budget for the image, in bytes; 0 until the image is admitted.
+		 */
+		public long admittedBytes;
+		
+		/**
+		 * Estimation of the heap used by the image, in bytes.
+		 */
+		public long estimatedBytes;
+		
+		/**
+		 * Cause of the failure; null if the tree is saved.
+		 */
+		public Throwable failure;
+		
+		/**
+		 * Size of the image.
+		 */
+		public int width, height;
+		
+		/**
+		 * Number of nodes of the tree (including leaves).
+		 */
+		public int nbNodes;
+		
+		/**
+		 * Path of the image.
+		 */
+		public final String path;
+		
+		/**
+		 * 
+		 * @param path of the image; should not be null
+		 */
+		public Report(String path) {
+			
+			this.path = path;
+		}
+		
+		/**
+		 * 
+		 * @return the number of pixels treated per second by the creation of the tree
+		 */
+		public double getPixelsPerSecond() {
+			
+			return this.creationMs == 0 ? 0 : (1000.0 * this.width * this.height) / this.creationMs;
+		}
+		
+		/**
+		 * 
+		 * @return true if the tree is saved
+		 */
+		public boolean isSuccessful() {
+			
+			return this.failure == null;
+		}
+		
+		@Override
+		public String toString() {
+			
+			if(this.failure != null) {
+				
+				return this.path +": failed ("+ this.failure +")";
+			}
+			return this.path +": "+ this.width +"x"+ this.height +", "+ this.nbNodes +" nodes"
+					+" | admission "+ this.admissionMs +" ms, reading "+ this.readingMs +" ms, creation "+ this.creationMs +" ms ("+ Math.round(this.getPixelsPerSecond()) +" px/s), saving "+ this.savingMs +" ms";
+		}
+	}
+	
+	/**
+	 * Heap reserved by the images in progress, in bytes.
+	 */
+	private long admittedBytes;
+	
+	/**
+	 * Maximum heap reserved by the images in progress, in bytes.
+	 */
+	public final long maxBytes;
+	
+	/**
+	 * Metric of the trees.
+	 */
+	public final TypeOfMetric metricType;
+	
+	/**
+	 * Number of threads creating the trees; to set before the first submission.
+	 */
+	public int nbBuilders = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Number of threads reading the images; to set before the first submission.
+	 */
+	public int nbReaders = 2;
+	
+	/**
+	 * Number of threads saving the trees; to set before the first submission.
+	 */
+	public int nbSavers = 1;
+	
+	/**
+	 * Directory of the saved trees; each tree is named after its image.
+	 */
+	public final String outputDirectory;
+	
+	/**
+	 * Pools of each stage; created at the first submission.
+	 */
+	private ExecutorService readers, builders, savers;
+	
+	/**
+	 * Outcome of the images, in order of completion.
+	 */
+	private final List<Report> reports = Collections.synchronizedList(new ArrayList<Report>());
+	
+	/**
+	 * Number of images submitted and not completed yet.
+	 */
+	private int nbPending;
+	
+	/**
+	 * Time of the first submission.
+	 */
+	private long startingTime;
+	
+	/**
+	 * 
+	 * @param metricType metric of the trees; should not be null
+	 * @param outputDirectory directory of the saved trees; should not be null
+	 * @param maxBytes maximum heap reserved by the images in progress; should be > 0
+	 */
+	public BatchBuilder(TypeOfMetric metricType, String outputDirectory, long maxBytes) {
+		
+		this.metricType = metricType;
+		this.outputDirectory = outputDirectory;
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Budget of 80% of the maximum heap of the JVM.
+	 * 
+	 * @param metricType metric of the trees; should not be null
+	 * @param outputDirectory directory of the saved trees; should not be null
+	 */
+	public BatchBuilder(TypeOfMetric metricType, String outputDirectory) {
+		
+		this(metricType, outputDirectory, (Runtime.getRuntime().maxMemory() / 10) * 8);
+	}
+	
+	/**
+	 * Waits until an image fits in the budget, then reserves its heap.
+	 * An image bigger than the whole budget waits until no other image is in progress.
+	 * 
+	 * @param report of the image, giving its {@link Report#estimatedBytes estimation}; should not be null
+	 * @throws InterruptedException if the waiting thread is interrupted; nothing is reserved then
+	 */
+	private synchronized void admit(Report report) throws InterruptedException {
+		
+		while(this.admittedBytes > 0 && this.admittedBytes + report.estimatedBytes > this.maxBytes) {
+			
+			this.wait();
+		}
+		this.admittedBytes += report.estimatedBytes;
+		report.admittedBytes = report.estimatedBytes;
+	}
+	
+	/**
+	 * Creates the tree of an image; called by the builders.
+	 * Can be overridden to use another builder or options (e.g. a {@link MemoryBudget}).
+	 * 
+	 * @param image to treat; should not be null
+	 * @return a tree ready to grow
+	 */
+	protected BPT createTree(BufferedImage image) {
+		
+		BPT tree = new BPT(image);
+		
+		/* the positions of the features are shared by all metrics: they are reserved one metric at a time */
+		synchronized(Metric.class) {
+			
+			tree.setMetric(MetricFactory.initMetric(this.metricType, image));
+		}
+		return tree;
+	}
+	
+	/**
+	 * Ends a pipeline: releases the heap reserved for the image, if any, and records its report.
+	 * 
+	 * @param report of the image; should not be null
+	 */
+	private synchronized void complete(Report report) {
+		
+		this.admittedBytes -= report.admittedBytes;
+		this.reports.add(report);
+		this.nbPending--;
+		Log.println(CONTEXT, report.toString());
+		this.notifyAll();
+	}
+	
+	/**
+	 * Estimates the heap used by a creation with {@link MemoryBudget#estimateBytes(long, int, int)}, from the features reserved by the metric.
+	 * 
+	 * @param width of the image
+	 * @param height of the image
+	 * @param sample image having the bands of the image (e.g. one of its pixels); should not be null
+	 * @param metricType metric of the tree; should not be null
+	 * @return an estimation of the heap used to create the tree of the image, in bytes
+	 * 
+	 * @throws NullPointerException if sample or metricType is null
+	 */
+	public long estimateBytes(int width, int height, BufferedImage sample, TypeOfMetric metricType) {
+		
+		int nbFeatures;
+		Metric metric;
+		
+		/* the metric reserves its features after the ones already reserved: the positions are given back once counted */
+		synchronized(Metric.class) {
+			
+			int currentFeaturePos = Metric.currentFeaturePos;
+			try {
+				
+				metric = MetricFactory.initMetric(metricType, sample);
+				nbFeatures = Metric.currentFeaturePos - currentFeaturePos;
+				
+			}finally {
+				
+				Metric.currentFeaturePos = currentFeaturePos;
+			}
+		}
+		
+		/* the band features are counted in a layout of their own */
+		BandLayout bandLayout = new BandLayout();
+		metric.reserveBandFeatures(bandLayout);
+		int nbBandFeatures = bandLayout.getLength();
+		return MemoryBudget.estimateBytes((long) width * height, nbFeatures, nbBandFeatures);
+	}
+	
+	/**
+	 * 
+	 * @return the outcome of the images completed so far, in order of completion
+	 */
+	public List<Report> getReports() {
+		
+		synchronized(this.reports) {
+			
+			return new ArrayList<Report>(this.reports);
+		}
+	}
+	
+	/**
+	 * Reads the size of an image in the header of its file, without decoding it.
+	 * 
+	 * @param path of the image; should not be null
+	 * @param report receiving the size of the image; should not be null
+	 * @return an image of one pixel having the bands of the image; null if the format cannot be read this way
+	 */
+	private static BufferedImage readHeader(String path, Report report) {
+		
+		try (ImageInputStream input = ImageIO.createImageInputStream(new File(path))) {
+			
+			Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+			if(readers == null || !readers.hasNext()) {
+				
+				return null;
+			}
+			
+			ImageReader reader = readers.next();
+			try {
+				
+				reader.setInput(input, true, true);
+				BufferedImage sample = reader.getImageTypes(0).next().createBufferedImage(1, 1);
+				report.width = reader.getWidth(0);
+				report.height = reader.getHeight(0);
+				return sample;
+				
+			}finally {
+				
+				reader.dispose();
+			}
+			
+		}catch(Exception e) {
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Waits for all submitted images, then stops the pools.
+	 * 
+	 * @return the outcome of all images, in order of completion
+	 * 
+	 * @throws IllegalStateException if the waiting thread is interrupted
+	 */
+	public List<Report> shutdown() {
+		
+		synchronized(this) {
+			
+			try {
+				
+				while(this.nbPending > 0) {
+					
+					this.wait();
+				}
+				
+			}catch(InterruptedException e) {
+				
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		if(this.readers != null) {
+			
+			for(ExecutorService pool: new ExecutorService[] {this.readers, this.builders, this.savers}) {
+				
+				pool.shutdown();
+				try {
+					
+					pool.awaitTermination(1, TimeUnit.MINUTES);
+					
+				}catch(InterruptedException e) {
+					
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(e);
+				}
+			}
+			this.readers = null;
+			this.builders = null;
+			this.savers = null;
+		}
+		
+		List<Report> reports = this.getReports();
+		long pixels = 0;
+		int nbSuccesses = 0;
+		for(Report report: reports) {
+			
+			if(report.isSuccessful()) {
+				
+				pixels += (long) report.width * report.height;
+				nbSuccesses++;
+			}
+		}
+		long timeMs = Math.max(1, (System.nanoTime() - this.startingTime) / 1000000);
+		Log.println(CONTEXT, nbSuccesses +"/"+ reports.size() +" trees saved in "+ timeMs +" ms ("+ (1000 * pixels / timeMs) +" px/s)");
+		return reports;
+	}
+	
+	/**
+	 * Submits an image: waits until it fits in the budget, then reads it, creates its tree and saves it in the background.
+	 * 
+	 * @param path of the image; should not be null
+	 * 
+	 * @throws IllegalStateException if the waiting thread is interrupted
+	 */
+	public void submit(final String path) {
+		
+		synchronized(this) {
+			
+			if(this.readers == null) {
+				
+				this.readers = Executors.newFixedThreadPool(Math.max(1, this.nbReaders));
+				this.builders = Executors.newFixedThreadPool(Math.max(1, this.nbBuilders));
+				this.savers = Executors.newFixedThreadPool(Math.max(1, this.nbSavers));
+				this.startingTime = System.nanoTime();
+			}
+			this.nbPending++;
+		}
+		
+		final Report report = new Report(path);
+		long startingTime = System.nanoTime();
+		
+		/* when the header gives the size, the image is admitted before being decoded */
+		BufferedImage sample = readHeader(path, report);
+		final boolean admittedBeforeReading = sample != null;
+		if(admittedBeforeReading) {
+			
+			try {
+				
+				report.estimatedBytes = this.estimateBytes(report.width, report.height, sample, this.metricType);
+				this.admit(report);
+				
+			}catch(InterruptedException e) {
+				
+				report.failure = e;
+				this.complete(report);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+				
+			}catch(RuntimeException e) {
+				
+				/* e.g. a metric not fitting the bands of the image */
+				report.failure = e;
+				this.complete(report);
+				return;
+			}
+			report.admissionMs = (System.nanoTime() - startingTime) / 1000000;
+		}
+		
+		this.readers.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				
+				try {
+					
+					long startingTime = System.nanoTime();
+					final BufferedImage image = ImTool.read(path);
+					if(image == null) {
+						
+						throw new IllegalArgumentException("The image can not be read: "+ path);
+					}
+					report.readingMs = (System.nanoTime() - startingTime) / 1000000;
+					
+					if(!admittedBeforeReading) {
+						
+						startingTime = System.nanoTime();
+						report.width = image.getWidth();
+						report.height = image.getHeight();
+						report.estimatedBytes = estimateBytes(report.width, report.height, image.getSubimage(0, 0, 1, 1), metricType);
+						admit(report);
+						report.admissionMs = (System.nanoTime() - startingTime) / 1000000;
+					}
+					builders.execute(new Runnable() {
+						
+						@Override
+						public void run() {
+							
+							build(report, image);
+						}
+					});
+					
+				}catch(Throwable t) {
+					
+					report.failure = t;
+					complete(report);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Creates the tree of an image, then passes it to the savers.
+	 * 
+	 * @param report of the image; should not be null
+	 * @param image to treat; should not be null
+	 */
+	private void build(final Report report, BufferedImage image) {
+		
+		try {
+			
+			long startingTime = System.nanoTime();
+			BPT tree = this.createTree(image);
+			tree.grow();
+			report.creationMs = (System.nanoTime() - startingTime) / 1000000;
+			report.nbNodes = tree.nbNodes;
+			
+			/* only the structure is kept until the file is written: the tree is freed as soon as the builder moves on */
+			startingTime = System.nanoTime();
+			tree.setName(FilenameUtils.getBaseName(report.path));
+			tree.setDirectory(this.outputDirectory);
+			final SaveBPT.Snapshot snapshot = new SaveBPT.Snapshot(tree);
+			final long snapshotMs = (System.nanoTime() - startingTime) / 1000000;
+			this.savers.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					
+					long startingTime = System.nanoTime();
+					try {
+						
+						if(!snapshot.toHDF5()) {
+							
+							report.failure = new IllegalStateException("The tree could not be saved in "+ outputDirectory);
+						}
+						
+					}catch(Throwable t) {
+						
+						report.failure = t;
+						
+					}finally {
+						
+						report.savingMs = snapshotMs + (System.nanoTime() - startingTime) / 1000000;
+						complete(report);
+					}
+				}
+			});
+			
+		}catch(Throwable t) {
+			
+			report.failure = t;
+			this.complete(report);
+		}
+	}
+}
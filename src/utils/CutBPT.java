@@ -48,6 +48,7 @@ import java.util.HashMap;
 import java.util.Random;
 
 import datastructure.Node;
+import datastructure.PixelRuns;
 import datastructure.Tree;
 import utils.d2.LabelMatrix;
 
@@ -101,7 +102,7 @@ public class CutBPT {
 			if(leaf.getSize() > 0) {
 			
 				activeNodesList.add(leaf);
-				labelMatrix.fill(leaf.getPixels(), leaf.label);
+				fill(labelMatrix, leaf);
 
 				if(!randomColors.containsKey(leaf.label)) {
 
@@ -140,8 +141,7 @@ public class CutBPT {
 		int numberOfRegions = nbLeaves;
 		for(int n = nbLeaves; n < tree.getNbNodes(); n++) {
 			
-			tree.setProgress((numFusion * 100) / nbFusions);
-			Log.println(CONTEXT, tree.getProgress() +"%");
+			tree.setProgress(Log.printProgress(CONTEXT, tree.getProgress(), numFusion, nbFusions));
 
 			Node node = nodes[n];
 
@@ -158,7 +158,7 @@ public class CutBPT {
 					for(int i = 0; i < activeNodesList.size(); i++) {
 						
 						Node activeNode = activeNodesList.get(i);
-						labelMatrix.fill(activeNode.getPixels(), activeNode.label);
+						fill(labelMatrix, activeNode);
 					}
 
 					if(starting == numberOfRegions) {
@@ -193,4 +193,20 @@ public class CutBPT {
 		tree.endingState();
 		return res;
 	}
+	
+	/**
+	 * Sets the label of a region on all its pixels, run by run.
+	 * 
+	 * @param labelMatrix to fill; should not be null
+	 * @param node region whose pixels are labeled; should not be null
+	 * 
+	 * @throws NullPointerException if labelMatrix is null or node is null
+	 */
+	private static void fill(LabelMatrix labelMatrix, Node node) {
+		
+		for(PixelRuns runs: node.getPixelRuns()) {
+			
+			runs.fill(labelMatrix, node.label);
+		}
+	}
 }
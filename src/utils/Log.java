@@ -41,11 +41,21 @@
 
 package utils;
 
+import java.util.function.Supplier;
+
 /**
  * Prints information according to a context.
  * 
  * <p>
  * It helps the developer as landmarks in the code.
+ * 
+ * <p>
+ * In the loops (e.g. node mergings), the messages should not be built when the logging is disabled:
+ * <pre>
+ * if(Log.isEnabled(Level.DEBUG)) {
+ * 	Log.println(Level.DEBUG, context, adjacency +" Optimal Score: "+ adjacency.distance);
+ * }
+ * </pre>
  *
  */
 public class Log {
@@ -55,6 +65,33 @@ public class Log {
 	 */
 	public static boolean show = false;
 	
+	/**
+	 * Levels of details of the logging messages.
+	 * 
+	 * <li> INFO: main steps of a process
+	 * <li> DEBUG: details repeated at each iteration of a process (e.g. each node merging)
+	 */
+	public static enum Level{
+		
+		INFO,
+		DEBUG
+	}
+	
+	/**
+	 * Most detailed level of messages shown when the logging is activated.
+	 */
+	public static Level level = Level.INFO;
+	
+	/**
+	 * 
+	 * @param level of the message to show
+	 * @return true if a message of this level would be shown, otherwise false
+	 */
+	public static boolean isEnabled(Level level) {
+		
+		return Log.show && level.compareTo(Log.level) <= 0;
+	}
+	
 	/**
 	 * Shows on the console the logging message. 
 	 * 
@@ -67,4 +104,54 @@ public class Log {
 			System.out.println("["+ context +"] "+ message);
 		
 	}
+	
+	/**
+	 * Shows on the console the logging message if its level is enabled.
+	 * 
+	 * @param level of details of the message
+	 * @param context defining the corresponding part of the code
+	 * @param message defining success, errors or situations
+	 */
+	public static void println(Level level, String context, String message) {
+		
+		if(Log.isEnabled(level))
+			System.out.println("["+ context +"] "+ message);
+	}
+	
+	/**
+	 * Shows on the console the logging message if its level is enabled.
+	 * The message is only built in this case.
+	 * 
+	 * @param level of details of the message
+	 * @param context defining the corresponding part of the code
+	 * @param message building the text defining success, errors or situations; should not be null
+	 */
+	public static void println(Level level, String context, Supplier<String> message) {
+		
+		if(Log.isEnabled(level))
+			System.out.println("["+ context +"] "+ message.get());
+	}
+	
+	/**
+	 * Computes the progression of a process and only shows it when its percentage changes.
+	 * 
+	 * @param context defining the corresponding part of the code
+	 * @param previousProgress last percentage returned for the process
+	 * @param current number of iterations done
+	 * @param total number of iterations expected
+	 * @return the current percentage of progression
+	 */
+	public static int printProgress(String context, int previousProgress, long current, long total) {
+		
+		int progress = 100;
+		if(total > 0) {
+			
+			progress = (int) ((current * 100) / total);
+		}
+		
+		if(progress != previousProgress && Log.show)
+			System.out.println("["+ context +"] "+ progress +"%");
+		
+		return progress;
+	}
 }
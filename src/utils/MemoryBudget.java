@@ -0,0 +1,146 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Soft upper limit of the heap used during the creation of a tree.
+ * 
+ * <p>
+ * The tree builders check the budget regularly (instead of forcing a garbage collection).
+ * When it is exceeded, they compact their own structures (i.e. they empty their pools and release the features of the merged nodes, see {@link standard.sequential.BPT#compact()}) 
+ * so that the collector of the JVM can reclaim them on its own schedule.
+ * 
+ * <p>
+ * The budget is not a hard cap: the leaves, the adjacencies and the nodes still to merge are always kept, 
+ * so a creation needing more than the budget for them goes beyond it (and fails with an {@link OutOfMemoryError} only beyond the maximum heap of the JVM).
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * BPT bpt = new BPT(image);
+ * bpt.memoryBudget = new MemoryBudget(2L * 1024 * 1024 * 1024); // 2 GB
+ * bpt.grow();
+ * </pre>
+ *
+ */
+public class MemoryBudget {
+	
+	private static final String CONTEXT = "MEMORY";
+	
+	/**
+	 * Heap used per pixel at the peak of {@link standard.sequential.BPT#grow()} by the leaves, the nodes, the adjacencies and their queue, whatever the metric.
+	 * Measured on 3-band images with {@link metric.color.Ominmax} (about 5.0 to 5.2 KB per pixel).
+	 */
+	public static final long BYTES_PER_PIXEL = 5 * 1024;
+	
+	/**
+	 * Heap used per pixel for each feature stored in the {@link datastructure.Node#features map of the nodes} (one entry per leaf and per node).
+	 * Measured with {@link metric.color.Omse} (3 features, about 5.3 to 5.9 KB per pixel).
+	 */
+	public static final long BYTES_PER_FEATURE = 192;
+	
+	/**
+	 * Heap used per pixel for each value stored in the {@link datastructure.Node#bandFeatures array of the nodes} (one value per leaf and per node).
+	 */
+	public static final long BYTES_PER_BAND_FEATURE = 16;
+
+	/**
+	 * Maximum number of bytes of heap the creation should use.
+	 */
+	public final long maxBytes;
+	
+	/**
+	 * Number of times the budget has been exceeded; the budget may be shared by several creations.
+	 */
+	public final AtomicInteger nbExceedings = new AtomicInteger();
+	
+	/**
+	 * 
+	 * @param maxBytes maximum number of bytes of heap the creation should use; should be > 0
+	 */
+	public MemoryBudget(long maxBytes) {
+		
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Estimates the heap needed to create the tree of an image; on the measured metrics, the estimation is within 25% of the peak.
+	 * 
+	 * @param nbPixels number of pixels of the image; should be >= 0
+	 * @param nbFeatures number of features of the metric (i.e. {@link metric.bricks.Metric#currentFeaturePos} + 1 once the metric is created); should be >= 0
+	 * @param nbBandFeatures number of values per node of the metric (i.e. the length of its {@link metric.bricks.BandLayout layout}); should be >= 0
+	 * @return the number of bytes needed at the peak of the creation
+	 */
+	public static long estimateBytes(long nbPixels, int nbFeatures, int nbBandFeatures) {
+		
+		return nbPixels * (BYTES_PER_PIXEL + nbFeatures * BYTES_PER_FEATURE + nbBandFeatures * BYTES_PER_BAND_FEATURE);
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes currently used in the heap (including the objects not yet collected)
+	 */
+	public static long usedBytes() {
+		
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * Checks the budget.
+	 * 
+	 * @return true if the heap currently used exceeds the budget, otherwise false
+	 */
+	public boolean isExceeded() {
+		
+		long used = usedBytes();
+		if(used > this.maxBytes) {
+			
+			this.nbExceedings.incrementAndGet();
+			Log.println(CONTEXT, "Budget exceeded: "+ (used / (1024 * 1024)) +" MB used for "+ (this.maxBytes / (1024 * 1024)) +" MB allowed");
+			return true;
+		}
+		return false;
+	}
+}
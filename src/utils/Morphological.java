@@ -43,9 +43,12 @@ package utils;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 import java.util.TreeSet;
 
+import datastructure.PixelRuns;
+
 /**
  * Object regrouping morphological operations such as:
  * 
@@ -343,7 +346,6 @@ public class Morphological {
 	}
 
 	public double morphologicalSmoothness(ArrayList<Point> region){
-		double smoothness=0.0;
 		
 		int infinity=1000;
 		int new_width   =  width + 2 * infinity;
@@ -362,6 +364,39 @@ public class Morphological {
 			region_infinity.add(new Integer((y*new_width)+(x) ));
 		}
 		
+		return morphologicalSmoothnessInfinity(region_infinity, new_width, new_height);
+	}
+
+	/**
+	 * Same as {@link Morphological#morphologicalSmoothness(ArrayList)}, but the pixels are read from their runs.
+	 * 
+	 * @param regions runs of pixels forming the region (see {@link datastructure.Node#getPixelRuns()}); should not be null
+	 * @return the smoothness of the region
+	 */
+	public double morphologicalSmoothness(List<PixelRuns> regions){
+		
+		int infinity=1000;
+		int new_width   =  width + 2 * infinity;
+		int new_height  =  height + 2 * infinity;
+		
+		TreeSet<Integer> region_infinity=new TreeSet<Integer>();
+		for(PixelRuns runs:regions){
+			for(int run=0;run<runs.getNbRuns();++run){
+				
+				int y=runs.getRow(run)+infinity;
+				for(int x=runs.getStart(run)+infinity;x<runs.getEnd(run)+infinity;++x){
+					
+					region_infinity.add(new Integer((y*new_width)+(x) ));
+				}
+			}
+		}
+		
+		return morphologicalSmoothnessInfinity(region_infinity, new_width, new_height);
+	}
+	
+	private double morphologicalSmoothnessInfinity(TreeSet<Integer> region_infinity, int new_width, int new_height){
+		double smoothness=0.0;
+		
 		width=new_width;
 		height=new_height;
 		
@@ -0,0 +1,469 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import datastructure.PixelRuns;
+import utils.d2.SegmentByConnexityRaw;
+
+/**
+ * Labels the connected regions of an image (e.g. a pre-segmentation) row by row.
+ * 
+ * <p>
+ * Each row is split in runs (i.e. horizontal segments of pixels having the same color).
+ * A run touching a run of the same color in the previous row, directly or by a corner, belongs to the same region:
+ * the regions are 8-connected, as the ones of {@link SegmentByConnexityRaw}, and they are labeled in the same order (i.e. the order of their first pixel, row by row, from left to right).
+ * 
+ * <p>
+ * Only the previous row is kept: each run is directly stored in the {@link PixelRuns runs of its region}, so that the regions can become leaves without a matrix of labels:
+ * <pre>
+ * RunLabelling labelling = RunLabelling.of(preSegImage);
+ * for(int label = 0; label &lt; labelling.getNbRegions(); ++label) {
+ * 
+ *     PixelRuns runs = labelling.getRuns(label);
+ *     ...
+ * }
+ * </pre>
+ *
+ */
+public class RunLabelling {
+	
+	/**
+	 * Number of provisional labels that can be stored before growing the arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	/**
+	 * Color of each run of the current row.
+	 */
+	private int[] colors;
+	
+	/**
+	 * Last column (excluded) of each run of the current row.
+	 */
+	private int[] ends;
+	
+	/**
+	 * Provisional label of each run of the current row.
+	 */
+	private int[] labels;
+	
+	/**
+	 * Number of regions, defined once all rows are added.
+	 */
+	private int nbRegions = -1;
+	
+	/**
+	 * Number of rows added.
+	 */
+	private int nbRows;
+	
+	/**
+	 * Number of runs of the current row.
+	 */
+	private int nbRuns;
+	
+	/**
+	 * Number of provisional labels.
+	 */
+	private int nbProvisionalLabels;
+	
+	/**
+	 * Number of runs of the previous row.
+	 */
+	private int nbPreviousRuns;
+	
+	/**
+	 * Union-find structure of the provisional labels: each provisional label points to an older label of the same region.
+	 */
+	private int[] parents = new int[INITIAL_CAPACITY];
+	
+	/**
+	 * Color of each run of the previous row.
+	 */
+	private int[] previousColors;
+	
+	/**
+	 * Last column (excluded) of each run of the previous row.
+	 */
+	private int[] previousEnds;
+	
+	/**
+	 * Provisional label of each run of the previous row.
+	 */
+	private int[] previousLabels;
+	
+	/**
+	 * First column of each run of the previous row.
+	 */
+	private int[] previousStarts;
+	
+	/**
+	 * Runs of each provisional label, then of each region once the labelling is {@link RunLabelling#end() ended}.
+	 */
+	private PixelRuns[] runs = new PixelRuns[INITIAL_CAPACITY];
+	
+	/**
+	 * First column of each run of the current row.
+	 */
+	private int[] starts;
+	
+	/**
+	 * Width of the image.
+	 */
+	private final int width;
+	
+	/**
+	 * Prepares the labelling of an image whose rows will be {@link RunLabelling#addRow(int[]) added} one by one.
+	 * 
+	 * @param width of the image; should be > 0
+	 */
+	public RunLabelling(int width) {
+		
+		this.width = width;
+		this.colors = new int[width];
+		this.starts = new int[width];
+		this.ends = new int[width];
+		this.labels = new int[width];
+		this.previousColors = new int[width];
+		this.previousStarts = new int[width];
+		this.previousEnds = new int[width];
+		this.previousLabels = new int[width];
+	}
+	
+	/**
+	 * Labels the connected regions of an image, reading it row by row.
+	 * 
+	 * @param image to label; should not be null
+	 * @return the ended labelling of the image
+	 * 
+	 * @throws NullPointerException if image is null
+	 */
+	public static RunLabelling of(BufferedImage image) {
+		
+		int width = image.getWidth();
+		RunLabelling labelling = new RunLabelling(width);
+		int[] row = new int[width];
+		for(int y = 0; y < image.getHeight(); ++y) {
+			
+			image.getRGB(0, y, width, 1, row, 0, width);
+			labelling.addRow(row);
+		}
+		labelling.end();
+		return labelling;
+	}
+	
+	/**
+	 * Adds the next row of the image.
+	 * 
+	 * @param colors of the pixels of the row; should contain at least width values
+	 * 
+	 * @throws IllegalStateException if the labelling is {@link RunLabelling#end() ended}
+	 */
+	public void addRow(int[] colors) {
+		
+		if(this.nbRegions >= 0) {
+			
+			throw new IllegalStateException("No row can be added once the labelling is ended");
+		}
+		
+		this.swapRows();
+		int previousRun = 0;
+		int start = 0;
+		while(start < this.width) {
+			
+			int color = colors[start];
+			int end = start + 1;
+			while(end < this.width && colors[end] == color) {
+				
+				end++;
+			}
+			
+			/* Link the run to the runs of the same color touching it in the previous row, corners included */
+			int label = -1;
+			while(previousRun < this.nbPreviousRuns && this.previousEnds[previousRun] < start) {
+				
+				previousRun++;
+			}
+			for(int run = previousRun; run < this.nbPreviousRuns && this.previousStarts[run] <= end; ++run) {
+				
+				if(this.previousColors[run] == color) {
+					
+					if(label < 0) {
+						
+						label = this.find(this.previousLabels[run]);
+						
+					}else {
+						
+						label = this.union(label, this.previousLabels[run]);
+					}
+				}
+			}
+			if(label < 0) {
+				
+				label = this.newProvisionalLabel();
+			}
+			
+			this.colors[this.nbRuns] = color;
+			this.starts[this.nbRuns] = start;
+			this.ends[this.nbRuns] = end;
+			this.labels[this.nbRuns] = label;
+			this.nbRuns++;
+			this.runs[label].addRun(this.nbRows, start, end);
+			start = end;
+		}
+		this.nbRows++;
+	}
+	
+	/**
+	 * Ends the labelling: gives the final label and the runs of each region.
+	 */
+	public void end() {
+		
+		/* The oldest provisional label of a region is its root: the regions are labeled in the order of their roots */
+		int[] finalLabels = new int[this.nbProvisionalLabels];
+		this.nbRegions = 0;
+		for(int label = 0; label < this.nbProvisionalLabels; ++label) {
+			
+			int root = this.find(label);
+			finalLabels[label] = root == label ? this.nbRegions++ : finalLabels[root];
+		}
+		
+		/* Gather the runs of the provisional labels of each region */
+		@SuppressWarnings("unchecked")
+		ArrayList<PixelRuns>[] parts = new ArrayList[this.nbRegions];
+		for(int label = 0; label < this.nbProvisionalLabels; ++label) {
+			
+			int region = finalLabels[label];
+			if(parts[region] == null) {
+				
+				parts[region] = new ArrayList<PixelRuns>(1);
+			}
+			parts[region].add(this.runs[label]);
+		}
+		
+		PixelRuns[] regionRuns = new PixelRuns[this.nbRegions];
+		for(int region = 0; region < this.nbRegions; ++region) {
+			
+			regionRuns[region] = parts[region].size() == 1 ? parts[region].get(0) : merge(parts[region]);
+		}
+		
+		this.runs = regionRuns;
+		this.parents = null;
+		this.colors = this.starts = this.ends = this.labels = null;
+		this.previousColors = this.previousStarts = this.previousEnds = this.previousLabels = null;
+	}
+	
+	/**
+	 * 
+	 * @return the number of regions; -1 if the labelling is not {@link RunLabelling#end() ended}
+	 */
+	public int getNbRegions() {
+		
+		return this.nbRegions;
+	}
+	
+	/**
+	 * 
+	 * @return the number of rows added
+	 */
+	public int getNbRows() {
+		
+		return this.nbRows;
+	}
+	
+	/**
+	 * 
+	 * @param label of a region; should be in [0, number of regions[
+	 * @return the runs of the region, row by row, from left to right
+	 * 
+	 * @throws IllegalStateException if the labelling is not {@link RunLabelling#end() ended}
+	 */
+	public PixelRuns getRuns(int label) {
+		
+		if(this.nbRegions < 0) {
+			
+			throw new IllegalStateException("The regions are known once the labelling is ended");
+		}
+		return this.runs[label];
+	}
+	
+	/**
+	 * 
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		
+		return this.width;
+	}
+	
+	/**
+	 * 
+	 * @param label provisional label
+	 * @return the provisional label representing the region of the label
+	 */
+	private int find(int label) {
+		
+		while(this.parents[label] != label) {
+			
+			this.parents[label] = this.parents[this.parents[label]]; // path halving
+			label = this.parents[label];
+		}
+		return label;
+	}
+	
+	/**
+	 * Merges the runs of several parts of a region, keeping the order of the rows and the columns.
+	 * 
+	 * @param parts runs of each part; each one ordered by row then by column
+	 * @return the runs of the region
+	 */
+	private static PixelRuns merge(final ArrayList<PixelRuns> parts) {
+		
+		int nbRuns = 0;
+		for(PixelRuns part: parts) {
+			
+			nbRuns += part.getNbRuns();
+		}
+		PixelRuns merged = new PixelRuns(nbRuns);
+		
+		/* Next run of each part: {part, run} */
+		PriorityQueue<int[]> nextRuns = new PriorityQueue<int[]>(parts.size(), new Comparator<int[]>() {
+			
+			@Override
+			public int compare(int[] next1, int[] next2) {
+				
+				PixelRuns part1 = parts.get(next1[0]);
+				PixelRuns part2 = parts.get(next2[0]);
+				int byRow = Integer.compare(part1.getRow(next1[1]), part2.getRow(next2[1]));
+				return byRow != 0 ? byRow : Integer.compare(part1.getStart(next1[1]), part2.getStart(next2[1]));
+			}
+		});
+		for(int p = 0; p < parts.size(); ++p) {
+			
+			nextRuns.add(new int[] { p, 0 });
+		}
+		while(!nextRuns.isEmpty()) {
+			
+			int[] next = nextRuns.poll();
+			PixelRuns part = parts.get(next[0]);
+			merged.addRun(part.getRow(next[1]), part.getStart(next[1]), part.getEnd(next[1]));
+			if(++next[1] < part.getNbRuns()) {
+				
+				nextRuns.add(next);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * 
+	 * @return a new provisional label representing a new region
+	 */
+	private int newProvisionalLabel() {
+		
+		if(this.nbProvisionalLabels == this.parents.length) {
+			
+			this.parents = Arrays.copyOf(this.parents, this.nbProvisionalLabels * 2);
+			this.runs = Arrays.copyOf(this.runs, this.nbProvisionalLabels * 2);
+		}
+		this.parents[this.nbProvisionalLabels] = this.nbProvisionalLabels;
+		this.runs[this.nbProvisionalLabels] = new PixelRuns();
+		return this.nbProvisionalLabels++;
+	}
+	
+	/**
+	 * The runs of the current row become the ones of the previous row.
+	 */
+	private void swapRows() {
+		
+		int[] swap = this.previousColors;
+		this.previousColors = this.colors;
+		this.colors = swap;
+		
+		swap = this.previousStarts;
+		this.previousStarts = this.starts;
+		this.starts = swap;
+		
+		swap = this.previousEnds;
+		this.previousEnds = this.ends;
+		this.ends = swap;
+		
+		swap = this.previousLabels;
+		this.previousLabels = this.labels;
+		this.labels = swap;
+		
+		this.nbPreviousRuns = this.nbRuns;
+		this.nbRuns = 0;
+	}
+	
+	/**
+	 * Merges the regions of two provisional labels.
+	 * 
+	 * @param label1 provisional label
+	 * @param label2 provisional label
+	 * @return the provisional label representing the merged region
+	 */
+	private int union(int label1, int label2) {
+		
+		int root1 = this.find(label1);
+		int root2 = this.find(label2);
+		if(root1 == root2) {
+			
+			return root1;
+		}
+		
+		/* The oldest label represents the region */
+		if(root1 < root2) {
+			
+			this.parents[root2] = root1;
+			return root1;
+		}
+		this.parents[root1] = root2;
+		return root2;
+	}
+}
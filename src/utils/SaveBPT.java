@@ -41,18 +41,27 @@
 
 package utils;
 
-import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import ch.systemsx.cisd.hdf5.HDF5Factory;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 import datastructure.Node;
+import datastructure.PixelRuns;
 import datastructure.Tree;
 import lang.Strings;
 import metric.bricks.Metric;
 import utils.d2.Formula;
+import utils.profiling.BuildProfiler;
 
 /**
  * A BPT can be saved in the disk.
@@ -62,6 +71,16 @@ public class SaveBPT {
 	
 	public static final String CONTEXT = "BPT_SAVING";
 	
+	/**
+	 * Thread writing the files of {@link SaveBPT#toHDF5Async(Tree)}.
+	 */
+	private static ExecutorService writingThread;
+	
+	/**
+	 * Number of seconds the {@link SaveBPT#writingThread writing thread} waits for a new file before ending.
+	 */
+	private static final long WRITING_THREAD_KEEP_ALIVE_S = 1;
+	
 	/**
 	 * <p>
 	 * Two files are created and stored:
@@ -345,132 +364,406 @@ public class SaveBPT {
 	 */
 	public static boolean toHDF5(Tree tree){
 		
-		Log.println(CONTEXT, "...");
-		
-		boolean success = false;
+		Snapshot snapshot;
+		try {
+			
+			snapshot = new Snapshot(tree);
+			
+		}catch(Exception e){
+			
+			e.printStackTrace();
+			return false;
+		}
+		return snapshot.toHDF5();
+	}
+	
+	/**
+	 * Saves a tree in a HDF5 file (see {@link SaveBPT#toHDF5(Tree)}) in the background.
+	 * 
+	 * <p>
+	 * The structure of the tree is copied first, in the calling thread, so the tree can be freed or modified as soon as the method returns; 
+	 * the file is then written by a thread shared by all asynchronous savings (the HDF5 files are written one at a time).
+	 * 
+	 * <p>
+	 * The file is completed and closed even if the future is never waited for: 
+	 * the JVM does not end before the writing thread (which ends once idle), and the files still to write are written before a {@link System#exit(int) forced exit}.
+	 * 
+	 * @param tree to save; should not be null
+	 * @return a future completed with true if the file is saved successfully, else false
+	 * 
+	 * @throws NullPointerException if tree is null
+	 */
+	public static CompletableFuture<Boolean> toHDF5Async(Tree tree) {
 		
-		long startingTime = System.nanoTime();
+		return toHDF5Async(tree, writingThread());
+	}
+	
+	/**
+	 * Saves a tree in a HDF5 file (see {@link SaveBPT#toHDF5(Tree)}) in the background.
+	 * 
+	 * <p>
+	 * The structure of the tree is copied first, in the calling thread, so the tree can be freed or modified as soon as the method returns.
+	 * 
+	 * @param tree to save; should not be null
+	 * @param executor writing the file; should not be null
+	 * @return a future completed with true if the file is saved successfully, else false
+	 * 
+	 * @throws NullPointerException if tree or executor is null
+	 */
+	public static CompletableFuture<Boolean> toHDF5Async(Tree tree, Executor executor) {
 		
+		final Snapshot snapshot;
 		try {
 			
-			/* prepare and write the HDF5 file */
-			String source = "pixels";
-			BufferedImage preSeg = tree.getPreSegImage();
-			if(preSeg != null) {
+			snapshot = new Snapshot(tree);
+			
+		}catch(Exception e){
+			
+			e.printStackTrace();
+			return CompletableFuture.completedFuture(false);
+		}
+		return CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+
+			@Override
+			public Boolean get() {
 				
-				source = tree.getName();
+				return snapshot.toHDF5();
 			}
-
-			BufferedImage img = tree.getImage();
+		}, executor);
+	}
+	
+	/**
+	 * 
+	 * @return the thread writing the files of {@link SaveBPT#toHDF5Async(Tree)}; created at the first call
+	 */
+	private static synchronized ExecutorService writingThread() {
+		
+		if(writingThread == null) {
+			
+			/* not a daemon, so a file being written is closed before the JVM ends; the thread ends once idle so that it does not keep the JVM alive */
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, WRITING_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					
+					return new Thread(r, "HDF5 writer");
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			writingThread = executor;
+			
+			/* on a forced exit, the files still to write are written before the JVM ends */
+			Runtime.getRuntime().addShutdownHook(new Thread("HDF5 writer drain") {
+				
+				@Override
+				public void run() {
+					
+					executor.shutdown();
+					try {
+						
+						executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+						
+					} catch (InterruptedException e) {
+						
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		return writingThread;
+	}
+	
+	/**
+	 * Everything {@link SaveBPT#toHDF5(Tree)} writes, copied from a tree in arrays of primitives.
+	 * 
+	 * <p>
+	 * Much smaller than the tree (no features, no neighbors), a snapshot lets the tree be freed while the file is being written.
+	 */
+	public static class Snapshot {
+		
+		/**
+		 * Information of the tree.
+		 */
+		private final String name, directory, imageName, imagePath, imageSize, preSegPath, nbBands, metric, source, connectivity;
+		
+		/**
+		 * Information of the tree.
+		 */
+		private final int nbInitialAdjacencies, nbNodes, nbLeaves, maxLonger, biggestLeafSize;
+		
+		/**
+		 * Information of the tree.
+		 */
+		private final long timeMs, timeS;
+		
+		/**
+		 * Name and number of pixels of each leaf.
+		 */
+		private final int[] leafNames, leafSizes;
+		
+		/**
+		 * Runs of the leaf i: from runOffsets[i] (included) to runOffsets[i + 1] (excluded).
+		 */
+		private final int[] runOffsets;
+		
+		/**
+		 * Row, start and end of each run.
+		 */
+		private final int[] runs;
+		
+		/**
+		 * Greatest number of runs of a leaf.
+		 */
+		private int maxNbRuns;
+		
+		/**
+		 * Position, left son, right son and perimeter of each node that is not a leaf.
+		 */
+		private final int[] nodes;
+		
+		/**
+		 * Number of nodes stored in {@link Snapshot#nodes}.
+		 */
+		private int nbSavedNodes;
+		
+		/**
+		 * Copies the structure of a tree.
+		 * 
+		 * @param tree to copy; should not be null
+		 * 
+		 * @throws NullPointerException if tree is null
+		 */
+		public Snapshot(Tree tree) {
 			
+			BufferedImage preSeg = tree.getPreSegImage();
+			BufferedImage img = tree.getImage();
 			Metric metric = tree.getMetric();
 			StringBuilder metricInfo = new StringBuilder(metric.type +"");
 			for(double param: metric.params) {
 				
 				metricInfo.append(";"+ param);
 			}
-
-			/* Major information */
-			IHDF5Writer writer = HDF5Factory.open(tree.getDirectory() +"//"+ tree.getName() +".h5");
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NAME, tree.getName());
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_NAME, ImTool.getNameOf(img));
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_PATH, ImTool.getPathOf(img));
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_SIZE, img.getWidth() +"x"+ img.getHeight());
-			try{writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_PRESEG_PATH, tree.getPreSegPath());}catch(Exception e) { /* no preseg */};			
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NB_BANDS, ImTool.getNbBandsOf(img) +"");
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_DIRECTORY, tree.getDirectory());
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_METRIC, metricInfo.toString());
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_SOURCE, source);
-			writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_CONNEXITY, tree.getConnectivity() +"");
-			writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_INITIAL_ADJACENCIES, tree.getNbInitialAdjacencies());
-			writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_NODES, tree.getNbNodes());
-			writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_LEAVES, tree.getNbLeaves());
-			writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_MAX_LONGER, tree.getMaxLonger());
-			writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_BIGGEST_LEAF_SIZE, tree.getBiggestLeafSize());
-			writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_MS, tree.getTimeMs());
-			writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_S, tree.getTimeS());
-			
-			
-			// TODO set progression of the task.
+			
+			this.name = tree.getName();
+			this.directory = tree.getDirectory();
+			this.imageName = ImTool.getNameOf(img);
+			this.imagePath = ImTool.getPathOf(img);
+			this.imageSize = img.getWidth() +"x"+ img.getHeight();
+			this.preSegPath = tree.getPreSegPath();
+			this.nbBands = ImTool.getNbBandsOf(img) +"";
+			this.metric = metricInfo.toString();
+			this.source = preSeg != null ? tree.getName() : "pixels";
+			this.connectivity = tree.getConnectivity() +"";
+			this.nbInitialAdjacencies = tree.getNbInitialAdjacencies();
+			this.nbNodes = tree.getNbNodes();
+			this.nbLeaves = tree.getNbLeaves();
+			this.maxLonger = tree.getMaxLonger();
+			this.biggestLeafSize = tree.getBiggestLeafSize();
+			this.timeMs = tree.getTimeMs();
+			this.timeS = tree.getTimeS();
+			
 			tree.startingState();
 			tree.setProgress(0);
 			
-			Node[] nodes =  tree.getNodes();
-
-			int nbLeaves = tree.getNbLeaves();
+			Node[] nodes = tree.getNodes();
 			
-			/* Saving the leaves of the tree */
-			int nbCols = tree.getBiggestLeafSize() + 1;
-			writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
-										nbLeaves, nbCols);
-			
-			int posVal = 0;
+			/* Leaves */
+			this.leafNames = new int[this.nbLeaves];
+			this.leafSizes = new int[this.nbLeaves];
+			this.runOffsets = new int[this.nbLeaves + 1];
+			int nbRuns = 0;
+			for(int i = 0; i < this.nbLeaves; ++i) {
+				
+				PixelRuns runs = nodes[i].pixelRuns;
+				if(runs != null) {
+					
+					nbRuns += runs.getNbRuns();
+					this.maxNbRuns = Math.max(this.maxNbRuns, runs.getNbRuns());
+				}
+			}
 			
-			for(int i = 0; i < nbLeaves; ++i) {
+			this.runs = new int[3 * nbRuns];
+			int r = 0;
+			for(int i = 0; i < this.nbLeaves; ++i) {
 				
 				Node l = nodes[i];
-				int lSize = l.getSize();
-				int nbCol = lSize + 1;
-				int idCol = 0;
-				int[][] leafData = new int[1][nbCol];
-				leafData[0][idCol++] = lSize; // first column that represents the number of pixels contained in the leaf.
-				for(Point p: l.getPixels()) {
+				this.leafNames[i] = l.name;
+				this.leafSizes[i] = l.getSize();
+				this.runOffsets[i] = r / 3;
+				PixelRuns runs = l.pixelRuns;
+				if(runs != null) {
 					
-					posVal = Formula.toVal(p.x, p.y, tree.getMaxLonger());
-					leafData[0][idCol++] = posVal;
+					for(int run = 0; run < runs.getNbRuns(); ++run) {
+						
+						this.runs[r++] = runs.getRow(run);
+						this.runs[r++] = runs.getStart(run);
+						this.runs[r++] = runs.getEnd(run);
+					}
 				}
-				writer.int32().writeMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
-												leafData, l.name, 0);
 			}
+			this.runOffsets[this.nbLeaves] = r / 3;
 			
-			/* Saving the nodes of the tree */
-			int nbOnlyNodes = nodes.length - nbLeaves;
-			writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+
-										Strings.VAR_NODES,
-										nbOnlyNodes, 3);
-			int verticalIndex = 0;
-			for(int n = nbLeaves; n < nodes.length; n++) {
-
+			/* Nodes */
+			this.nodes = new int[4 * Math.max(0, nodes.length - this.nbLeaves)];
+			for(int n = this.nbLeaves; n < nodes.length; n++) {
+				
 				tree.setProgress((100 * n) / nodes.length);
-
+				
 				Node node = nodes[n];
 				
 				if(node == null) {
 					break;
 				}
 				
-				Node left = node.leftNode;
-				Node right = node.rightNode;
-
-				if(left != null) {
+				if(node.leftNode != null) {
+					
+					int pos = 4 * this.nbSavedNodes++;
+					this.nodes[pos] = n;
+					this.nodes[pos + 1] = node.leftNode.name;
+					this.nodes[pos + 2] = node.rightNode.name;
+					this.nodes[pos + 3] = node.perimeter;
+				}
+			}
+		}
+		
+		/**
+		 * Creates the HDF5 file of the tree (see {@link SaveBPT#toHDF5(Tree)}).
+		 * 
+		 * @return true if the files are saved successfully; else false
+		 */
+		public boolean toHDF5() {
+			
+			Log.println(CONTEXT, "...");
+			
+			boolean success = false;
+			
+			long startingTime = System.nanoTime();
+			
+			try {
+				
+				/* Major information */
+				IHDF5Writer writer = HDF5Factory.open(this.directory +"//"+ this.name +".h5");
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NAME, this.name);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_NAME, this.imageName);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_PATH, this.imagePath);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_IMAGE_SIZE, this.imageSize);
+				try{writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_PRESEG_PATH, this.preSegPath);}catch(Exception e) { /* no preseg */};			
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_NB_BANDS, this.nbBands);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_DIRECTORY, this.directory);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_METRIC, this.metric);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_SOURCE, this.source);
+				writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_CONNEXITY, this.connectivity);
+				writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_INITIAL_ADJACENCIES, this.nbInitialAdjacencies);
+				writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_NODES, this.nbNodes);
+				writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_NB_LEAVES, this.nbLeaves);
+				writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_MAX_LONGER, this.maxLonger);
+				writer.writeInt(Strings.VAR_INFO +"/"+ Strings.VAR_BIGGEST_LEAF_SIZE, this.biggestLeafSize);
+				writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_MS, this.timeMs);
+				writer.writeLong(Strings.VAR_INFO +"/"+ Strings.VAR_TIME_OF_CREATION_S, this.timeS);
+				
+				/* Saving the leaves of the tree: as runs when it is smaller than one value per pixel */
+				if((long) 3 * this.maxNbRuns + 2 < (long) this.biggestLeafSize + 1) {
+					
+					writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_LEAVES_ENCODING, Strings.VAR_LEAVES_ENCODING_RUNS);
+					writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS,
+												this.nbLeaves, 3 * this.maxNbRuns + 2);
+					
+					for(int i = 0; i < this.nbLeaves; ++i) {
+						
+						int firstRun = this.runOffsets[i];
+						int nbRuns = this.runOffsets[i + 1] - firstRun;
+						int[][] leafData = new int[1][3 * nbRuns + 2];
+						leafData[0][0] = this.leafSizes[i]; // number of pixels contained in the leaf.
+						leafData[0][1] = nbRuns; // number of runs contained in the leaf.
+						System.arraycopy(this.runs, 3 * firstRun, leafData[0], 2, 3 * nbRuns);
+						writer.int32().writeMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES_RUNS,
+														leafData, this.leafNames[i], 0);
+					}
+					
+				}else {
+				
+					writer.writeString(Strings.VAR_INFO +"/"+ Strings.VAR_LEAVES_ENCODING, Strings.VAR_LEAVES_ENCODING_PIXELS);
+					int nbCols = this.biggestLeafSize + 1;
+					writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
+												this.nbLeaves, nbCols);
+					
+					for(int i = 0; i < this.nbLeaves; ++i) {
+						
+						int lSize = this.leafSizes[i];
+						int idCol = 0;
+						int[][] leafData = new int[1][lSize + 1];
+						leafData[0][idCol++] = lSize; // first column that represents the number of pixels contained in the leaf.
+						for(int run = this.runOffsets[i]; run < this.runOffsets[i + 1]; ++run) {
+							
+							int row = this.runs[3 * run];
+							for(int x = this.runs[3 * run + 1]; x < this.runs[3 * run + 2]; ++x) {
+								
+								leafData[0][idCol++] = Formula.toVal(x, row, this.maxLonger);
+							}
+						}
+						writer.int32().writeMatrixBlock(Strings.VAR_STRUCTURE +"/"+ Strings.VAR_LEAVES,
+														leafData, this.leafNames[i], 0);
+					}
+				}
+				
+				/* Saving the nodes of the tree */
+				writer.int32().createMatrix(Strings.VAR_STRUCTURE +"/"+
+											Strings.VAR_NODES,
+											this.nodes.length / 4, 3);
+				for(int n = 0; n < this.nbSavedNodes; n++) {
 					
 					int[][] nodeData = new int[1][4];
-					nodeData[0][0] = n;
-					nodeData[0][1] = left.name;
-					nodeData[0][2] = right.name;
-					nodeData[0][3] = node.perimeter;
+					System.arraycopy(this.nodes, 4 * n, nodeData[0], 0, 4);
 					writer.int32().writeMatrixBlock(Strings.VAR_STRUCTURE +"/"+
 													Strings.VAR_NODES, nodeData,
-													verticalIndex++, 0);
+													n, 0);
 				}
+	
+				/* close the writer */
+				writer.close();
+	
+				success = true;
+				
+			}catch(Exception e){
+				
+				e.printStackTrace();
 			}
+			
+			long endingTime = System.nanoTime();
+			long savingTimeMs = (endingTime - startingTime)/1000000;
+			long savingTimeS = savingTimeMs / 1000;
+			
+			Log.println(CONTEXT, savingTimeMs +" ms ("+ savingTimeS +" s)");
+					
+			return success;
+		}
+	}
 
-			/* close the writer */
-			writer.close();
-
-			success = true;
+	/**
+	 * Saves the measures collected during the creation of a tree in a .json file stored next to the tree:
+	 * <li> duration of each phase
+	 * <li> number of node mergings and mergings per second
+	 * <li> number of distance evaluations
+	 * <li> allocated bytes and peak of the heap usage
+	 * <li> size of the set of adjacencies over time
+	 * 
+	 * @param tree created; should not be null
+	 * @param profiler used during the creation; should not be null
+	 * @return true if the file is saved successfully; else false
+	 * 
+	 * @throws NullPointerException if tree or profiler is null
+	 */
+	public static boolean toJSON(Tree tree, BuildProfiler profiler) {
+		
+		try (PrintWriter writer = new PrintWriter(tree.getDirectory() +"//"+ tree.getName() +".profile.json", "UTF-8")) {
 			
-		}catch(Exception e){
+			writer.print(profiler.toJSON());
+			return true;
+			
+		} catch (FileNotFoundException | UnsupportedEncodingException e) {
 			
 			e.printStackTrace();
+			return false;
 		}
-		
-		long endingTime = System.nanoTime();
-		long savingTimeMs = (endingTime - startingTime)/1000000;
-		long savingTimeS = savingTimeMs / 1000;
-		
-		Log.println(CONTEXT, savingTimeMs +" ms ("+ savingTimeS +" s)");
-				
-		return success;
 	}
 }
@@ -0,0 +1,421 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import datastructure.TreeSnapshot;
+import standard.sequential.BPT.OpenMode;
+
+/**
+ * Keeps the trees loaded from HDF5 files and their rendered partitions in memory, so that the hot trees are not re-loaded at each request.
+ * 
+ * <p>
+ * <li> the trees are kept as {@link TreeSnapshot snapshots}, which can be read by several threads at the same time;
+ * <li> each cache is bounded by an estimation of its size in bytes and the least recently used values are evicted first;
+ * <li> a file requested by several threads at the same time is loaded once, the other threads wait for it;
+ * <li> a file {@link TreeRepository#invalidate(String) invalidated} while being loaded is not kept, the next request loads it again.
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * TreeRepository repository = new TreeRepository(2L * 1024 * 1024 * 1024, 256L * 1024 * 1024); // 2 GB of trees, 256 MB of partitions
+ * ... from any thread:
+ * TreeSnapshot tree = repository.getTree("saves/bpt_file.h5");
+ * BufferedImage partition = repository.getPartition("saves/bpt_file.h5", 50);
+ * </pre>
+ *
+ */
+public class TreeRepository {
+	
+	private static final String CONTEXT = "REPOSITORY";
+	
+	/**
+	 * Values weighted in bytes, evicted in least recently used order, and loaded once per key at the same time.
+	 *
+	 * @param <V> type of the values
+	 */
+	private static abstract class Cache<V> {
+		
+		/**
+		 * Current weight of the values.
+		 */
+		private long bytes;
+		
+		/**
+		 * Values being loaded; a loading removed from this map (see {@link Cache#invalidate(String)}) is not kept once done.
+		 */
+		private final Map<String, FutureTask<V>> loadings = new HashMap<String, FutureTask<V>>();
+		
+		/**
+		 * Maximum weight of the values.
+		 */
+		private final long maxBytes;
+		
+		/**
+		 * Number of requests served from memory.
+		 */
+		private long nbHits;
+		
+		/**
+		 * Number of requests that required a loading.
+		 */
+		private long nbMisses;
+		
+		/**
+		 * Values ordered from the least to the most recently used.
+		 */
+		private final LinkedHashMap<String, V> values = new LinkedHashMap<String, V>(16, 0.75f, true);
+		
+		/**
+		 * Weight of each value.
+		 */
+		private final Map<String, Long> weights = new HashMap<String, Long>();
+		
+		/**
+		 * 
+		 * @param maxBytes maximum weight of the values; should be >= 0
+		 */
+		Cache(long maxBytes) {
+			
+			this.maxBytes = maxBytes;
+		}
+		
+		/**
+		 * 
+		 * @param key of the value; should not be null
+		 * @param loader computing the value if it is not in memory; should not be null
+		 * @return the value
+		 */
+		V get(String key, Callable<V> loader) {
+			
+			FutureTask<V> loading = null;
+			FutureTask<V> running;
+			
+			/* the value and the loadings are checked at once, so a value cannot be put between both checks */
+			synchronized(this) {
+				
+				V value = this.values.get(key);
+				if(value != null) {
+					
+					this.nbHits++;
+					return value;
+				}
+				this.nbMisses++;
+				
+				running = this.loadings.get(key);
+				if(running == null) {
+					
+					loading = new FutureTask<V>(loader);
+					this.loadings.put(key, loading);
+					running = loading;
+				}
+			}
+			
+			if(loading != null) {
+				
+				loading.run();
+				synchronized(this) {
+					
+					/* kept only if the loading has not been invalidated meanwhile */
+					if(this.loadings.get(key) == loading) {
+						
+						this.loadings.remove(key);
+						try {
+							
+							this.put(key, loading.get());
+							
+						}catch(InterruptedException | ExecutionException e) {
+							
+							/* thrown below */
+						}
+					}
+				}
+			}
+			
+			try {
+				
+				return running.get();
+				
+			}catch(InterruptedException e) {
+				
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+				
+			}catch(ExecutionException e) {
+				
+				if(e.getCause() instanceof RuntimeException) {
+					
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		
+		/**
+		 * Removes all values whose key starts with a prefix; the values being loaded will not be kept.
+		 * 
+		 * @param prefix of the keys; should not be null
+		 */
+		synchronized void invalidate(String prefix) {
+			
+			Iterator<String> loadingKeys = this.loadings.keySet().iterator();
+			while(loadingKeys.hasNext()) {
+				
+				if(loadingKeys.next().startsWith(prefix)) {
+					
+					loadingKeys.remove();
+				}
+			}
+			
+			Iterator<String> keys = this.values.keySet().iterator();
+			while(keys.hasNext()) {
+				
+				String key = keys.next();
+				if(key.startsWith(prefix)) {
+					
+					keys.remove();
+					this.bytes -= this.weights.remove(key);
+				}
+			}
+		}
+		
+		/**
+		 * Removes a value; the value being loaded will not be kept.
+		 * 
+		 * @param key of the value; should not be null
+		 */
+		synchronized void remove(String key) {
+			
+			this.loadings.remove(key);
+			if(this.values.remove(key) != null) {
+				
+				this.bytes -= this.weights.remove(key);
+			}
+		}
+		
+		/**
+		 * Keeps a value if it fits in the cache, then evicts the least recently used values until the weight is within the limit.
+		 * 
+		 * @param key of the value; should not be null
+		 * @param value to keep; should not be null
+		 */
+		synchronized void put(String key, V value) {
+			
+			long weight = this.weigh(value);
+			if(weight > this.maxBytes || this.values.containsKey(key)) {
+				
+				return;
+			}
+			
+			this.values.put(key, value);
+			this.weights.put(key, weight);
+			this.bytes += weight;
+			
+			Iterator<Map.Entry<String, V>> entries = this.values.entrySet().iterator();
+			while(this.bytes > this.maxBytes && entries.hasNext()) {
+				
+				String evicted = entries.next().getKey();
+				entries.remove();
+				this.bytes -= this.weights.remove(evicted);
+				Log.println(CONTEXT, "Evicted: "+ evicted);
+			}
+		}
+		
+		/**
+		 * 
+		 * @param value to weigh; should not be null
+		 * @return an estimation of the memory used by the value, in bytes
+		 */
+		abstract long weigh(V value);
+	}
+	
+	/**
+	 * Rendered partitions, keyed by file and number of regions.
+	 */
+	private final Cache<BufferedImage> partitions;
+	
+	/**
+	 * Loaded trees, keyed by file.
+	 */
+	private final Cache<TreeSnapshot> trees;
+	
+	/**
+	 * 
+	 * @param maxTreeBytes maximum estimated size of the trees kept in memory; should be >= 0
+	 * @param maxPartitionBytes maximum estimated size of the partitions kept in memory; should be >= 0
+	 */
+	public TreeRepository(long maxTreeBytes, long maxPartitionBytes) {
+		
+		this.trees = new Cache<TreeSnapshot>(maxTreeBytes) {
+			
+			@Override
+			long weigh(TreeSnapshot tree) {
+				
+				return tree.getEstimatedBytes();
+			}
+		};
+		
+		this.partitions = new Cache<BufferedImage>(maxPartitionBytes) {
+			
+			@Override
+			long weigh(BufferedImage partition) {
+				
+				return 4L * partition.getWidth() * partition.getHeight();
+			}
+		};
+	}
+	
+	/**
+	 * Removes all trees and partitions from memory.
+	 */
+	public void clear() {
+		
+		this.trees.invalidate("");
+		this.partitions.invalidate("");
+	}
+	
+	/**
+	 * 
+	 * @return the number of requests served from memory
+	 */
+	public long getNbHits() {
+		
+		synchronized(this.trees) {
+			
+			synchronized(this.partitions) {
+				
+				return this.trees.nbHits + this.partitions.nbHits;
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of requests that required a loading or a rendering
+	 */
+	public long getNbMisses() {
+		
+		synchronized(this.trees) {
+			
+			synchronized(this.partitions) {
+				
+				return this.trees.nbMisses + this.partitions.nbMisses;
+			}
+		}
+	}
+	
+	/**
+	 * Partition of a saved tree in a number of regions drawn with random colors, rendered once.
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * @param nbRegions number of regions of the cut; should be in [1, number of leaves]
+	 * @return the image of the regions; shared between the callers, it should only be read
+	 * 
+	 * @throws NullPointerException if filePath is null
+	 */
+	public BufferedImage getPartition(final String filePath, final int nbRegions) {
+		
+		return this.partitions.get(keyOf(filePath) +"#"+ nbRegions, new Callable<BufferedImage>() {
+			
+			@Override
+			public BufferedImage call() throws Exception {
+				
+				return getTree(filePath).cutImage(nbRegions);
+			}
+		});
+	}
+	
+	/**
+	 * Tree saved in a HDF5 file, loaded once.
+	 * The file is opened with {@link OpenMode#LAZY_IMAGE}: only the image is decoded for the snapshot, the metric and the pre-segmentation are never prepared.
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * @return the snapshot of the tree
+	 * 
+	 * @throws NullPointerException if filePath is null
+	 */
+	public TreeSnapshot getTree(final String filePath) {
+		
+		return this.trees.get(keyOf(filePath), new Callable<TreeSnapshot>() {
+			
+			@Override
+			public TreeSnapshot call() throws Exception {
+				
+				Log.println(CONTEXT, "Loading: "+ filePath);
+				return TreeSnapshot.load(filePath, OpenMode.LAZY_IMAGE);
+			}
+		});
+	}
+	
+	/**
+	 * Removes a tree and its partitions from memory (e.g. when its file has changed).
+	 * 
+	 * @param filePath leading to the saved BPT; should not be null
+	 * 
+	 * @throws NullPointerException if filePath is null
+	 */
+	public void invalidate(String filePath) {
+		
+		String key = keyOf(filePath);
+		this.trees.remove(key);
+		this.partitions.invalidate(key +"#");
+	}
+	
+	/**
+	 * 
+	 * @param filePath leading to a file; should not be null
+	 * @return the same key for all paths leading to the file
+	 */
+	private static String keyOf(String filePath) {
+		
+		return new File(filePath).getAbsoluteFile().toPath().normalize().toString();
+	}
+}
@@ -49,6 +49,7 @@ import java.util.Random;
 
 import datastructure.Node;
 import datastructure.d3.Tree3D;
+import datastructure.d3.VoxelStore;
 import utils.ImTool;
 import utils.Log;
 import utils.ImTool.CubeFace;
@@ -109,7 +110,7 @@ public class CutBPT3D {
 			if(leaf.getNbVoxels() > 0) {
 			
 				activeNodesList.add(leaf);
-				labelMatrix3D.fill(leaf.getVoxels(), leaf.label);
+				fill(labelMatrix3D, leaf);
 				
 				if(!lut.containsKey(leaf.label)) {
 
@@ -149,8 +150,7 @@ public class CutBPT3D {
 		int numberOfRegions = nbLeaves;
 		for(int n = nbLeaves; n < tree3D.getNbNodes(); n++) {
 			
-			tree3D.setProgress((numFusion * 100) / nbFusions);
-			Log.println(CONTEXT, tree3D.getProgress() +"%");
+			tree3D.setProgress(Log.printProgress(CONTEXT, tree3D.getProgress(), numFusion, nbFusions));
 
 			Node node = nodes[n];
 
@@ -167,7 +167,7 @@ public class CutBPT3D {
 					for(int i = 0; i < activeNodesList.size(); i++) {
 						
 						Node activeNode = activeNodesList.get(i);
-						labelMatrix3D.fill(activeNode.getVoxels(), activeNode.label);
+						fill(labelMatrix3D, activeNode);
 					}
 
 					if(starting == numberOfRegions) {
@@ -204,4 +204,21 @@ public class CutBPT3D {
 		
 		return res;
 	}
+	
+	/**
+	 * Sets the label of a region on all its voxels.
+	 * 
+	 * @param labelMatrix3D to fill; should not be null
+	 * @param node region whose voxels are labeled; should not be null
+	 * 
+	 * @throws NullPointerException if labelMatrix3D is null or node is null
+	 */
+	private static void fill(LabelMatrix3D labelMatrix3D, Node node) {
+		
+		VoxelStore.Cursor voxel = node.getVoxelCursor();
+		while(voxel.next()) {
+			
+			labelMatrix3D.setLabel(node.label, voxel.x, voxel.y, voxel.z);
+		}
+	}
 }
@@ -0,0 +1,179 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils.d3;
+
+import datastructure.d3.Tree3D.TypeOfConnectivity;
+
+/**
+ * Relative positions of the neighbors of a voxel for a given {@link TypeOfConnectivity type of connectivity}.
+ * 
+ * <p>
+ * The offsets are computed once so that visiting the neighbors of a voxel does not allocate anything:
+ * 
+ * <pre>
+ * for(int i = 0; i &lt; neighborhood.size(); ++i) {
+ * 
+ *     int xNeighbor = x + neighborhood.dx[i];
+ *     int yNeighbor = y + neighborhood.dy[i];
+ *     int zNeighbor = z + neighborhood.dz[i];
+ *     ...
+ * }
+ * </pre>
+ * 
+ * <p>
+ * The neighbors are ordered by distance to the voxel: the faces first, then the edges and finally the corners.
+ * Note that the neighborhoods are symmetric: if a voxel A is a neighbor of a voxel B, then B is a neighbor of A.
+ *
+ */
+public class Neighborhood3D {
+
+	/**
+	 * The 6 neighbors sharing a face with the voxel.
+	 */
+	public static final Neighborhood3D FACES = new Neighborhood3D(1);
+	
+	/**
+	 * The 18 neighbors sharing a face or an edge with the voxel.
+	 */
+	public static final Neighborhood3D FACES_EDGES = new Neighborhood3D(2);
+	
+	/**
+	 * The 26 neighbors surrounding the voxel.
+	 */
+	public static final Neighborhood3D ALL = new Neighborhood3D(3);
+	
+	/**
+	 * Offsets along the x axis.
+	 */
+	public final int[] dx;
+	
+	/**
+	 * Offsets along the y axis.
+	 */
+	public final int[] dy;
+	
+	/**
+	 * Offsets along the z axis.
+	 */
+	public final int[] dz;
+	
+	/**
+	 * Keeps the offsets having at most 'maxNbShifts' non-null coordinates.
+	 * 
+	 * @param maxNbShifts 1 for the faces, 2 for the faces and the edges, 3 for all neighbors
+	 */
+	private Neighborhood3D(int maxNbShifts) {
+		
+		int size = 0;
+		for(int z = -1; z <= 1; ++z) {
+			for(int y = -1; y <= 1; ++y) {
+				for(int x = -1; x <= 1; ++x) {
+					
+					int nbShifts = Math.abs(x) + Math.abs(y) + Math.abs(z);
+					if(nbShifts > 0 && nbShifts <= maxNbShifts) {
+						
+						size++;
+					}
+				}
+			}
+		}
+		
+		this.dx = new int[size];
+		this.dy = new int[size];
+		this.dz = new int[size];
+		
+		int i = 0;
+		for(int nbShifts = 1; nbShifts <= maxNbShifts; ++nbShifts) {
+			for(int z = -1; z <= 1; ++z) {
+				for(int y = -1; y <= 1; ++y) {
+					for(int x = -1; x <= 1; ++x) {
+						
+						if(Math.abs(x) + Math.abs(y) + Math.abs(z) == nbShifts) {
+							
+							this.dx[i] = x;
+							this.dy[i] = y;
+							this.dz[i] = z;
+							i++;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gives the neighborhood matching a type of connectivity.
+	 * 
+	 * <p>
+	 * <li> CN6: the 6 faces neighbors
+	 * <li> CN14: the faces and edges neighbors (18 voxels)
+	 * <li> CN22 and ALL: the 26 surrounding voxels
+	 * 
+	 * @param connectivity type of connectivity; should not be null
+	 * @return the corresponding neighborhood
+	 * 
+	 * @throws NullPointerException if connectivity is null
+	 */
+	public static Neighborhood3D of(TypeOfConnectivity connectivity) {
+		
+		switch(connectivity) {
+		
+			case CN6:
+				return FACES;
+				
+			case CN14:
+				return FACES_EDGES;
+				
+			default:
+				return ALL;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of neighbors of a voxel
+	 */
+	public int size() {
+		
+		return this.dx.length;
+	}
+}
@@ -0,0 +1,84 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils.profiling;
+
+import utils.profiling.BuildProfiler.Phase;
+
+/**
+ * Listener notified by a {@link BuildProfiler} during the creation of a tree.
+ * 
+ * <p>
+ * The notifications are done by the thread building the tree, so a listener should return quickly.
+ *
+ */
+public interface BuildListener {
+
+	/**
+	 * Informs that a phase of the creation has started.
+	 * 
+	 * @param phase started
+	 */
+	public void phaseStarted(Phase phase);
+	
+	/**
+	 * Informs that a phase of the creation has ended.
+	 * 
+	 * @param phase ended
+	 * @param durationMs time spent in the phase in ms
+	 */
+	public void phaseEnded(Phase phase, long durationMs);
+	
+	/**
+	 * Informs about the size of the set of adjacencies during the node mergings.
+	 * 
+	 * @param nbMergings number of node mergings done so far
+	 * @param nbAdjacencies number of adjacencies remaining in the RAG
+	 */
+	public void adjacenciesSampled(long nbMergings, int nbAdjacencies);
+	
+	/**
+	 * Informs that the creation of the tree is finished.
+	 * 
+	 * @param profiler containing all the measures
+	 */
+	public void buildEnded(BuildProfiler profiler);
+}
@@ -0,0 +1,632 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import utils.Log;
+
+/**
+ * Collects measures about the creation of a tree.
+ * 
+ * <p>
+ * Measures:
+ * <li> duration of each phase (label matrix, leaves, RAG, node mergings)
+ * <li> number of node mergings and mergings per second
+ * <li> size of the set of adjacencies over time
+ * <li> number of distance evaluations (in total and per node merging)
+ * <li> bytes allocated by the building thread and allocation rate
+ * <li> peak of the heap usage, sampled during the creation
+ * 
+ * <p>
+ * (!) The heap is the one of the whole JVM: it includes the objects not collected yet and, when several trees are created at the same time, 
+ * the structures of the other creations. The peak is then an upper bound of the memory needed by one creation; 
+ * as it is sampled (at each phase and about every {@link BuildProfiler#HEAP_SAMPLING_PERIOD} mergings), a short peak between two samples can be missed.
+ * 
+ * <p>
+ * The measures can be followed by {@link BuildListener listeners}, through JMX ({@link BuildProfiler#register()}) 
+ * or saved as JSON next to the tree ({@link utils.SaveBPT#toJSON(datastructure.Tree, BuildProfiler)}).
+ * 
+ * <p>
+ * Example:
+ * <pre>
+ * BPT bpt = new BPT(image);
+ * bpt.profiler = new BuildProfiler("my_tree");
+ * bpt.grow();
+ * System.out.println(bpt.profiler.toJSON());
+ * </pre>
+ *
+ */
+public class BuildProfiler implements BuildProfilerMBean {
+	
+	private static final String CONTEXT = "PROFILER";
+	
+	/**
+	 * Average number of node mergings between two samples of the heap usage.
+	 */
+	public static final int HEAP_SAMPLING_PERIOD = 1024;
+	
+	/**
+	 * Phases of the creation of a tree.
+	 * 
+	 * <li> LABEL_MATRIX: preparation of the matrix of labels
+	 * <li> LEAVES: creation of the leaves
+	 * <li> RAG: creation of the Region Adjacency Graph
+	 * <li> MERGINGS: node mergings until the root
+	 * <li> TILES: parallel creation of the trees of each part of the image (leaves, RAG and mergings)
+	 * <li> REGROUPING: gathering of the nodes of the parts in a single tree
+	 */
+	public enum Phase{
+		
+		LABEL_MATRIX,
+		LEAVES,
+		RAG,
+		MERGINGS,
+		TILES,
+		REGROUPING
+	}
+	
+	/**
+	 * Number of adjacencies at different moments of the node mergings: {nbMergings, nbAdjacencies}.
+	 */
+	private final ArrayList<long[]> adjacencySamples = new ArrayList<long[]>();
+	
+	/**
+	 * Bytes allocated by the building thread at the start.
+	 */
+	private long allocatedBytesAtStart = -1;
+	
+	/**
+	 * Bytes allocated by the building thread during the creation.
+	 */
+	private long allocatedBytes = -1;
+	
+	/**
+	 * Thread building the tree.
+	 */
+	private long buildingThreadId;
+	
+	/**
+	 * Phase in progress.
+	 */
+	private volatile Phase currentPhase;
+	
+	/**
+	 * Number of distances computed by the metric(s).
+	 */
+	private final LongAdder distanceEvaluations = new LongAdder();
+	
+	/**
+	 * Number of distances computed during each phase.
+	 */
+	private final EnumMap<Phase, Long> distanceEvaluationsOfPhase = new EnumMap<Phase, Long>(Phase.class);
+	
+	/**
+	 * Listeners to notify.
+	 */
+	private final List<BuildListener> listeners = new CopyOnWriteArrayList<BuildListener>();
+	
+	/**
+	 * Name of the profiled creation (e.g. name of the tree).
+	 */
+	public final String name;
+
+	/**
+	 * Number of node mergings done.
+	 */
+	private final LongAdder nbMergings = new LongAdder();
+	
+	/**
+	 * Number of adjacencies of the last sample.
+	 */
+	private volatile int nbAdjacencies;
+	
+	/**
+	 * Greatest heap usage sampled during the creation.
+	 */
+	private final AtomicLong peakHeapBytes = new AtomicLong();
+	
+	/**
+	 * Duration of each phase in ns.
+	 */
+	private final EnumMap<Phase, Long> phaseDurations = new EnumMap<Phase, Long>(Phase.class);
+	
+	/**
+	 * Starting time and number of distance evaluations at the start of each phase in progress.
+	 */
+	private final EnumMap<Phase, long[]> phaseStarts = new EnumMap<Phase, long[]>(Phase.class);
+	
+	/**
+	 * Starting time of the creation in ns.
+	 */
+	private long startingTime;
+	
+	/**
+	 * Duration of the creation in ns.
+	 */
+	private long totalTime;
+	
+	/**
+	 * Creates a profiler.
+	 * 
+	 * @param name of the profiled creation; used as JMX name and in the JSON file
+	 */
+	public BuildProfiler(String name) {
+		
+		this.name = name;
+	}
+	
+	/**
+	 * 
+	 * @param listener to notify; should not be null
+	 */
+	public void addListener(BuildListener listener) {
+		
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * Takes note of the number of adjacencies remaining in the RAG.
+	 * 
+	 * <p>
+	 * The size of some sets is not computed in constant time, so this should be called regularly but not at each merging (e.g. each percent).
+	 * 
+	 * @param nbAdjacencies number of adjacencies remaining
+	 */
+	public void adjacenciesSampled(int nbAdjacencies) {
+		
+		long mergings = this.nbMergings.sum();
+		synchronized(this.adjacencySamples) {
+			
+			this.adjacencySamples.add(new long[] {mergings, nbAdjacencies});
+		}
+		this.nbAdjacencies = nbAdjacencies;
+		this.sampleHeap();
+		
+		for(BuildListener listener: this.listeners) {
+			
+			listener.adjacenciesSampled(mergings, nbAdjacencies);
+		}
+	}
+	
+	/**
+	 * Takes note of some distance computations.
+	 * Can be called by several threads.
+	 * 
+	 * @param nb number of distances computed
+	 */
+	public void distancesEvaluated(int nb) {
+		
+		this.distanceEvaluations.add(nb);
+	}
+	
+	/**
+	 * Ends the profiling of the creation and notifies the listeners.
+	 */
+	public synchronized void end() {
+		
+		this.totalTime = System.nanoTime() - this.startingTime;
+		
+		long allocated = this.getThreadAllocatedBytes();
+		if(allocated >= 0 && this.allocatedBytesAtStart >= 0) {
+			
+			this.allocatedBytes = allocated - this.allocatedBytesAtStart;
+		}
+		
+		this.sampleHeap();
+		
+		Log.println(CONTEXT, this.name +" "+ this.getTotalTimeMs() +" ms, "+ this.getNbMergings() +" mergings, "+ this.getDistanceEvaluations() +" distances");
+		
+		for(BuildListener listener: this.listeners) {
+			
+			listener.buildEnded(this);
+		}
+	}
+	
+	/**
+	 * Ends a phase of the creation.
+	 * 
+	 * @param phase ended; should have been {@link BuildProfiler#startPhase(Phase) started}
+	 */
+	public void endPhase(Phase phase) {
+		
+		long duration;
+		synchronized(this) {
+			
+			long[] start = this.phaseStarts.remove(phase);
+			if(start == null) {
+				
+				return;
+			}
+			
+			duration = System.nanoTime() - start[0];
+			this.sampleHeap();
+			this.phaseDurations.put(phase, duration);
+			this.distanceEvaluationsOfPhase.put(phase, this.distanceEvaluations.sum() - start[1]);
+			if(this.currentPhase == phase) {
+				
+				this.currentPhase = null;
+			}
+		}
+		
+		for(BuildListener listener: this.listeners) {
+			
+			listener.phaseEnded(phase, duration / 1000000);
+		}
+	}
+	
+	@Override
+	public long getAllocatedBytes() {
+		
+		if(this.allocatedBytes >= 0) {
+			
+			return this.allocatedBytes;
+		}
+		
+		/* creation in progress */
+		long allocated = this.getThreadAllocatedBytes();
+		if(allocated < 0 || this.allocatedBytesAtStart < 0) {
+			
+			return -1;
+		}
+		return allocated - this.allocatedBytesAtStart;
+	}
+	
+	@Override
+	public double getAllocationRate() {
+		
+		long allocated = this.getAllocatedBytes();
+		long duration = this.totalTime > 0 ? this.totalTime : System.nanoTime() - this.startingTime;
+		if(allocated < 0 || duration <= 0) {
+			
+			return -1;
+		}
+		return allocated / (duration / 1e9);
+	}
+	
+	@Override
+	public String getCurrentPhase() {
+		
+		Phase phase = this.currentPhase;
+		return phase == null ? null : phase.toString();
+	}
+	
+	@Override
+	public long getDistanceEvaluations() {
+		
+		return this.distanceEvaluations.sum();
+	}
+	
+	@Override
+	public double getDistanceEvaluationsPerMerging() {
+		
+		long mergings = this.getNbMergings();
+		if(mergings == 0) {
+			
+			return 0;
+		}
+		
+		Long evaluations;
+		synchronized(this) {
+			
+			evaluations = this.distanceEvaluationsOfPhase.get(Phase.MERGINGS);
+		}
+		if(evaluations == null) { // mergings in progress or done in parallel with the RAG creation
+			
+			evaluations = this.getDistanceEvaluations();
+		}
+		return (double) evaluations / mergings;
+	}
+	
+	@Override
+	public long getLabelMatrixTimeMs() {
+		
+		return this.getPhaseTimeMs(Phase.LABEL_MATRIX);
+	}
+	
+	@Override
+	public long getLeavesTimeMs() {
+		
+		return this.getPhaseTimeMs(Phase.LEAVES);
+	}
+	
+	@Override
+	public double getMergingsPerSecond() {
+		
+		long durationMs = this.getPhaseTimeMs(Phase.MERGINGS);
+		if(durationMs == 0) {
+			
+			durationMs = this.getPhaseTimeMs(Phase.TILES);
+		}
+		if(durationMs == 0) {
+			
+			return 0;
+		}
+		return this.getNbMergings() / (durationMs / 1000.0);
+	}
+	
+	@Override
+	public long getMergingsTimeMs() {
+		
+		return this.getPhaseTimeMs(Phase.MERGINGS);
+	}
+	
+	@Override
+	public int getNbAdjacencies() {
+		
+		return this.nbAdjacencies;
+	}
+	
+	@Override
+	public long getNbMergings() {
+		
+		return this.nbMergings.sum();
+	}
+	
+	@Override
+	public long getPeakHeapBytes() {
+		
+		return this.peakHeapBytes.get();
+	}
+	
+	/**
+	 * 
+	 * @param phase of interest
+	 * @return the time spent in the phase in ms; 0 if the phase has not been done
+	 */
+	public synchronized long getPhaseTimeMs(Phase phase) {
+		
+		Long duration = this.phaseDurations.get(phase);
+		return duration == null ? 0 : duration / 1000000;
+	}
+	
+	@Override
+	public long getRagTimeMs() {
+		
+		return this.getPhaseTimeMs(Phase.RAG);
+	}
+	
+	/**
+	 * 
+	 * @return the bytes allocated so far by the building thread; -1 if not supported by the JVM
+	 */
+	private long getThreadAllocatedBytes() {
+		
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if(threadBean instanceof com.sun.management.ThreadMXBean) {
+			
+			com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+			if(sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+				
+				return sunThreadBean.getThreadAllocatedBytes(this.buildingThreadId);
+			}
+		}
+		return -1;
+	}
+	
+	@Override
+	public long getTotalTimeMs() {
+		
+		if(this.totalTime > 0) {
+			
+			return this.totalTime / 1000000;
+		}
+		return this.startingTime > 0 ? (System.nanoTime() - this.startingTime) / 1000000 : 0;
+	}
+	
+	/**
+	 * Takes note of a node merging.
+	 * Can be called by several threads.
+	 */
+	public void nodeMerged() {
+		
+		this.nbMergings.increment();
+		
+		/* Sampled at random so that the threads do not share a counter */
+		if(ThreadLocalRandom.current().nextInt(HEAP_SAMPLING_PERIOD) == 0) {
+			
+			this.sampleHeap();
+		}
+	}
+	
+	/**
+	 * Exposes the profiler as a JMX MBean named "BinaryPartitionTree:type=BuildProfiler,name=...".
+	 * 
+	 * @return true if registered, otherwise false
+	 */
+	public boolean register() {
+		
+		try {
+			
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, this.getObjectName());
+			return true;
+			
+		}catch(Exception e) {
+			
+			Log.println(CONTEXT, "Cannot register "+ this.name +": "+ e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Prepares the profiling of a new creation.
+	 * 
+	 * <p>
+	 * The allocated bytes are only measured for the calling thread (i.e. not for the threads of a parallel creation).
+	 */
+	public synchronized void start() {
+		
+		this.startingTime = System.nanoTime();
+		this.totalTime = 0;
+		this.buildingThreadId = Thread.currentThread().getId();
+		this.allocatedBytesAtStart = this.getThreadAllocatedBytes();
+		this.allocatedBytes = -1;
+		this.nbMergings.reset();
+		this.distanceEvaluations.reset();
+		this.phaseDurations.clear();
+		this.phaseStarts.clear();
+		this.distanceEvaluationsOfPhase.clear();
+		synchronized(this.adjacencySamples) {
+			
+			this.adjacencySamples.clear();
+		}
+		this.peakHeapBytes.set(0);
+		this.sampleHeap();
+	}
+	
+	/**
+	 * Takes note of the heap currently used by the JVM if it is the greatest usage so far.
+	 * Can be called by several threads.
+	 */
+	public void sampleHeap() {
+		
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		long peak = this.peakHeapBytes.get();
+		while(used > peak && !this.peakHeapBytes.compareAndSet(peak, used)) {
+			
+			peak = this.peakHeapBytes.get();
+		}
+	}
+	
+	/**
+	 * Starts a phase of the creation.
+	 * 
+	 * @param phase starting
+	 */
+	public void startPhase(Phase phase) {
+		
+		synchronized(this) {
+			
+			this.phaseStarts.put(phase, new long[] {System.nanoTime(), this.distanceEvaluations.sum()});
+			this.currentPhase = phase;
+		}
+		
+		for(BuildListener listener: this.listeners) {
+			
+			listener.phaseStarted(phase);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return all the measures in a JSON format
+	 */
+	public String toJSON() {
+		
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"name\": \""+ this.name.replace("\\", "\\\\").replace("\"", "\\\"") +"\",\n");
+		json.append("  \"total_time_ms\": "+ this.getTotalTimeMs() +",\n");
+		
+		json.append("  \"phases_ms\": {");
+		String separator = "";
+		synchronized(this) {
+			
+			for(Phase phase: this.phaseDurations.keySet()) {
+				
+				json.append(separator +"\""+ phase +"\": "+ this.getPhaseTimeMs(phase));
+				separator = ", ";
+			}
+		}
+		json.append("},\n");
+		
+		json.append("  \"nb_mergings\": "+ this.getNbMergings() +",\n");
+		json.append("  \"mergings_per_s\": "+ this.getMergingsPerSecond() +",\n");
+		json.append("  \"distance_evaluations\": "+ this.getDistanceEvaluations() +",\n");
+		json.append("  \"distance_evaluations_per_merging\": "+ this.getDistanceEvaluationsPerMerging() +",\n");
+		json.append("  \"allocated_bytes\": "+ this.getAllocatedBytes() +",\n");
+		json.append("  \"allocation_rate_bytes_per_s\": "+ this.getAllocationRate() +",\n");
+		json.append("  \"peak_heap_bytes\": "+ this.getPeakHeapBytes() +",\n");
+		
+		json.append("  \"adjacencies\": [");
+		separator = "";
+		synchronized(this.adjacencySamples) {
+			
+			for(long[] sample: this.adjacencySamples) {
+				
+				json.append(separator +"["+ sample[0] +", "+ sample[1] +"]");
+				separator = ", ";
+			}
+		}
+		json.append("]\n");
+		
+		json.append("}\n");
+		return json.toString();
+	}
+	
+	/**
+	 * Removes the profiler from the JMX MBeans.
+	 */
+	public void unregister() {
+		
+		try {
+			
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.getObjectName());
+			
+		}catch(Exception e) {
+			
+			Log.println(CONTEXT, "Cannot unregister "+ this.name +": "+ e.getMessage());
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the JMX name of the profiler
+	 * @throws Exception if the name of the profiler cannot be used
+	 */
+	private ObjectName getObjectName() throws Exception {
+		
+		return new ObjectName("BinaryPartitionTree:type=BuildProfiler,name="+ ObjectName.quote(this.name));
+	}
+}
@@ -0,0 +1,133 @@
+/****************************************************************************
+* Copyright AGAT-Team (2014)						       
+* 									    
+* Contributors:								
+* J.F. Randrianasoa							    
+* K. Kurtz								    
+* E. Desjardin								    
+* N. Passat								    
+* 									    
+* This software is a computer program whose purpose is to [describe	    
+* functionalities and technical features of your software].		    
+* 									    
+* This software is governed by the CeCILL-B license under French law and    
+* abiding by the rules of distribution of free software.  You can  use,     
+* modify and/ or redistribute the software under the terms of the CeCILL-B  
+* license as circulated by CEA, CNRS and INRIA at the following URL	    
+* "http://www.cecill.info". 						    
+* 									    
+* As a counterpart to the access to the source code and  rights to copy,    
+* modify and redistribute granted by the license, users are provided only   
+* with a limited warranty  and the software's author,  the holder of the    
+* economic rights,  and the successive licensors  have only  limited	    
+* liability. 								    
+* 									    
+* In this respect, the user's attention is drawn to the risks associated    
+* with loading,  using,  modifying and/or developing or reproducing the     
+* software by the user in light of its specific status of free software,    
+* that may mean  that it is complicated to manipulate,  and  that  also	   
+* therefore means  that it is reserved for developers  and  experienced     
+* professionals having in-depth computer knowledge. Users are therefore     
+* encouraged to load and test the software's suitability as regards their   
+* requirements in conditions enabling the security of their systems and/or  
+* data to be ensured and,  more generally, to use and operate it in the     
+* same conditions as regards security. 					    
+*								            
+* The fact that you are presently reading this means that you have had	    
+* knowledge of the CeCILL-B license and that you accept its terms.          
+* 									   		
+* The full license is in the file LICENSE, distributed with this software.  
+*****************************************************************************/
+
+package utils.profiling;
+
+/**
+ * Management interface of the {@link BuildProfiler} exposed through JMX.
+ *
+ */
+public interface BuildProfilerMBean {
+
+	/**
+	 * 
+	 * @return the name of the phase in progress or null if none
+	 */
+	public String getCurrentPhase();
+	
+	/**
+	 * 
+	 * @return the time spent to prepare the matrix of labels in ms
+	 */
+	public long getLabelMatrixTimeMs();
+	
+	/**
+	 * 
+	 * @return the time spent to create the leaves in ms
+	 */
+	public long getLeavesTimeMs();
+	
+	/**
+	 * 
+	 * @return the time spent to create the RAG in ms
+	 */
+	public long getRagTimeMs();
+	
+	/**
+	 * 
+	 * @return the time spent to merge the nodes in ms
+	 */
+	public long getMergingsTimeMs();
+	
+	/**
+	 * 
+	 * @return the time spent from the start to the end of the creation in ms
+	 */
+	public long getTotalTimeMs();
+	
+	/**
+	 * 
+	 * @return the number of node mergings done so far
+	 */
+	public long getNbMergings();
+	
+	/**
+	 * 
+	 * @return the number of node mergings per second during the merging phase
+	 */
+	public double getMergingsPerSecond();
+	
+	/**
+	 * 
+	 * @return the number of adjacencies of the last sample
+	 */
+	public int getNbAdjacencies();
+	
+	/**
+	 * 
+	 * @return the number of distances computed by the metric(s) so far
+	 */
+	public long getDistanceEvaluations();
+	
+	/**
+	 * 
+	 * @return the mean number of distances computed for each node merging
+	 */
+	public double getDistanceEvaluationsPerMerging();
+	
+	/**
+	 * 
+	 * @return the number of bytes allocated by the building thread, -1 if not supported by the JVM
+	 */
+	public long getAllocatedBytes();
+	
+	/**
+	 * 
+	 * @return the number of bytes allocated per second by the building thread, -1 if not supported by the JVM
+	 */
+	public double getAllocationRate();
+	
+	/**
+	 * 
+	 * @return the greatest heap usage of the JVM in bytes sampled during the creation (including the objects not collected yet and the other creations in progress)
+	 */
+	public long getPeakHeapBytes();
+}